@@ -0,0 +1,13 @@
+package id.payu.abtesting.application.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration to enable scheduled tasks
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Conversion counters are flushed to Redis and compacted into experiments on a schedule
+}
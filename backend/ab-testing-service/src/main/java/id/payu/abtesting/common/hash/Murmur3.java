@@ -0,0 +1,92 @@
+package id.payu.abtesting.common.hash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * MurmurHash3 (x86, 32-bit) for variant bucketing: fast, well mixed and not
+ * cryptographic. Hashing a user ID allocates nothing.
+ */
+public final class Murmur3 {
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hash of a string's UTF-8 bytes, used as the per-experiment seed
+     */
+    public static int hash(String value, int seed) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        int h = seed;
+        int blocks = data.length >>> 2;
+        for (int i = 0; i < blocks; i++) {
+            int offset = i << 2;
+            int k = (data[offset] & 0xff)
+                    | (data[offset + 1] & 0xff) << 8
+                    | (data[offset + 2] & 0xff) << 16
+                    | (data[offset + 3] & 0xff) << 24;
+            h = mixH(h, mixK(k));
+        }
+        int tail = blocks << 2;
+        int k = 0;
+        switch (data.length & 3) {
+            case 3:
+                k ^= (data[tail + 2] & 0xff) << 16;
+                // fall through
+            case 2:
+                k ^= (data[tail + 1] & 0xff) << 8;
+                // fall through
+            case 1:
+                k ^= data[tail] & 0xff;
+                h ^= mixK(k);
+            default:
+                break;
+        }
+        return fmix(h ^ data.length);
+    }
+
+    /**
+     * Hash of the 16 bytes of a UUID, little-endian per long
+     */
+    public static int hash(UUID value, int seed) {
+        long msb = value.getMostSignificantBits();
+        long lsb = value.getLeastSignificantBits();
+        int h = seed;
+        h = mixH(h, mixK((int) msb));
+        h = mixH(h, mixK((int) (msb >>> 32)));
+        h = mixH(h, mixK((int) lsb));
+        h = mixH(h, mixK((int) (lsb >>> 32)));
+        return fmix(h ^ 16);
+    }
+
+    /**
+     * Bucket in {@code [0, buckets)} for a hash, by multiply-shift rather than modulo
+     */
+    public static int bucket(int hash, int buckets) {
+        return (int) (((hash & 0xffffffffL) * buckets) >>> 32);
+    }
+
+    private static int mixK(int k) {
+        k *= C1;
+        k = Integer.rotateLeft(k, 15);
+        return k * C2;
+    }
+
+    private static int mixH(int h, int k) {
+        h ^= k;
+        h = Integer.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
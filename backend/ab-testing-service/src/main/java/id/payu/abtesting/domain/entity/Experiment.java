@@ -1,5 +1,6 @@
 package id.payu.abtesting.domain.entity;
 
+import id.payu.abtesting.common.hash.Murmur3;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -11,6 +12,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
@@ -29,6 +31,16 @@ import java.util.UUID;
 @AllArgsConstructor
 public class Experiment {
 
+    /**
+     * Buckets from {@code UUID.hashCode()}, kept for experiments created before murmur3
+     */
+    public static final int HASH_LEGACY = 1;
+
+    /**
+     * Buckets from murmur3 of the user ID, seeded by the experiment key
+     */
+    public static final int HASH_MURMUR3 = 2;
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -62,6 +74,10 @@ public class Experiment {
     @Column(name = "variant_b_config", columnDefinition = "JSONB")
     private Map<String, Object> variantBConfig; // Test configuration
 
+    @Column(name = "hash_version", nullable = false)
+    @Builder.Default
+    private Integer hashVersion = HASH_MURMUR3; // Bucketing formula, fixed for the experiment's lifetime
+
     @Column(name = "targeting_rules", columnDefinition = "JSONB")
     private Map<String, Object> targetingRules;
 
@@ -115,11 +131,25 @@ public class Experiment {
      * Get variant for a user based on user ID hashing
      */
     public String getVariantForUser(UUID userId) {
-        // Consistent bucket assignment based on user ID
-        int hash = userId.hashCode();
-        int bucket = Math.abs(hash % 100);
+        return bucket(hashVersion, hashSeed(), userId) < trafficSplit ? "VARIANT_B" : "CONTROL";
+    }
+
+    /**
+     * Consistent bucket (0-99) of a user. Running experiments keep the formula they
+     * started with, so changing it never moves their users to the other variant.
+     */
+    public static int bucket(Integer hashVersion, int seed, UUID userId) {
+        if (hashVersion != null && hashVersion == HASH_LEGACY) {
+            return Math.abs(userId.hashCode() % 100);
+        }
+        return Murmur3.bucket(Murmur3.hash(userId, seed), 100);
+    }
 
-        return bucket < trafficSplit ? "VARIANT_B" : "CONTROL";
+    /**
+     * Seed for user bucketing, so users do not land in the same bucket in every experiment
+     */
+    public int hashSeed() {
+        return Murmur3.hash(key, 0);
     }
 
     /**
@@ -141,4 +171,22 @@ public class Experiment {
 
         return participants > 0 ? (double) conversions / participants : 0.0;
     }
+
+    /**
+     * Stored metrics with counter deltas (variant -> field -> delta) added, as a new map
+     */
+    public Map<String, Object> metricsWith(Map<String, Map<String, Long>> deltas) {
+        Map<String, Object> merged = metrics != null ? new HashMap<>(metrics) : new HashMap<>();
+        deltas.forEach((variant, fieldDeltas) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> stored = (Map<String, Object>) merged.get(variant);
+            Map<String, Object> variantMetrics = stored != null ? new HashMap<>(stored) : new HashMap<>();
+            fieldDeltas.forEach((field, delta) -> {
+                long current = ((Number) variantMetrics.getOrDefault(field, 0)).longValue();
+                variantMetrics.put(field, current + delta);
+            });
+            merged.put(variant, variantMetrics);
+        });
+        return merged;
+    }
 }
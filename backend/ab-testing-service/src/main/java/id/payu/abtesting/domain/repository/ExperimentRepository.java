@@ -2,7 +2,9 @@ package id.payu.abtesting.domain.repository;
 
 import id.payu.abtesting.domain.entity.Experiment;
 import id.payu.abtesting.domain.entity.Experiment.ExperimentStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,6 +25,13 @@ public interface ExperimentRepository extends JpaRepository<Experiment, UUID> {
      */
     Optional<Experiment> findByKey(String key);
 
+    /**
+     * Find experiment by ID and lock its row until the transaction ends
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Experiment e WHERE e.id = :id")
+    Optional<Experiment> findByIdForUpdate(@Param("id") UUID id);
+
     /**
      * Find all running experiments
      */
@@ -0,0 +1,59 @@
+package id.payu.abtesting.domain.service;
+
+import id.payu.abtesting.domain.entity.Experiment;
+import id.payu.abtesting.domain.service.ExperimentService.VariantAssignment;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A running experiment prepared for assignment: the hash seed, the targeting rules and
+ * both possible assignments are built once, so assigning a user allocates nothing.
+ *
+ * <p>The returned {@link VariantAssignment}s are shared and must not be modified.</p>
+ */
+public final class CompiledExperiment {
+
+    private final UUID id;
+    private final String key;
+    private final Integer hashVersion;
+    private final int seed;
+    private final int trafficSplit;
+    private final TargetingRules targeting;
+    private final VariantAssignment control;
+    private final VariantAssignment variantB;
+
+    private CompiledExperiment(Experiment experiment) {
+        this.id = experiment.getId();
+        this.key = experiment.getKey();
+        this.hashVersion = experiment.getHashVersion();
+        this.seed = experiment.hashSeed();
+        this.trafficSplit = experiment.getTrafficSplit();
+        this.targeting = TargetingRules.compile(experiment.getTargetingRules());
+        this.control = new VariantAssignment(key, "CONTROL", experiment.getVariantAConfig());
+        this.variantB = new VariantAssignment(key, "VARIANT_B", experiment.getVariantBConfig());
+    }
+
+    public static CompiledExperiment compile(Experiment experiment) {
+        return new CompiledExperiment(experiment);
+    }
+
+    /**
+     * Variant of the user, the same as {@link Experiment#getVariantForUser(UUID)}
+     */
+    public VariantAssignment assign(UUID userId) {
+        return Experiment.bucket(hashVersion, seed, userId) < trafficSplit ? variantB : control;
+    }
+
+    public boolean targets(Map<String, Object> attributes) {
+        return targeting.matches(attributes);
+    }
+
+    public UUID id() {
+        return id;
+    }
+
+    public String key() {
+        return key;
+    }
+}
@@ -0,0 +1,96 @@
+package id.payu.abtesting.domain.service;
+
+import id.payu.abtesting.domain.entity.Experiment;
+import id.payu.abtesting.domain.repository.ExperimentRepository;
+import id.payu.abtesting.infrastructure.redis.counter.ConversionCounterStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Folds conversion counter deltas into the experiment rows.
+ *
+ * <p>Each experiment row is written once per compaction, under a row lock, instead of
+ * once per tracked event. Only the compacted experiment is evicted from the caches.</p>
+ */
+@Service
+@Slf4j
+public class ExperimentMetricsCompactor {
+
+    private final ExperimentRepository experimentRepository;
+    private final ConversionCounterStore counterStore;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExperimentMetricsCompactor(ExperimentRepository experimentRepository,
+                                      ConversionCounterStore counterStore,
+                                      CacheManager cacheManager,
+                                      PlatformTransactionManager transactionManager) {
+        this.experimentRepository = experimentRepository;
+        this.counterStore = counterStore;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Compact every experiment with pending deltas
+     */
+    @Scheduled(fixedDelayString = "${ab-testing.counters.compaction-interval-ms:30000}",
+            initialDelayString = "${ab-testing.counters.compaction-interval-ms:30000}")
+    public void compact() {
+        try {
+            for (UUID experimentId : counterStore.dirtyExperiments()) {
+                compact(experimentId);
+            }
+        } catch (Exception e) {
+            log.error("Failed to compact conversion counters", e);
+        }
+    }
+
+    /**
+     * Add the experiment's pending deltas to its stored metrics. Deltas are put back
+     * for the next run when the row cannot be updated.
+     */
+    public void compact(UUID experimentId) {
+        Map<String, Map<String, Long>> deltas = counterStore.take(experimentId);
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Optional<Experiment> compacted;
+        try {
+            compacted = transactionTemplate.execute(status -> experimentRepository.findByIdForUpdate(experimentId)
+                    .map(experiment -> {
+                        experiment.setMetrics(experiment.metricsWith(deltas));
+                        return experimentRepository.save(experiment);
+                    }));
+        } catch (Exception e) {
+            log.error("Failed to compact conversion counters for experiment: {}", experimentId, e);
+            counterStore.restore(experimentId, deltas);
+            return;
+        }
+
+        if (compacted == null || compacted.isEmpty()) {
+            log.debug("Dropped conversion counters of deleted experiment: {}", experimentId);
+            return;
+        }
+        evict("experiments", experimentId);
+        evict("experimentsByKey", compacted.get().getKey());
+        log.debug("Compacted conversion counters for experiment: {}", experimentId);
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package id.payu.abtesting.domain.service;
+
+import id.payu.abtesting.domain.entity.Experiment;
+import id.payu.abtesting.domain.repository.ExperimentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process registry of the running experiments, compiled for assignment.
+ *
+ * <p>The registry is loaded when the application is ready, reloaded whenever an
+ * experiment event arrives on Kafka, and reloaded every
+ * {@code ab-testing.registry.refresh-interval-ms} so experiments start and end on their
+ * dates. Readers only see complete snapshots.</p>
+ */
+@Service
+@Slf4j
+public class ExperimentRegistry {
+
+    private final ExperimentRepository experimentRepository;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), List.of());
+
+    public ExperimentRegistry(ExperimentRepository experimentRepository) {
+        this.experimentRepository = experimentRepository;
+    }
+
+    /**
+     * Reload the running experiments; the previous snapshot stays in use on failure
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ab-testing.registry.refresh-interval-ms:60000}",
+            initialDelayString = "${ab-testing.registry.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        try {
+            List<Experiment> running = experimentRepository.findActiveExperiments(LocalDate.now());
+            Map<String, CompiledExperiment> byKey = new HashMap<>(running.size() * 2);
+            List<CompiledExperiment> all = new ArrayList<>(running.size());
+            for (Experiment experiment : running) {
+                CompiledExperiment compiled = CompiledExperiment.compile(experiment);
+                byKey.put(compiled.key(), compiled);
+                all.add(compiled);
+            }
+            snapshot = new Snapshot(Map.copyOf(byKey), List.copyOf(all));
+            log.debug("Experiment registry refreshed: {} running experiments", all.size());
+        } catch (Exception e) {
+            log.error("Failed to refresh experiment registry", e);
+        }
+    }
+
+    /**
+     * The running experiment with this key, or {@code null}
+     */
+    public CompiledExperiment find(String experimentKey) {
+        return snapshot.byKey().get(experimentKey);
+    }
+
+    /**
+     * All running experiments
+     */
+    public List<CompiledExperiment> running() {
+        return snapshot.all();
+    }
+
+    private record Snapshot(Map<String, CompiledExperiment> byKey, List<CompiledExperiment> all) {
+    }
+}
@@ -4,7 +4,7 @@ import id.payu.abtesting.domain.entity.Experiment;
 import id.payu.abtesting.domain.entity.Experiment.ExperimentStatus;
 import id.payu.abtesting.domain.repository.ExperimentRepository;
 import id.payu.abtesting.infrastructure.kafka.producer.ExperimentEventProducer;
-import id.payu.abtesting.infrastructure.redis.cache.ExperimentCacheService;
+import id.payu.abtesting.infrastructure.redis.counter.ConversionCounterStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
@@ -12,11 +12,16 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -28,9 +33,12 @@ import java.util.UUID;
 @Transactional(readOnly = true)
 public class ExperimentService {
 
+    private static final Set<String> VARIANTS = Set.of("CONTROL", "VARIANT_B");
+
     private final ExperimentRepository experimentRepository;
-    private final ExperimentCacheService cacheService;
     private final ExperimentEventProducer eventProducer;
+    private final ConversionCounterStore counterStore;
+    private final ExperimentRegistry registry;
 
     /**
      * Get all experiments with pagination
@@ -60,6 +68,13 @@ public class ExperimentService {
                 .orElseThrow(() -> new IllegalArgumentException("Experiment not found with key: " + key));
     }
 
+    /**
+     * Stored metrics of the experiment plus the tracked events not compacted into it yet
+     */
+    public Map<String, Object> getLiveMetrics(Experiment experiment) {
+        return experiment.metricsWith(counterStore.pending(experiment.getId()));
+    }
+
     /**
      * Get active experiments
      */
@@ -90,6 +105,7 @@ public class ExperimentService {
         // Set initial values
         experiment.setId(UUID.randomUUID());
         experiment.setStatus(ExperimentStatus.DRAFT);
+        experiment.setHashVersion(Experiment.HASH_MURMUR3);
         experiment.setCreatedBy(createdBy);
         experiment.setMetrics(Map.of(
                 "CONTROL", Map.of("participants", 0, "conversions", 0),
@@ -109,7 +125,7 @@ public class ExperimentService {
     public Experiment updateExperiment(UUID id, Experiment updates) {
         log.info("Updating experiment: {}", id);
 
-        Experiment existing = getExperimentById(id);
+        Experiment existing = lockExperiment(id);
 
         // Cannot update running experiment key
         if (existing.getStatus() == ExperimentStatus.RUNNING && !existing.getKey().equals(updates.getKey())) {
@@ -150,7 +166,7 @@ public class ExperimentService {
         }
 
         Experiment saved = experimentRepository.save(existing);
-        eventProducer.publishExperimentUpdated(saved);
+        afterCommit(() -> eventProducer.publishExperimentUpdated(saved));
         return saved;
     }
 
@@ -162,7 +178,7 @@ public class ExperimentService {
     public void deleteExperiment(UUID id) {
         log.info("Deleting experiment: {}", id);
 
-        Experiment experiment = getExperimentById(id);
+        Experiment experiment = lockExperiment(id);
 
         // Cannot delete running experiment
         if (experiment.getStatus() == ExperimentStatus.RUNNING) {
@@ -170,76 +186,83 @@ public class ExperimentService {
         }
 
         experimentRepository.deleteById(id);
-        eventProducer.publishExperimentDeleted(id);
+        counterStore.discard(id);
+        afterCommit(() -> eventProducer.publishExperimentDeleted(id));
     }
 
     /**
      * Assign variant to user (consistent hashing)
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public VariantAssignment assignVariant(String experimentKey, UUID userId) {
+        return assignVariant(experimentKey, userId, Map.of());
+    }
+
+    /**
+     * Assign variant to a user with the given attributes. Assignments are computed from
+     * the in-process registry and not stored; the exposure is recorded for batched
+     * publishing. No transaction is opened, so a registry hit does not touch the database.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public VariantAssignment assignVariant(String experimentKey, UUID userId, Map<String, Object> attributes) {
         log.debug("Assigning variant for experiment: {}, user: {}", experimentKey, userId);
 
-        // Try cache first
-        VariantAssignment cached = cacheService.getVariantAssignment(experimentKey, userId);
-        if (cached != null) {
-            return cached;
+        CompiledExperiment experiment = registry.find(experimentKey);
+        if (experiment == null) {
+            // Unknown, not running, or started since the registry was last refreshed
+            Experiment stored = getExperimentByKey(experimentKey);
+            if (!stored.isRunning()) {
+                throw new IllegalArgumentException("Experiment is not currently running: " + experimentKey);
+            }
+            experiment = CompiledExperiment.compile(stored);
         }
 
-        Experiment experiment = getExperimentByKey(experimentKey);
-
-        // Check if experiment is running
-        if (!experiment.isRunning()) {
-            throw new IllegalArgumentException("Experiment is not currently running: " + experimentKey);
+        if (!experiment.targets(attributes)) {
+            throw new IllegalArgumentException("User is not targeted by experiment: " + experimentKey);
         }
 
-        // Get variant based on consistent hashing
-        String variant = experiment.getVariantForUser(userId);
-
-        // Create assignment
-        VariantAssignment assignment = VariantAssignment.builder()
-                .experimentKey(experiment.getKey())
-                .variant(variant)
-                .config("CONTROL".equals(variant) ? experiment.getVariantAConfig() : experiment.getVariantBConfig())
-                .build();
-
-        // Cache the assignment
-        cacheService.cacheVariantAssignment(experimentKey, userId, assignment);
-
-        // Publish assignment event
-        eventProducer.publishVariantAssigned(experiment.getId(), userId, variant);
-
+        VariantAssignment assignment = experiment.assign(userId);
+        eventProducer.recordExposure(experiment.id(), userId, assignment.getVariant());
         return assignment;
     }
 
     /**
-     * Track conversion event
+     * Assign a user to every running experiment that targets them
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<VariantAssignment> assignAllVariants(UUID userId, Map<String, Object> attributes) {
+        log.debug("Assigning variants of all running experiments for user: {}", userId);
+
+        List<CompiledExperiment> running = registry.running();
+        List<VariantAssignment> assignments = new ArrayList<>(running.size());
+        for (CompiledExperiment experiment : running) {
+            if (experiment.targets(attributes)) {
+                VariantAssignment assignment = experiment.assign(userId);
+                eventProducer.recordExposure(experiment.id(), userId, assignment.getVariant());
+                assignments.add(assignment);
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * Track conversion event. The event is counted on this instance and reaches the
+     * experiment row with the next compaction, so tracking neither writes the row nor
+     * evicts cached experiments.
      */
-    @Transactional
-    @CacheEvict(value = {"experiments", "experimentsByKey"}, allEntries = true)
     public void trackConversion(UUID experimentId, UUID userId, String variant, String eventType) {
         log.debug("Tracking conversion for experiment: {}, user: {}, variant: {}, type: {}",
                 experimentId, userId, variant, eventType);
 
-        Experiment experiment = getExperimentById(experimentId);
-
-        // Update metrics
-        @SuppressWarnings("unchecked")
-        Map<String, Object> metrics = new HashMap<>(experiment.getMetrics());
-        @SuppressWarnings("unchecked")
-        Map<String, Object> variantMetrics = new HashMap<>((Map<String, Object>) metrics.get(variant));
-
-        int participants = ((Number) variantMetrics.getOrDefault("participants", 0)).intValue();
-        int conversions = ((Number) variantMetrics.getOrDefault("conversions", 0)).intValue();
-
-        if ("conversion".equals(eventType)) {
-            variantMetrics.put("conversions", conversions + 1);
-        } else {
-            variantMetrics.put("participants", participants + 1);
+        if (!VARIANTS.contains(variant)) {
+            throw new IllegalArgumentException("Unknown variant: " + variant);
+        }
+        // Only the first event per experiment on this instance checks that it exists
+        if (!counterStore.isTracked(experimentId)) {
+            getExperimentById(experimentId);
         }
 
-        metrics.put(variant, variantMetrics);
-        experiment.setMetrics(metrics);
-        experimentRepository.save(experiment);
+        counterStore.increment(experimentId, variant, "conversion".equals(eventType) ? "conversions" : "participants");
 
         // Publish conversion event
         eventProducer.publishConversionTracked(experimentId, userId, variant, eventType);
@@ -253,14 +276,42 @@ public class ExperimentService {
     public Experiment changeStatus(UUID id, ExperimentStatus newStatus) {
         log.info("Changing experiment status: {} -> {}", id, newStatus);
 
-        Experiment experiment = getExperimentById(id);
+        Experiment experiment = lockExperiment(id);
         experiment.setStatus(newStatus);
 
         Experiment saved = experimentRepository.save(experiment);
-        eventProducer.publishStatusChanged(saved);
+        afterCommit(() -> eventProducer.publishStatusChanged(saved));
         return saved;
     }
 
+    /**
+     * Load an experiment for a write and lock its row until the transaction ends. Saving
+     * writes every column, metrics included, so the lock keeps a compaction from landing
+     * between the read and the save and being overwritten.
+     */
+    private Experiment lockExperiment(UUID id) {
+        return experimentRepository.findByIdForUpdate(id)
+                .orElseThrow(() -> new IllegalArgumentException("Experiment not found with ID: " + id));
+    }
+
+    /**
+     * Run once the current transaction has committed, or right away without one.
+     * Lifecycle events make every instance reload its registry from the database, so
+     * they must not arrive before the change is visible there, nor for a rolled back one.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     /**
      * DTO for variant assignment response
      */
@@ -0,0 +1,94 @@
+package id.payu.abtesting.domain.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * An experiment's {@code targetingRules}, compiled once into predicates over the user
+ * attributes supplied with an assignment request.
+ *
+ * <ul>
+ *   <li>{@code minX} / {@code maxX} with a number: attribute {@code x} is at least / at most it</li>
+ *   <li>a list: the attribute with the same name is one of the values</li>
+ *   <li>any other value: the attribute with the same name equals it</li>
+ * </ul>
+ *
+ * <p>A rule fails when its attribute is missing, so a caller assigning users to an
+ * experiment with targeting rules must send every attribute the rules name. Experiments
+ * without rules target everyone.</p>
+ */
+final class TargetingRules {
+
+    static final TargetingRules NONE = new TargetingRules(new Rule[0]);
+
+    private final Rule[] rules;
+
+    private TargetingRules(Rule[] rules) {
+        this.rules = rules;
+    }
+
+    static TargetingRules compile(Map<String, Object> targetingRules) {
+        if (targetingRules == null || targetingRules.isEmpty()) {
+            return NONE;
+        }
+        List<Rule> rules = new ArrayList<>(targetingRules.size());
+        targetingRules.forEach((name, value) -> rules.add(compile(name, value)));
+        return new TargetingRules(rules.toArray(Rule[]::new));
+    }
+
+    /**
+     * Whether a user with these attributes is in the experiment's audience
+     */
+    boolean matches(Map<String, Object> attributes) {
+        for (Rule rule : rules) {
+            Object value = attributes != null ? attributes.get(rule.attribute()) : null;
+            if (value == null || !rule.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Rule compile(String name, Object value) {
+        if (value instanceof Number bound && name.length() > 3 && (name.startsWith("min") || name.startsWith("max"))) {
+            String attribute = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+            double limit = bound.doubleValue();
+            return name.startsWith("min")
+                    ? new Rule(attribute, actual -> toDouble(actual) >= limit)
+                    : new Rule(attribute, actual -> toDouble(actual) <= limit);
+        }
+        if (value instanceof Collection<?> allowed) {
+            Set<String> values = new HashSet<>(allowed.size());
+            allowed.forEach(item -> values.add(String.valueOf(item)));
+            return new Rule(name, actual -> values.contains(String.valueOf(actual)));
+        }
+        String expected = String.valueOf(value);
+        return new Rule(name, actual -> expected.equals(String.valueOf(actual)));
+    }
+
+    /**
+     * Attribute as a number; NaN (which fails every bound) when it is not one
+     */
+    private static double toDouble(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        try {
+            return Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private record Rule(String attribute, Predicate<Object> condition) {
+
+        boolean test(Object value) {
+            return condition.test(value);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package id.payu.abtesting.infrastructure.kafka.consumer;
+
+import id.payu.abtesting.domain.service.ExperimentRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kafka consumer keeping the experiment registry of this instance current.
+ *
+ * <p>Every instance must see every experiment event, so the consumer assigns itself all
+ * partitions of the topic instead of joining a consumer group, and never commits
+ * offsets. It starts at the end of each partition since the registry loads its initial
+ * state from the database, and reloads the registry once per polled batch. After a
+ * broker failure it reassigns, seeks to the end again and reloads, because events may
+ * have been missed meanwhile.</p>
+ */
+@Component
+@Slf4j
+public class ExperimentEventConsumer implements SmartLifecycle {
+
+    static final String TOPIC = "ab-testing.experiments";
+
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(1);
+    private static final Duration RETRY_BACKOFF = Duration.ofSeconds(5);
+
+    private final ExperimentRegistry registry;
+    private final ConsumerFactory<String, String> consumerFactory;
+
+    private volatile boolean running;
+    private volatile Consumer<String, String> consumer;
+    private Thread thread;
+
+    public ExperimentEventConsumer(ExperimentRegistry registry, ConsumerFactory<String, String> consumerFactory) {
+        this.registry = registry;
+        this.consumerFactory = consumerFactory;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::run, "experiment-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        Consumer<String, String> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Consumer<String, String> assigned = newConsumer()) {
+                consumer = assigned;
+                List<TopicPartition> partitions = assigned.partitionsFor(TOPIC).stream()
+                        .map(PartitionInfo::partition)
+                        .map(partition -> new TopicPartition(TOPIC, partition))
+                        .toList();
+                assigned.assign(partitions);
+                assigned.seekToEnd(partitions);
+                log.info("Listening for experiment events on {} partitions", partitions.size());
+                if (reconnecting) {
+                    registry.refresh();
+                }
+
+                while (running) {
+                    if (!assigned.poll(POLL_TIMEOUT).isEmpty()) {
+                        log.debug("Experiment events received, refreshing registry");
+                        registry.refresh();
+                    }
+                }
+            } catch (WakeupException e) {
+                // Stopping
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                log.warn("Experiment event consumer failed, retrying in {}: {}", RETRY_BACKOFF, e.getMessage());
+                reconnecting = true;
+                try {
+                    Thread.sleep(RETRY_BACKOFF.toMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            } finally {
+                consumer = null;
+            }
+        }
+    }
+
+    /**
+     * A consumer with the shared connection settings but no group, so it cannot commit
+     */
+    private Consumer<String, String> newConsumer() {
+        Map<String, Object> config = new HashMap<>(consumerFactory.getConfigurationProperties());
+        config.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new KafkaConsumer<>(config, new StringDeserializer(), new StringDeserializer());
+    }
+}
@@ -4,11 +4,20 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import id.payu.abtesting.domain.entity.Experiment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Kafka producer for experiment events
@@ -25,6 +34,19 @@ public class ExperimentEventProducer {
     private static final String ASSIGNMENT_TOPIC = "ab-testing.assignments";
     private static final String CONVERSION_TOPIC = "ab-testing.conversions";
 
+    private final Queue<Exposure> exposures = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedExposures = new AtomicInteger();
+    private final AtomicLong droppedExposures = new AtomicLong();
+
+    @Value("${ab-testing.exposures.sample-rate:1.0}")
+    private double exposureSampleRate;
+
+    @Value("${ab-testing.exposures.max-batch-size:500}")
+    private int exposureBatchSize;
+
+    @Value("${ab-testing.exposures.buffer-capacity:100000}")
+    private int exposureBufferCapacity;
+
     /**
      * Publish experiment created event
      */
@@ -82,21 +104,59 @@ public class ExperimentEventProducer {
     }
 
     /**
-     * Publish variant assigned event
+     * Record a variant exposure. A {@code sample-rate} share of exposures is buffered and
+     * published in batches by {@link #flushExposures()}; when the buffer is full the
+     * exposure is dropped rather than blocking the caller.
      */
-    public void publishVariantAssigned(UUID experimentId, UUID userId, String variant) {
+    public void recordExposure(UUID experimentId, UUID userId, String variant) {
+        if (exposureSampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= exposureSampleRate) {
+            return;
+        }
+        if (bufferedExposures.incrementAndGet() > exposureBufferCapacity) {
+            bufferedExposures.decrementAndGet();
+            droppedExposures.incrementAndGet();
+            return;
+        }
+        exposures.add(new Exposure(experimentId, userId, variant, System.currentTimeMillis()));
+    }
+
+    /**
+     * Publish buffered exposures as variant assigned batch events
+     */
+    @Scheduled(fixedDelayString = "${ab-testing.exposures.flush-interval-ms:1000}")
+    public void flushExposures() {
+        long dropped = droppedExposures.getAndSet(0);
+        if (dropped > 0) {
+            log.warn("Dropped {} variant exposures, buffer full", dropped);
+        }
+
+        List<Map<String, Object>> batch = new ArrayList<>();
+        Exposure exposure;
+        while ((exposure = exposures.poll()) != null) {
+            bufferedExposures.decrementAndGet();
+            batch.add(exposure.toPayload());
+            if (batch.size() >= exposureBatchSize) {
+                publishExposures(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            publishExposures(batch);
+        }
+    }
+
+    private void publishExposures(List<Map<String, Object>> batch) {
         try {
             String payload = objectMapper.writeValueAsString(Map.of(
-                    "eventType", "variant.assigned",
-                    "experimentId", experimentId.toString(),
-                    "userId", userId.toString(),
-                    "variant", variant,
+                    "eventType", "variant.assigned.batch",
+                    "sampleRate", exposureSampleRate,
+                    "exposures", batch,
                     "timestamp", System.currentTimeMillis()
             ));
-            kafkaTemplate.send(ASSIGNMENT_TOPIC, userId.toString(), payload);
-            log.debug("Published variant assigned event: user={}, variant={}", userId, variant);
+            kafkaTemplate.send(ASSIGNMENT_TOPIC, payload);
+            log.debug("Published {} variant exposures", batch.size());
         } catch (Exception e) {
-            log.error("Failed to publish variant assigned event", e);
+            log.error("Failed to publish variant exposures", e);
         }
     }
 
@@ -138,4 +198,16 @@ public class ExperimentEventProducer {
             log.error("Failed to publish status changed event", e);
         }
     }
+
+    private record Exposure(UUID experimentId, UUID userId, String variant, long timestamp) {
+
+        Map<String, Object> toPayload() {
+            return Map.of(
+                    "experimentId", experimentId.toString(),
+                    "userId", userId.toString(),
+                    "variant", variant,
+                    "timestamp", timestamp
+            );
+        }
+    }
 }
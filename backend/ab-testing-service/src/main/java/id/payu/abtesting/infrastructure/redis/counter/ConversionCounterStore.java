@@ -0,0 +1,200 @@
+package id.payu.abtesting.infrastructure.redis.counter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Participant and conversion counters, kept out of the experiment row.
+ *
+ * <p>Events are added to {@link LongAdder}s on this instance, so tracking never blocks.
+ * Every {@code ab-testing.counters.flush-interval-ms} the sums are moved into a Redis
+ * hash per experiment with {@code HINCRBY}, shared by all instances, and the experiment
+ * is marked dirty. The compactor later takes the Redis deltas and adds them to the
+ * stored metrics; until then {@link #pending(UUID)} gives what is not yet in the row.</p>
+ */
+@Service
+@Slf4j
+public class ConversionCounterStore {
+
+    private static final String DELTA_KEY_PREFIX = "ab:counters:delta:";
+    private static final String DIRTY_KEY = "ab:counters:dirty";
+
+    /**
+     * Add field/delta pairs to the hash and mark the experiment dirty in one step, so a
+     * concurrent take cannot drop the mark for deltas it did not see.
+     */
+    private static final DefaultRedisScript<Long> FLUSH_SCRIPT = new DefaultRedisScript<>("""
+            for i = 2, #ARGV, 2 do
+                redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])
+            end
+            redis.call('SADD', KEYS[2], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * Read and delete the deltas of an experiment, and clear its dirty mark.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TAKE_SCRIPT = new DefaultRedisScript<>("""
+            local deltas = redis.call('HGETALL', KEYS[1])
+            redis.call('DEL', KEYS[1])
+            redis.call('SREM', KEYS[2], ARGV[1])
+            return deltas
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Map<UUID, Map<String, LongAdder>> local = new ConcurrentHashMap<>();
+
+    public ConversionCounterStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Count one event for the variant on this instance.
+     *
+     * @param field {@code participants} or {@code conversions}
+     */
+    public void increment(UUID experimentId, String variant, String field) {
+        local.computeIfAbsent(experimentId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(variant + ':' + field, key -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Whether this instance has already counted events for the experiment.
+     */
+    public boolean isTracked(UUID experimentId) {
+        return local.containsKey(experimentId);
+    }
+
+    /**
+     * Forget the experiment's counters, on this instance and in Redis.
+     */
+    public void discard(UUID experimentId) {
+        local.remove(experimentId);
+        try {
+            redisTemplate.delete(deltaKey(experimentId));
+            redisTemplate.opsForSet().remove(DIRTY_KEY, experimentId.toString());
+        } catch (Exception e) {
+            log.error("Failed to discard conversion counters for experiment: {}", experimentId, e);
+        }
+    }
+
+    /**
+     * Move the local sums into Redis. Sums that cannot be written are added back and
+     * retried on the next flush.
+     */
+    @Scheduled(fixedDelayString = "${ab-testing.counters.flush-interval-ms:1000}")
+    public void flush() {
+        local.forEach((experimentId, counters) -> {
+            Map<String, Long> drained = new HashMap<>();
+            counters.forEach((field, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    drained.put(field, delta);
+                }
+            });
+            if (drained.isEmpty()) {
+                return;
+            }
+
+            List<String> args = new ArrayList<>(1 + drained.size() * 2);
+            args.add(experimentId.toString());
+            drained.forEach((field, delta) -> {
+                args.add(field);
+                args.add(Long.toString(delta));
+            });
+            try {
+                redisTemplate.execute(FLUSH_SCRIPT, List.of(deltaKey(experimentId), DIRTY_KEY), args.toArray());
+            } catch (Exception e) {
+                log.error("Failed to flush conversion counters for experiment: {}", experimentId, e);
+                drained.forEach((field, delta) -> counters.computeIfAbsent(field, key -> new LongAdder()).add(delta));
+            }
+        });
+    }
+
+    /**
+     * Experiments with deltas in Redis that are not in their row yet.
+     */
+    public Set<UUID> dirtyExperiments() {
+        Set<String> members = redisTemplate.opsForSet().members(DIRTY_KEY);
+        if (members == null) {
+            return Set.of();
+        }
+        Set<UUID> ids = new HashSet<>(members.size());
+        for (String member : members) {
+            ids.add(UUID.fromString(member));
+        }
+        return ids;
+    }
+
+    /**
+     * Atomically remove the experiment's Redis deltas, by variant and field.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Map<String, Long>> take(UUID experimentId) {
+        List<Object> flat = redisTemplate.execute(TAKE_SCRIPT,
+                List.of(deltaKey(experimentId), DIRTY_KEY), experimentId.toString());
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        if (flat != null) {
+            for (int i = 0; i + 1 < flat.size(); i += 2) {
+                add(deltas, String.valueOf(flat.get(i)), Long.parseLong(String.valueOf(flat.get(i + 1))));
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Put deltas back after {@link #take(UUID)} when they could not be stored.
+     */
+    public void restore(UUID experimentId, Map<String, Map<String, Long>> deltas) {
+        Map<String, LongAdder> counters = local.computeIfAbsent(experimentId, id -> new ConcurrentHashMap<>());
+        deltas.forEach((variant, fields) -> fields.forEach((field, delta) ->
+                counters.computeIfAbsent(variant + ':' + field, key -> new LongAdder()).add(delta)));
+    }
+
+    /**
+     * Counts not yet compacted into the experiment row: the Redis deltas plus the sums
+     * of this instance that are not flushed yet.
+     */
+    public Map<String, Map<String, Long>> pending(UUID experimentId) {
+        Map<String, Map<String, Long>> deltas = new HashMap<>();
+        try {
+            Map<Object, Object> stored = redisTemplate.opsForHash().entries(deltaKey(experimentId));
+            stored.forEach((field, delta) -> add(deltas, String.valueOf(field), Long.parseLong(String.valueOf(delta))));
+        } catch (Exception e) {
+            log.error("Failed to read conversion counters for experiment: {}", experimentId, e);
+        }
+        Map<String, LongAdder> counters = local.get(experimentId);
+        if (counters != null) {
+            counters.forEach((field, adder) -> add(deltas, field, adder.sum()));
+        }
+        return deltas;
+    }
+
+    private static void add(Map<String, Map<String, Long>> deltas, String field, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        int separator = field.lastIndexOf(':');
+        deltas.computeIfAbsent(field.substring(0, separator), variant -> new HashMap<>())
+                .merge(field.substring(separator + 1), delta, Long::sum);
+    }
+
+    private static String deltaKey(UUID experimentId) {
+        return DELTA_KEY_PREFIX + experimentId;
+    }
+}
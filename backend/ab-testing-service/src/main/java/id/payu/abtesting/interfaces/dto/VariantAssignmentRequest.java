@@ -6,6 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -19,4 +20,6 @@ public class VariantAssignmentRequest {
 
     @NotNull(message = "User ID is required")
     private UUID userId;
+
+    private Map<String, Object> attributes; // Matched against targeting rules, e.g. age, countries
 }
@@ -22,6 +22,8 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -72,7 +74,7 @@ public class ExperimentController {
             @PathVariable UUID id) {
 
         Experiment experiment = experimentService.getExperimentById(id);
-        return ResponseEntity.ok(ExperimentResponse.fromEntity(experiment));
+        return ResponseEntity.ok(withLiveMetrics(experiment));
     }
 
     /**
@@ -86,7 +88,7 @@ public class ExperimentController {
             @PathVariable String key) {
 
         Experiment experiment = experimentService.getExperimentByKey(key);
-        return ResponseEntity.ok(ExperimentResponse.fromEntity(experiment));
+        return ResponseEntity.ok(withLiveMetrics(experiment));
     }
 
     /**
@@ -95,9 +97,9 @@ public class ExperimentController {
     @GetMapping("/active")
     @Operation(summary = "Get active experiments", description = "Retrieve all currently running experiments")
     @PreAuthorize("hasAuthority('ab-testing:experiments:read')")
-    public ResponseEntity<java.util.List<ExperimentResponse>> getActiveExperiments() {
-        java.util.List<Experiment> experiments = experimentService.getActiveExperiments();
-        java.util.List<ExperimentResponse> response = experiments.stream()
+    public ResponseEntity<List<ExperimentResponse>> getActiveExperiments() {
+        List<Experiment> experiments = experimentService.getActiveExperiments();
+        List<ExperimentResponse> response = experiments.stream()
                 .map(ExperimentResponse::fromEntity)
                 .toList();
         return ResponseEntity.ok(response);
@@ -202,11 +204,27 @@ public class ExperimentController {
             @Valid @RequestBody VariantAssignmentRequest request) {
 
         ExperimentService.VariantAssignment assignment =
-                experimentService.assignVariant(key, request.getUserId());
+                experimentService.assignVariant(key, request.getUserId(), attributes(request));
 
         return ResponseEntity.ok(VariantAssignmentResponse.fromDomain(assignment));
     }
 
+    /**
+     * Assign user to all running experiments
+     */
+    @PostMapping("/assignments")
+    @Operation(summary = "Assign variants to user", description = "Get the user's variant in every running experiment that targets them")
+    @PreAuthorize("hasAuthority('ab-testing:experiments:assign')")
+    public ResponseEntity<List<VariantAssignmentResponse>> assignAllVariants(
+            @Valid @RequestBody VariantAssignmentRequest request) {
+
+        List<VariantAssignmentResponse> response = experimentService
+                .assignAllVariants(request.getUserId(), attributes(request)).stream()
+                .map(VariantAssignmentResponse::fromDomain)
+                .toList();
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Track conversion event
      */
@@ -221,4 +239,17 @@ public class ExperimentController {
         experimentService.trackConversion(id, request.getUserId(), request.getVariant(), request.getEventType());
         return ResponseEntity.accepted().build();
     }
+
+    private static Map<String, Object> attributes(VariantAssignmentRequest request) {
+        return request.getAttributes() != null ? request.getAttributes() : Map.of();
+    }
+
+    /**
+     * Single-experiment reads include events not yet compacted; lists show stored metrics
+     */
+    private ExperimentResponse withLiveMetrics(Experiment experiment) {
+        ExperimentResponse response = ExperimentResponse.fromEntity(experiment);
+        response.setMetrics(experimentService.getLiveMetrics(experiment));
+        return response;
+    }
 }
@@ -0,0 +1,6 @@
+-- Bucketing formula per experiment: 1 = UUID.hashCode(), 2 = murmur3 seeded by the key.
+-- Existing experiments keep the formula their users were assigned with.
+ALTER TABLE ab_experiments ADD COLUMN IF NOT EXISTS hash_version INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE ab_experiments ALTER COLUMN hash_version SET DEFAULT 2;
+
+COMMENT ON COLUMN ab_experiments.hash_version IS 'Variant bucketing formula (1 = legacy hashCode, 2 = murmur3)';
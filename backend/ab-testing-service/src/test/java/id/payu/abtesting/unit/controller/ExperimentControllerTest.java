@@ -4,6 +4,8 @@ import id.payu.abtesting.domain.entity.Experiment;
 import id.payu.abtesting.domain.entity.Experiment.ExperimentStatus;
 import id.payu.abtesting.domain.service.ExperimentService;
 import id.payu.abtesting.interfaces.dto.ExperimentResponse;
+import id.payu.abtesting.interfaces.dto.VariantAssignmentRequest;
+import id.payu.abtesting.interfaces.dto.VariantAssignmentResponse;
 import id.payu.abtesting.interfaces.rest.ExperimentController;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -61,7 +63,9 @@ class ExperimentControllerTest {
     @DisplayName("Should get experiment by ID")
     void shouldGetExperimentById() {
         // Given
+        Map<String, Object> liveMetrics = Map.of("CONTROL", Map.of("participants", 3L, "conversions", 1L));
         when(experimentService.getExperimentById(testId)).thenReturn(testExperiment);
+        when(experimentService.getLiveMetrics(testExperiment)).thenReturn(liveMetrics);
 
         // When
         ResponseEntity<ExperimentResponse> response = controller.getExperimentById(testId);
@@ -71,6 +75,7 @@ class ExperimentControllerTest {
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getId()).isEqualTo(testId);
         assertThat(response.getBody().getName()).isEqualTo("Test Experiment");
+        assertThat(response.getBody().getMetrics()).isEqualTo(liveMetrics);
     }
 
     @Test
@@ -87,4 +92,23 @@ class ExperimentControllerTest {
         assertThat(response.getBody()).hasSize(1);
         assertThat(response.getBody().get(0).getKey()).isEqualTo("test_experiment");
     }
+
+    @Test
+    @DisplayName("Should assign user to all running experiments")
+    void shouldAssignAllVariants() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        Map<String, Object> attributes = Map.of("age", 25);
+        when(experimentService.assignAllVariants(userId, attributes)).thenReturn(List.of(
+                new ExperimentService.VariantAssignment("test_experiment", "VARIANT_B", Map.of("color", "blue"))));
+
+        // When
+        ResponseEntity<List<VariantAssignmentResponse>> response = controller.assignAllVariants(
+                VariantAssignmentRequest.builder().userId(userId).attributes(attributes).build());
+
+        // Then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).hasSize(1);
+        assertThat(response.getBody().get(0).getVariant()).isEqualTo("VARIANT_B");
+    }
 }
@@ -0,0 +1,116 @@
+package id.payu.abtesting.unit.service;
+
+import id.payu.abtesting.domain.entity.Experiment;
+import id.payu.abtesting.domain.repository.ExperimentRepository;
+import id.payu.abtesting.domain.service.ExperimentMetricsCompactor;
+import id.payu.abtesting.infrastructure.redis.counter.ConversionCounterStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ExperimentMetricsCompactor
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ExperimentMetricsCompactor Tests")
+class ExperimentMetricsCompactorTest {
+
+    @Mock
+    private ExperimentRepository experimentRepository;
+
+    @Mock
+    private ConversionCounterStore counterStore;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private Cache cache;
+
+    private ExperimentMetricsCompactor compactor;
+    private Experiment testExperiment;
+    private UUID testId;
+
+    @BeforeEach
+    void setUp() {
+        compactor = new ExperimentMetricsCompactor(experimentRepository, counterStore, cacheManager, transactionManager);
+        testId = UUID.randomUUID();
+        testExperiment = Experiment.builder()
+                .id(testId)
+                .key("test_experiment")
+                .trafficSplit(50)
+                .metrics(Map.of(
+                        "CONTROL", Map.of("participants", 10, "conversions", 2),
+                        "VARIANT_B", Map.of("participants", 8, "conversions", 1)
+                ))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should add pending deltas to stored metrics and evict only that experiment")
+    void shouldCompactDirtyExperiments() {
+        // Given
+        when(counterStore.dirtyExperiments()).thenReturn(Set.of(testId));
+        when(counterStore.take(testId)).thenReturn(Map.of("VARIANT_B", Map.of("participants", 4L, "conversions", 2L)));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.save(any(Experiment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(cacheManager.getCache(anyString())).thenReturn(cache);
+
+        // When
+        compactor.compact();
+
+        // Then
+        assertThat(testExperiment.getMetrics().get("VARIANT_B")).isEqualTo(Map.of("participants", 12L, "conversions", 3L));
+        assertThat(testExperiment.getMetrics().get("CONTROL")).isEqualTo(Map.of("participants", 10, "conversions", 2));
+        verify(cache).evict(testId);
+        verify(cache).evict("test_experiment");
+        verify(cache, never()).clear();
+    }
+
+    @Test
+    @DisplayName("Should put deltas back when the row cannot be updated")
+    void shouldRestoreDeltasOnFailure() {
+        // Given
+        Map<String, Map<String, Long>> deltas = Map.of("CONTROL", Map.of("conversions", 1L));
+        when(counterStore.take(testId)).thenReturn(deltas);
+        when(experimentRepository.findByIdForUpdate(testId)).thenThrow(new IllegalStateException("database down"));
+
+        // When
+        compactor.compact(testId);
+
+        // Then
+        verify(counterStore).restore(testId, deltas);
+        verifyNoInteractions(cacheManager);
+    }
+
+    @Test
+    @DisplayName("Should skip experiments without deltas")
+    void shouldSkipExperimentsWithoutDeltas() {
+        // Given
+        when(counterStore.take(testId)).thenReturn(Map.of());
+
+        // When
+        compactor.compact(testId);
+
+        // Then
+        verifyNoInteractions(experimentRepository, cacheManager);
+    }
+}
@@ -0,0 +1,147 @@
+package id.payu.abtesting.unit.service;
+
+import id.payu.abtesting.domain.entity.Experiment;
+import id.payu.abtesting.domain.entity.Experiment.ExperimentStatus;
+import id.payu.abtesting.domain.repository.ExperimentRepository;
+import id.payu.abtesting.domain.service.ExperimentRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for ExperimentRegistry
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ExperimentRegistry Tests")
+class ExperimentRegistryTest {
+
+    @Mock
+    private ExperimentRepository experimentRepository;
+
+    private ExperimentRegistry registry;
+    private Experiment testExperiment;
+
+    @BeforeEach
+    void setUp() {
+        registry = new ExperimentRegistry(experimentRepository);
+        testExperiment = Experiment.builder()
+                .id(UUID.randomUUID())
+                .key("homepage_hero_banner")
+                .status(ExperimentStatus.RUNNING)
+                .trafficSplit(50)
+                .variantAConfig(Map.of("ctaText", "Learn More"))
+                .variantBConfig(Map.of("ctaText", "Get Started"))
+                .targetingRules(Map.of("minAge", 18, "countries", List.of("ID")))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should compile running experiments on refresh")
+    void shouldCompileRunningExperiments() {
+        // Given
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class))).thenReturn(List.of(testExperiment));
+
+        // When
+        registry.refresh();
+
+        // Then
+        assertThat(registry.running()).hasSize(1);
+        assertThat(registry.find("homepage_hero_banner")).isNotNull();
+        assertThat(registry.find("checkout_button_color")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should assign the same variant as the experiment entity")
+    void shouldAssignSameVariantAsEntity() {
+        // Given
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class))).thenReturn(List.of(testExperiment));
+        registry.refresh();
+
+        // When/Then
+        int variantB = 0;
+        for (int i = 0; i < 1000; i++) {
+            UUID userId = UUID.randomUUID();
+            String variant = registry.find("homepage_hero_banner").assign(userId).getVariant();
+            assertThat(variant).isEqualTo(testExperiment.getVariantForUser(userId));
+            if ("VARIANT_B".equals(variant)) {
+                variantB++;
+            }
+        }
+        assertThat(variantB).isBetween(400, 600);
+    }
+
+    @Test
+    @DisplayName("Should evaluate targeting rules and fail rules on missing attributes")
+    void shouldEvaluateTargetingRules() {
+        // Given
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class))).thenReturn(List.of(testExperiment));
+        registry.refresh();
+        var experiment = registry.find("homepage_hero_banner");
+
+        // When/Then
+        assertThat(experiment.targets(Map.of("age", 21, "countries", "ID"))).isTrue();
+        assertThat(experiment.targets(Map.of("age", "17", "countries", "ID"))).isFalse();
+        assertThat(experiment.targets(Map.of("age", 21, "countries", "SG"))).isFalse();
+        assertThat(experiment.targets(Map.of("age", "unknown", "countries", "ID"))).isFalse();
+        assertThat(experiment.targets(Map.of("age", 21))).isFalse();
+        assertThat(experiment.targets(Map.of())).isFalse();
+        assertThat(experiment.targets(null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should target everyone when an experiment has no rules")
+    void shouldTargetEveryoneWithoutRules() {
+        // Given
+        testExperiment.setTargetingRules(null);
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class))).thenReturn(List.of(testExperiment));
+        registry.refresh();
+
+        // When/Then
+        assertThat(registry.find("homepage_hero_banner").targets(Map.of())).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should keep legacy bucketing for experiments created before murmur3")
+    void shouldKeepLegacyBucketing() {
+        // Given
+        testExperiment.setHashVersion(Experiment.HASH_LEGACY);
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class))).thenReturn(List.of(testExperiment));
+        registry.refresh();
+
+        // When/Then
+        for (int i = 0; i < 1000; i++) {
+            UUID userId = UUID.randomUUID();
+            String legacy = Math.abs(userId.hashCode() % 100) < 50 ? "VARIANT_B" : "CONTROL";
+            assertThat(registry.find("homepage_hero_banner").assign(userId).getVariant()).isEqualTo(legacy);
+            assertThat(testExperiment.getVariantForUser(userId)).isEqualTo(legacy);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep the previous snapshot when refresh fails")
+    void shouldKeepSnapshotWhenRefreshFails() {
+        // Given
+        when(experimentRepository.findActiveExperiments(any(LocalDate.class)))
+                .thenReturn(List.of(testExperiment))
+                .thenThrow(new IllegalStateException("database down"));
+        registry.refresh();
+
+        // When
+        registry.refresh();
+
+        // Then
+        assertThat(registry.find("homepage_hero_banner")).isNotNull();
+    }
+}
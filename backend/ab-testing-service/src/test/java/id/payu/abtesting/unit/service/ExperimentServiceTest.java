@@ -3,9 +3,11 @@ package id.payu.abtesting.unit.service;
 import id.payu.abtesting.domain.entity.Experiment;
 import id.payu.abtesting.domain.entity.Experiment.ExperimentStatus;
 import id.payu.abtesting.domain.repository.ExperimentRepository;
+import id.payu.abtesting.domain.service.CompiledExperiment;
+import id.payu.abtesting.domain.service.ExperimentRegistry;
 import id.payu.abtesting.domain.service.ExperimentService;
 import id.payu.abtesting.infrastructure.kafka.producer.ExperimentEventProducer;
-import id.payu.abtesting.infrastructure.redis.cache.ExperimentCacheService;
+import id.payu.abtesting.infrastructure.redis.counter.ConversionCounterStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,6 +19,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -37,10 +41,13 @@ class ExperimentServiceTest {
     private ExperimentRepository experimentRepository;
 
     @Mock
-    private ExperimentCacheService cacheService;
+    private ExperimentEventProducer eventProducer;
 
     @Mock
-    private ExperimentEventProducer eventProducer;
+    private ConversionCounterStore counterStore;
+
+    @Mock
+    private ExperimentRegistry registry;
 
     @InjectMocks
     private ExperimentService experimentService;
@@ -149,7 +156,7 @@ class ExperimentServiceTest {
         testExperiment.setStatus(ExperimentStatus.RUNNING);
         testExperiment.setStartDate(LocalDate.now());
         testExperiment.setEndDate(LocalDate.now().plusDays(30));
-        when(cacheService.getVariantAssignment(anyString(), any(UUID.class))).thenReturn(null);
+        when(registry.find(experimentKey)).thenReturn(null);
         when(experimentRepository.findByKey(experimentKey)).thenReturn(Optional.of(testExperiment));
 
         // When
@@ -157,9 +164,75 @@ class ExperimentServiceTest {
 
         // Then
         assertThat(result).isNotNull();
-        assertThat(result.getVariant()).isIn("CONTROL", "VARIANT_B");
+        assertThat(result.getVariant()).isEqualTo(testExperiment.getVariantForUser(userId));
         assertThat(result.getConfig()).isNotNull();
-        verify(cacheService).cacheVariantAssignment(eq(experimentKey), eq(userId), any());
+        verify(eventProducer).recordExposure(testId, userId, result.getVariant());
+    }
+
+    @Test
+    @DisplayName("Should assign from the registry without loading the experiment")
+    void shouldAssignFromRegistry() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        testExperiment.setStatus(ExperimentStatus.RUNNING);
+        when(registry.find("test_experiment")).thenReturn(CompiledExperiment.compile(testExperiment));
+
+        // When
+        ExperimentService.VariantAssignment result = experimentService.assignVariant("test_experiment", userId);
+
+        // Then
+        assertThat(result.getVariant()).isEqualTo(testExperiment.getVariantForUser(userId));
+        assertThat(experimentService.assignVariant("test_experiment", userId)).isSameAs(result);
+        verifyNoInteractions(experimentRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject assignment for user outside targeting rules")
+    void shouldRejectUserOutsideTargetingRules() {
+        // Given
+        testExperiment.setTargetingRules(Map.of("minAge", 18, "countries", List.of("ID")));
+        when(registry.find("test_experiment")).thenReturn(CompiledExperiment.compile(testExperiment));
+
+        // When/Then
+        assertThatThrownBy(() -> experimentService.assignVariant(
+                "test_experiment", UUID.randomUUID(), Map.of("age", 16, "countries", "ID")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("not targeted");
+        verifyNoInteractions(eventProducer);
+    }
+
+    @Test
+    @DisplayName("Should assign user to every running experiment that targets them")
+    void shouldAssignAllVariants() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        testExperiment.setTargetingRules(Map.of("minAge", 18, "countries", List.of("ID")));
+        Experiment untargeted = Experiment.builder()
+                .id(UUID.randomUUID())
+                .key("promo_offer_display")
+                .trafficSplit(100)
+                .targetingRules(Map.of())
+                .build();
+        Experiment otherCountry = Experiment.builder()
+                .id(UUID.randomUUID())
+                .key("checkout_button_color")
+                .trafficSplit(0)
+                .targetingRules(Map.of("countries", List.of("SG")))
+                .build();
+        when(registry.running()).thenReturn(List.of(
+                CompiledExperiment.compile(testExperiment),
+                CompiledExperiment.compile(untargeted),
+                CompiledExperiment.compile(otherCountry)));
+
+        // When
+        List<ExperimentService.VariantAssignment> result =
+                experimentService.assignAllVariants(userId, Map.of("age", 30, "countries", "ID"));
+
+        // Then
+        assertThat(result).extracting(ExperimentService.VariantAssignment::getExperimentKey)
+                .containsExactly("test_experiment", "promo_offer_display");
+        assertThat(result.get(1).getVariant()).isEqualTo("VARIANT_B");
+        verify(eventProducer, times(2)).recordExposure(any(UUID.class), eq(userId), anyString());
     }
 
     @Test
@@ -167,29 +240,66 @@ class ExperimentServiceTest {
     void shouldTrackConversion() {
         // Given
         UUID userId = UUID.randomUUID();
+        when(counterStore.isTracked(testId)).thenReturn(false);
+        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+
+        // When
+        experimentService.trackConversion(testId, userId, "CONTROL", "conversion");
+
+        // Then
+        verify(counterStore).increment(testId, "CONTROL", "conversions");
+        verify(experimentRepository, never()).save(any(Experiment.class));
+        verify(eventProducer).publishConversionTracked(eq(testId), eq(userId), eq("CONTROL"), eq("conversion"));
+    }
+
+    @Test
+    @DisplayName("Should count participation without loading a tracked experiment")
+    void shouldTrackParticipationForTrackedExperiment() {
+        // Given
+        UUID userId = UUID.randomUUID();
+        when(counterStore.isTracked(testId)).thenReturn(true);
+
+        // When
+        experimentService.trackConversion(testId, userId, "VARIANT_B", "participation");
+
+        // Then
+        verify(counterStore).increment(testId, "VARIANT_B", "participants");
+        verifyNoInteractions(experimentRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject conversion for unknown variant")
+    void shouldRejectConversionForUnknownVariant() {
+        // When/Then
+        assertThatThrownBy(() -> experimentService.trackConversion(testId, UUID.randomUUID(), "VARIANT_Z", "conversion"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown variant");
+        verifyNoInteractions(counterStore);
+    }
+
+    @Test
+    @DisplayName("Should merge pending counters into stored metrics")
+    void shouldMergePendingCountersIntoStoredMetrics() {
+        // Given
         testExperiment.setMetrics(Map.of(
                 "CONTROL", Map.of("participants", 10, "conversions", 2),
                 "VARIANT_B", Map.of("participants", 8, "conversions", 1)
         ));
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
-        when(experimentRepository.save(any(Experiment.class))).thenAnswer(invocation -> {
-            Experiment exp = invocation.getArgument(0);
-            return exp;
-        });
+        when(counterStore.pending(testId)).thenReturn(Map.of("CONTROL", Map.of("conversions", 3L)));
 
         // When
-        experimentService.trackConversion(testId, userId, "CONTROL", "conversion");
+        Map<String, Object> metrics = experimentService.getLiveMetrics(testExperiment);
 
         // Then
-        verify(experimentRepository).save(any(Experiment.class));
-        verify(eventProducer).publishConversionTracked(eq(testId), eq(userId), eq("CONTROL"), eq("conversion"));
+        assertThat(metrics.get("CONTROL")).isEqualTo(Map.of("participants", 10, "conversions", 5L));
+        assertThat(metrics.get("VARIANT_B")).isEqualTo(Map.of("participants", 8, "conversions", 1));
     }
 
     @Test
     @DisplayName("Should change experiment status")
     void shouldChangeStatus() {
         // Given
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
         when(experimentRepository.save(any(Experiment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // When
@@ -201,6 +311,26 @@ class ExperimentServiceTest {
         verify(eventProducer).publishStatusChanged(any(Experiment.class));
     }
 
+    @Test
+    @DisplayName("Should publish status changes only after the transaction commits")
+    void shouldPublishStatusChangeAfterCommit() {
+        // Given
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.save(any(Experiment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            experimentService.changeStatus(testId, ExperimentStatus.RUNNING);
+
+            // Then
+            verify(eventProducer, never()).publishStatusChanged(any(Experiment.class));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            verify(eventProducer).publishStatusChanged(testExperiment);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
     @DisplayName("Should get experiment by key")
     void shouldGetExperimentByKey() {
@@ -254,7 +384,7 @@ class ExperimentServiceTest {
                 .trafficSplit(75)
                 .build();
 
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
         when(experimentRepository.save(any(Experiment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // When
@@ -265,6 +395,7 @@ class ExperimentServiceTest {
         assertThat(result.getDescription()).isEqualTo("Updated description");
         assertThat(result.getTrafficSplit()).isEqualTo(75);
         verify(experimentRepository).save(any(Experiment.class));
+        verify(experimentRepository, never()).findById(testId);
     }
 
     @Test
@@ -276,7 +407,7 @@ class ExperimentServiceTest {
                 .key("different_key")
                 .build();
 
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
 
         // When/Then
         assertThatThrownBy(() -> experimentService.updateExperiment(testId, updates))
@@ -289,7 +420,7 @@ class ExperimentServiceTest {
     void shouldDeleteExperimentSuccessfully() {
         // Given
         testExperiment.setStatus(ExperimentStatus.DRAFT);
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
         doNothing().when(experimentRepository).deleteById(testId);
 
         // When
@@ -297,6 +428,7 @@ class ExperimentServiceTest {
 
         // Then
         verify(experimentRepository).deleteById(testId);
+        verify(counterStore).discard(testId);
         verify(eventProducer).publishExperimentDeleted(testId);
     }
 
@@ -305,7 +437,7 @@ class ExperimentServiceTest {
     void shouldThrowExceptionWhenDeletingRunningExperiment() {
         // Given
         testExperiment.setStatus(ExperimentStatus.RUNNING);
-        when(experimentRepository.findById(testId)).thenReturn(Optional.of(testExperiment));
+        when(experimentRepository.findByIdForUpdate(testId)).thenReturn(Optional.of(testExperiment));
 
         // When/Then
         assertThatThrownBy(() -> experimentService.deleteExperiment(testId))
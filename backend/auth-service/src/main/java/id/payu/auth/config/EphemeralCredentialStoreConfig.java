@@ -0,0 +1,34 @@
+package id.payu.auth.config;
+
+import id.payu.auth.service.credential.EphemeralCredentialStore;
+import id.payu.auth.service.credential.InMemoryEphemeralCredentialStore;
+import id.payu.auth.service.credential.RedisEphemeralCredentialStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+/**
+ * Picks where MFA tokens, OTPs and biometric challenges live:
+ * {@code payu.security.credential-store=redis} (default) shares them across instances,
+ * {@code memory} keeps them in this JVM.
+ */
+@Configuration
+public class EphemeralCredentialStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "payu.security", name = "credential-store", havingValue = "redis", matchIfMissing = true)
+    public EphemeralCredentialStore redisEphemeralCredentialStore(StringRedisTemplate redisTemplate) {
+        return new RedisEphemeralCredentialStore(redisTemplate);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "payu.security", name = "credential-store", havingValue = "memory")
+    public EphemeralCredentialStore inMemoryEphemeralCredentialStore(
+            @Value("${payu.security.credential-store-tick:100ms}") Duration tick) {
+        return new InMemoryEphemeralCredentialStore(tick);
+    }
+}
@@ -13,6 +13,9 @@ public record BiometricAuthenticationRequest(
         String challengeSignature,
 
         @NotBlank(message = "Challenge string is required")
-        String challenge
+        String challenge,
+
+        @NotBlank(message = "Challenge identifier is required")
+        String challengeId
 ) {
 }
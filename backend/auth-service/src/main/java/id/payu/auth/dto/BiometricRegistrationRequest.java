@@ -20,6 +20,9 @@ public record BiometricRegistrationRequest(
         String challengeSignature,
 
         @NotBlank(message = "Challenge string is required")
-        String challenge
+        String challenge,
+
+        @NotBlank(message = "Challenge identifier is required")
+        String challengeId
 ) {
 }
@@ -2,13 +2,16 @@ package id.payu.auth.service;
 
 import id.payu.auth.dto.*;
 import id.payu.auth.exception.BiometricException;
+import id.payu.auth.service.credential.EphemeralCredentialStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,8 +20,11 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 public class BiometricService {
 
+    private static final String CHALLENGE_KEY_PREFIX = "bio:challenge:";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final Map<String, BiometricRegistration> registrations = new ConcurrentHashMap<>();
-    private final Map<String, String> challengeStore = new ConcurrentHashMap<>();
+    private final EphemeralCredentialStore credentialStore;
 
     @Value("${payu.biometric.challenge-expiry-seconds:300}")
     private long challengeExpirySeconds;
@@ -26,6 +32,10 @@ public class BiometricService {
     @Value("${payu.biometric.max-registrations-per-user:5}")
     private int maxRegistrationsPerUser;
 
+    public BiometricService(EphemeralCredentialStore credentialStore) {
+        this.credentialStore = credentialStore;
+    }
+
     public BiometricChallengeResponse generateChallenge(String username, String deviceId) {
         String challengeId = UUID.randomUUID().toString();
         String challenge = generateRandomChallenge();
@@ -33,7 +43,7 @@ public class BiometricService {
         String storeKey = buildChallengeKey(username, deviceId, challengeId);
         long expiresAt = Instant.now().plusSeconds(challengeExpirySeconds).toEpochMilli();
 
-        challengeStore.put(storeKey, challenge);
+        credentialStore.put(storeKey, challenge, Duration.ofSeconds(challengeExpirySeconds));
 
         log.info("Generated biometric challenge for user {} on device {}", username, deviceId);
 
@@ -46,9 +56,8 @@ public class BiometricService {
     }
 
     public BiometricRegistrationResponse registerBiometric(BiometricRegistrationRequest request) {
-        String challengeKey = buildChallengeKey(request.username(), request.deviceId(), UUID.randomUUID().toString());
-
         validateChallenge(request.challenge(), request.challengeSignature(), request.publicKey());
+        consumeChallenge(request.username(), request.deviceId(), request.challengeId(), request.challenge());
         validateDeviceLimit(request.username());
         validateDeviceUniqueness(request.username(), request.deviceId());
 
@@ -96,6 +105,8 @@ public class BiometricService {
             throw new BiometricException("BIO_005", "Device mismatch");
         }
 
+        consumeChallenge(request.username(), request.deviceId(), request.challengeId(), request.challenge());
+
         try {
             PublicKey publicKey = decodePublicKey(registration.publicKey());
             Signature signature = Signature.getInstance("SHA256withECDSA");
@@ -169,6 +180,22 @@ public class BiometricService {
         }
     }
 
+    /**
+     * Takes the issued challenge out of the store, so each one is accepted once, and
+     * rejects the request unless it presents that challenge.
+     */
+    private void consumeChallenge(String username, String deviceId, String challengeId, String challenge) {
+        if (challengeId == null || challengeId.isBlank()) {
+            throw new BiometricException("BIO_001", "Challenge identifier is required");
+        }
+        String issued = credentialStore.consume(buildChallengeKey(username, deviceId, challengeId))
+                .orElseThrow(() -> new BiometricException("BIO_008", "Challenge is invalid or expired"));
+        if (challenge == null || !MessageDigest.isEqual(
+                issued.getBytes(StandardCharsets.UTF_8), challenge.getBytes(StandardCharsets.UTF_8))) {
+            throw new BiometricException("BIO_008", "Challenge is invalid or expired");
+        }
+    }
+
     private void validateDeviceLimit(String username) {
         long activeCount = getUserRegistrations(username).size();
         if (activeCount >= maxRegistrationsPerUser) {
@@ -186,14 +213,13 @@ public class BiometricService {
     }
 
     private String generateRandomChallenge() {
-        SecureRandom random = new SecureRandom();
         byte[] bytes = new byte[32];
-        random.nextBytes(bytes);
+        RANDOM.nextBytes(bytes);
         return Base64.getEncoder().encodeToString(bytes);
     }
 
     private String buildChallengeKey(String username, String deviceId, String challengeId) {
-        return username + ":" + deviceId + ":" + challengeId;
+        return CHALLENGE_KEY_PREFIX + username + ":" + deviceId + ":" + challengeId;
     }
 
     private PublicKey decodePublicKey(String publicKeyString) {
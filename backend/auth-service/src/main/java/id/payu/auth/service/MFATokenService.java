@@ -1,21 +1,27 @@
 package id.payu.auth.service;
 
+import id.payu.auth.service.credential.EphemeralCredentialStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @Slf4j
 public class MFATokenService {
 
-    private final Map<String, MFAToken> tokenStore = new ConcurrentHashMap<>();
-    private final Map<String, String> otpStore = new ConcurrentHashMap<>();
+    private static final String TOKEN_KEY_PREFIX = "mfa:token:";
+    private static final String OTP_KEY_PREFIX = "mfa:otp:";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final EphemeralCredentialStore credentialStore;
 
     @Value("${payu.security.mfa.token-expiry-seconds:300}")
     private long tokenExpirySeconds;
@@ -26,6 +32,10 @@ public class MFATokenService {
     @Value("${payu.security.mfa.otp-expiry-seconds:300}")
     private long otpExpirySeconds;
 
+    public MFATokenService(EphemeralCredentialStore credentialStore) {
+        this.credentialStore = credentialStore;
+    }
+
     public MFAToken generateMFAToken(String username) {
         String mfaToken = UUID.randomUUID().toString();
         String otp = generateOTP();
@@ -40,8 +50,8 @@ public class MFATokenService {
                 true
         );
         
-        tokenStore.put(mfaToken, mfaTokenObj);
-        otpStore.put(username, otp);
+        credentialStore.put(TOKEN_KEY_PREFIX + mfaToken, username, Duration.ofSeconds(tokenExpirySeconds));
+        credentialStore.put(OTP_KEY_PREFIX + username, otp, Duration.ofSeconds(otpExpirySeconds));
         
         log.info("Generated MFA token for user {}: token={}, otp_expires_at={}",
                 username, mfaToken, otpExpiresAt);
@@ -49,49 +59,36 @@ public class MFATokenService {
         return mfaTokenObj;
     }
 
+    /**
+     * Check the token belongs to the user and use it up. The token is consumed even on a
+     * username mismatch, so a leaked token cannot be tried against other accounts.
+     */
     public boolean validateAndConsumeMFAToken(String mfaToken, String username) {
-        MFAToken token = tokenStore.get(mfaToken);
-        
-        if (token == null) {
-            log.warn("MFA token not found for user {}", username);
-            return false;
-        }
-        
-        if (!token.active()) {
-            log.warn("MFA token already consumed for user {}", username);
-            return false;
-        }
+        Optional<String> owner = credentialStore.consume(TOKEN_KEY_PREFIX + mfaToken);
         
-        if (System.currentTimeMillis() > token.expiresAt()) {
-            log.warn("MFA token expired for user {}", username);
-            tokenStore.remove(mfaToken);
+        if (owner.isEmpty()) {
+            log.warn("MFA token not found, expired or already consumed for user {}", username);
             return false;
         }
         
-        if (!token.username().equals(username)) {
+        if (!owner.get().equals(username)) {
             log.warn("MFA token username mismatch for user {}", username);
             return false;
         }
         
-        MFAToken consumed = new MFAToken(
-                token.mfaToken(),
-                token.username(),
-                token.expiresAt(),
-                false
-        );
-        tokenStore.put(mfaToken, consumed);
         return true;
     }
 
     public boolean validateOTP(String username, String otpCode) {
-        String storedOtp = otpStore.get(username);
+        Optional<String> storedOtp = credentialStore.get(OTP_KEY_PREFIX + username);
         
-        if (storedOtp == null) {
+        if (storedOtp.isEmpty()) {
             log.warn("No OTP found for user {}", username);
             return false;
         }
         
-        if (!storedOtp.equals(otpCode)) {
+        if (otpCode == null || !MessageDigest.isEqual(
+                storedOtp.get().getBytes(StandardCharsets.UTF_8), otpCode.getBytes(StandardCharsets.UTF_8))) {
             log.warn("Invalid OTP for user {}", username);
             return false;
         }
@@ -100,31 +97,13 @@ public class MFATokenService {
     }
 
     public void consumeOTP(String username) {
-        otpStore.remove(username);
-    }
-
-    public void cleanupExpiredTokens() {
-        long now = System.currentTimeMillis();
-        int removed = 0;
-        
-        for (Map.Entry<String, MFAToken> entry : tokenStore.entrySet()) {
-            if (entry.getValue().expiresAt() < now && entry.getValue().active()) {
-                otpStore.remove(entry.getValue().username());
-                tokenStore.remove(entry.getKey());
-                removed++;
-            }
-        }
-        
-        if (removed > 0) {
-            log.info("Cleaned up {} expired MFA tokens", removed);
-        }
+        credentialStore.delete(OTP_KEY_PREFIX + username);
     }
 
     private String generateOTP() {
-        SecureRandom random = new SecureRandom();
         StringBuilder otp = new StringBuilder();
         for (int i = 0; i < otpLength; i++) {
-            otp.append(random.nextInt(10));
+            otp.append(RANDOM.nextInt(10));
         }
         return otp.toString();
     }
@@ -0,0 +1,79 @@
+package id.payu.auth.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Issues refresh token secrets and computes the digests stored in their place.
+ *
+ * <p>Refresh tokens carry 256 random bits, so a slow password hash adds nothing but CPU
+ * time: a keyed HMAC-SHA256 is enough to keep a Redis dump from yielding usable tokens.
+ * Digests are compared in constant time. The {@link Mac} is kept per thread.</p>
+ */
+public final class RefreshTokenDigester {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SECRET_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    public RefreshTokenDigester(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac();
+    }
+
+    /**
+     * A new random token secret, URL-safe.
+     */
+    public String newSecret() {
+        byte[] secret = new byte[SECRET_BYTES];
+        random.nextBytes(secret);
+        return ENCODER.encodeToString(secret);
+    }
+
+    /**
+     * Digest of a raw token, URL-safe Base64.
+     */
+    public String digest(String rawToken) {
+        return ENCODER.encodeToString(macs.get().doFinal(rawToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Whether the raw token has the stored digest, in time independent of where they differ.
+     */
+    public boolean matches(String rawToken, String storedDigest) {
+        if (rawToken == null || storedDigest == null) {
+            return false;
+        }
+        byte[] expected;
+        try {
+            expected = DECODER.decode(storedDigest);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(macs.get().doFinal(rawToken.getBytes(StandardCharsets.UTF_8)), expected);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (InvalidKeyException e) {
+            throw new IllegalArgumentException("Invalid refresh token HMAC key", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
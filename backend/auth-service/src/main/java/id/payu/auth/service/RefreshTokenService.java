@@ -3,12 +3,19 @@ package id.payu.auth.service;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -19,6 +26,21 @@ import java.util.UUID;
  * 2. The old refresh token is invalidated
  * 3. This prevents replay attacks
  *
+ * Every login starts a token family, and each rotation replaces the family's current token.
+ * Storage in Redis:
+ * - {@code auth:refresh:family:{familyId}} hash with the current token ID, user ID, HMAC digest,
+ *   timestamps and rotation count
+ * - {@code auth:refresh:family:{familyId}:used:{tokenId}} digest of a rotated token, kept for the
+ *   rest of its lifetime to detect reuse
+ * - {@code auth:refresh:user:{userId}} set of the user's family IDs, for revoking all of them
+ *
+ * The family ID is the hash tag of a family's keys, so rotation is one Lua script over keys in a
+ * single slot, also on Redis Cluster, and a token can only be rotated once even under concurrent
+ * refreshes. Reuse of a rotated token revokes its family; the user's other sessions stay valid.
+ * Revoking all of a user's tokens deletes the families one key at a time. A family leaves the
+ * user's set when it is revoked, and families that expired are pruned from it on the user's
+ * next login, so the set only holds the user's recent sessions.
+ *
  * PCI-DSS Compliance:
  * - Requirement 8.2.4: Change authentication keys periodically
  * - OWASP: Implement proper token management
@@ -29,45 +51,79 @@ import java.util.UUID;
 @Service
 public class RefreshTokenService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final BCryptPasswordEncoder tokenEncoder = new BCryptPasswordEncoder(12);
-
     // Refresh token lifetime: 7 days
     private static final Duration REFRESH_TOKEN_TTL = Duration.ofDays(7);
 
-    // Redis key prefix for storing refresh tokens
-    private static final String REFRESH_TOKEN_PREFIX = "auth:refresh:";
-
-    public RefreshTokenService(RedisTemplate<String, Object> redisTemplate) {
+    // Redis key prefixes
+    private static final String FAMILY_KEY_PREFIX = "auth:refresh:family:";
+    private static final String USER_KEY_PREFIX = "auth:refresh:user:";
+
+    private static final String TOKEN_VERSION = "v2";
+
+    // KEYS: family; ARGV: tokenId, userId, digest, createdAt, expiresAt, ttl millis
+    private static final RedisScript<Long> CREATE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('HSET', KEYS[1], 'tokenId', ARGV[1], 'userId', ARGV[2], 'digest', ARGV[3],
+                'createdAt', ARGV[4], 'expiresAt', ARGV[5], 'rotationCount', 0)
+            redis.call('PEXPIRE', KEYS[1], ARGV[6])
+            return 1
+            """, Long.class);
+
+    // KEYS: family, used marker of the old token
+    // ARGV: old tokenId, expected digest, new tokenId, new digest, createdAt, expiresAt, ttl millis
+    // Returns the new rotation count, or -1 when the family no longer has the old token and digest
+    private static final RedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>("""
+            local old = redis.call('HMGET', KEYS[1], 'tokenId', 'digest', 'rotationCount')
+            if old[1] ~= ARGV[1] or old[2] ~= ARGV[2] then
+                return -1
+            end
+            local rotations = tonumber(old[3]) + 1
+            local remaining = redis.call('PTTL', KEYS[1])
+            if remaining > 0 then
+                redis.call('SET', KEYS[2], ARGV[2], 'PX', remaining)
+            end
+            redis.call('HSET', KEYS[1], 'tokenId', ARGV[3], 'digest', ARGV[4], 'createdAt', ARGV[5],
+                'expiresAt', ARGV[6], 'rotationCount', rotations)
+            redis.call('PEXPIRE', KEYS[1], ARGV[7])
+            return rotations
+            """, Long.class);
+
+    private static final List<Object> METADATA_FIELDS =
+            List.of("tokenId", "userId", "digest", "createdAt", "expiresAt", "rotationCount");
+
+    private final StringRedisTemplate redisTemplate;
+    private final RefreshTokenDigester digester;
+
+    public RefreshTokenService(
+            StringRedisTemplate redisTemplate,
+            @Value("${payu.security.refresh-token.hmac-key:}") String hmacKey) {
         this.redisTemplate = redisTemplate;
+        this.digester = new RefreshTokenDigester(hmacKey(hmacKey));
     }
 
     /**
-     * Creates a new refresh token for a user.
+     * Creates a new refresh token for a user, starting a new token family.
      *
      * @param userId The user ID
      * @return The refresh token response
      */
     public RefreshTokenResponse createRefreshToken(String userId) {
+        String familyId = UUID.randomUUID().toString();
         String tokenId = UUID.randomUUID().toString();
-        String rawToken = generateRawToken(tokenId);
-        String hashedToken = hashToken(rawToken);
-
-        RefreshTokenMetadata metadata = RefreshTokenMetadata.builder()
-                .tokenId(tokenId)
-                .userId(userId)
-                .createdAt(Instant.now())
-                .expiresAt(Instant.now().plus(REFRESH_TOKEN_TTL))
-                .rotationCount(0)
-                .build();
+        String rawToken = generateRawToken(familyId, tokenId);
+        Instant createdAt = Instant.now();
+        Instant expiresAt = createdAt.plus(REFRESH_TOKEN_TTL);
 
-        // Store the hashed token in Redis
-        String redisKey = buildRedisKey(userId, tokenId);
-        redisTemplate.opsForValue().set(redisKey, metadata, REFRESH_TOKEN_TTL);
+        redisTemplate.execute(CREATE_SCRIPT, List.of(familyKey(familyId)),
+                tokenId, userId, digester.digest(rawToken),
+                String.valueOf(createdAt.toEpochMilli()), String.valueOf(expiresAt.toEpochMilli()),
+                String.valueOf(REFRESH_TOKEN_TTL.toMillis()));
+        pruneExpiredFamilies(userId);
+        redisTemplate.opsForSet().add(USER_KEY_PREFIX + userId, familyId);
+        redisTemplate.expire(USER_KEY_PREFIX + userId, REFRESH_TOKEN_TTL);
 
-        log.info("Created refresh token for user: {}, tokenId: {}", maskUserId(userId), tokenId);
+        log.info("Created refresh token for user: {}, familyId: {}", maskUserId(userId), familyId);
 
-        return new RefreshTokenResponse(rawToken, metadata.getExpiresAt());
+        return new RefreshTokenResponse(rawToken, expiresAt);
     }
 
     /**
@@ -75,80 +131,100 @@ public class RefreshTokenService {
      *
      * This method implements refresh token rotation where:
      * - The old token is invalidated
-     * - A new token is issued
+     * - A new token is issued in the same family
      * - Rotation count is incremented
      *
+     * Presenting a token that was already rotated revokes its family, since either the client
+     * or an attacker holds a stolen copy. The user's other families are left alone.
+     *
      * @param oldRefreshToken The old refresh token
      * @return The new refresh token response
-     * @throws IllegalArgumentException if the token is invalid or expired
-     * @throws org.springframework.security.authentication.BadCredentialsException if token reuse is detected
+     * @throws IllegalArgumentException if the token is malformed
+     * @throws BadCredentialsException if the token is invalid or expired, or token reuse is detected
      */
     public RefreshTokenResponse rotateRefreshToken(String oldRefreshToken) {
-        // Extract token ID from the raw token
-        String tokenId = extractTokenId(oldRefreshToken);
+        TokenId id = parseToken(oldRefreshToken);
+        RefreshTokenMetadata metadata = findTokenMetadata(id.familyId());
 
-        // Find the token metadata from Redis (search by iterating user tokens)
-        // In production, you'd store a reverse index for faster lookup
-        RefreshTokenMetadata metadata = findTokenMetadata(tokenId);
-
-        if (metadata == null) {
+        if (metadata == null || !id.tokenId().equals(metadata.getTokenId())) {
+            String rotatedDigest = redisTemplate.opsForValue().get(usedKey(id));
+            if (digester.matches(oldRefreshToken, rotatedDigest)) {
+                handleReuse(id.familyId(), metadata == null ? null : metadata.getUserId());
+            }
             log.warn("Attempt to use unknown refresh token: {}", maskToken(oldRefreshToken));
-            throw new org.springframework.security.authentication.BadCredentialsException(
-                    "Invalid refresh token");
+            throw new BadCredentialsException("Invalid refresh token");
         }
 
         // Check if token has expired
         if (Instant.now().isAfter(metadata.getExpiresAt())) {
             log.warn("Attempt to use expired refresh token for user: {}",
                     maskUserId(metadata.getUserId()));
-            throw new org.springframework.security.authentication.BadCredentialsException(
-                    "Refresh token has expired");
+            throw new BadCredentialsException("Refresh token has expired");
         }
 
-        // Verify the token hash matches
-        if (!tokenEncoder.matches(oldRefreshToken, metadata.getHashedToken())) {
+        // Verify the token digest matches
+        if (!digester.matches(oldRefreshToken, metadata.getDigest())) {
             log.warn("Attempt to use invalid refresh token for user: {}",
                     maskUserId(metadata.getUserId()));
-            throw new org.springframework.security.authentication.BadCredentialsException(
-                    "Invalid refresh token");
+            throw new BadCredentialsException("Invalid refresh token");
         }
 
-        // Invalidate the old token
-        invalidateToken(metadata.getUserId(), tokenId);
+        String newTokenId = UUID.randomUUID().toString();
+        String newRawToken = generateRawToken(id.familyId(), newTokenId);
+        Instant createdAt = Instant.now();
+        Instant expiresAt = createdAt.plus(REFRESH_TOKEN_TTL);
 
-        // Create a new token (rotation)
-        RefreshTokenResponse newToken = createRefreshToken(metadata.getUserId());
+        Long rotations = redisTemplate.execute(ROTATE_SCRIPT,
+                List.of(familyKey(id.familyId()), usedKey(id)),
+                id.tokenId(), metadata.getDigest(), newTokenId, digester.digest(newRawToken),
+                String.valueOf(createdAt.toEpochMilli()), String.valueOf(expiresAt.toEpochMilli()),
+                String.valueOf(REFRESH_TOKEN_TTL.toMillis()));
 
-        log.info("Rotated refresh token for user: {}, previous rotation count: {}",
-                maskUserId(metadata.getUserId()), metadata.getRotationCount());
+        if (rotations == null || rotations < 0) {
+            // Rotated by a concurrent request between the lookup and the script
+            handleReuse(id.familyId(), metadata.getUserId());
+        }
+        redisTemplate.expire(USER_KEY_PREFIX + metadata.getUserId(), REFRESH_TOKEN_TTL);
+
+        log.info("Rotated refresh token for user: {}, rotation count: {}",
+                maskUserId(metadata.getUserId()), rotations);
 
-        return newToken;
+        return new RefreshTokenResponse(newRawToken, expiresAt);
     }
 
     /**
-     * Invalidates a specific refresh token.
+     * Invalidates one token family, i.e. the session a single login started.
      *
      * @param userId The user ID
-     * @param tokenId The token ID
+     * @param familyId The family ID
      */
-    public void invalidateToken(String userId, String tokenId) {
-        String redisKey = buildRedisKey(userId, tokenId);
-        redisTemplate.delete(redisKey);
-        log.info("Invalidated refresh token for user: {}, tokenId: {}", maskUserId(userId), tokenId);
+    public void invalidateToken(String userId, String familyId) {
+        redisTemplate.delete(familyKey(familyId));
+        redisTemplate.opsForSet().remove(USER_KEY_PREFIX + userId, familyId);
+        log.info("Invalidated refresh token family for user: {}, familyId: {}", maskUserId(userId), familyId);
     }
 
     /**
      * Invalidates all refresh tokens for a user.
      * Used when user logs out from all devices or changes password.
      *
+     * Families live in different slots, so they are deleted one at a time rather than in
+     * one script; a token rotated meanwhile is still in a family that gets deleted.
+     *
      * @param userId The user ID
      */
     public void invalidateAllUserTokens(String userId) {
-        // In production, you'd maintain a set of token IDs per user
-        // For now, we'll use a pattern-based deletion
-        String pattern = REFRESH_TOKEN_PREFIX + userId + ":*";
-        redisTemplate.delete(redisTemplate.keys(pattern));
-        log.info("Invalidated all refresh tokens for user: {}", maskUserId(userId));
+        Set<String> familyIds = redisTemplate.opsForSet().members(USER_KEY_PREFIX + userId);
+        long revoked = 0;
+        if (familyIds != null) {
+            for (String familyId : familyIds) {
+                if (Boolean.TRUE.equals(redisTemplate.delete(familyKey(familyId)))) {
+                    revoked++;
+                }
+            }
+        }
+        redisTemplate.delete(USER_KEY_PREFIX + userId);
+        log.info("Invalidated {} refresh token families for user: {}", revoked, maskUserId(userId));
     }
 
     /**
@@ -160,10 +236,10 @@ public class RefreshTokenService {
      */
     public boolean isRefreshTokenValid(String refreshToken) {
         try {
-            String tokenId = extractTokenId(refreshToken);
-            RefreshTokenMetadata metadata = findTokenMetadata(tokenId);
+            TokenId id = parseToken(refreshToken);
+            RefreshTokenMetadata metadata = findTokenMetadata(id.familyId());
 
-            if (metadata == null) {
+            if (metadata == null || !id.tokenId().equals(metadata.getTokenId())) {
                 return false;
             }
 
@@ -171,7 +247,7 @@ public class RefreshTokenService {
                 return false;
             }
 
-            return tokenEncoder.matches(refreshToken, metadata.getHashedToken());
+            return digester.matches(refreshToken, metadata.getDigest());
         } catch (Exception e) {
             log.warn("Error validating refresh token: {}", e.getMessage());
             return false;
@@ -179,49 +255,88 @@ public class RefreshTokenService {
     }
 
     /**
-     * Finds token metadata by token ID.
-     * In production, implement a reverse index for O(1) lookup.
+     * Finds the current token of a family with a single hash read.
      */
-    private RefreshTokenMetadata findTokenMetadata(String tokenId) {
-        // Simplified implementation - in production, use a reverse index
-        // For now, return null as we'd need to iterate through all keys
-        // TODO: Implement reverse index mapping tokenId -> userId
-        return null;
+    private RefreshTokenMetadata findTokenMetadata(String familyId) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(familyKey(familyId), METADATA_FIELDS);
+        if (values == null || values.get(0) == null || values.get(2) == null) {
+            return null;
+        }
+        return RefreshTokenMetadata.builder()
+                .tokenId((String) values.get(0))
+                .userId((String) values.get(1))
+                .digest((String) values.get(2))
+                .createdAt(Instant.ofEpochMilli(Long.parseLong((String) values.get(3))))
+                .expiresAt(Instant.ofEpochMilli(Long.parseLong((String) values.get(4))))
+                .rotationCount(Integer.parseInt((String) values.get(5)))
+                .build();
     }
 
     /**
-     * Generates a raw refresh token string.
+     * Removes families whose keys have expired from the user's set. Families live in different
+     * slots, so each one is checked on its own.
      */
-    private String generateRawToken(String tokenId) {
-        // Format: version + tokenId + random
-        // In production, use a cryptographically secure random generator
-        return "v1." + tokenId + "." + UUID.randomUUID().toString().replace("-", "");
+    private void pruneExpiredFamilies(String userId) {
+        Set<String> familyIds = redisTemplate.opsForSet().members(USER_KEY_PREFIX + userId);
+        if (familyIds == null || familyIds.isEmpty()) {
+            return;
+        }
+        List<String> expired = familyIds.stream()
+                .filter(familyId -> !Boolean.TRUE.equals(redisTemplate.hasKey(familyKey(familyId))))
+                .toList();
+        if (!expired.isEmpty()) {
+            redisTemplate.opsForSet().remove(USER_KEY_PREFIX + userId, expired.toArray());
+        }
+    }
+
+    private void handleReuse(String familyId, String userId) {
+        log.warn("Refresh token reuse detected for user: {}, familyId: {}; revoking the family",
+                maskUserId(userId), familyId);
+        redisTemplate.delete(familyKey(familyId));
+        if (userId != null) {
+            redisTemplate.opsForSet().remove(USER_KEY_PREFIX + userId, familyId);
+        }
+        throw new BadCredentialsException("Refresh token reuse detected");
+    }
+
+    private static String familyKey(String familyId) {
+        return FAMILY_KEY_PREFIX + "{" + familyId + "}";
+    }
+
+    private static String usedKey(TokenId id) {
+        return familyKey(id.familyId()) + ":used:" + id.tokenId();
     }
 
     /**
-     * Hashes a refresh token for secure storage.
+     * Generates a raw refresh token string.
      */
-    private String hashToken(String rawToken) {
-        return tokenEncoder.encode(rawToken);
+    private String generateRawToken(String familyId, String tokenId) {
+        // Format: version + familyId + tokenId + 256 random bits
+        return TOKEN_VERSION + "." + familyId + "." + tokenId + "." + digester.newSecret();
     }
 
     /**
-     * Extracts token ID from raw token.
+     * Extracts the family and token IDs from a raw token.
      */
-    private String extractTokenId(String rawToken) {
-        // Token format: v1.{tokenId}.{random}
-        String[] parts = rawToken.split("\\.");
-        if (parts.length >= 2) {
-            return parts[1];
+    private TokenId parseToken(String rawToken) {
+        // Token format: v2.{familyId}.{tokenId}.{random}
+        String[] parts = rawToken == null ? new String[0] : rawToken.split("\\.", 4);
+        if (parts.length == 4 && TOKEN_VERSION.equals(parts[0])
+                && !parts[1].isEmpty() && !parts[2].isEmpty() && !parts[3].isEmpty()) {
+            return new TokenId(parts[1], parts[2]);
         }
         throw new IllegalArgumentException("Invalid token format");
     }
 
-    /**
-     * Builds Redis key for storing token metadata.
-     */
-    private String buildRedisKey(String userId, String tokenId) {
-        return REFRESH_TOKEN_PREFIX + userId + ":" + tokenId;
+    private static byte[] hmacKey(String configured) {
+        if (configured != null && !configured.isBlank()) {
+            return configured.getBytes(StandardCharsets.UTF_8);
+        }
+        // Tokens issued with a generated key do not survive a restart or work across instances
+        log.warn("Using a generated refresh token HMAC key. Please set payu.security.refresh-token.hmac-key for production!");
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
     }
 
     /**
@@ -251,6 +366,9 @@ public class RefreshTokenService {
         private final Instant expiresAt;
     }
 
+    private record TokenId(String familyId, String tokenId) {
+    }
+
     @Data
     @lombok.Builder
     private static class RefreshTokenMetadata {
@@ -259,6 +377,6 @@ public class RefreshTokenService {
         private Instant createdAt;
         private Instant expiresAt;
         private int rotationCount;
-        private String hashedToken;
+        private String digest;
     }
 }
@@ -8,14 +8,14 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.time.LocalTime;
 import java.time.ZoneId;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @Slf4j
 public class RiskEvaluationService {
 
-    private final Map<String, UserRiskProfile> userRiskProfiles = new ConcurrentHashMap<>();
+    private final RiskProfileStore riskProfileStore;
 
     @Value("${payu.security.risk.mfa-threshold:50}")
     private int mfaThreshold;
@@ -38,8 +38,12 @@ public class RiskEvaluationService {
     @Value("${payu.security.risk.unusual-hours-end:6}")
     private int unusualHoursEnd;
 
+    public RiskEvaluationService(RiskProfileStore riskProfileStore) {
+        this.riskProfileStore = riskProfileStore;
+    }
+
     public RiskEvaluationResult evaluateRisk(LoginContext context) {
-        UserRiskProfile profile = getUserRiskProfile(context.username());
+        RiskProfile profile = riskProfileStore.get(context.username());
         
         int riskScore = 0;
         List<String> riskFactors = new ArrayList<>();
@@ -54,9 +58,10 @@ public class RiskEvaluationService {
             riskFactors.add("new_ip_address");
         }
         
-        if (profile.getFailedAttempts() > 0) {
-            riskScore += profile.getFailedAttempts() * failedAttemptsRisk;
-            riskFactors.add("failed_attempts:" + profile.getFailedAttempts());
+        int failedAttempts = riskProfileStore.failedAttempts(context.username());
+        if (failedAttempts > 0) {
+            riskScore += failedAttempts * failedAttemptsRisk;
+            riskFactors.add("failed_attempts:" + failedAttempts);
         }
         
         if (isUnusualLoginTime(context.timestamp())) {
@@ -78,34 +83,23 @@ public class RiskEvaluationService {
     }
 
     public void recordSuccessfulLogin(String username, LoginContext context) {
-        UserRiskProfile profile = getUserRiskProfile(username);
-        profile.recordSuccessfulLogin(context);
-        userRiskProfiles.put(username, profile);
+        riskProfileStore.recordSuccessfulLogin(username, context.deviceId(), context.ipAddress());
     }
 
     public void recordFailedAttempt(String username) {
-        UserRiskProfile profile = getUserRiskProfile(username);
-        profile.recordFailedAttempt();
-        userRiskProfiles.put(username, profile);
+        riskProfileStore.recordFailedAttempt(username);
     }
 
     public void clearFailedAttempts(String username) {
-        UserRiskProfile profile = userRiskProfiles.get(username);
-        if (profile != null) {
-            profile.clearFailedAttempts();
-        }
-    }
-
-    private UserRiskProfile getUserRiskProfile(String username) {
-        return userRiskProfiles.computeIfAbsent(username, k -> new UserRiskProfile(username));
+        riskProfileStore.clearFailedAttempts(username);
     }
 
-    private boolean isNewDevice(UserRiskProfile profile, String deviceId) {
-        return deviceId != null && !profile.getKnownDevices().contains(deviceId);
+    private boolean isNewDevice(RiskProfile profile, String deviceId) {
+        return deviceId != null && !profile.knowsDevice(deviceId);
     }
 
-    private boolean isNewIpAddress(UserRiskProfile profile, String ipAddress) {
-        return ipAddress != null && !profile.getKnownIpAddresses().contains(ipAddress);
+    private boolean isNewIpAddress(RiskProfile profile, String ipAddress) {
+        return ipAddress != null && !profile.knowsIpAddress(ipAddress);
     }
 
     private boolean isUnusualLoginTime(Long timestamp) {
@@ -149,48 +143,4 @@ public class RiskEvaluationService {
             return message;
         }
     }
-
-    private static class UserRiskProfile {
-        private final String username;
-        private final Set<String> knownDevices;
-        private final Set<String> knownIpAddresses;
-        private int failedAttempts;
-
-        public UserRiskProfile(String username) {
-            this.username = username;
-            this.knownDevices = ConcurrentHashMap.newKeySet();
-            this.knownIpAddresses = ConcurrentHashMap.newKeySet();
-            this.failedAttempts = 0;
-        }
-
-        public void recordSuccessfulLogin(LoginContext context) {
-            if (context.deviceId() != null) {
-                knownDevices.add(context.deviceId());
-            }
-            if (context.ipAddress() != null) {
-                knownIpAddresses.add(context.ipAddress());
-            }
-            clearFailedAttempts();
-        }
-
-        public void recordFailedAttempt() {
-            this.failedAttempts++;
-        }
-
-        public void clearFailedAttempts() {
-            this.failedAttempts = 0;
-        }
-
-        public Set<String> getKnownDevices() {
-            return Collections.unmodifiableSet(knownDevices);
-        }
-
-        public Set<String> getKnownIpAddresses() {
-            return Collections.unmodifiableSet(knownIpAddresses);
-        }
-
-        public int getFailedAttempts() {
-            return failedAttempts;
-        }
-    }
 }
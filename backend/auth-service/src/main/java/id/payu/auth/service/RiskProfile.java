@@ -0,0 +1,168 @@
+package id.payu.auth.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * What login risk evaluation knows about one user, kept small enough to hold millions of
+ * them: the most recently used devices and IP addresses as bounded most-recent-first
+ * arrays, and failed login attempts as a sliding-window counter that decays on its own.
+ *
+ * <p>The failed-attempt estimate is the count of the current window plus the count of
+ * the previous window weighted by how much of it still overlaps the sliding window.</p>
+ */
+public final class RiskProfile {
+
+    private final String[] devices;
+    private final String[] ipAddresses;
+    private int deviceCount;
+    private int ipAddressCount;
+
+    private long failedWindowStart;
+    private int failedPrevious;
+    private int failedCurrent;
+
+    RiskProfile(int maxKnownDevices, int maxKnownIpAddresses) {
+        this.devices = new String[Math.max(1, maxKnownDevices)];
+        this.ipAddresses = new String[Math.max(1, maxKnownIpAddresses)];
+    }
+
+    public synchronized boolean knowsDevice(String deviceId) {
+        return indexOf(devices, deviceCount, deviceId) >= 0;
+    }
+
+    public synchronized boolean knowsIpAddress(String ipAddress) {
+        return indexOf(ipAddresses, ipAddressCount, ipAddress) >= 0;
+    }
+
+    synchronized void touchDevice(String deviceId) {
+        deviceCount = touch(devices, deviceCount, deviceId);
+    }
+
+    synchronized void touchIpAddress(String ipAddress) {
+        ipAddressCount = touch(ipAddresses, ipAddressCount, ipAddress);
+    }
+
+    synchronized int failedAttempts(long now, long windowMillis) {
+        return failedAttempts(failedWindowStart, failedPrevious, failedCurrent, now, windowMillis);
+    }
+
+    synchronized void recordFailedAttempt(long now, long windowMillis) {
+        slide(now, windowMillis);
+        failedCurrent++;
+    }
+
+    synchronized void clearFailedAttempts() {
+        failedPrevious = 0;
+        failedCurrent = 0;
+    }
+
+    /**
+     * Replace the failed-attempt window with the cluster-wide one stored for the user.
+     */
+    synchronized void restoreFailedAttempts(long windowStart, int previous, int current) {
+        failedWindowStart = windowStart;
+        failedPrevious = previous;
+        failedCurrent = current;
+    }
+
+    /**
+     * Known devices, most recent first.
+     */
+    public synchronized List<String> devices() {
+        return List.copyOf(Arrays.asList(devices).subList(0, deviceCount));
+    }
+
+    /**
+     * Known IP addresses, most recent first.
+     */
+    public synchronized List<String> ipAddresses() {
+        return List.copyOf(Arrays.asList(ipAddresses).subList(0, ipAddressCount));
+    }
+
+    /**
+     * Replace the known devices and IPs with what is stored for the user.
+     */
+    synchronized void restore(List<String> storedDevices, List<String> storedIpAddresses) {
+        deviceCount = 0;
+        ipAddressCount = 0;
+        // Oldest first so the most recent ends up in front
+        for (int i = Math.min(storedDevices.size(), devices.length) - 1; i >= 0; i--) {
+            touchDevice(storedDevices.get(i));
+        }
+        for (int i = Math.min(storedIpAddresses.size(), ipAddresses.length) - 1; i >= 0; i--) {
+            touchIpAddress(storedIpAddresses.get(i));
+        }
+    }
+
+    /**
+     * Sliding-window estimate of a failed-attempt counter as of {@code now}.
+     */
+    static int failedAttempts(long windowStart, int previous, int current, long now, long windowMillis) {
+        long elapsed = now - windowStart;
+        if (elapsed >= 2 * windowMillis) {
+            return 0;
+        }
+        if (elapsed >= windowMillis) {
+            previous = current;
+            current = 0;
+            windowStart += windowMillis;
+        }
+        long overlap = windowMillis - (now - windowStart);
+        return (int) Math.round((double) previous * overlap / windowMillis) + current;
+    }
+
+    private void slide(long now, long windowMillis) {
+        long elapsed = now - failedWindowStart;
+        if (elapsed >= 2 * windowMillis) {
+            failedPrevious = 0;
+            failedCurrent = 0;
+            failedWindowStart = now;
+        } else if (elapsed >= windowMillis) {
+            failedPrevious = failedCurrent;
+            failedCurrent = 0;
+            failedWindowStart += windowMillis;
+        }
+    }
+
+    private static int indexOf(String[] values, int count, String value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Move the value to the front, evicting the least recently used one when full.
+     */
+    private static int touch(String[] values, int count, String value) {
+        int index = indexOf(values, count, value);
+        if (index < 0) {
+            index = Math.min(count, values.length - 1);
+            count = Math.min(count + 1, values.length);
+        }
+        System.arraycopy(values, 0, values, 1, index);
+        values[0] = value;
+        return count;
+    }
+
+    static List<String> split(String joined) {
+        List<String> values = new ArrayList<>();
+        if (joined == null || joined.isEmpty()) {
+            return values;
+        }
+        int start = 0;
+        for (int i = 0; i <= joined.length(); i++) {
+            if (i == joined.length() || joined.charAt(i) == RiskProfileStore.SEPARATOR) {
+                if (i > start) {
+                    values.add(joined.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return values;
+    }
+}
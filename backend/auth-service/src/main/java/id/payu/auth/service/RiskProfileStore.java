@@ -0,0 +1,407 @@
+package id.payu.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Login risk profiles shared by all auth-service replicas.
+ *
+ * <p>Profiles live in Redis as one hash per user ({@code auth:risk:{username}}) that
+ * expires when the user has not logged in for {@code profile-ttl}.</p>
+ *
+ * <p>A bounded Caffeine cache sits in front of the profiles, so evaluating a login is a
+ * local read; its entries expire after {@code local-ttl} to pick up what other replicas
+ * recorded. Failed attempts are counted in Redis right away, by a single script that
+ * slides the window and runs {@code HINCRBY} on the user's hash, and the cached counter
+ * takes the cluster-wide count the script returns. A password guesser spreading attempts
+ * over replicas is therefore seen by each replica as soon as it records one itself.</p>
+ *
+ * <p>New devices and IPs are applied to the cached profile right away and queued, and
+ * every {@code flush-interval} they are merged into Redis by one script call per user, so
+ * the keys of a call never span hash slots. The flush also brings the cached failed-attempt
+ * counter up to date with what other replicas counted.</p>
+ *
+ * <p>Without Redis the store is local to the instance. Should Redis fail, failed attempts
+ * fall back to the local count.</p>
+ */
+@Slf4j
+@Component
+public class RiskProfileStore implements DisposableBean {
+
+    static final char SEPARATOR = '\u001F';
+
+    private static final String KEY_PREFIX = "auth:risk:";
+    private static final int MAX_PENDING_USERS = 100_000;
+
+    // KEYS: profile hash
+    // ARGV: max devices, max IPs, ttl millis, devices seen (most recent first), IPs seen (most recent first)
+    // Returns the failed-attempt window: start, previous count, current count
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> FLUSH_SCRIPT = new DefaultRedisScript<>("""
+            local function merge(seen, stored, limit)
+                local out, known = {}, {}
+                for _, list in ipairs({seen, stored or ''}) do
+                    for value in string.gmatch(list, '[^\\31]+') do
+                        if #out >= limit then break end
+                        if not known[value] then
+                            known[value] = true
+                            out[#out + 1] = value
+                        end
+                    end
+                end
+                return table.concat(out, '\\31')
+            end
+            local stored = redis.call('HMGET', KEYS[1], 'devices', 'ips')
+            redis.call('HSET', KEYS[1], 'devices', merge(ARGV[4], stored[1], tonumber(ARGV[1])),
+                'ips', merge(ARGV[5], stored[2], tonumber(ARGV[2])))
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return redis.call('HMGET', KEYS[1], 'failedStart', 'failedPrev', 'failedCur')
+            """, List.class);
+
+    // KEYS: profile hash; ARGV: now, window millis, ttl millis
+    // Returns the failed-attempt window after counting: start, previous count, current count
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> FAILED_ATTEMPT_SCRIPT = new DefaultRedisScript<>("""
+            local now, window = tonumber(ARGV[1]), tonumber(ARGV[2])
+            local stored = redis.call('HMGET', KEYS[1], 'failedStart', 'failedPrev', 'failedCur')
+            local start, previous = tonumber(stored[1]), tonumber(stored[2]) or 0
+            if not start or now - start >= 2 * window then
+                start, previous = now, 0
+                redis.call('HSET', KEYS[1], 'failedStart', start, 'failedPrev', 0, 'failedCur', 0)
+            elseif now - start >= window then
+                start, previous = start + window, tonumber(stored[3]) or 0
+                redis.call('HSET', KEYS[1], 'failedStart', start, 'failedPrev', previous, 'failedCur', 0)
+            end
+            local current = redis.call('HINCRBY', KEYS[1], 'failedCur', 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[3])
+            return {start, previous, current}
+            """, List.class);
+
+    private static final List<Object> PROFILE_FIELDS = List.of("devices", "ips", "failedStart", "failedPrev", "failedCur");
+    private static final List<Object> FAILED_FIELDS = List.of("failedStart", "failedPrev", "failedCur");
+
+    private final StringRedisTemplate redisTemplate;
+    private final int maxKnownDevices;
+    private final int maxKnownIpAddresses;
+    private final long failedAttemptsWindowMillis;
+    private final Duration profileTtl;
+    private final LongSupplier clock;
+
+    private final Cache<String, RiskProfile> profiles;
+    private final Map<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler;
+
+    @Autowired
+    public RiskProfileStore(
+            ObjectProvider<StringRedisTemplate> redisTemplate,
+            @Value("${payu.security.risk.max-known-devices:10}") int maxKnownDevices,
+            @Value("${payu.security.risk.max-known-ips:20}") int maxKnownIpAddresses,
+            @Value("${payu.security.risk.failed-attempts-window:1h}") Duration failedAttemptsWindow,
+            @Value("${payu.security.risk.local-max-profiles:100000}") long localMaxProfiles,
+            @Value("${payu.security.risk.local-ttl:30s}") Duration localTtl,
+            @Value("${payu.security.risk.profile-ttl:90d}") Duration profileTtl,
+            @Value("${payu.security.risk.flush-interval:200ms}") Duration flushInterval) {
+        this(redisTemplate.getIfAvailable(), maxKnownDevices, maxKnownIpAddresses, failedAttemptsWindow,
+                localMaxProfiles, localTtl, profileTtl, flushInterval, System::currentTimeMillis);
+    }
+
+    RiskProfileStore(StringRedisTemplate redisTemplate, int maxKnownDevices, int maxKnownIpAddresses,
+                     Duration failedAttemptsWindow, long localMaxProfiles, Duration localTtl,
+                     Duration profileTtl, Duration flushInterval, LongSupplier clock) {
+        this.redisTemplate = redisTemplate;
+        this.maxKnownDevices = maxKnownDevices;
+        this.maxKnownIpAddresses = maxKnownIpAddresses;
+        this.failedAttemptsWindowMillis = failedAttemptsWindow.toMillis();
+        this.profileTtl = profileTtl;
+        this.clock = clock;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(localMaxProfiles);
+        // Without Redis the cache is the only copy, so it must not drop active profiles
+        this.profiles = redisTemplate != null
+                ? builder.expireAfterWrite(localTtl).build()
+                : builder.expireAfterAccess(profileTtl).build();
+
+        if (redisTemplate != null && !flushInterval.isZero()) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "risk-profile-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushScheduler.scheduleWithFixedDelay(this::flush,
+                    flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            flushScheduler = null;
+        }
+        log.info("Risk profile store initialized (shared: {})", redisTemplate != null);
+    }
+
+    /**
+     * The user's profile, loaded from Redis on a local miss.
+     */
+    public RiskProfile get(String username) {
+        return profiles.get(username, this::load);
+    }
+
+    /**
+     * The user's failed attempts within the sliding window, as last seen in Redis plus
+     * what this instance counted since.
+     */
+    public int failedAttempts(String username) {
+        return get(username).failedAttempts(clock.getAsLong(), failedAttemptsWindowMillis);
+    }
+
+    public void recordSuccessfulLogin(String username, String deviceId, String ipAddress) {
+        RiskProfile profile = get(username);
+        if (deviceId != null) {
+            profile.touchDevice(deviceId);
+        }
+        if (ipAddress != null) {
+            profile.touchIpAddress(ipAddress);
+        }
+        queue(username, update -> {
+            update.seeDevice(deviceId, maxKnownDevices);
+            update.seeIpAddress(ipAddress, maxKnownIpAddresses);
+        });
+        clearFailedAttempts(username);
+    }
+
+    public void recordFailedAttempt(String username) {
+        long now = clock.getAsLong();
+        RiskProfile profile = get(username);
+        profile.recordFailedAttempt(now, failedAttemptsWindowMillis);
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            List<?> window = redisTemplate.execute(FAILED_ATTEMPT_SCRIPT, List.of(KEY_PREFIX + username),
+                    String.valueOf(now), String.valueOf(failedAttemptsWindowMillis),
+                    String.valueOf(profileTtl.toMillis()));
+            restoreFailedAttempts(profile, window, 0);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record failed attempt of user {}: {}", username, e.getMessage());
+        }
+    }
+
+    public void clearFailedAttempts(String username) {
+        RiskProfile profile = profiles.getIfPresent(username);
+        if (profile != null) {
+            profile.clearFailedAttempts();
+        }
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().delete(KEY_PREFIX + username, FAILED_FIELDS.toArray());
+        } catch (RuntimeException e) {
+            log.warn("Failed to clear failed attempts of user {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Merge all queued device and IP updates into Redis, one user per script call.
+     */
+    public void flush() {
+        if (redisTemplate == null || pending.isEmpty()) {
+            return;
+        }
+        int failed = 0;
+        for (String username : List.copyOf(pending.keySet())) {
+            PendingUpdate update = pending.remove(username);
+            if (update != null && !write(username, update)) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            log.warn("Failed to flush {} risk profiles, will retry", failed);
+        }
+    }
+
+    int pendingUpdates() {
+        return pending.size();
+    }
+
+    @Override
+    public void destroy() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdownNow();
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush risk profiles on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private boolean write(String username, PendingUpdate update) {
+        try {
+            List<?> window = redisTemplate.execute(FLUSH_SCRIPT, List.of(KEY_PREFIX + username),
+                    String.valueOf(maxKnownDevices), String.valueOf(maxKnownIpAddresses),
+                    String.valueOf(profileTtl.toMillis()), update.devices(), update.ipAddresses());
+            RiskProfile profile = profiles.getIfPresent(username);
+            if (profile != null) {
+                restoreFailedAttempts(profile, window, 0);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.debug("Failed to flush risk profile of user {}: {}", username, e.getMessage());
+            // Put the update back in front of anything queued since
+            pending.merge(username, update, (newer, older) -> older.then(newer));
+            return false;
+        }
+    }
+
+    private void queue(String username, Consumer<PendingUpdate> change) {
+        if (redisTemplate == null) {
+            return;
+        }
+        if (pending.size() >= MAX_PENDING_USERS && !pending.containsKey(username)) {
+            log.warn("Risk profile update queue is full, dropping update for user {}", username);
+            return;
+        }
+        pending.compute(username, (key, update) -> {
+            PendingUpdate next = update != null ? update : new PendingUpdate();
+            change.accept(next);
+            return next;
+        });
+    }
+
+    private RiskProfile load(String username) {
+        RiskProfile profile = new RiskProfile(maxKnownDevices, maxKnownIpAddresses);
+        if (redisTemplate == null) {
+            return profile;
+        }
+        try {
+            List<Object> values = redisTemplate.opsForHash().multiGet(KEY_PREFIX + username, PROFILE_FIELDS);
+            if (values != null && values.size() == PROFILE_FIELDS.size()) {
+                profile.restore(RiskProfile.split((String) values.get(0)), RiskProfile.split((String) values.get(1)));
+                restoreFailedAttempts(profile, values, 2);
+            }
+        } catch (RuntimeException e) {
+            // An empty profile makes the login look new, which errs on the side of MFA
+            log.warn("Failed to load risk profile for user {}: {}", username, e.getMessage());
+        }
+        // Updates made here but not flushed yet; applied inside compute so a concurrent queue() waits
+        pending.computeIfPresent(username, (key, update) -> {
+            update.applyTo(profile);
+            return update;
+        });
+        return profile;
+    }
+
+    /**
+     * Take the failed-attempt window stored in Redis (start, previous, current from
+     * {@code offset}); a window that is not stored means no failed attempts.
+     */
+    private static void restoreFailedAttempts(RiskProfile profile, List<?> values, int offset) {
+        if (values == null || values.size() < offset + 3) {
+            return;
+        }
+        Object start = values.get(offset);
+        if (start == null) {
+            profile.restoreFailedAttempts(0, 0, 0);
+            return;
+        }
+        profile.restoreFailedAttempts(parseLong(start), (int) parseLong(values.get(offset + 1)),
+                (int) parseLong(values.get(offset + 2)));
+    }
+
+    private static long parseLong(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+
+    /**
+     * Devices and IPs seen on one profile not yet written to Redis. Only accessed inside
+     * {@code pending.compute} or after removal from {@code pending}.
+     */
+    static final class PendingUpdate {
+
+        private final LinkedHashSet<String> devices = new LinkedHashSet<>();
+        private final LinkedHashSet<String> ipAddresses = new LinkedHashSet<>();
+
+        void seeDevice(String deviceId, int limit) {
+            see(devices, deviceId, limit);
+        }
+
+        void seeIpAddress(String ipAddress, int limit) {
+            see(ipAddresses, ipAddress, limit);
+        }
+
+        /**
+         * This update followed by a newer one.
+         */
+        PendingUpdate then(PendingUpdate newer) {
+            PendingUpdate combined = new PendingUpdate();
+            combined.devices.addAll(devices);
+            newer.devices.forEach(device -> see(combined.devices, device, Integer.MAX_VALUE));
+            combined.ipAddresses.addAll(ipAddresses);
+            newer.ipAddresses.forEach(ip -> see(combined.ipAddresses, ip, Integer.MAX_VALUE));
+            return combined;
+        }
+
+        void applyTo(RiskProfile profile) {
+            devices.forEach(profile::touchDevice);
+            ipAddresses.forEach(profile::touchIpAddress);
+        }
+
+        /**
+         * Most recent first, as stored.
+         */
+        String devices() {
+            return joinReversed(devices);
+        }
+
+        String ipAddresses() {
+            return joinReversed(ipAddresses);
+        }
+
+        /**
+         * Keeps insertion order as recency order, oldest first.
+         */
+        private static void see(LinkedHashSet<String> values, String value, int limit) {
+            if (value == null) {
+                return;
+            }
+            values.remove(value);
+            values.add(value);
+            if (values.size() > limit) {
+                values.remove(values.iterator().next());
+            }
+        }
+
+        private static String joinReversed(LinkedHashSet<String> values) {
+            List<String> list = new ArrayList<>(values);
+            StringBuilder joined = new StringBuilder();
+            for (int i = list.size() - 1; i >= 0; i--) {
+                if (joined.length() > 0) {
+                    joined.append(SEPARATOR);
+                }
+                joined.append(list.get(i));
+            }
+            return joined.toString();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package id.payu.auth.service.credential;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Short-lived secrets such as MFA tokens, OTPs and biometric challenges. Entries expire
+ * on their own after their TTL, and {@link #consume(String)} hands a value out once.
+ */
+public interface EphemeralCredentialStore {
+
+    /**
+     * Store a value, replacing any previous one, until the TTL runs out.
+     */
+    void put(String key, String value, Duration ttl);
+
+    /**
+     * The value, if present and not expired.
+     */
+    Optional<String> get(String key);
+
+    /**
+     * Atomically read and remove the value, so concurrent callers cannot both get it.
+     */
+    Optional<String> consume(String key);
+
+    /**
+     * Remove the value.
+     *
+     * @return whether a value was removed
+     */
+    boolean delete(String key);
+}
@@ -0,0 +1,182 @@
+package id.payu.auth.service.credential;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed hierarchical timing wheel (Varghese and Lauck): scheduling and cancelling a
+ * timeout are O(1), and advancing the clock only touches the bucket of the current tick,
+ * so expiring a large number of entries never scans all of them.
+ *
+ * <p>Each level has {@code 2^bits} buckets; a bucket of level {@code n} spans
+ * {@code 2^(bits*n)} ticks. A timeout goes to the lowest level whose range covers its
+ * deadline, and timeouts of a higher-level bucket move down a level when the clock
+ * reaches that bucket. Deadlines beyond the top level are parked in its furthest bucket
+ * and placed again when it comes round.</p>
+ *
+ * <p>All operations are guarded by the wheel's monitor and only do constant work, except
+ * {@link #advance(long, Consumer)} which is proportional to the ticks passed and the
+ * timeouts that moved or expired.</p>
+ *
+ * @param <T> Item carried by a timeout
+ */
+final class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    private final int levels;
+    private final long range;
+    private final Timeout<T>[][] buckets;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    HierarchicalTimingWheel(long tickMillis, int bits, int levels, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.bits = bits;
+        this.mask = (1 << bits) - 1;
+        this.levels = levels;
+        this.range = 1L << (bits * levels);
+        this.buckets = new Timeout[levels][1 << bits];
+        for (Timeout<T>[] level : buckets) {
+            for (int i = 0; i < level.length; i++) {
+                level[i] = Timeout.sentinel();
+            }
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Schedule an item to expire at the deadline, rounded up to the next tick.
+     */
+    synchronized Timeout<T> schedule(T item, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(item, Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis));
+        place(timeout, 1);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Remove a timeout that has not expired yet; does nothing otherwise.
+     */
+    synchronized void cancel(Timeout<T> timeout) {
+        if (timeout.unlink()) {
+            size--;
+        }
+    }
+
+    /**
+     * Move the clock forward to {@code nowMillis} and hand every item whose deadline has
+     * passed to {@code expired}, outside the wheel's monitor.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        List<T> due = new ArrayList<>();
+        synchronized (this) {
+            long target = nowMillis / tickMillis;
+            while (currentTick < target) {
+                currentTick++;
+                cascade();
+                Timeout<T> head = buckets[0][(int) (currentTick & mask)];
+                for (Timeout<T> timeout = head.next; timeout != head; ) {
+                    Timeout<T> next = timeout.next;
+                    timeout.unlink();
+                    if (timeout.deadlineTick <= currentTick) {
+                        size--;
+                        due.add(timeout.item);
+                    } else {
+                        place(timeout, 1);
+                    }
+                    timeout = next;
+                }
+            }
+        }
+        due.forEach(expired);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Move the timeouts of every higher-level bucket that starts at the current tick down,
+     * highest level first so they can land in a lower bucket that is processed next.
+     */
+    private void cascade() {
+        for (int level = levels - 1; level >= 1; level--) {
+            long span = 1L << (bits * level);
+            if ((currentTick & (span - 1)) != 0) {
+                continue;
+            }
+            Timeout<T> head = buckets[level][(int) ((currentTick >>> (bits * level)) & mask)];
+            for (Timeout<T> timeout = head.next; timeout != head; ) {
+                Timeout<T> next = timeout.next;
+                timeout.unlink();
+                // Due now: the level-0 bucket of this tick is expired right after
+                place(timeout, 0);
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Link a timeout into the bucket covering its deadline, at least {@code minTicks}
+     * ahead of the current tick.
+     */
+    private void place(Timeout<T> timeout, int minTicks) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick + minTicks);
+        long ticks = Math.min(deadline - currentTick, range - 1);
+        long slot = currentTick + ticks;
+        int level = 0;
+        while (level < levels - 1 && ticks >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        buckets[level][(int) ((slot >>> (bits * level)) & mask)].link(timeout);
+    }
+
+    /**
+     * A scheduled item; a node in its bucket's circular list.
+     */
+    static final class Timeout<T> {
+
+        private final T item;
+        private final long deadlineTick;
+        private Timeout<T> previous;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        private static <T> Timeout<T> sentinel() {
+            Timeout<T> sentinel = new Timeout<>(null, Long.MAX_VALUE);
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        T item() {
+            return item;
+        }
+
+        private void link(Timeout<T> timeout) {
+            timeout.previous = previous;
+            timeout.next = this;
+            previous.next = timeout;
+            previous = timeout;
+        }
+
+        private boolean unlink() {
+            if (next == null) {
+                return false;
+            }
+            previous.next = next;
+            next.previous = previous;
+            previous = null;
+            next = null;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package id.payu.auth.service.credential;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps credentials in this JVM, for single-instance deployments and tests.
+ *
+ * <p>Every entry is scheduled on a {@link HierarchicalTimingWheel} and removed when its
+ * tick comes round, so expiry costs O(1) per entry instead of periodic scans over the
+ * whole map. Reads also check the deadline, so an entry is never returned after its TTL
+ * even between ticks.</p>
+ */
+@Slf4j
+public class InMemoryEphemeralCredentialStore implements EphemeralCredentialStore, AutoCloseable {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_LEVELS = 4;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final HierarchicalTimingWheel<Expiry> wheel;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService driver;
+
+    public InMemoryEphemeralCredentialStore(Duration tick) {
+        this(tick, System::currentTimeMillis, true);
+    }
+
+    InMemoryEphemeralCredentialStore(Duration tick, LongSupplier clock) {
+        this(tick, clock, false);
+    }
+
+    private InMemoryEphemeralCredentialStore(Duration tick, LongSupplier clock, boolean driven) {
+        long tickMillis = Math.max(1, tick.toMillis());
+        this.clock = clock;
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, WHEEL_BITS, WHEEL_LEVELS, clock.getAsLong());
+        if (driven) {
+            this.driver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ephemeral-credential-expiry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            driver.scheduleAtFixedRate(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.driver = null;
+        }
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        long expiresAt = clock.getAsLong() + ttl.toMillis();
+        Entry entry = new Entry(value, expiresAt);
+        entry.timeout = wheel.schedule(new Expiry(key, entry), expiresAt);
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            wheel.cancel(previous.timeout);
+        }
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAt <= clock.getAsLong()) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.value);
+    }
+
+    @Override
+    public Optional<String> consume(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        wheel.cancel(entry.timeout);
+        return entry.expiresAt <= clock.getAsLong() ? Optional.empty() : Optional.of(entry.value);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        wheel.cancel(entry.timeout);
+        return entry.expiresAt > clock.getAsLong();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove every entry whose deadline has passed.
+     */
+    void expireDue() {
+        try {
+            // Only the scheduled entry: the key may have been written again since
+            wheel.advance(clock.getAsLong(), expiry -> entries.remove(expiry.key(), expiry.entry()));
+        } catch (RuntimeException e) {
+            log.warn("Failed to expire ephemeral credentials: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (driver != null) {
+            driver.shutdownNow();
+        }
+    }
+
+    private static final class Entry {
+
+        private final String value;
+        private final long expiresAt;
+        private HierarchicalTimingWheel.Timeout<Expiry> timeout;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private record Expiry(String key, Entry entry) {
+    }
+}
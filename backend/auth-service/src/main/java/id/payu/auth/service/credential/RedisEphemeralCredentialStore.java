@@ -0,0 +1,41 @@
+package id.payu.auth.service.credential;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Stores credentials in Redis with native key expiry, shared by all auth-service
+ * instances. Single use relies on {@code GETDEL} (Redis 6.2+).
+ */
+public class RedisEphemeralCredentialStore implements EphemeralCredentialStore {
+
+    private static final String KEY_PREFIX = "auth:ephemeral:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisEphemeralCredentialStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void put(String key, String value, Duration ttl) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, value, ttl);
+    }
+
+    @Override
+    public Optional<String> get(String key) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + key));
+    }
+
+    @Override
+    public Optional<String> consume(String key) {
+        return Optional.ofNullable(redisTemplate.opsForValue().getAndDelete(KEY_PREFIX + key));
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return Boolean.TRUE.equals(redisTemplate.delete(KEY_PREFIX + key));
+    }
+}
@@ -0,0 +1,83 @@
+package id.payu.auth.benchmark;
+
+import id.payu.auth.service.RefreshTokenDigester;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refresh token rotations per second on one core, counting the CPU work done in the
+ * service: verifying the presented token and issuing its replacement. {@code hmacRotation}
+ * is what {@code RefreshTokenService} does now; {@code bcryptRotation} is the cost-12
+ * BCrypt verify and encode it did before. The Redis script is one round trip in both
+ * cases and is not part of the numbers.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.auth.benchmark.RefreshTokenRotationBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class RefreshTokenRotationBenchmark {
+
+    private RefreshTokenDigester digester;
+    private BCryptPasswordEncoder bcrypt;
+    private String familyId;
+    private String token;
+    private String digest;
+    private String bcryptHash;
+
+    @Setup
+    public void setUp() {
+        digester = new RefreshTokenDigester("benchmark-refresh-token-hmac-key".getBytes(StandardCharsets.UTF_8));
+        bcrypt = new BCryptPasswordEncoder(12);
+        familyId = UUID.randomUUID().toString();
+        token = "v2." + familyId + "." + UUID.randomUUID() + "." + digester.newSecret();
+        digest = digester.digest(token);
+        bcryptHash = bcrypt.encode(token);
+    }
+
+    @Benchmark
+    public String hmacRotation() {
+        if (!digester.matches(token, digest)) {
+            throw new IllegalStateException("digest mismatch");
+        }
+        String next = "v2." + familyId + "." + UUID.randomUUID() + "." + digester.newSecret();
+        return digester.digest(next);
+    }
+
+    @Benchmark
+    public String bcryptRotation() {
+        if (!bcrypt.matches(token, bcryptHash)) {
+            throw new IllegalStateException("hash mismatch");
+        }
+        String next = "v2." + familyId + "." + UUID.randomUUID() + "." + UUID.randomUUID().toString().replace("-", "");
+        return bcrypt.encode(next);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RefreshTokenRotationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -84,7 +84,8 @@ class BiometricControllerTest {
                 "device-123",
                 "iOS",
                 "test-signature",
-                "test-challenge"
+                "test-challenge",
+                "challenge-1"
         );
 
         webTestClient.post()
@@ -107,7 +108,8 @@ class BiometricControllerTest {
                 "device-123",
                 "iOS",
                 "test-signature",
-                "test-challenge"
+                "test-challenge",
+                "challenge-1"
         );
 
         webTestClient.post()
@@ -148,7 +150,8 @@ class BiometricControllerTest {
                 "testuser",
                 "device-123",
                 "auth-signature",
-                "auth-challenge"
+                "auth-challenge",
+                "challenge-1"
         );
 
         webTestClient.post()
@@ -169,7 +172,8 @@ class BiometricControllerTest {
                 "testuser",
                 "device-123",
                 "auth-signature",
-                "auth-challenge"
+                "auth-challenge",
+                "challenge-1"
         );
 
         webTestClient.post()
@@ -2,22 +2,31 @@ package id.payu.auth.service;
 
 import id.payu.auth.dto.*;
 import id.payu.auth.exception.BiometricException;
+import id.payu.auth.service.credential.EphemeralCredentialStore;
+import id.payu.auth.service.credential.InMemoryEphemeralCredentialStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Field;
 import java.security.*;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class BiometricServiceTest {
 
-    @InjectMocks
+    @Mock
+    private EphemeralCredentialStore credentialStore;
+
     private BiometricService biometricService;
 
     private KeyPair testKeyPair;
@@ -37,6 +46,7 @@ class BiometricServiceTest {
         testDeviceId = "device-123";
         testDeviceType = "iOS";
 
+        biometricService = new BiometricService(credentialStore);
         setField(biometricService, "challengeExpirySeconds", 300L);
         setField(biometricService, "maxRegistrationsPerUser", 5);
     }
@@ -61,6 +71,10 @@ class BiometricServiceTest {
         assertNotNull(response.expiresAt());
         assertTrue(response.expiresAt() > beforeTime);
         assertEquals("Challenge generated successfully", response.message());
+        verify(credentialStore).put(
+                "bio:challenge:" + testUsername + ":" + testDeviceId + ":" + response.challengeId(),
+                response.challenge(),
+                Duration.ofSeconds(300));
     }
 
     @Test
@@ -74,7 +88,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
 
         BiometricRegistrationResponse response = biometricService.registerBiometric(request);
@@ -99,7 +114,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
 
         // Register 5 devices for the same user (max is 5)
@@ -110,7 +126,8 @@ class BiometricServiceTest {
                     testDeviceId + "-" + i,  // Different device IDs
                     testDeviceType,
                     signature,
-                    challenge
+                    challenge,
+                    issueChallenge(testUsername, testDeviceId + "-" + i, challenge)
             );
             biometricService.registerBiometric(r);
         }
@@ -133,7 +150,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         biometricService.registerBiometric(request);
 
@@ -143,7 +161,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
 
         BiometricException exception = assertThrows(BiometricException.class,
@@ -163,7 +182,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         biometricService.registerBiometric(regRequest);
 
@@ -177,7 +197,8 @@ class BiometricServiceTest {
                 testUsername,
                 testDeviceId,
                 authSignature,
-                authChallenge
+                authChallenge,
+                issueChallenge(testUsername, testDeviceId, authChallenge)
         );
 
         BiometricAuthenticationResponse response = biometricService.authenticateWithBiometric(authRequest, registration.get());
@@ -202,7 +223,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         biometricService.registerBiometric(regRequest);
 
@@ -227,7 +249,8 @@ class BiometricServiceTest {
                 testUsername,
                 testDeviceId,
                 signature,
-                challenge
+                challenge,
+                "unused-challenge-id"
         );
 
         BiometricException exception = assertThrows(BiometricException.class,
@@ -247,7 +270,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         biometricService.registerBiometric(regRequest);
 
@@ -259,7 +283,8 @@ class BiometricServiceTest {
                 testUsername,
                 testDeviceId,
                 invalidSignature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
 
         BiometricException exception = assertThrows(BiometricException.class,
@@ -278,7 +303,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         biometricService.registerBiometric(request);
 
@@ -308,7 +334,8 @@ class BiometricServiceTest {
                     testDeviceId + "-" + i,
                     testDeviceType,
                     signature,
-                    challenge
+                    challenge,
+                    issueChallenge(username, testDeviceId + "-" + i, challenge)
             );
             biometricService.registerBiometric(request);
         }
@@ -330,7 +357,8 @@ class BiometricServiceTest {
                 testDeviceId,
                 testDeviceType,
                 signature,
-                challenge
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
         );
         BiometricRegistrationResponse regResponse = biometricService.registerBiometric(request);
 
@@ -340,6 +368,106 @@ class BiometricServiceTest {
         assertFalse(result.isPresent());
     }
 
+    @Test
+    void authenticateWithBiometric_ReplayedChallenge_ThrowsException() throws IllegalAccessException {
+        try (InMemoryEphemeralCredentialStore store = new InMemoryEphemeralCredentialStore(Duration.ofSeconds(1))) {
+            BiometricService service = new BiometricService(store);
+            setField(service, "challengeExpirySeconds", 300L);
+            setField(service, "maxRegistrationsPerUser", 5);
+
+            BiometricChallengeResponse registrationChallenge = service.generateChallenge(testUsername, testDeviceId);
+            service.registerBiometric(new BiometricRegistrationRequest(
+                    testUsername,
+                    testPublicKeyString,
+                    testDeviceId,
+                    testDeviceType,
+                    createTestSignature(registrationChallenge.challenge()),
+                    registrationChallenge.challenge(),
+                    registrationChallenge.challengeId()
+            ));
+            var registration = service.findRegistration(testUsername, testDeviceId).orElseThrow();
+
+            BiometricChallengeResponse challenge = service.generateChallenge(testUsername, testDeviceId);
+            BiometricAuthenticationRequest authRequest = new BiometricAuthenticationRequest(
+                    testUsername,
+                    testDeviceId,
+                    createTestSignature(challenge.challenge()),
+                    challenge.challenge(),
+                    challenge.challengeId()
+            );
+            assertNotNull(service.authenticateWithBiometric(authRequest, registration).accessToken());
+
+            BiometricException exception = assertThrows(BiometricException.class,
+                    () -> service.authenticateWithBiometric(authRequest, registration));
+            assertEquals("BIO_008", exception.getErrorCode());
+        }
+    }
+
+    @Test
+    void authenticateWithBiometric_DifferentChallenge_ThrowsException() {
+        String challenge = "test-challenge";
+        BiometricRegistrationRequest regRequest = new BiometricRegistrationRequest(
+                testUsername,
+                testPublicKeyString,
+                testDeviceId,
+                testDeviceType,
+                createTestSignature(challenge),
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
+        );
+        biometricService.registerBiometric(regRequest);
+        var registration = biometricService.findRegistration(testUsername, testDeviceId).orElseThrow();
+
+        // Signed by the device, but not the challenge issued under this ID
+        String forged = "attacker-chosen-challenge";
+        BiometricAuthenticationRequest authRequest = new BiometricAuthenticationRequest(
+                testUsername,
+                testDeviceId,
+                createTestSignature(forged),
+                forged,
+                issueChallenge(testUsername, testDeviceId, "issued-challenge")
+        );
+
+        BiometricException exception = assertThrows(BiometricException.class,
+                () -> biometricService.authenticateWithBiometric(authRequest, registration));
+        assertEquals("BIO_008", exception.getErrorCode());
+    }
+
+    @Test
+    void authenticateWithBiometric_UnknownChallengeId_ThrowsException() {
+        String challenge = "test-challenge";
+        BiometricRegistrationRequest regRequest = new BiometricRegistrationRequest(
+                testUsername,
+                testPublicKeyString,
+                testDeviceId,
+                testDeviceType,
+                createTestSignature(challenge),
+                challenge,
+                issueChallenge(testUsername, testDeviceId, challenge)
+        );
+        biometricService.registerBiometric(regRequest);
+        var registration = biometricService.findRegistration(testUsername, testDeviceId).orElseThrow();
+
+        BiometricAuthenticationRequest authRequest = new BiometricAuthenticationRequest(
+                testUsername,
+                testDeviceId,
+                createTestSignature(challenge),
+                challenge,
+                "never-issued"
+        );
+
+        BiometricException exception = assertThrows(BiometricException.class,
+                () -> biometricService.authenticateWithBiometric(authRequest, registration));
+        assertEquals("BIO_008", exception.getErrorCode());
+    }
+
+    private String issueChallenge(String username, String deviceId, String challenge) {
+        String challengeId = UUID.randomUUID().toString();
+        when(credentialStore.consume("bio:challenge:" + username + ":" + deviceId + ":" + challengeId))
+                .thenReturn(Optional.of(challenge));
+        return challengeId;
+    }
+
     private String createTestSignature(String data) {
         try {
             Signature signature = Signature.getInstance("SHA256withECDSA");
@@ -1,26 +1,37 @@
 package id.payu.auth.service;
 
+import id.payu.auth.service.credential.InMemoryEphemeralCredentialStore;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DisplayName("MFATokenService")
 class MFATokenServiceTest {
 
+    private InMemoryEphemeralCredentialStore credentialStore;
     private MFATokenService mfaTokenService;
 
     @BeforeEach
     void setUp() {
-        mfaTokenService = new MFATokenService();
+        credentialStore = new InMemoryEphemeralCredentialStore(Duration.ofMillis(100));
+        mfaTokenService = new MFATokenService(credentialStore);
         ReflectionTestUtils.setField(mfaTokenService, "tokenExpirySeconds", 300);
         ReflectionTestUtils.setField(mfaTokenService, "otpLength", 6);
         ReflectionTestUtils.setField(mfaTokenService, "otpExpirySeconds", 300);
     }
 
+    @AfterEach
+    void tearDown() {
+        credentialStore.close();
+    }
+
     @Nested
     @DisplayName("generateMFAToken")
     class GenerateMFAToken {
@@ -109,6 +120,28 @@ class MFATokenServiceTest {
 
             assertThat(valid).isFalse();
         }
+
+        @Test
+        @DisplayName("should burn token presented for wrong username")
+        void shouldBurnTokenPresentedForWrongUsername() {
+            MFATokenService.MFAToken token = mfaTokenService.generateMFAToken("user1");
+
+            mfaTokenService.validateAndConsumeMFAToken(token.mfaToken(), "user2");
+            boolean valid = mfaTokenService.validateAndConsumeMFAToken(token.mfaToken(), "user1");
+
+            assertThat(valid).isFalse();
+        }
+
+        @Test
+        @DisplayName("should reject expired token")
+        void shouldRejectExpiredToken() {
+            ReflectionTestUtils.setField(mfaTokenService, "tokenExpirySeconds", 0);
+            MFATokenService.MFAToken token = mfaTokenService.generateMFAToken("user1");
+
+            boolean valid = mfaTokenService.validateAndConsumeMFAToken(token.mfaToken(), "user1");
+
+            assertThat(valid).isFalse();
+        }
     }
 
     @Nested
@@ -160,18 +193,4 @@ class MFATokenServiceTest {
             assertThat(valid).isFalse();
         }
     }
-
-    @Nested
-    @DisplayName("cleanupExpiredTokens")
-    class CleanupExpiredTokens {
-
-        @Test
-        @DisplayName("should cleanup without errors")
-        void shouldCleanupWithoutErrors() {
-            mfaTokenService.generateMFAToken("user1");
-            mfaTokenService.generateMFAToken("user2");
-
-            mfaTokenService.cleanupExpiredTokens();
-        }
-    }
 }
@@ -0,0 +1,183 @@
+package id.payu.auth.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshTokenServiceTest {
+
+    private static final String HMAC_KEY = "test-refresh-token-hmac-key-0123456789";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    private RefreshTokenService refreshTokenService;
+    private final RefreshTokenDigester digester = new RefreshTokenDigester(HMAC_KEY.getBytes());
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(redisTemplate, HMAC_KEY);
+    }
+
+    @Test
+    @DisplayName("should store the HMAC digest of a new token, never the token")
+    @SuppressWarnings("unchecked")
+    void shouldStoreDigestOfNewToken() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        List<Object> scriptArguments = new ArrayList<>();
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            scriptArguments.addAll(Arrays.asList(invocation.getArguments()));
+            return 1L;
+        });
+
+        RefreshTokenService.RefreshTokenResponse response = refreshTokenService.createRefreshToken("user-123");
+
+        String familyId = response.getRefreshToken().split("\\.")[1];
+        assertThat(scriptArguments.get(1)).isEqualTo(List.of("auth:refresh:family:{" + familyId + "}"));
+        assertThat(scriptArguments).contains(digester.digest(response.getRefreshToken()))
+                .doesNotContain(response.getRefreshToken());
+        verify(setOperations).add("auth:refresh:user:user-123", familyId);
+    }
+
+    @Test
+    @DisplayName("should drop expired families from the user's set on login")
+    void shouldPruneExpiredFamiliesOnLogin() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("auth:refresh:user:user-123")).thenReturn(Set.of("family-live", "family-expired"));
+        when(redisTemplate.hasKey("auth:refresh:family:{family-live}")).thenReturn(true);
+        when(redisTemplate.hasKey("auth:refresh:family:{family-expired}")).thenReturn(false);
+
+        refreshTokenService.createRefreshToken("user-123");
+
+        verify(setOperations).remove("auth:refresh:user:user-123", "family-expired");
+        verify(setOperations, never()).remove(eq("auth:refresh:user:user-123"), eq("family-live"));
+    }
+
+    @Test
+    @DisplayName("should rotate a valid token with one script over keys of one hash slot")
+    @SuppressWarnings("unchecked")
+    void shouldRotateValidToken() {
+        String oldToken = "v2.family-1.token-1." + digester.newSecret();
+        givenStoredToken("family-1", "token-1", digester.digest(oldToken));
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(3L);
+
+        RefreshTokenService.RefreshTokenResponse response = refreshTokenService.rotateRefreshToken(oldToken);
+
+        assertThat(response.getRefreshToken()).startsWith("v2.family-1.").isNotEqualTo(oldToken);
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), any(Object[].class));
+        assertThat(keys.getValue()).containsExactly(
+                "auth:refresh:family:{family-1}", "auth:refresh:family:{family-1}:used:token-1");
+    }
+
+    @Test
+    @DisplayName("should reject a token whose digest does not match")
+    @SuppressWarnings("unchecked")
+    void shouldRejectTokenWithWrongSecret() {
+        givenStoredToken("family-1", "token-1", digester.digest("v2.family-1.token-1.original"));
+
+        assertThatThrownBy(() -> refreshTokenService.rotateRefreshToken("v2.family-1.token-1.forged"))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Invalid refresh token");
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("should revoke only the token family when a rotated token is reused")
+    void shouldRevokeFamilyOnReuse() {
+        String rotatedToken = "v2.family-1.token-1." + digester.newSecret();
+        givenStoredToken("family-1", "token-2", digester.digest("v2.family-1.token-2.current"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("auth:refresh:family:{family-1}:used:token-1")).thenReturn(digester.digest(rotatedToken));
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+
+        assertThatThrownBy(() -> refreshTokenService.rotateRefreshToken(rotatedToken))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Refresh token reuse detected");
+        verify(redisTemplate).delete("auth:refresh:family:{family-1}");
+        verify(setOperations).remove("auth:refresh:user:user-123", "family-1");
+        verify(redisTemplate, never()).delete("auth:refresh:user:user-123");
+    }
+
+    @Test
+    @DisplayName("should not revoke the family for a rotated token ID with the wrong secret")
+    void shouldIgnoreForgedReuse() {
+        givenStoredToken("family-1", "token-2", digester.digest("v2.family-1.token-2.current"));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("auth:refresh:family:{family-1}:used:token-1"))
+                .thenReturn(digester.digest("v2.family-1.token-1.original"));
+
+        assertThatThrownBy(() -> refreshTokenService.rotateRefreshToken("v2.family-1.token-1.forged"))
+                .isInstanceOf(BadCredentialsException.class)
+                .hasMessage("Invalid refresh token");
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    @DisplayName("should revoke every family of a user one key at a time")
+    void shouldRevokeAllFamiliesOfUser() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("auth:refresh:user:user-123")).thenReturn(Set.of("family-1", "family-2"));
+
+        refreshTokenService.invalidateAllUserTokens("user-123");
+
+        verify(redisTemplate).delete("auth:refresh:family:{family-1}");
+        verify(redisTemplate).delete("auth:refresh:family:{family-2}");
+        verify(redisTemplate).delete("auth:refresh:user:user-123");
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    @DisplayName("should validate tokens without rotating them")
+    void shouldValidateToken() {
+        String token = "v2.family-1.token-1." + digester.newSecret();
+        givenStoredToken("family-1", "token-1", digester.digest(token));
+
+        assertThat(refreshTokenService.isRefreshTokenValid(token)).isTrue();
+        assertThat(refreshTokenService.isRefreshTokenValid("v2.family-1.token-1.other")).isFalse();
+        assertThat(refreshTokenService.isRefreshTokenValid("v2.family-1.token-0." + digester.newSecret())).isFalse();
+        assertThat(refreshTokenService.isRefreshTokenValid("not-a-token")).isFalse();
+    }
+
+    private void givenStoredToken(String familyId, String tokenId, String digest) {
+        long now = System.currentTimeMillis();
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.multiGet(eq("auth:refresh:family:{" + familyId + "}"), any())).thenReturn(List.of(
+                tokenId, "user-123", digest, String.valueOf(now), String.valueOf(now + 60_000), "2"));
+    }
+}
@@ -7,6 +7,8 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 @DisplayName("RiskEvaluationService")
@@ -16,7 +18,8 @@ class RiskEvaluationServiceTest {
 
     @BeforeEach
     void setUp() {
-        riskEvaluationService = new RiskEvaluationService();
+        riskEvaluationService = new RiskEvaluationService(new RiskProfileStore(null, 10, 20, Duration.ofHours(1),
+                1000, Duration.ofSeconds(30), Duration.ofDays(90), Duration.ZERO, System::currentTimeMillis));
         ReflectionTestUtils.setField(riskEvaluationService, "mfaThreshold", 50);
         ReflectionTestUtils.setField(riskEvaluationService, "newDeviceRisk", 40);
         ReflectionTestUtils.setField(riskEvaluationService, "newIpRisk", 30);
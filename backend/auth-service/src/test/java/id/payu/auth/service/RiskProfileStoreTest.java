@@ -0,0 +1,231 @@
+package id.payu.auth.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("RiskProfileStore")
+class RiskProfileStoreTest {
+
+    private static final Duration WINDOW = Duration.ofHours(1);
+    private static final List<Object> PROFILE_FIELDS = List.of("devices", "ips", "failedStart", "failedPrev", "failedCur");
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    private RiskProfileStore store(StringRedisTemplate redisTemplate) {
+        return new RiskProfileStore(redisTemplate, 2, 2, WINDOW, 1000, Duration.ofSeconds(30),
+                Duration.ofDays(90), Duration.ZERO, now::get);
+    }
+
+    @Nested
+    @DisplayName("profile")
+    class Profile {
+
+        @Test
+        @DisplayName("should keep only the most recently used devices")
+        void shouldKeepMostRecentDevices() {
+            RiskProfileStore store = store(null);
+
+            store.recordSuccessfulLogin("budi", "device-1", "10.0.0.1");
+            store.recordSuccessfulLogin("budi", "device-2", "10.0.0.1");
+            store.recordSuccessfulLogin("budi", "device-1", "10.0.0.1");
+            store.recordSuccessfulLogin("budi", "device-3", "10.0.0.1");
+
+            RiskProfile profile = store.get("budi");
+            assertThat(profile.devices()).containsExactly("device-3", "device-1");
+            assertThat(profile.knowsDevice("device-2")).isFalse();
+            assertThat(profile.ipAddresses()).containsExactly("10.0.0.1");
+        }
+
+        @Test
+        @DisplayName("should decay failed attempts over the sliding window")
+        void shouldDecayFailedAttempts() {
+            RiskProfileStore store = store(null);
+            for (int i = 0; i < 4; i++) {
+                store.recordFailedAttempt("budi");
+            }
+            assertThat(store.failedAttempts("budi")).isEqualTo(4);
+
+            now.addAndGet(WINDOW.toMillis() + WINDOW.toMillis() / 2);
+            assertThat(store.failedAttempts("budi")).isEqualTo(2);
+
+            now.addAndGet(WINDOW.toMillis());
+            assertThat(store.failedAttempts("budi")).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("shared")
+    class Shared {
+
+        @Test
+        @DisplayName("should merge queued devices and IPs into Redis with one script call per user")
+        @SuppressWarnings("unchecked")
+        void shouldFlushQueuedUpdatesPerUser() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            List<List<Object>> calls = new ArrayList<>();
+            when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+                calls.add(Arrays.asList(invocation.getArguments()));
+                return Arrays.asList(null, null, null);
+            });
+            RiskProfileStore store = store(redisTemplate);
+
+            store.recordSuccessfulLogin("budi", "device-9", null);
+            store.recordSuccessfulLogin("siti", "device-1", "10.0.0.1");
+            store.recordSuccessfulLogin("siti", "device-2", null);
+            assertThat(store.pendingUpdates()).isEqualTo(2);
+
+            store.flush();
+
+            assertThat(calls).hasSize(2);
+            assertThat(calls).extracting(arguments -> arguments.get(1))
+                    .containsExactlyInAnyOrder(List.of("auth:risk:budi"), List.of("auth:risk:siti"));
+            assertThat(calls).anySatisfy(arguments ->
+                    assertThat(arguments).containsSequence("device-2\u001Fdevice-1", "10.0.0.1"));
+            assertThat(store.pendingUpdates()).isZero();
+        }
+
+        @Test
+        @DisplayName("should count failed attempts in Redis right away")
+        @SuppressWarnings("unchecked")
+        void shouldCountFailedAttemptsInRedis() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            RiskProfileStore store = store(redisTemplate);
+
+            store.recordFailedAttempt("budi");
+
+            verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("auth:risk:budi")), any(Object[].class));
+            assertThat(store.pendingUpdates()).isZero();
+
+            store.recordSuccessfulLogin("budi", "device-1", null);
+
+            verify(hashOperations).delete("auth:risk:budi", "failedStart", "failedPrev", "failedCur");
+        }
+
+        @Test
+        @DisplayName("should load failed attempts recorded by other replicas and then count locally")
+        @SuppressWarnings("unchecked")
+        void shouldReadSharedFailedAttempts() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            when(hashOperations.multiGet(eq("auth:risk:budi"), eq(PROFILE_FIELDS)))
+                    .thenReturn(Arrays.asList(null, null, String.valueOf(now.get() - WINDOW.toMillis() / 2), "4", "3"));
+            RiskProfileStore store = store(redisTemplate);
+
+            assertThat(store.failedAttempts("budi")).isEqualTo(5);
+            assertThat(store.failedAttempts("budi")).isEqualTo(5);
+
+            verify(hashOperations, times(1)).multiGet(any(), anyList());
+        }
+
+        @Test
+        @DisplayName("should take the cluster-wide count returned when recording a failed attempt")
+        @SuppressWarnings("unchecked")
+        void shouldTakeClusterCountOnFailedAttempt() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            // Other replicas counted six more in the current window
+            when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                    .thenReturn(List.of(now.get(), 0L, 7L));
+            RiskProfileStore store = store(redisTemplate);
+
+            store.recordFailedAttempt("budi");
+
+            assertThat(store.failedAttempts("budi")).isEqualTo(7);
+        }
+
+        @Test
+        @DisplayName("should bring failed attempts up to date when flushing")
+        @SuppressWarnings("unchecked")
+        void shouldMergeFailedAttemptsOnFlush() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                    .thenReturn(Arrays.asList(String.valueOf(now.get()), "0", "3"));
+            RiskProfileStore store = store(redisTemplate);
+            store.recordSuccessfulLogin("budi", "device-1", null);
+            assertThat(store.failedAttempts("budi")).isZero();
+
+            store.flush();
+
+            assertThat(store.failedAttempts("budi")).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("should merge queued updates into profiles loaded while other threads queue more")
+        @SuppressWarnings("unchecked")
+        void shouldLoadWhileQueueing() throws Exception {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            // Expire cached profiles right away so every read loads and merges the queued update
+            RiskProfileStore store = new RiskProfileStore(redisTemplate, 1000, 1000, WINDOW, 1000,
+                    Duration.ofNanos(1), Duration.ofDays(90), Duration.ZERO, now::get);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<?> writer = executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        store.recordSuccessfulLogin("budi", "device-" + (i % 500), "10.0.0." + (i % 200));
+                    }
+                });
+                Future<?> reader = executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        store.get("budi").knowsDevice("device-1");
+                    }
+                });
+
+                writer.get(30, TimeUnit.SECONDS);
+                reader.get(30, TimeUnit.SECONDS);
+            } finally {
+                executor.shutdownNow();
+            }
+            assertThat(store.get("budi").knowsDevice("device-499")).isTrue();
+        }
+
+        @Test
+        @DisplayName("should load a profile stored by another replica")
+        @SuppressWarnings("unchecked")
+        void shouldLoadStoredProfile() {
+            StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+            HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+            when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+            when(hashOperations.multiGet(eq("auth:risk:budi"), eq(PROFILE_FIELDS))).thenReturn(Arrays.asList(
+                    "device-9\u001Fdevice-8", "10.0.0.9", null, null, null));
+
+            RiskProfileStore store = store(redisTemplate);
+            RiskProfile profile = store.get("budi");
+
+            assertThat(profile.devices()).containsExactly("device-9", "device-8");
+            assertThat(profile.knowsIpAddress("10.0.0.9")).isTrue();
+        }
+    }
+}
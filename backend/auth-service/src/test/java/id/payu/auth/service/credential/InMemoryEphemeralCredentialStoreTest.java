@@ -0,0 +1,141 @@
+package id.payu.auth.service.credential;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("InMemoryEphemeralCredentialStore")
+class InMemoryEphemeralCredentialStoreTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private InMemoryEphemeralCredentialStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryEphemeralCredentialStore(Duration.ofMillis(100), now::get);
+    }
+
+    @Nested
+    @DisplayName("get and consume")
+    class GetAndConsume {
+
+        @Test
+        @DisplayName("should return value until consumed once")
+        void shouldReturnValueUntilConsumedOnce() {
+            store.put("otp:user1", "123456", Duration.ofMinutes(5));
+
+            assertThat(store.get("otp:user1")).contains("123456");
+            assertThat(store.consume("otp:user1")).contains("123456");
+            assertThat(store.consume("otp:user1")).isEmpty();
+            assertThat(store.get("otp:user1")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should not return value past its TTL before the wheel runs")
+        void shouldNotReturnValuePastTtl() {
+            store.put("token", "user1", Duration.ofSeconds(1));
+
+            now.addAndGet(1_000);
+
+            assertThat(store.get("token")).isEmpty();
+            assertThat(store.consume("token")).isEmpty();
+        }
+
+        @Test
+        @DisplayName("should report whether delete removed a live value")
+        void shouldReportDelete() {
+            store.put("token", "user1", Duration.ofSeconds(1));
+
+            assertThat(store.delete("token")).isTrue();
+            assertThat(store.delete("token")).isFalse();
+        }
+    }
+
+    @Nested
+    @DisplayName("expiry")
+    class Expiry {
+
+        @Test
+        @DisplayName("should remove entries once their tick passes")
+        void shouldRemoveEntriesOnceTickPasses() {
+            store.put("short", "a", Duration.ofMillis(250));
+            store.put("long", "b", Duration.ofMinutes(10));
+
+            now.addAndGet(200);
+            store.expireDue();
+            assertThat(store.size()).isEqualTo(2);
+
+            now.addAndGet(100);
+            store.expireDue();
+            assertThat(store.size()).isEqualTo(1);
+            assertThat(store.get("long")).contains("b");
+
+            now.addAndGet(Duration.ofMinutes(10).toMillis());
+            store.expireDue();
+            assertThat(store.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should keep a value written again under the same key")
+        void shouldKeepRewrittenValue() {
+            store.put("otp:user1", "111111", Duration.ofSeconds(1));
+            store.put("otp:user1", "222222", Duration.ofSeconds(10));
+
+            now.addAndGet(2_000);
+            store.expireDue();
+
+            assertThat(store.get("otp:user1")).contains("222222");
+        }
+    }
+
+    @Nested
+    @DisplayName("HierarchicalTimingWheel")
+    class Wheel {
+
+        @Test
+        @DisplayName("should expire each item on its own tick across levels")
+        void shouldExpireEachItemOnItsTick() {
+            HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(100, 6, 4, 0);
+            long[] deadlines = {100, 6_300, 6_400, 6_500, 409_600, 409_700, 5_000_000};
+            for (long deadline : deadlines) {
+                wheel.schedule(deadline, deadline);
+            }
+
+            List<long[]> expired = new ArrayList<>();
+            for (long time = 100; time <= 5_000_000; time += 100) {
+                long at = time;
+                wheel.advance(time, deadline -> expired.add(new long[]{deadline, at}));
+            }
+
+            assertThat(expired).hasSize(deadlines.length);
+            for (long[] pair : expired) {
+                assertThat(pair[1]).isEqualTo(pair[0]);
+            }
+            assertThat(wheel.size()).isZero();
+        }
+
+        @Test
+        @DisplayName("should not expire cancelled items")
+        void shouldNotExpireCancelledItems() {
+            HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 6, 4, 0);
+            HierarchicalTimingWheel.Timeout<String> timeout = wheel.schedule("a", 10_000);
+            wheel.schedule("b", 10_000);
+
+            wheel.cancel(timeout);
+            wheel.cancel(timeout);
+            List<String> expired = new ArrayList<>();
+            wheel.advance(10_000, expired::add);
+
+            assertThat(expired).containsExactly("b");
+            assertThat(wheel.size()).isZero();
+        }
+    }
+}
@@ -24,6 +24,11 @@ public interface GatewayConfig {
      */
     Map<String, ServiceConfig> simulators();
 
+    /**
+     * Streaming proxy configuration.
+     */
+    StreamingConfig streaming();
+
     /**
      * Rate limiting configuration.
      */
@@ -78,6 +83,12 @@ public interface GatewayConfig {
     @WithName("rate-limit-v2")
     RateLimitV2Config rateLimitV2();
 
+    /**
+     * Cluster-wide rate limiting (Redis token leasing) configuration.
+     */
+    @WithName("rate-limit-cluster")
+    ClusterRateLimitConfig clusterRateLimit();
+
     /**
      * API key management configuration.
      */
@@ -116,6 +127,53 @@ public interface GatewayConfig {
 
         @WithDefault("30s")
         Duration timeout();
+
+        /**
+         * Connection pool tuning for this upstream.
+         */
+        PoolConfig pool();
+    }
+
+    interface PoolConfig {
+        @WithName("max-connections")
+        @WithDefault("50")
+        int maxConnections();
+
+        @WithName("max-wait-queue-size")
+        @WithDefault("256")
+        int maxWaitQueueSize();
+
+        @WithName("connect-timeout")
+        @WithDefault("2s")
+        Duration connectTimeout();
+
+        @WithName("keep-alive-timeout")
+        @WithDefault("60s")
+        Duration keepAliveTimeout();
+
+        @WithDefault("false")
+        boolean http2();
+
+        @WithName("http2-multiplexing-limit")
+        @WithDefault("100")
+        int http2MultiplexingLimit();
+
+        @WithDefault("false")
+        boolean pipelining();
+
+        @WithName("pipelining-limit")
+        @WithDefault("10")
+        int pipeliningLimit();
+    }
+
+    interface StreamingConfig {
+        /**
+         * Gateway paths of {@code GET} routes that buffer the upstream body instead of
+         * streaming it, for endpoints whose body is inspected ({@code *} is a wildcard).
+         */
+        @WithName("buffered-paths")
+        @WithDefault("/api/v1/partners,/api/v1/partners/*,/api/v1/v1/partner/*")
+        List<String> bufferedPaths();
     }
 
     interface RateLimitConfig {
@@ -252,12 +310,44 @@ public interface GatewayConfig {
         @WithDefault("1024")
         int minSize();
 
-        @WithDefault("gzip,br")
+        /**
+         * Supported encodings in server preference order (br, zstd, gzip).
+         */
+        @WithDefault("br,zstd,gzip")
         List<String> algorithms();
 
+        /**
+         * gzip (deflate) level.
+         */
         @WithDefault("6")
         int level();
 
+        @WithName("brotli-quality")
+        @WithDefault("4")
+        int brotliQuality();
+
+        @WithName("zstd-level")
+        @WithDefault("3")
+        int zstdLevel();
+
+        /**
+         * Maximum number of responses compressed at once; beyond this responses go out identity-encoded.
+         */
+        @WithName("max-concurrent")
+        @WithDefault("64")
+        int maxConcurrent();
+
+        @WithName("deflater-pool-size")
+        @WithDefault("32")
+        int deflaterPoolSize();
+
+        /**
+         * Bodies of at least this many bytes, or of unknown length, are encoded on the worker pool.
+         */
+        @WithName("offload-threshold")
+        @WithDefault("65536")
+        int offloadThreshold();
+
         @WithName("mime-types")
         @WithDefault("application/json,application/xml,text/html,text/plain,text/css,text/javascript")
         List<String> mimeTypes();
@@ -279,6 +369,17 @@ public interface GatewayConfig {
         @WithDefault("60s")
         Duration flushInterval();
 
+        @WithDefault("4")
+        int stripes();
+
+        @WithName("max-routes")
+        @WithDefault("2000")
+        int maxRoutes();
+
+        @WithName("highest-trackable-latency")
+        @WithDefault("60s")
+        Duration highestTrackableLatency();
+
         @WithDefault("request-count,response-time,error-rate,status-codes,user-agents,endpoints")
         List<String> track();
     }
@@ -300,6 +401,41 @@ public interface GatewayConfig {
         Optional<TokenBucketConfig> perIp();
 
         Map<String, TokenBucketConfig> endpoints();
+
+        @WithName("max-buckets")
+        @WithDefault("100000")
+        long maxBuckets();
+
+        @WithName("idle-timeout")
+        @WithDefault("10m")
+        Duration idleTimeout();
+    }
+
+    interface ClusterRateLimitConfig {
+        @WithDefault("true")
+        boolean enabled();
+
+        /**
+         * Gateway nodes sharing the buckets; each leases its share of a bucket per Redis call.
+         */
+        @WithDefault("1")
+        int nodes();
+
+        @WithName("max-lease-size")
+        @WithDefault("1000")
+        long maxLeaseSize();
+
+        @WithName("lease-ttl")
+        @WithDefault("2s")
+        Duration leaseTtl();
+
+        @WithName("redis-timeout")
+        @WithDefault("50ms")
+        Duration redisTimeout();
+
+        @WithName("fallback-retry")
+        @WithDefault("5s")
+        Duration fallbackRetry();
     }
 
     interface TokenBucketConfig {
@@ -329,6 +465,32 @@ public interface GatewayConfig {
         @WithDefault("/health,/q/")
         List<String> bypassPaths();
 
+        /**
+         * In-process cache of validation results.
+         */
+        @WithName("near-cache")
+        NearCacheConfig nearCache();
+
+        interface NearCacheConfig {
+            @WithDefault("true")
+            boolean enabled();
+
+            @WithName("max-size")
+            @WithDefault("100000")
+            long maxSize();
+
+            @WithDefault("30s")
+            Duration ttl();
+
+            @WithName("negative-ttl")
+            @WithDefault("5s")
+            Duration negativeTtl();
+
+            @WithName("invalidation-channel")
+            @WithDefault("apikey:invalidations")
+            String invalidationChannel();
+        }
+
         interface RotationConfig {
             @WithDefault("true")
             boolean enabled();
@@ -387,6 +549,20 @@ public interface GatewayConfig {
         @WithDefault("X-Bypass-IP-Check")
         List<String> bypassHeaders();
 
+        /**
+         * YAML file with {@code mode} and {@code paths} entries, typically a mounted ConfigMap.
+         * When set it replaces the rules above and is re-read whenever it changes.
+         */
+        @WithName("rules-file")
+        Optional<String> rulesFile();
+
+        /**
+         * How often the rules file is checked for changes.
+         */
+        @WithName("reload-interval")
+        @WithDefault("30s")
+        Duration reloadInterval();
+
         interface IpWhitelistPathConfig {
             String pattern();
 
@@ -447,6 +623,14 @@ public interface GatewayConfig {
         @WithDefault("24h")
         Duration ttl();
 
+        @WithName("lock-timeout")
+        @WithDefault("30s")
+        Duration lockTimeout();
+
+        @WithName("wait-timeout")
+        @WithDefault("10s")
+        Duration waitTimeout();
+
         @WithName("applicable-methods")
         @WithDefault("POST,PUT,PATCH,DELETE")
         List<String> applicableMethods();
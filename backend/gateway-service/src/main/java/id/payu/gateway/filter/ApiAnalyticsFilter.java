@@ -7,10 +7,11 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.container.ContainerResponseContext;
 import jakarta.ws.rs.container.ContainerResponseFilter;
 import jakarta.ws.rs.ext.Provider;
-import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Filter to track API analytics.
@@ -19,7 +20,7 @@ import java.time.Duration;
 @Provider
 @ApplicationScoped
 @Priority(Priorities.USER)
-public class ApiAnalyticsFilter implements ContainerResponseFilter {
+public class ApiAnalyticsFilter implements ContainerRequestFilter, ContainerResponseFilter {
 
     private static final String START_TIME_PROPERTY = "analytics-start-time";
 
@@ -27,22 +28,23 @@ public class ApiAnalyticsFilter implements ContainerResponseFilter {
     ApiAnalyticsService analyticsService;
 
     @Override
-    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+    public void filter(ContainerRequestContext requestContext) {
         // Record start time for later use
-        Long startTime = (Long) requestContext.getProperty(START_TIME_PROPERTY);
-
-        if (startTime == null) {
-            startTime = System.currentTimeMillis();
-            requestContext.setProperty(START_TIME_PROPERTY, startTime);
-        }
+        requestContext.setProperty(START_TIME_PROPERTY, System.nanoTime());
+    }
 
-        long duration = System.currentTimeMillis() - startTime;
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Long startTime = (Long) requestContext.getProperty(START_TIME_PROPERTY);
+        long duration = startTime != null
+            ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+            : 0;
 
         String path = requestContext.getUriInfo().getPath();
         String method = requestContext.getMethod();
         int statusCode = responseContext.getStatus();
 
-        // Record metrics asynchronously
+        // Recording is lock-free; flushing to Redis happens on the scheduler thread
         try {
             analyticsService.recordRequest(path, method, statusCode, duration);
             Log.debugf("Recorded analytics: %s %s -> %d (%dms)", method, path, statusCode, duration);
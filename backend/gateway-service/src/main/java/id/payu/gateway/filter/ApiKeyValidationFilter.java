@@ -3,21 +3,20 @@ package id.payu.gateway.filter;
 import id.payu.gateway.config.GatewayConfig;
 import id.payu.gateway.service.ApiKeyRotationService;
 import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
-import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.ext.Provider;
-import java.util.List;
 import java.util.Map;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
 
 /**
  * Filter to validate API keys for protected endpoints.
+ * The request is suspended until validation completes, which for cached keys is immediate.
  */
-@Provider
 @ApplicationScoped
-public class ApiKeyValidationFilter implements ContainerRequestFilter {
+public class ApiKeyValidationFilter {
 
     @Inject
     GatewayConfig config;
@@ -25,10 +24,10 @@ public class ApiKeyValidationFilter implements ContainerRequestFilter {
     @Inject
     ApiKeyRotationService apiKeyService;
 
-    @Override
-    public void filter(ContainerRequestContext requestContext) {
+    @ServerRequestFilter
+    public Uni<Response> filter(ContainerRequestContext requestContext) {
         if (!config.apiKeys().enabled()) {
-            return;
+            return Uni.createFrom().nullItem();
         }
 
         String path = requestContext.getUriInfo().getPath();
@@ -37,7 +36,7 @@ public class ApiKeyValidationFilter implements ContainerRequestFilter {
         for (String bypassPath : config.apiKeys().bypassPaths()) {
             if (path.startsWith(bypassPath) || path.equals(bypassPath)) {
                 Log.debugf("Bypassing API key validation for path: %s", path);
-                return;
+                return Uni.createFrom().nullItem();
             }
         }
 
@@ -46,7 +45,7 @@ public class ApiKeyValidationFilter implements ContainerRequestFilter {
 
         if (apiKey == null || apiKey.isBlank()) {
             Log.warnf("Missing API key for path: %s", path);
-            requestContext.abortWith(
+            return Uni.createFrom().item(
                 Response.status(Response.Status.UNAUTHORIZED)
                     .entity(Map.of(
                         "error", "MISSING_API_KEY",
@@ -54,39 +53,33 @@ public class ApiKeyValidationFilter implements ContainerRequestFilter {
                     ))
                     .build()
             );
-            return;
         }
 
-        // Validate API key
-        apiKeyService.validateApiKey(apiKey)
-            .subscribe()
-            .with(userId -> {
+        // Validate API key; near-cache hits resolve without suspending the request
+        return apiKeyService.validateApiKey(apiKey)
+            .map(userId -> {
                 if (userId == null) {
                     Log.warnf("Invalid API key for path: %s", path);
-                    requestContext.abortWith(
-                        Response.status(Response.Status.UNAUTHORIZED)
-                            .entity(Map.of(
-                                "error", "INVALID_API_KEY",
-                                "message", "API key is invalid or expired"
-                            ))
-                            .build()
-                    );
-                } else {
-                    // Store user ID in request context for downstream use
-                    requestContext.setProperty("user-id", userId);
-                    Log.debugf("API key validated for user: %s", userId);
-                }
-            }, failure -> {
-                // If validation fails, fail open (allow request) or fail closed based on config
-                Log.errorf(failure, "API key validation failed for path: %s", path);
-                requestContext.abortWith(
-                    Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    return Response.status(Response.Status.UNAUTHORIZED)
                         .entity(Map.of(
-                            "error", "API_KEY_VALIDATION_ERROR",
-                            "message", "Failed to validate API key"
+                            "error", "INVALID_API_KEY",
+                            "message", "API key is invalid or expired"
                         ))
-                        .build()
-                );
+                        .build();
+                }
+                // Store user ID in request context for downstream use
+                requestContext.setProperty("user-id", userId);
+                Log.debugf("API key validated for user: %s", userId);
+                return null;
+            })
+            .onFailure().recoverWithItem(failure -> {
+                Log.errorf(failure, "API key validation failed for path: %s", path);
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of(
+                        "error", "API_KEY_VALIDATION_ERROR",
+                        "message", "Failed to validate API key"
+                    ))
+                    .build();
             });
     }
 }
@@ -1,31 +1,82 @@
 package id.payu.gateway.filter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import id.payu.gateway.config.GatewayConfig;
 import io.quarkus.logging.Log;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
 import io.quarkus.redis.datasource.value.ReactiveValueCommands;
 import io.smallrye.mutiny.Uni;
+import io.vertx.ext.web.RoutingContext;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
-import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
-import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.core.SecurityContext;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Filter to handle idempotency for write operations.
  * Ensures that duplicate requests with the same idempotency key return the same response.
+ *
+ * <p>Keys are scoped to the caller: the tenant, the authenticated principal (or the
+ * credential it presented), the method and the path, so two clients that happen to pick
+ * the same key never see each other's responses. A SHA-256 fingerprint of the request
+ * body is stored with the claim and the response; a duplicate whose body differs is
+ * rejected with 422 instead of being answered with the first request's result.
+ *
+ * <p>The request is suspended until the key is resolved. The first request atomically
+ * claims the key in Redis with {@code SET NX}; duplicates that arrive while it is still
+ * running wait for its result (in-process through a shared future, across nodes by
+ * polling the key) and replay it instead of reaching the backend a second time. The
+ * in-process entry is released when the leading request ends, whether or not a response
+ * was produced, so a failed or abandoned request cannot strand its duplicates.
  */
-@Provider
 @ApplicationScoped
-public class IdempotencyFilter implements ContainerRequestFilter {
+public class IdempotencyFilter {
 
     private static final Set<String> IDEMPOTENT_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
     private static final String IDEMPOTENCY_PREFIX = "idempotency:";
+    private static final String REDIS_KEY_PROPERTY = "idempotency-redis-key";
+    private static final String LEADER_PROPERTY = "idempotency-leader";
+    private static final String PENDING_MARKER = "~pending:";
+    private static final byte[] PENDING_BYTES = PENDING_MARKER.getBytes(StandardCharsets.UTF_8);
+    private static final Set<String> SKIPPED_HEADERS = Set.of("content-length", "transfer-encoding", "connection");
+
+    /**
+     * Deletes the key only while it still holds the pending marker it was claimed with.
+     * KEYS[1] = idempotency key, ARGV[1] = pending marker.
+     */
+    static final String RELEASE_SCRIPT = """
+        if redis.call('GET', KEYS[1]) == ARGV[1] then
+          return redis.call('DEL', KEYS[1])
+        end
+        return 0
+        """;
 
     @Inject
     GatewayConfig config;
@@ -33,31 +84,36 @@ public class IdempotencyFilter implements ContainerRequestFilter {
     @Inject
     ReactiveRedisDataSource redisDataSource;
 
-    private ReactiveValueCommands<String, String> valueCommands;
-    private final ConcurrentHashMap<String, CachedResponse> localCache = new ConcurrentHashMap<>();
+    @Inject
+    ObjectMapper objectMapper;
+
+    private ReactiveValueCommands<String, byte[]> valueCommands;
+    private ReactiveKeyCommands<String> keyCommands;
+    private final ConcurrentHashMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
 
     @PostConstruct
     void init() {
-        this.valueCommands = redisDataSource.value(String.class);
+        this.valueCommands = redisDataSource.value(byte[].class);
+        this.keyCommands = redisDataSource.key();
         Log.infof("Idempotency filter initialized (enabled: %s)", config.idempotency().enabled());
     }
 
-    @Override
-    public void filter(ContainerRequestContext requestContext) {
+    @ServerRequestFilter(readBody = true)
+    public Uni<Response> filter(ContainerRequestContext requestContext, RoutingContext routingContext) {
         if (!config.idempotency().enabled()) {
-            return;
+            return Uni.createFrom().nullItem();
         }
 
         // Skip health and metrics endpoints
         String path = requestContext.getUriInfo().getPath();
         if (path.startsWith("/q/") || path.equals("/health")) {
-            return;
+            return Uni.createFrom().nullItem();
         }
 
         // Only apply to write operations
         String method = requestContext.getMethod();
         if (!IDEMPOTENT_METHODS.contains(method)) {
-            return;
+            return Uni.createFrom().nullItem();
         }
 
         // Get idempotency key
@@ -67,88 +123,333 @@ public class IdempotencyFilter implements ContainerRequestFilter {
             // For write operations, idempotency key should be required
             // But we'll make it optional for backward compatibility
             Log.debugf("No idempotency key provided for %s %s", method, path);
-            return;
+            return Uni.createFrom().nullItem();
         }
 
-        // Check if this key was already used
-        String redisKey = IDEMPOTENCY_PREFIX + idempotencyKey;
+        String redisKey = redisKey(requestContext, method, path, idempotencyKey);
+        String fingerprint = fingerprint(requestContext);
 
-        valueCommands.get(redisKey)
-            .subscribe()
-            .with(cachedResponse -> {
-                if (cachedResponse != null) {
-                    // Idempotency key was already used, return cached response
-                    Log.infof("Returning cached response for idempotency key: %s", idempotencyKey);
-                    CachedResponse response = parseCachedResponse(cachedResponse);
-                    requestContext.abortWith(
-                        Response.status(response.status)
-                            .entity(response.body)
-                            .header("X-Idempotency-Replayed", "true")
-                            .build()
-                    );
-                } else {
-                    // Store request context for later caching
-                    requestContext.setProperty("idempotency-key", idempotencyKey);
-                    requestContext.setProperty("idempotency-redis-key", redisKey);
-                    Log.debugf("Idempotency key registered: %s", idempotencyKey);
+        // Duplicates on this node wait for the in-flight request instead of touching Redis
+        InFlight leader = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight existing = inFlight.putIfAbsent(redisKey, leader);
+        if (existing != null) {
+            Log.debugf("Coalescing duplicate request for idempotency key: %s", idempotencyKey);
+            if (!existing.fingerprint().equals(fingerprint)) {
+                return Uni.createFrom().item(payloadMismatchResponse());
+            }
+            return Uni.createFrom().completionStage(existing.result())
+                .ifNoItem().after(config.idempotency().waitTimeout()).fail()
+                .map(cached -> respond(cached, fingerprint, idempotencyKey))
+                .onFailure().recoverWithItem(t -> inProgressResponse());
+        }
+
+        return claim(redisKey, fingerprint)
+            .flatMap(claimed -> {
+                if (claimed) {
+                    // Response filter stores the result; the end handler releases local waiters
+                    lead(requestContext, routingContext, redisKey, leader);
+                    Log.debugf("Idempotency key claimed: %s", idempotencyKey);
+                    return Uni.createFrom().<Response>nullItem();
                 }
-            }, failure -> {
-                // Redis error, allow request to proceed (fail-open)
-                Log.warnf(failure, "Failed to check idempotency key in Redis, allowing request");
+                return awaitStoredResponse(redisKey, fingerprint)
+                    .invoke(leader.result()::complete)
+                    .map(cached -> respond(cached, fingerprint, idempotencyKey))
+                    .onTermination().invoke(() -> inFlight.remove(redisKey, leader))
+                    .onFailure().recoverWithItem(t -> {
+                        leader.result().completeExceptionally(t);
+                        return t instanceof PayloadMismatchException ? payloadMismatchResponse() : inProgressResponse();
+                    });
+            })
+            .onFailure().recoverWithItem(failure -> {
+                // Redis error, allow request to proceed (fail-open); still coalesce locally
+                Log.warnf(failure, "Failed to claim idempotency key in Redis, allowing request");
+                lead(requestContext, routingContext, redisKey, leader);
+                return null;
             });
     }
 
     /**
-     * Store response for idempotency.
-     * This should be called from the response filter.
+     * Store the response of a request that claimed its idempotency key and hand it to
+     * any duplicates waiting on this node.
      */
-    public void storeResponse(String idempotencyKey, int status, Object body) {
-        if (!config.idempotency().enabled()) {
+    @ServerResponseFilter
+    public void storeResponse(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        String redisKey = (String) requestContext.getProperty(REDIS_KEY_PROPERTY);
+        InFlight leader = (InFlight) requestContext.getProperty(LEADER_PROPERTY);
+        if (redisKey == null || leader == null) {
             return;
         }
 
-        String redisKey = IDEMPOTENCY_PREFIX + idempotencyKey;
-        CachedResponse response = new CachedResponse(status, body != null ? body.toString() : null);
+        CachedResponse response = CachedResponse.from(leader.fingerprint(), responseContext, this::entityBytes);
+        inFlight.remove(redisKey, leader);
+        leader.result().complete(response);
 
-        // Store in Redis with TTL
-        String responseJson = toJson(response);
-        long ttlSeconds = config.idempotency().ttl().toSeconds();
+        int status = response.status();
+        if (status >= 500 || status == 429 || status == 408) {
+            // Transient failure: release the key so a later retry executes again
+            keyCommands.del(redisKey)
+                .subscribe()
+                .with(unused -> {}, failure -> Log.warnf(failure, "Failed to release idempotency key: %s", redisKey));
+            return;
+        }
 
-        valueCommands.setex(redisKey, ttlSeconds, responseJson)
+        valueCommands.psetex(redisKey, config.idempotency().ttl().toMillis(), response.encode())
             .subscribe()
             .with(
-                unused -> Log.debugf("Stored idempotent response for key: %s", idempotencyKey),
-                failure -> Log.warnf(failure, "Failed to store idempotent response for key: %s", idempotencyKey)
+                unused -> Log.debugf("Stored idempotent response for key: %s", redisKey),
+                failure -> Log.warnf(failure, "Failed to store idempotent response for key: %s", redisKey)
             );
     }
 
-    private CachedResponse parseCachedResponse(String json) {
-        // Simple JSON parsing
-        String[] parts = json.split("\",\"", 3);
-        int status = Integer.parseInt(parts[0].replace("{\"status\":", "").replace(",", ""));
-        String body = parts.length > 1 ? parts[1].replace("\"body\":\"", "") : null;
-        return new CachedResponse(status, body);
+    /**
+     * Make this request the one that executes for its key, and make sure its duplicates are
+     * released when it ends, also when it fails or the client goes away before a response.
+     */
+    private void lead(ContainerRequestContext requestContext, RoutingContext routingContext,
+                      String redisKey, InFlight leader) {
+        requestContext.setProperty(REDIS_KEY_PROPERTY, redisKey);
+        requestContext.setProperty(LEADER_PROPERTY, leader);
+        routingContext.addEndHandler(ended -> release(redisKey, leader));
+    }
+
+    /**
+     * Drop the in-process entry of a leading request. If no response was stored for it,
+     * fail its local waiters and give up the claim in Redis so a retry can execute.
+     */
+    void release(String redisKey, InFlight leader) {
+        inFlight.remove(redisKey, leader);
+        if (!leader.result().completeExceptionally(
+                new IllegalStateException("Idempotent request ended without a response"))) {
+            return;
+        }
+        redisDataSource.execute("EVAL", RELEASE_SCRIPT, "1", redisKey, PENDING_MARKER + leader.fingerprint())
+            .subscribe()
+            .with(unused -> {}, failure -> Log.warnf(failure, "Failed to release idempotency key: %s", redisKey));
+    }
+
+    /**
+     * Redis key for an idempotency key, scoped by tenant, principal, method and path and
+     * digested so client-chosen keys never appear in Redis verbatim.
+     */
+    String redisKey(ContainerRequestContext requestContext, String method, String path, String idempotencyKey) {
+        String tenant = requestContext.getHeaderString(TenantFilter.TENANT_ID_HEADER);
+        String scope = (tenant != null && !tenant.isBlank() ? tenant : TenantFilter.DEFAULT_TENANT_ID)
+            + '\n' + principal(requestContext)
+            + '\n' + method
+            + '\n' + path
+            + '\n' + idempotencyKey;
+        return IDEMPOTENCY_PREFIX + HexFormat.of().formatHex(sha256(scope.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * The authenticated principal, or else the credential the caller presented; never a
+     * client-asserted identity header.
+     */
+    private String principal(ContainerRequestContext requestContext) {
+        SecurityContext security = requestContext.getSecurityContext();
+        if (security != null && security.getUserPrincipal() != null) {
+            return "user:" + security.getUserPrincipal().getName();
+        }
+        String apiKey = requestContext.getHeaderString(config.apiKeys().headerName());
+        if (apiKey != null && !apiKey.isBlank()) {
+            return "api-key:" + apiKey;
+        }
+        String authorization = requestContext.getHeaderString(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && !authorization.isBlank()) {
+            return "authorization:" + authorization;
+        }
+        return "anonymous";
+    }
+
+    /**
+     * SHA-256 of the request body. The body has already been read by the time this filter
+     * runs; the stream is replaced so the resource still sees it.
+     */
+    private static String fingerprint(ContainerRequestContext requestContext) {
+        byte[] body;
+        try (InputStream in = requestContext.getEntityStream()) {
+            body = in != null ? in.readAllBytes() : new byte[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        requestContext.setEntityStream(new ByteArrayInputStream(body));
+        return HexFormat.of().formatHex(sha256(body));
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private Uni<Boolean> claim(String redisKey, String fingerprint) {
+        return redisDataSource.execute("SET", redisKey, PENDING_MARKER + fingerprint, "NX", "PX",
+                String.valueOf(config.idempotency().lockTimeout().toMillis()))
+            .map(reply -> reply != null && "OK".equals(reply.toString()));
     }
 
-    private String toJson(CachedResponse response) {
-        return String.format("{\"status\":%d,\"body\":\"%s\"}", response.status, response.body);
+    /**
+     * Wait until the request holding the key (possibly on another node) stores its response.
+     * Fails straight away if that request was made with a different body.
+     */
+    private Uni<CachedResponse> awaitStoredResponse(String redisKey, String fingerprint) {
+        byte[] pendingForBody = (PENDING_MARKER + fingerprint).getBytes(StandardCharsets.UTF_8);
+        return valueCommands.get(redisKey)
+            .flatMap(value -> {
+                if (value == null) {
+                    return Uni.createFrom().<CachedResponse>failure(
+                        new IllegalStateException("Idempotency key released without a stored response"));
+                }
+                if (Arrays.equals(value, pendingForBody)) {
+                    return Uni.createFrom().<CachedResponse>failure(new PendingException());
+                }
+                if (startsWith(value, PENDING_BYTES)) {
+                    return Uni.createFrom().<CachedResponse>failure(new PayloadMismatchException());
+                }
+                return Uni.createFrom().item(CachedResponse.decode(value));
+            })
+            .onFailure(PendingException.class).retry()
+                .withBackOff(Duration.ofMillis(20), Duration.ofMillis(250))
+                .expireIn(config.idempotency().waitTimeout().toMillis());
     }
 
-    private static class CachedResponse {
-        private final int status;
-        private final String body;
+    private static boolean startsWith(byte[] value, byte[] prefix) {
+        return value.length >= prefix.length
+            && Arrays.equals(value, 0, prefix.length, prefix, 0, prefix.length);
+    }
 
-        public CachedResponse(int status, String body) {
-            this.status = status;
-            this.body = body;
+    private Response respond(CachedResponse cached, String fingerprint, String idempotencyKey) {
+        return cached.fingerprint().equals(fingerprint)
+            ? replay(cached, idempotencyKey)
+            : payloadMismatchResponse();
+    }
+
+    private Response replay(CachedResponse cached, String idempotencyKey) {
+        Log.infof("Returning cached response for idempotency key: %s", idempotencyKey);
+        Response.ResponseBuilder builder = Response.status(cached.status());
+        for (Map.Entry<String, String> header : cached.headers()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (cached.body().length > 0) {
+            builder.entity(cached.body());
         }
+        return builder.header("X-Idempotency-Replayed", "true").build();
+    }
+
+    private Response payloadMismatchResponse() {
+        return Response.status(422)
+            .entity(Map.of(
+                "error", "IDEMPOTENCY_KEY_REUSED",
+                "message", "This idempotency key was already used with a different request body"
+            ))
+            .build();
+    }
 
-        public int getStatus() {
-            return status;
+    private Response inProgressResponse() {
+        return Response.status(Response.Status.CONFLICT)
+            .entity(Map.of(
+                "error", "IDEMPOTENCY_KEY_IN_PROGRESS",
+                "message", "A request with this idempotency key is still being processed"
+            ))
+            .build();
+    }
+
+    private byte[] entityBytes(Object entity) {
+        if (entity == null) {
+            return new byte[0];
+        }
+        if (entity instanceof byte[] bytes) {
+            return bytes;
         }
+        if (entity instanceof String text) {
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return objectMapper.writeValueAsBytes(entity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        public String getBody() {
-            return body;
+    private static final class PendingException extends RuntimeException {
+        PendingException() {
+            super("Idempotent request still in progress", null, false, false);
+        }
+    }
+
+    private static final class PayloadMismatchException extends RuntimeException {
+        PayloadMismatchException() {
+            super("Idempotency key in use with a different request body", null, false, false);
+        }
+    }
+
+    /**
+     * A request executing on this node for a key, with the fingerprint of its body.
+     */
+    record InFlight(String fingerprint, CompletableFuture<CachedResponse> result) {
+    }
+
+    /**
+     * Request fingerprint, status, headers and body of a stored response, in a compact
+     * binary form: version, fingerprint, status, header count, headers as (name, value)
+     * pairs, body length, body.
+     */
+    record CachedResponse(String fingerprint, int status, List<Map.Entry<String, String>> headers, byte[] body) {
+
+        private static final byte VERSION = 2;
+
+        static CachedResponse from(String fingerprint, ContainerResponseContext responseContext,
+                                   Function<Object, byte[]> bodyEncoder) {
+            List<Map.Entry<String, String>> headers = new ArrayList<>();
+            responseContext.getStringHeaders().forEach((name, values) -> {
+                if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> headers.add(Map.entry(name, value)));
+                }
+            });
+            return new CachedResponse(fingerprint, responseContext.getStatus(), headers,
+                bodyEncoder.apply(responseContext.getEntity()));
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 128);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(VERSION);
+                out.writeUTF(fingerprint);
+                out.writeShort(status);
+                out.writeShort(headers.size());
+                for (Map.Entry<String, String> header : headers) {
+                    out.writeUTF(header.getKey());
+                    out.writeUTF(header.getValue());
+                }
+                out.writeInt(body.length);
+                out.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static CachedResponse decode(byte[] encoded) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+                byte version = in.readByte();
+                if (version != VERSION) {
+                    throw new IllegalStateException("Unsupported cached response version: " + version);
+                }
+                String fingerprint = in.readUTF();
+                int status = in.readUnsignedShort();
+                int headerCount = in.readUnsignedShort();
+                List<Map.Entry<String, String>> headers = new ArrayList<>(headerCount);
+                for (int i = 0; i < headerCount; i++) {
+                    headers.add(Map.entry(in.readUTF(), in.readUTF()));
+                }
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                return new CachedResponse(fingerprint, status, headers, body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 }
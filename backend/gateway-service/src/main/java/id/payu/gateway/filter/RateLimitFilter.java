@@ -1,11 +1,8 @@
 package id.payu.gateway.filter;
 
 import id.payu.gateway.config.GatewayConfig;
+import id.payu.gateway.service.ClusterRateLimiter;
 import io.quarkus.logging.Log;
-import io.quarkus.redis.datasource.ReactiveRedisDataSource;
-import io.quarkus.redis.datasource.value.ReactiveValueCommands;
-import io.smallrye.mutiny.Uni;
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
@@ -17,7 +14,7 @@ import java.util.Map;
 
 /**
  * Rate limiting filter using Redis for distributed rate limiting.
- * Implements sliding window algorithm.
+ * Tokens are leased from a shared Redis bucket so most requests are decided locally.
  */
 @Provider
 @ApplicationScoped
@@ -57,14 +54,7 @@ public class RateLimitFilter implements ContainerRequestFilter {
     GatewayConfig config;
 
     @Inject
-    ReactiveRedisDataSource redisDataSource;
-
-    private ReactiveValueCommands<String, Long> valueCommands;
-
-    @PostConstruct
-    void init() {
-        this.valueCommands = redisDataSource.value(Long.class);
-    }
+    ClusterRateLimiter rateLimiter;
 
     @Override
     public void filter(ContainerRequestContext requestContext) {
@@ -87,7 +77,7 @@ public class RateLimitFilter implements ContainerRequestFilter {
         String clientId = getClientId(requestContext);
         String key = RATE_LIMIT_PREFIX + category + ":" + clientId;
 
-        // Check rate limit (blocking for simplicity, should be reactive in production)
+        // Check rate limit (only blocks when this node's lease has to be refilled)
         try {
             RateLimitResult result = checkRateLimit(key, rule);
             
@@ -141,23 +131,20 @@ public class RateLimitFilter implements ContainerRequestFilter {
     }
 
     private RateLimitResult checkRateLimit(String key, GatewayConfig.RateLimitRule rule) {
-        // Sliding window rate limiting using Redis
-        Long currentCount = valueCommands.get(key).await().atMost(Duration.ofSeconds(1));
-        
-        if (currentCount == null) {
-            // First request, set counter with TTL
-            valueCommands.setex(key, 60, 1L).await().atMost(Duration.ofSeconds(1));
-            return new RateLimitResult(1, false);
-        }
-
-        // Check if limit exceeded
-        if (currentCount >= rule.requestsPerMinute()) {
-            return new RateLimitResult(currentCount, true);
-        }
+        // Token bucket sized by burst and refilled at requests-per-minute, shared by all nodes
+        boolean allowed = rateLimiter.tryAcquire(key, new RuleBucket(
+            Math.max(rule.burst(), rule.requestsPerMinute()), rule.requestsPerMinute(), Duration.ofMinutes(1)));
+        // Cluster-wide estimate, not just this node's lease
+        long remaining = rateLimiter.remaining(key);
+        // Leases can over-grant the estimate, so the used count never goes below zero
+        return new RateLimitResult(Math.max(0, rule.requestsPerMinute() - remaining), !allowed);
+    }
 
-        // Increment counter with TTL to ensure it expires
-        valueCommands.incr(key).await().atMost(Duration.ofSeconds(1));
-        return new RateLimitResult(currentCount + 1, false);
+    /**
+     * Adapts a per-minute rule to the token bucket shape used by {@link ClusterRateLimiter}.
+     */
+    private record RuleBucket(int capacity, int refillTokens, Duration refillDuration)
+            implements GatewayConfig.TokenBucketConfig {
     }
 
     private static class RateLimitResult {
@@ -1,5 +1,7 @@
 package id.payu.gateway.filter;
 
+import id.payu.gateway.config.GatewayConfig;
+import id.payu.gateway.service.ClusterRateLimiter;
 import io.quarkus.logging.Log;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -8,51 +10,67 @@ import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerRequestFilter;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.Provider;
-import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Simplified rate limiting filter using local token bucket algorithm.
- * This is a simplified version that doesn't require external bucket4j library.
+ * Rate limiting filter using token buckets enforced across the gateway cluster.
+ * Tokens are leased in batches from Redis by {@link ClusterRateLimiter}, which falls
+ * back to local lock-free buckets when Redis is unavailable; this is a simplified
+ * version that doesn't require external bucket4j library.
  */
 @Provider
 @ApplicationScoped
 public class RateLimitV2Filter implements ContainerRequestFilter {
 
-    private static final String RATE_LIMIT_PREFIX = "ratelimit:v2:";
+    private static final String API_PREFIX = "/api/v1/";
+    private static final String DEFAULT_CATEGORY = "default";
+
+    /**
+     * First path segment after {@value #API_PREFIX} to rate limit category.
+     */
     private static final Map<String, String> ENDPOINT_CATEGORIES;
 
     static {
-        Map<String, String> map = new java.util.HashMap<>();
-        map.put("/api/v1/auth", "auth");
-        map.put("/api/v1/otp", "otp");
-        map.put("/api/v1/transfer", "transfer");
-        map.put("/api/v1/balance", "balance");
-        map.put("/api/v1/accounts", "accounts");
-        map.put("/api/v1/wallets", "wallets");
-        map.put("/api/v1/cards", "cards");
-        map.put("/api/v1/transactions", "transactions");
-        map.put("/api/v1/payments", "payments");
-        map.put("/api/v1/billers", "billers");
-        map.put("/api/v1/partners", "partners");
-        map.put("/api/v1/promotions", "promotions");
-        map.put("/api/v1/lending", "lending");
-        map.put("/api/v1/investments", "investments");
-        map.put("/api/v1/compliance", "compliance");
-        map.put("/api/v1/backoffice", "backoffice");
-        map.put("/api/v1/support", "support");
-        map.put("/api/v1/notifications", "notifications");
+        Map<String, String> map = new HashMap<>();
+        map.put("auth", "auth");
+        map.put("otp", "otp");
+        map.put("transfer", "transfer");
+        map.put("balance", "balance");
+        map.put("accounts", "accounts");
+        map.put("wallets", "wallets");
+        map.put("cards", "cards");
+        map.put("transactions", "transactions");
+        map.put("payments", "payments");
+        map.put("billers", "billers");
+        map.put("partners", "partners");
+        map.put("promotions", "promotions");
+        map.put("lending", "lending");
+        map.put("investments", "investments");
+        map.put("compliance", "compliance");
+        map.put("backoffice", "backoffice");
+        map.put("support", "support");
+        map.put("notifications", "notifications");
         ENDPOINT_CATEGORIES = Map.copyOf(map);
     }
 
     @Inject
-    id.payu.gateway.config.GatewayConfig config;
+    GatewayConfig config;
 
-    private final Map<String, TokenBucket> buckets = new java.util.concurrent.ConcurrentHashMap<>();
+    @Inject
+    ClusterRateLimiter rateLimiter;
+
+    private final Map<String, GatewayConfig.TokenBucketConfig> categoryRules = new HashMap<>();
 
     @PostConstruct
     void init() {
-        Log.infof("Rate limiting v2 initialized (enabled: %s)", config.rateLimitV2().enabled());
+        // Resolve every category's rule once instead of per request
+        GatewayConfig.RateLimitV2Config rateLimit = config.rateLimitV2();
+        for (String category : ENDPOINT_CATEGORIES.values()) {
+            categoryRules.put(category, rateLimit.endpoints().getOrDefault(category, rateLimit.defaultRule()));
+        }
+        categoryRules.put(DEFAULT_CATEGORY, rateLimit.defaultRule());
+        Log.infof("Rate limiting v2 initialized (enabled: %s)", rateLimit.enabled());
     }
 
     @Override
@@ -74,59 +92,61 @@ public class RateLimitV2Filter implements ContainerRequestFilter {
 
         // Check per-user rate limit
         if (config.rateLimitV2().perUser().isPresent() && userId != null) {
-            String userKey = "user:" + userId;
-            if (!consumeToken(userKey, config.rateLimitV2().perUser().get())) {
-                requestContext.abortWith(createRateLimitResponse("USER_RATE_LIMIT_EXCEEDED"));
+            GatewayConfig.TokenBucketConfig rule = config.rateLimitV2().perUser().get();
+            if (!rateLimiter.tryAcquire("user:" + userId, rule)) {
+                requestContext.abortWith(createRateLimitResponse("USER_RATE_LIMIT_EXCEEDED", rule));
                 return;
             }
         }
 
         // Check per-IP rate limit
         if (config.rateLimitV2().perIp().isPresent()) {
-            String ipKey = "ip:" + clientIp;
-            if (!consumeToken(ipKey, config.rateLimitV2().perIp().get())) {
-                requestContext.abortWith(createRateLimitResponse("IP_RATE_LIMIT_EXCEEDED"));
+            GatewayConfig.TokenBucketConfig rule = config.rateLimitV2().perIp().get();
+            if (!rateLimiter.tryAcquire("ip:" + clientIp, rule)) {
+                requestContext.abortWith(createRateLimitResponse("IP_RATE_LIMIT_EXCEEDED", rule));
                 return;
             }
         }
 
         // Check endpoint-specific rate limit
         String category = determineCategory(path);
-        id.payu.gateway.config.GatewayConfig.TokenBucketConfig endpointConfig = config.rateLimitV2().endpoints()
-            .getOrDefault(category, config.rateLimitV2().defaultRule());
+        GatewayConfig.TokenBucketConfig endpointConfig = categoryRules.get(category);
 
         String endpointKey = "endpoint:" + category + ":" + userId + ":" + clientIp;
-        if (!consumeToken(endpointKey, endpointConfig)) {
-            requestContext.abortWith(createRateLimitResponse("ENDPOINT_RATE_LIMIT_EXCEEDED"));
+        if (!rateLimiter.tryAcquire(endpointKey, endpointConfig)) {
+            requestContext.abortWith(createRateLimitResponse("ENDPOINT_RATE_LIMIT_EXCEEDED", endpointConfig));
         }
     }
 
-    private boolean consumeToken(String key, id.payu.gateway.config.GatewayConfig.TokenBucketConfig config) {
-        TokenBucket bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(config));
-        return bucket.tryConsume();
-    }
-
-    private Response createRateLimitResponse(String error) {
+    private Response createRateLimitResponse(String error, GatewayConfig.TokenBucketConfig rule) {
+        // One token is due every refill-duration / refill-tokens
+        long millisPerToken = rule.refillDuration().toMillis() / Math.max(1, rule.refillTokens());
+        long retryAfterSeconds = Math.max(1, (millisPerToken + 999) / 1000);
         return Response.status(429)
-            .header("Retry-After", "60")
-            .header("X-RateLimit-Limit", "100")
+            .header("Retry-After", String.valueOf(retryAfterSeconds))
+            .header("X-RateLimit-Limit", String.valueOf(rule.capacity()))
             .header("X-RateLimit-Remaining", "0")
-            .header("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() + 60000))
+            .header("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() + retryAfterSeconds * 1000))
             .entity(Map.of(
                 "error", error,
                 "message", "Rate limit exceeded. Please try again later.",
-                "retryAfter", 60
+                "retryAfter", retryAfterSeconds
             ))
             .build();
     }
 
-    private String determineCategory(String path) {
-        for (Map.Entry<String, String> entry : ENDPOINT_CATEGORIES.entrySet()) {
-            if (path.startsWith(entry.getKey())) {
-                return entry.getValue();
-            }
+    /**
+     * Resolve the category from the first segment after {@value #API_PREFIX} with a
+     * single map lookup.
+     */
+    static String determineCategory(String path) {
+        if (!path.startsWith(API_PREFIX)) {
+            return DEFAULT_CATEGORY;
         }
-        return "default";
+        int start = API_PREFIX.length();
+        int end = path.indexOf('/', start);
+        String segment = end < 0 ? path.substring(start) : path.substring(start, end);
+        return ENDPOINT_CATEGORIES.getOrDefault(segment, DEFAULT_CATEGORY);
     }
 
     private String getUserId(ContainerRequestContext requestContext) {
@@ -139,7 +159,8 @@ public class RateLimitV2Filter implements ContainerRequestFilter {
         // Check X-Forwarded-For header
         String forwarded = requestContext.getHeaderString("X-Forwarded-For");
         if (forwarded != null && !forwarded.isBlank()) {
-            return forwarded.split(",")[0].trim();
+            int comma = forwarded.indexOf(',');
+            return (comma < 0 ? forwarded : forwarded.substring(0, comma)).trim();
         }
 
         // Check X-Real-IP header
@@ -151,43 +172,4 @@ public class RateLimitV2Filter implements ContainerRequestFilter {
         // Return unknown (should not happen in production)
         return "unknown";
     }
-
-    /**
-     * Simple token bucket implementation.
-     */
-    private static class TokenBucket {
-        private final int capacity;
-        private final int refillTokens;
-        private final long refillDurationMillis;
-        private long tokens;
-        private long lastRefillTimestamp;
-
-        public TokenBucket(id.payu.gateway.config.GatewayConfig.TokenBucketConfig config) {
-            this.capacity = config.capacity();
-            this.refillTokens = config.refillTokens();
-            this.refillDurationMillis = config.refillDuration().toMillis();
-            this.tokens = capacity;
-            this.lastRefillTimestamp = System.currentTimeMillis();
-        }
-
-        public synchronized boolean tryConsume() {
-            refill();
-            if (tokens > 0) {
-                tokens--;
-                return true;
-            }
-            return false;
-        }
-
-        private void refill() {
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastRefillTimestamp;
-
-            if (elapsed >= refillDurationMillis) {
-                long refillCount = elapsed / refillDurationMillis;
-                tokens = Math.min(capacity, tokens + refillTokens * refillCount);
-                lastRefillTimestamp = now;
-            }
-        }
-    }
 }
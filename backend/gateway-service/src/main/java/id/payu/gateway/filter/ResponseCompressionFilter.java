@@ -1,115 +1,88 @@
 package id.payu.gateway.filter;
 
-import id.payu.gateway.config.GatewayConfig;
+import id.payu.gateway.service.ResponseCompressionService;
 import io.quarkus.logging.Log;
-import jakarta.annotation.Priority;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.Context;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Priorities;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.container.ContainerResponseContext;
-import jakarta.ws.rs.container.ContainerResponseFilter;
 import jakarta.ws.rs.core.HttpHeaders;
-import jakarta.ws.rs.ext.Provider;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.Set;
-import java.util.zip.GZIPOutputStream;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 
 /**
- * Filter to compress response bodies using gzip.
- * Checks client's Accept-Encoding header and compresses if supported.
+ * Filter to compress buffered response bodies.
+ * Negotiates Brotli, zstd or gzip from the client's Accept-Encoding header.
+ * Streamed proxy responses are encoded chunk by chunk in the proxy resource and
+ * already carry a Content-Encoding by the time they reach this filter.
+ * Bodies above the offload threshold are compressed on the worker pool when the
+ * filter runs on the event loop.
  */
-@Provider
 @ApplicationScoped
-@Priority(Priorities.ENTITY_CODER)
-public class ResponseCompressionFilter implements ContainerResponseFilter {
-
-    private static final String GZIP = "gzip";
-    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
-        "application/json",
-        "application/xml",
-        "text/html",
-        "text/plain",
-        "text/css",
-        "text/javascript",
-        "application/javascript"
-    );
+public class ResponseCompressionFilter {
 
     @Inject
-    GatewayConfig config;
+    ResponseCompressionService compression;
 
-    @Override
-    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
-        if (!config.compression().enabled()) {
-            return;
+    @ServerResponseFilter(priority = Priorities.ENTITY_CODER)
+    public Uni<Void> filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object entity = responseContext.getEntity();
+        if (!(entity instanceof String) && !(entity instanceof byte[])) {
+            // For other types, skip compression
+            return Uni.createFrom().voidItem();
         }
 
-        // Skip if response already has encoding
-        if (responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
-            return;
-        }
+        byte[] responseBytes = entity instanceof String text
+            ? text.getBytes(StandardCharsets.UTF_8)
+            : (byte[]) entity;
 
-        // Check if client accepts gzip
-        String acceptEncoding = requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
-        if (acceptEncoding == null || !acceptEncoding.contains(GZIP)) {
-            return;
-        }
-
-        // Check content type
         String contentType = responseContext.getMediaType() != null ? responseContext.getMediaType().toString() : "";
-        if (!isCompressibleType(contentType)) {
-            return;
-        }
-
-        // Check response size
-        Object entity = responseContext.getEntity();
-        if (entity == null) {
-            return;
+        Optional<ResponseCompressionService.StreamEncoder> encoder = compression.open(
+            requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING),
+            contentType,
+            responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING),
+            responseBytes.length);
+        if (encoder.isEmpty()) {
+            return Uni.createFrom().voidItem();
         }
 
-        byte[] responseBytes;
-        if (entity instanceof String) {
-            responseBytes = ((String) entity).getBytes();
-        } else if (entity instanceof byte[]) {
-            responseBytes = (byte[]) entity;
-        } else {
-            // For other types, skip compression
-            return;
-        }
-
-        // Only compress if size exceeds minimum threshold
-        if (responseBytes.length < config.compression().minSize()) {
-            return;
+        if (encoder.get().offload() && Context.isOnEventLoopThread()) {
+            return Uni.createFrom().item(() -> compress(responseContext, encoder.get(), responseBytes))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .replaceWithVoid();
         }
+        compress(responseContext, encoder.get(), responseBytes);
+        return Uni.createFrom().voidItem();
+    }
 
-        // Compress response
-        try (ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-             GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream)) {
-
-            gzipStream.write(responseBytes);
-            gzipStream.finish();
-
-            byte[] compressedBytes = byteStream.toByteArray();
+    private boolean compress(ContainerResponseContext responseContext,
+                             ResponseCompressionService.StreamEncoder encoder, byte[] responseBytes) {
+        String encoding = encoder.encoding().token();
+        try {
+            byte[] compressedBytes = compression.compress(encoder, responseBytes);
 
             // Only use compressed version if it's actually smaller
             if (compressedBytes.length < responseBytes.length) {
                 responseContext.setEntity(compressedBytes);
-                responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+                responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
                 responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_LENGTH, compressedBytes.length);
-
-                double reduction = (1 - (double) compressedBytes.length / responseBytes.length) * 100;
-                Log.debug(String.format("Compressed response: %d -> %d bytes (%.1f%% reduction)",
-                    responseBytes.length, compressedBytes.length, reduction));
+                responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+                if (Log.isDebugEnabled()) {
+                    double reduction = (1 - (double) compressedBytes.length / responseBytes.length) * 100;
+                    Log.debugf("Compressed response (%s): %d -> %d bytes (%.1f%% reduction)",
+                        encoding, responseBytes.length, compressedBytes.length, reduction);
+                }
+                return true;
             }
         } catch (Exception e) {
             Log.warnf(e, "Compression failed, sending uncompressed response");
         }
-    }
-
-    private boolean isCompressibleType(String contentType) {
-        return COMPRESSIBLE_TYPES.stream()
-            .anyMatch(contentType::startsWith);
+        return false;
     }
 }
@@ -2,13 +2,17 @@ package id.payu.gateway.resource;
 
 import id.payu.gateway.config.GatewayConfig;
 import id.payu.gateway.filter.TenantFilter;
+import id.payu.gateway.service.ResponseCompressionService;
+import id.payu.gateway.service.UpstreamClientRegistry;
 import io.quarkus.logging.Log;
 import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
-import io.vertx.mutiny.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.mutiny.core.MultiMap;
 import io.vertx.mutiny.core.buffer.Buffer;
-import io.vertx.mutiny.ext.web.client.HttpResponse;
-import io.vertx.mutiny.ext.web.client.WebClient;
+import io.vertx.mutiny.core.http.HttpClientRequest;
+import io.vertx.mutiny.core.http.HttpClientResponse;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -20,9 +24,15 @@ import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
+import org.jboss.resteasy.reactive.RestMulti;
 
-import java.net.URI;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Path("/api/v1")
 @Produces(MediaType.APPLICATION_JSON)
@@ -32,16 +42,21 @@ import java.time.temporal.ChronoUnit;
 public class ApiGatewayResource {
 
     @Inject
-    GatewayConfig config;
+    UpstreamClientRegistry upstreams;
+
+    @Inject
+    ResponseCompressionService compression;
 
     @Inject
-    Vertx vertx;
+    GatewayConfig config;
 
-    private WebClient webClient;
+    private List<Pattern> bufferedPaths;
 
     @PostConstruct
     void init() {
-        this.webClient = WebClient.create(vertx);
+        bufferedPaths = config.streaming().bufferedPaths().stream()
+            .map(path -> Pattern.compile(path.replace("*", ".*")))
+            .toList();
     }
 
     // ==================== Account Service ====================
@@ -50,8 +65,9 @@ public class ApiGatewayResource {
         return proxy("account-service", "/api/v1/accounts/" + path, "POST", body, headers);
     }
     @GET @Path("/accounts/{path: .*}")
-    public Uni<Response> accountGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("account-service", "/api/v1/accounts/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> accountGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("account-service", "/api/v1/accounts/" + path, "GET", request, headers);
     }
     @PUT @Path("/accounts/{path: .*}")
     public Uni<Response> accountPut(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -67,14 +83,16 @@ public class ApiGatewayResource {
         return proxy("account-service", "/api/v1/accounts", "POST", body, headers);
     }
     @GET @Path("/accounts")
-    public Uni<Response> accountRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("account-service", "/api/v1/accounts", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> accountRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("account-service", "/api/v1/accounts", "GET", request, headers);
     }
 
     // ==================== Wallet Service ====================
     @GET @Path("/wallets/{path: .*}")
-    public Uni<Response> walletGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("wallet-service", "/api/v1/wallets/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> walletGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("wallet-service", "/api/v1/wallets/" + path, "GET", request, headers);
     }
     @POST @Path("/wallets/{path: .*}")
     public Uni<Response> walletPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -89,8 +107,9 @@ public class ApiGatewayResource {
 
     // ==================== Transaction Service ====================
     @GET @Path("/transactions/{path: .*}")
-    public Uni<Response> transactionGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("transaction-service", "/api/v1/transactions/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> transactionGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("transaction-service", "/api/v1/transactions/" + path, "GET", request, headers);
     }
     @POST @Path("/transactions/{path: .*}")
     public Uni<Response> transactionPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -98,8 +117,9 @@ public class ApiGatewayResource {
     }
 
     @GET @Path("/transactions")
-    public Uni<Response> transactionRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("transaction-service", "/api/v1/transactions", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> transactionRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("transaction-service", "/api/v1/transactions", "GET", request, headers);
     }
     @POST @Path("/transactions")
     public Uni<Response> transactionRootPost(String body, @Context HttpHeaders headers) {
@@ -108,17 +128,20 @@ public class ApiGatewayResource {
 
     // ==================== Billing Service ====================
     @GET @Path("/billers/{path: .*}")
-    public Uni<Response> billerGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("billing-service", "/api/v1/billers/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> billerGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("billing-service", "/api/v1/billers/" + path, "GET", request, headers);
     }
     @GET @Path("/billers")
-    public Uni<Response> billerRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("billing-service", "/api/v1/billers", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> billerRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("billing-service", "/api/v1/billers", "GET", request, headers);
     }
 
     @GET @Path("/payments/{path: .*}")
-    public Uni<Response> paymentGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("billing-service", "/api/v1/payments/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> paymentGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("billing-service", "/api/v1/payments/" + path, "GET", request, headers);
     }
     @POST @Path("/payments/{path: .*}")
     public Uni<Response> paymentPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -131,8 +154,9 @@ public class ApiGatewayResource {
 
     // ==================== Notification Service ====================
     @GET @Path("/notifications/{path: .*}")
-    public Uni<Response> notificationGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("notification-service", "/api/v1/notifications/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> notificationGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("notification-service", "/api/v1/notifications/" + path, "GET", request, headers);
     }
     @POST @Path("/notifications/{path: .*}")
     public Uni<Response> notificationPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -141,8 +165,9 @@ public class ApiGatewayResource {
 
     // ==================== Card Service ====================
     @GET @Path("/cards/{path: .*}")
-    public Uni<Response> cardGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("wallet-service", "/api/v1/cards/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> cardGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("wallet-service", "/api/v1/cards/" + path, "GET", request, headers);
     }
     @POST @Path("/cards/{path: .*}")
     public Uni<Response> cardPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -154,8 +179,9 @@ public class ApiGatewayResource {
     }
 
     @GET @Path("/cards")
-    public Uni<Response> cardRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("wallet-service", "/api/v1/cards", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> cardRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("wallet-service", "/api/v1/cards", "GET", request, headers);
     }
     @POST @Path("/cards")
     public Uni<Response> cardRootPost(String body, @Context HttpHeaders headers) {
@@ -168,14 +194,16 @@ public class ApiGatewayResource {
         return proxy("auth-service", "/api/v1/auth/" + path, "POST", body, headers);
     }
     @GET @Path("/auth/{path: .*}")
-    public Uni<Response> authGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("auth-service", "/api/v1/auth/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> authGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("auth-service", "/api/v1/auth/" + path, "GET", request, headers);
     }
 
     // ==================== Partner Service ====================
     @GET @Path("/partners/{path: .*}")
-    public Uni<Response> partnerGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("partner-service", "/partners/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> partnerGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("partner-service", "/partners/" + path, "GET", request, headers);
     }
     @POST @Path("/partners/{path: .*}")
     public Uni<Response> partnerPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -191,8 +219,9 @@ public class ApiGatewayResource {
     }
 
     @GET @Path("/partners")
-    public Uni<Response> partnerRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("partner-service", "/partners", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> partnerRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("partner-service", "/partners", "GET", request, headers);
     }
     @POST @Path("/partners")
     public Uni<Response> partnerRootPost(String body, @Context HttpHeaders headers) {
@@ -204,14 +233,16 @@ public class ApiGatewayResource {
         return proxy("partner-service", "/v1/partner/" + path, "POST", body, headers);
     }
     @GET @Path("/v1/partner/{path: .*}")
-    public Uni<Response> snapPartnerGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("partner-service", "/v1/partner/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> snapPartnerGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("partner-service", "/v1/partner/" + path, "GET", request, headers);
     }
 
     // ==================== Promotion Service ====================
     @GET @Path("/promotions/{path: .*}")
-    public Uni<Response> promotionGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/promotions/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> promotionGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/promotions/" + path, "GET", request, headers);
     }
     @POST @Path("/promotions/{path: .*}")
     public Uni<Response> promotionPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -223,8 +254,9 @@ public class ApiGatewayResource {
     }
 
     @GET @Path("/promotions")
-    public Uni<Response> promotionRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/promotions", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> promotionRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/promotions", "GET", request, headers);
     }
     @POST @Path("/promotions")
     public Uni<Response> promotionRootPost(String body, @Context HttpHeaders headers) {
@@ -233,8 +265,9 @@ public class ApiGatewayResource {
 
     // Cashbacks
     @GET @Path("/cashbacks/{path: .*}")
-    public Uni<Response> cashbackGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/cashbacks/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> cashbackGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/cashbacks/" + path, "GET", request, headers);
     }
     @POST @Path("/cashbacks/{path: .*}")
     public Uni<Response> cashbackPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -248,8 +281,9 @@ public class ApiGatewayResource {
 
     // Loyalty Points
     @GET @Path("/loyalty-points/{path: .*}")
-    public Uni<Response> loyaltyPointsGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/loyalty-points/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> loyaltyPointsGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/loyalty-points/" + path, "GET", request, headers);
     }
     @POST @Path("/loyalty-points/{path: .*}")
     public Uni<Response> loyaltyPointsPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -263,14 +297,16 @@ public class ApiGatewayResource {
 
     // Rewards
     @GET @Path("/rewards/{path: .*}")
-    public Uni<Response> rewardGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/rewards/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> rewardGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/rewards/" + path, "GET", request, headers);
     }
 
     // Referrals
     @GET @Path("/referrals/{path: .*}")
-    public Uni<Response> referralGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("promotion-service", "/api/v1/referrals/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> referralGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("promotion-service", "/api/v1/referrals/" + path, "GET", request, headers);
     }
     @POST @Path("/referrals/{path: .*}")
     public Uni<Response> referralPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -284,8 +320,9 @@ public class ApiGatewayResource {
 
     // ==================== Lending Service ====================
     @GET @Path("/lending/{path: .*}")
-    public Uni<Response> lendingGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("lending-service", "/api/v1/lending/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> lendingGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("lending-service", "/api/v1/lending/" + path, "GET", request, headers);
     }
     @POST @Path("/lending/{path: .*}")
     public Uni<Response> lendingPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -294,8 +331,9 @@ public class ApiGatewayResource {
 
     // ==================== Investment Service ====================
     @GET @Path("/investments/{path: .*}")
-    public Uni<Response> investmentGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("investment-service", "/api/v1/investments/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> investmentGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("investment-service", "/api/v1/investments/" + path, "GET", request, headers);
     }
     @POST @Path("/investments/{path: .*}")
     public Uni<Response> investmentPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -304,8 +342,9 @@ public class ApiGatewayResource {
 
     // ==================== Compliance Service ====================
     @GET @Path("/compliance/{path: .*}")
-    public Uni<Response> complianceGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("compliance-service", "/api/v1/compliance/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> complianceGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("compliance-service", "/api/v1/compliance/" + path, "GET", request, headers);
     }
     @POST @Path("/compliance/{path: .*}")
     public Uni<Response> compliancePost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -314,8 +353,9 @@ public class ApiGatewayResource {
 
     // ==================== Backoffice Service ====================
     @GET @Path("/backoffice/{path: .*}")
-    public Uni<Response> backofficeGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("backoffice-service", "/api/v1/backoffice/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> backofficeGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("backoffice-service", "/api/v1/backoffice/" + path, "GET", request, headers);
     }
     @POST @Path("/backoffice/{path: .*}")
     public Uni<Response> backofficePost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -337,8 +377,9 @@ public class ApiGatewayResource {
 
     // ==================== Support Service ====================
     @GET @Path("/support/{path: .*}")
-    public Uni<Response> supportGet(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
-        return proxy("support-service", "/api/v1/support/" + path, "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> supportGet(@PathParam("path") String path, @Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("support-service", "/api/v1/support/" + path, "GET", request, headers);
     }
     @POST @Path("/support/{path: .*}")
     public Uni<Response> supportPost(@PathParam("path") String path, String body, @Context HttpHeaders headers) {
@@ -350,8 +391,9 @@ public class ApiGatewayResource {
     }
 
     @GET @Path("/support")
-    public Uni<Response> supportRootGet(String body, @Context HttpHeaders headers) {
-        return proxy("support-service", "/api/v1/support", "GET", body, headers);
+    @Produces(MediaType.WILDCARD)
+    public RestMulti<Buffer> supportRootGet(@Context HttpServerRequest request, @Context HttpHeaders headers) {
+        return proxyRead("support-service", "/api/v1/support", "GET", request, headers);
     }
     @POST @Path("/support")
     public Uni<Response> supportRootPost(String body, @Context HttpHeaders headers) {
@@ -359,69 +401,229 @@ public class ApiGatewayResource {
     }
 
     // ==================== Proxy Logic ====================
+
+    /**
+     * Buffered proxy. Materialises the request and response bodies, which is what
+     * write routes need: idempotency replay and request signing both operate on
+     * the full payload.
+     */
     private Uni<Response> proxy(String serviceName, String path, String method,
                                  String body, HttpHeaders headers) {
 
-        GatewayConfig.ServiceConfig serviceConfig = config.services().get(serviceName);
-        if (serviceConfig == null) {
+        UpstreamClientRegistry.UpstreamClient upstream = upstreams.service(serviceName);
+        if (upstream == null) {
             String errorMsg = String.format("Service %s not configured in gateway", serviceName);
             Log.error(errorMsg);
             return Uni.createFrom().item(Response.status(502).entity(errorMsg).build());
         }
 
-        String baseUrl = serviceConfig.url();
-        URI targetUri = URI.create(baseUrl);
+        Log.infof("Proxying to %s: %s %s%s", serviceName, method, upstream.baseUrl(), path);
+
+        return upstream.request(io.vertx.core.http.HttpMethod.valueOf(method), path)
+            .onItem().transformToUni(request -> {
+                forwardHeaders(request, headers, false);
+                return body != null && !body.isBlank()
+                    ? request.send(Buffer.buffer(body))
+                    : request.send();
+            })
+            .onItem().transformToUni(response -> response.body().map(responseBody -> {
+                Response.ResponseBuilder builder = Response.status(response.statusCode());
+
+                if (responseBody != null && responseBody.length() > 0) {
+                    builder.entity(responseBody.getBytes());
+                }
+
+                response.headers().forEach(entry -> {
+                    if (!isHopByHopHeader(entry.getKey())) {
+                        builder.header(entry.getKey(), entry.getValue());
+                    }
+                });
+
+                return builder.build();
+            }))
+            .ifNoItem().after(upstream.timeout()).fail()
+            .onFailure().recoverWithItem(t -> {
+                Log.errorf("Failed proxy to %s: %s", serviceName, t.getMessage());
+                return Response.status(503).entity("Service Unavailable").build();
+            });
+    }
+
+    /**
+     * Read proxy for {@code GET} routes. Routes are streamed: the inbound Vert.x request is
+     * piped into the upstream request and the upstream response back to the client chunk by
+     * chunk, with backpressure end to end, so the body is never materialised. Paths listed
+     * under {@code gateway.streaming.buffered-paths} opt out and buffer the upstream body,
+     * keeping its {@code Content-Length}, as the write routes do.
+     */
+    private RestMulti<Buffer> proxyRead(String serviceName, String path, String method,
+                                        HttpServerRequest request, HttpHeaders headers) {
+
+        UpstreamClientRegistry.UpstreamClient upstream = upstreams.service(serviceName);
+        if (upstream == null) {
+            String errorMsg = String.format("Service %s not configured in gateway", serviceName);
+            Log.error(errorMsg);
+            return toRestMulti(Uni.createFrom().item(UpstreamReply.error(502, errorMsg)));
+        }
+
+        String query = request.query();
+        String uri = query != null && !query.isEmpty() ? path + "?" + query : path;
+        boolean streaming = !isBufferedPath(request.path());
+
+        Log.infof("%s proxy to %s: %s %s%s", streaming ? "Streaming" : "Buffered",
+            serviceName, method, upstream.baseUrl(), uri);
+
+        io.vertx.mutiny.core.http.HttpServerRequest inbound =
+            io.vertx.mutiny.core.http.HttpServerRequest.newInstance(request);
+        boolean hasBody = request.headers().contains("Content-Length")
+            || request.headers().contains("Transfer-Encoding");
+
+        Uni<UpstreamReply> replyUni = upstream.request(io.vertx.core.http.HttpMethod.valueOf(method), uri)
+            .onItem().transformToUni(upstreamRequest -> {
+                // Content-Length is kept so a fixed-size body is not re-chunked
+                forwardHeaders(upstreamRequest, headers, true);
+                return hasBody ? upstreamRequest.send(inbound) : upstreamRequest.send();
+            })
+            .onItem().transformToUni(upstreamResponse -> streaming
+                ? Uni.createFrom().item(streamedReply(upstreamResponse))
+                : bufferedReply(upstreamResponse))
+            .ifNoItem().after(upstream.timeout()).fail()
+            .map(reply -> compress(reply, headers))
+            .onFailure().recoverWithItem(t -> {
+                Log.errorf("Failed proxy to %s: %s", serviceName, t.getMessage());
+                return UpstreamReply.error(503, "Service Unavailable");
+            });
+
+        return toRestMulti(replyUni);
+    }
+
+    private boolean isBufferedPath(String path) {
+        for (Pattern pattern : bufferedPaths) {
+            if (pattern.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static UpstreamReply streamedReply(HttpClientResponse upstreamResponse) {
+        // Hold the body until the client subscribes; demand resumes it
+        upstreamResponse.pause();
+        return new UpstreamReply(
+            upstreamResponse.statusCode(),
+            forwardableHeaders(upstreamResponse.headers()),
+            upstreamResponse.toMulti(),
+            upstreamResponse.headers());
+    }
+
+    private static Uni<UpstreamReply> bufferedReply(HttpClientResponse upstreamResponse) {
+        return upstreamResponse.body().map(body -> {
+            Map<String, List<String>> replyHeaders = forwardableHeaders(upstreamResponse.headers());
+            replyHeaders.put("Content-Length", List.of(String.valueOf(body.length())));
+            return new UpstreamReply(
+                upstreamResponse.statusCode(),
+                replyHeaders,
+                body.length() > 0 ? Multi.createFrom().item(body) : Multi.createFrom().empty(),
+                upstreamResponse.headers());
+        });
+    }
+
+    /**
+     * Encode the reply body on the fly when the client accepts a supported encoding and
+     * the upstream did not already encode it.
+     */
+    private UpstreamReply compress(UpstreamReply reply, HttpHeaders requestHeaders) {
+        MultiMap upstreamHeaders = reply.upstreamHeaders();
+        int status = reply.status();
+        if (status < 200 || status >= 300 || status == 204 || status == 206) {
+            return reply;
+        }
+
+        String contentLength = upstreamHeaders.get("Content-Length");
+        Optional<ResponseCompressionService.StreamEncoder> encoder = compression.open(
+            requestHeaders != null ? requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING) : null,
+            upstreamHeaders.get("Content-Type"),
+            upstreamHeaders.get("Content-Encoding"),
+            contentLength != null ? parseLength(contentLength) : -1);
+        if (encoder.isEmpty()) {
+            return reply;
+        }
 
-        Log.infof("Proxying to %s: %s %s%s", serviceName, method, baseUrl, path);
+        Map<String, List<String>> encodedHeaders = new HashMap<>(reply.headers());
+        encodedHeaders.remove("Content-Length");
+        encodedHeaders.put(HttpHeaders.CONTENT_ENCODING, List.of(encoder.get().encoding().token()));
+        encodedHeaders.merge(HttpHeaders.VARY, List.of(HttpHeaders.ACCEPT_ENCODING), (existing, added) -> {
+            List<String> merged = new ArrayList<>(existing);
+            merged.addAll(added);
+            return merged;
+        });
+        return new UpstreamReply(status, encodedHeaders, encoder.get().encodeStream(reply.body()),
+            reply.upstreamHeaders());
+    }
 
-        var request = webClient.request(
-            io.vertx.core.http.HttpMethod.valueOf(method),
-            targetUri.getPort() != -1 ? targetUri.getPort() : 80,
-            targetUri.getHost(),
-            path
-        );
+    private static long parseLength(String contentLength) {
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
-        // Forward matching headers (simple version)
+    private static void forwardHeaders(HttpClientRequest request, HttpHeaders headers, boolean keepContentLength) {
         if (headers != null) {
             headers.getRequestHeaders().forEach((k, v) -> {
-                if (!k.equalsIgnoreCase("Host") && !k.equalsIgnoreCase("Content-Length")) {
+                if (!k.equalsIgnoreCase("Host") && !isHopByHopHeader(k)
+                        && (keepContentLength || !k.equalsIgnoreCase("Content-Length"))) {
                     request.putHeader(k, v);
                 }
             });
-        }
 
-        // Forward tenant ID from filter context
-        String tenantId = headers.getHeaderString(TenantFilter.TENANT_ID_HEADER);
-        if (tenantId != null && !tenantId.isBlank()) {
-            request.putHeader(TenantFilter.TENANT_ID_HEADER, tenantId);
+            // Forward tenant ID from filter context
+            String tenantId = headers.getHeaderString(TenantFilter.TENANT_ID_HEADER);
+            if (tenantId != null && !tenantId.isBlank()) {
+                request.putHeader(TenantFilter.TENANT_ID_HEADER, tenantId);
+            }
         }
 
         request.putHeader("X-Forwarded-Host", "localhost:8080");
+    }
 
-        Uni<HttpResponse<Buffer>> responseUni;
-        if (body != null && !body.isBlank()) {
-            responseUni = request.sendBuffer(Buffer.buffer(body));
-        } else {
-            responseUni = request.send();
-        }
-
-        return responseUni.map(response -> {
-            Response.ResponseBuilder builder = Response.status(response.statusCode());
+    private static RestMulti<Buffer> toRestMulti(Uni<UpstreamReply> replyUni) {
+        return RestMulti.fromUniResponse(replyUni,
+            UpstreamReply::body,
+            UpstreamReply::headers,
+            UpstreamReply::status);
+    }
 
-            if (response.body() != null) {
-                builder.entity(response.bodyAsString());
+    private static Map<String, List<String>> forwardableHeaders(MultiMap upstreamHeaders) {
+        Map<String, List<String>> forwarded = new HashMap<>();
+        for (String name : upstreamHeaders.names()) {
+            // Length is dropped because a streamed body is re-framed as chunks towards the client
+            if (!isHopByHopHeader(name) && !name.equalsIgnoreCase("Content-Length")) {
+                forwarded.put(name, upstreamHeaders.getAll(name));
             }
+        }
+        return forwarded;
+    }
 
-            response.headers().forEach(entry -> {
-                 if (!entry.getKey().equalsIgnoreCase("Transfer-Encoding")) {
-                    builder.header(entry.getKey(), entry.getValue());
-                 }
-            });
+    private static boolean isHopByHopHeader(String name) {
+        return name.equalsIgnoreCase("Transfer-Encoding")
+            || name.equalsIgnoreCase("Connection")
+            || name.equalsIgnoreCase("Keep-Alive")
+            || name.equalsIgnoreCase("Upgrade");
+    }
 
-            return builder.build();
-        }).onFailure().recoverWithItem(t -> {
-            Log.errorf("Failed proxy to %s: %s", serviceName, t.getMessage());
-            return Response.status(503).entity("Service Unavailable").build();
-        });
+    /**
+     * Status, headers and body stream of an upstream reply, with the raw upstream headers
+     * the compression stage decides on.
+     */
+    private record UpstreamReply(int status, Map<String, List<String>> headers, Multi<Buffer> body,
+                                 MultiMap upstreamHeaders) {
+
+        static UpstreamReply error(int status, String message) {
+            return new UpstreamReply(status,
+                Map.of("Content-Type", List.of(MediaType.TEXT_PLAIN)),
+                Multi.createFrom().item(Buffer.buffer(message)),
+                MultiMap.caseInsensitiveMultiMap());
+        }
     }
 }
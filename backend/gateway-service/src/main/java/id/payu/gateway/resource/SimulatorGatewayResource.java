@@ -1,13 +1,9 @@
 package id.payu.gateway.resource;
 
-import id.payu.gateway.config.GatewayConfig;
+import id.payu.gateway.service.UpstreamClientRegistry;
 import io.quarkus.logging.Log;
 import io.smallrye.mutiny.Uni;
-import io.vertx.mutiny.core.Vertx;
 import io.vertx.mutiny.core.buffer.Buffer;
-import io.vertx.mutiny.ext.web.client.HttpResponse;
-import io.vertx.mutiny.ext.web.client.WebClient;
-import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
@@ -18,7 +14,6 @@ import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.faulttolerance.CircuitBreaker;
 import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
-import java.net.URI;
 import java.time.temporal.ChronoUnit;
 
 /**
@@ -32,17 +27,7 @@ import java.time.temporal.ChronoUnit;
 public class SimulatorGatewayResource {
 
     @Inject
-    GatewayConfig config;
-
-    @Inject
-    Vertx vertx;
-
-    private WebClient webClient;
-
-    @PostConstruct
-    void init() {
-        this.webClient = WebClient.create(vertx);
-    }
+    UpstreamClientRegistry upstreams;
 
     // ==================== BI-FAST Simulator ====================
 
@@ -132,8 +117,8 @@ public class SimulatorGatewayResource {
 
     private Uni<Response> proxy(String simulator, String path, String method, 
                                  String body, HttpHeaders headers) {
-        GatewayConfig.ServiceConfig simulatorConfig = config.simulators().get(simulator);
-        if (simulatorConfig == null) {
+        UpstreamClientRegistry.UpstreamClient upstream = upstreams.simulator(simulator);
+        if (upstream == null) {
             Log.errorf("Simulator not configured: %s", simulator);
             return Uni.createFrom().item(
                 Response.status(503)
@@ -142,61 +127,50 @@ public class SimulatorGatewayResource {
             );
         }
 
-        String baseUrl = simulatorConfig.url();
-        URI targetUri = URI.create(baseUrl);
-        String fullPath = path;
-
-        Log.debugf("Proxying to %s: %s %s%s", simulator, method, baseUrl, fullPath);
-
-        var request = webClient.request(
-            io.vertx.core.http.HttpMethod.valueOf(method),
-            targetUri.getPort() != -1 ? targetUri.getPort() : 80,
-            targetUri.getHost(),
-            fullPath
-        );
-
-        // Forward headers
-        String correlationId = headers.getHeaderString("X-Correlation-Id");
-        if (correlationId != null) {
-            request.putHeader("X-Correlation-Id", correlationId);
-        }
-        request.putHeader("Content-Type", "application/json");
-        request.putHeader("Accept", "application/json");
-
-        // Send request
-        Uni<HttpResponse<Buffer>> responseUni;
-        if (body != null && !body.isBlank()) {
-            responseUni = request.sendBuffer(Buffer.buffer(body));
-        } else {
-            responseUni = request.send();
-        }
-
-        return responseUni.map(response -> {
-            Log.debugf("Response from %s: status=%d", simulator, response.statusCode());
-            
-            Response.ResponseBuilder builder = Response.status(response.statusCode());
-            
-            String responseBody = response.bodyAsString();
-            if (responseBody != null) {
-                builder.entity(responseBody);
-            }
-            
-            builder.type(MediaType.APPLICATION_JSON);
-            
-            // Forward correlation ID
-            String respCorrelationId = response.getHeader("X-Correlation-Id");
-            if (respCorrelationId != null) {
-                builder.header("X-Correlation-Id", respCorrelationId);
-            }
-
-            return builder.build();
-        }).onFailure().recoverWithItem(throwable -> {
-            Log.errorf(throwable, "Error proxying to %s", simulator);
-            return Response.status(503)
-                .entity("{\"error\":\"SERVICE_UNAVAILABLE\",\"message\":\"" + 
-                        throwable.getMessage() + "\"}")
-                .type(MediaType.APPLICATION_JSON)
-                .build();
-        });
+        Log.debugf("Proxying to %s: %s %s%s", simulator, method, upstream.baseUrl(), path);
+
+        return upstream.request(io.vertx.core.http.HttpMethod.valueOf(method), path)
+            .onItem().transformToUni(request -> {
+                // Forward headers
+                String correlationId = headers.getHeaderString("X-Correlation-Id");
+                if (correlationId != null) {
+                    request.putHeader("X-Correlation-Id", correlationId);
+                }
+                request.putHeader("Content-Type", "application/json");
+                request.putHeader("Accept", "application/json");
+
+                // Send request
+                return body != null && !body.isBlank()
+                    ? request.send(Buffer.buffer(body))
+                    : request.send();
+            })
+            .onItem().transformToUni(response -> response.body().map(responseBody -> {
+                Log.debugf("Response from %s: status=%d", simulator, response.statusCode());
+
+                Response.ResponseBuilder builder = Response.status(response.statusCode());
+
+                if (responseBody != null && responseBody.length() > 0) {
+                    builder.entity(responseBody.getBytes());
+                }
+
+                builder.type(MediaType.APPLICATION_JSON);
+
+                // Forward correlation ID
+                String respCorrelationId = response.getHeader("X-Correlation-Id");
+                if (respCorrelationId != null) {
+                    builder.header("X-Correlation-Id", respCorrelationId);
+                }
+
+                return builder.build();
+            }))
+            .ifNoItem().after(upstream.timeout()).fail()
+            .onFailure().recoverWithItem(throwable -> {
+                Log.errorf(throwable, "Error proxying to %s", simulator);
+                return Response.status(503)
+                    .entity("{\"error\":\"SERVICE_UNAVAILABLE\",\"message\":\"" + 
+                            throwable.getMessage() + "\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+            });
     }
 }
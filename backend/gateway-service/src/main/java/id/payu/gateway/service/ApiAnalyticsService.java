@@ -3,27 +3,50 @@ package id.payu.gateway.service;
 import id.payu.gateway.config.GatewayConfig;
 import io.quarkus.logging.Log;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
 import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 
 /**
  * Service to track API usage analytics.
- * Tracks request counts, response times, error rates, and other metrics.
+ * Latencies are recorded per route and status class into striped HdrHistogram
+ * recorders (wait-free, one per stripe of threads), so the request thread never
+ * takes a lock. A scheduled flusher folds the
+ * interval histograms into per-day totals and writes them, compressed, to one Redis
+ * hash per gateway process; reads merge the histograms of every process.
  */
 @ApplicationScoped
 public class ApiAnalyticsService {
 
-    private final Map<String, ApiMetrics> metricsBuffer = new ConcurrentHashMap<>();
-    private final AtomicLong bufferSize = new AtomicLong(0);
+    private static final String KEY_PREFIX = "analytics:hist:";
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+    private static final double[] PERCENTILES = {50.0, 95.0, 99.0, 99.9};
+    private static final String OVERFLOW_ROUTE = "{other}";
+
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    // Unique per process: a restarted pod must not overwrite the totals its predecessor flushed
+    private final String nodeId = System.getenv().getOrDefault("HOSTNAME", "gateway")
+        + ":" + UUID.randomUUID().toString().substring(0, 8);
 
     @Inject
     GatewayConfig config;
@@ -32,175 +55,326 @@ public class ApiAnalyticsService {
     ReactiveRedisDataSource redis;
 
     private boolean enabled;
+    private int stripes;
+    private long highestTrackableMillis;
+    private volatile LocalDate currentDay = LocalDate.now(ZoneOffset.UTC);
 
     @PostConstruct
     void init() {
         this.enabled = config.analytics().enabled();
-        Log.infof("API Analytics service initialized (enabled: %s)", enabled);
+        // Round up to a power of two so the stripe can be picked with a mask
+        this.stripes = Integer.highestOneBit(Math.max(1, config.analytics().stripes() * 2 - 1));
+        this.highestTrackableMillis = config.analytics().highestTrackableLatency().toMillis();
+        Log.infof("API Analytics service initialized (enabled: %s, node: %s, stripes: %d)", enabled, nodeId, stripes);
     }
 
     /**
-     * Record a request for analytics.
+     * Record a request for analytics. Wait-free apart from the first request of a new route.
      */
-    public void recordRequest(String path, String method, int statusCode, long duration) {
+    public void recordRequest(String path, String method, int statusCode, long durationMillis) {
         if (!enabled) {
             return;
         }
 
-        String key = buildMetricsKey(path, method, statusCode);
+        String route = normalizeRoute(path);
+        String statusClass = statusClass(statusCode);
+        String key = buildMetricsKey(method, route, statusClass);
 
-        metricsBuffer.compute(key, (k, metrics) -> {
-            if (metrics == null) {
-                return new ApiMetrics(path, method, statusCode, duration);
-            } else {
-                metrics.record(duration);
-                return metrics;
+        RouteStats stats = routes.get(key);
+        if (stats == null) {
+            if (routes.size() >= config.analytics().maxRoutes()) {
+                // Cap cardinality; unknown routes share one bucket per method and status class
+                key = buildMetricsKey(method, OVERFLOW_ROUTE, statusClass);
             }
-        });
-
-        long currentSize = bufferSize.incrementAndGet();
-
-        // Flush if buffer size exceeds threshold
-        if (currentSize >= config.analytics().batchSize()) {
-            flushMetrics();
+            stats = routes.computeIfAbsent(key,
+                k -> new RouteStats(stripes, highestTrackableMillis));
         }
+        stats.record(durationMillis);
     }
 
     /**
-     * Get metrics for a specific endpoint.
+     * Get today's metrics for an endpoint, merged across all gateway nodes.
      */
     public Uni<Map<String, Object>> getMetrics(String path, String method) {
-        String key = buildMetricsKey(path, method, 0);
-        ApiMetrics metrics = metricsBuffer.get(key);
-
-        if (metrics != null) {
-            return Uni.createFrom().item(metrics.toMap());
-        }
-
-        // Try to fetch from Redis
-        String today = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE);
-        String redisKey = "analytics:" + today + ":" + key;
-
-        return redis.key().exists(redisKey)
-            .flatMap(exists -> {
-                if (exists) {
-                    return redis.value(String.class).get(redisKey)
-                        .map(value -> {
-                            Map<?, ?> parsed = parseMetricsJson(value);
-                            @SuppressWarnings("unchecked")
-                            Map<String, Object> result = (Map<String, Object>) parsed;
-                            return result;
-                        });
+        String route = normalizeRoute(path);
+        List<String> methods = method == null || method.isBlank()
+            ? List.of("GET", "POST", "PUT", "PATCH", "DELETE")
+            : List.of(method.toUpperCase());
+
+        List<String> fields = new ArrayList<>();
+        for (String m : methods) {
+            for (String statusClass : STATUS_CLASSES) {
+                fields.add(buildMetricsKey(m, route, statusClass));
+            }
+        }
+
+        String day = currentDay.toString();
+        ReactiveHashCommands<String, String, byte[]> hashes = redis.hash(byte[].class);
+
+        return redis.set(String.class).smembers(nodesKey(day))
+            .onFailure().recoverWithItem(Set.of())
+            .flatMap(nodes -> Multi.createFrom().iterable(nodes)
+                .filter(node -> !node.equals(nodeId))
+                .onItem().transformToUniAndMerge(node -> hashes.hmget(nodeKey(day, node), fields.toArray(String[]::new))
+                    .onFailure().recoverWithItem(Map.of()))
+                .collect().asList())
+            .map(remote -> {
+                Map<String, Histogram> merged = new LinkedHashMap<>();
+                for (String field : fields) {
+                    RouteStats local = routes.get(field);
+                    if (local != null) {
+                        merge(merged, field, local.snapshot());
+                    }
+                    for (Map<String, byte[]> node : remote) {
+                        byte[] encoded = node.get(field);
+                        if (encoded != null) {
+                            merge(merged, field, decode(encoded));
+                        }
+                    }
                 }
-                return Uni.createFrom().item(Map.<String, Object>of());
+                return toMetricsMap(route, method, day, merged);
             })
             .onFailure().recoverWithItem(Map.<String, Object>of());
     }
 
     /**
-     * Scheduled flush of metrics to Redis.
+     * Scheduled flush of metrics to Redis, off the request path.
+     * Each process owns a single hash per day with one compressed histogram per route;
+     * fields are written in batches of {@code batch-size} per HSET. On the first flush
+     * after midnight (UTC) the totals are drained into the previous day's hash before
+     * the new day starts from zero, so requests since the last flush are not lost.
      */
     @Scheduled(every = "{gateway.analytics.flush-interval}", delayed = "1m")
     void flushMetrics() {
-        if (!enabled || metricsBuffer.isEmpty()) {
+        if (!enabled || routes.isEmpty()) {
             return;
         }
 
         try {
-            String today = LocalDateTime.now().format(DateTimeFormatter.ISO_DATE);
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            LocalDate day = currentDay;
+            if (!today.equals(day)) {
+                // Day rolled over: close the previous day with everything recorded until now
+                Map<String, byte[]> closing = new HashMap<>();
+                routes.forEach((key, stats) -> closing.put(key, encode(stats.drain())));
+                currentDay = today;
+                write(day.toString(), closing);
+                return;
+            }
+
+            Map<String, byte[]> snapshot = new HashMap<>();
+            routes.forEach((key, stats) -> snapshot.put(key, encode(stats.snapshot())));
+            write(day.toString(), snapshot);
+
+        } catch (Exception e) {
+            Log.errorf(e, "Failed to flush metrics to Redis");
+        }
+    }
+
+    private void write(String day, Map<String, byte[]> histograms) {
+        String nodeKey = nodeKey(day, nodeId);
+        Duration retention = Duration.ofDays(config.analytics().retentionDays());
+        ReactiveHashCommands<String, String, byte[]> hashes = redis.hash(byte[].class);
+
+        Map<String, byte[]> batch = new HashMap<>();
+        List<Uni<Long>> writes = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : histograms.entrySet()) {
+            batch.put(entry.getKey(), entry.getValue());
+            if (batch.size() >= config.analytics().batchSize()) {
+                writes.add(hashes.hset(nodeKey, batch));
+                batch = new HashMap<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            writes.add(hashes.hset(nodeKey, batch));
+        }
 
-            metricsBuffer.forEach((key, metrics) -> {
-                String redisKey = "analytics:" + today + ":" + key;
-                String metricsJson = toJson(metrics);
+        // Commands are issued together and pipelined on the connection
+        Uni.join().all(writes).andFailFast()
+            .flatMap(unused -> redis.key().expire(nodeKey, retention))
+            .flatMap(unused -> redis.set(String.class).sadd(nodesKey(day), nodeId))
+            .flatMap(unused -> redis.key().expire(nodesKey(day), retention))
+            .subscribe()
+            .with(
+                unused -> Log.debugf("Flushed %d route histograms for %s to Redis", histograms.size(), day),
+                failure -> Log.warnf(failure, "Failed to flush analytics histograms for %s", day));
+    }
 
-                // Store in Redis with TTL
-                redis.value(String.class)
-                    .setex(redisKey, config.analytics().retentionDays() * 86400, metricsJson)
-                    .subscribe()
-                    .with(unused -> {}, failure -> Log.warnf(failure, "Failed to store metrics for %s", key));
-            });
+    private static void merge(Map<String, Histogram> merged, String field, Histogram histogram) {
+        Histogram target = merged.get(field);
+        if (target == null) {
+            merged.put(field, histogram);
+        } else {
+            target.add(histogram);
+        }
+    }
 
-            long flushedSize = bufferSize.getAndSet(0);
-            metricsBuffer.clear();
+    private Map<String, Object> toMetricsMap(String route, String method, String day, Map<String, Histogram> merged) {
+        if (merged.isEmpty()) {
+            return Map.of();
+        }
 
-            Log.debugf("Flushed %d metrics to Redis", flushedSize);
+        Histogram total = null;
+        Map<String, Long> byStatusClass = new LinkedHashMap<>();
+        long errorCount = 0;
+        for (Map.Entry<String, Histogram> entry : merged.entrySet()) {
+            Histogram histogram = entry.getValue();
+            String statusClass = entry.getKey().substring(entry.getKey().lastIndexOf(':') + 1);
+            byStatusClass.merge(statusClass, histogram.getTotalCount(), Long::sum);
+            if (statusClass.startsWith("4") || statusClass.startsWith("5")) {
+                errorCount += histogram.getTotalCount();
+            }
+            if (total == null) {
+                total = histogram.copy();
+            } else {
+                total.add(histogram);
+            }
+        }
 
-        } catch (Exception e) {
-            Log.errorf(e, "Failed to flush metrics to Redis");
+        long count = total.getTotalCount();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("path", route);
+        result.put("method", method != null ? method : "ALL");
+        result.put("day", day);
+        result.put("count", count);
+        result.put("minTime", total.getMinValue());
+        result.put("maxTime", total.getMaxValue());
+        result.put("averageTime", total.getMean());
+        for (double percentile : PERCENTILES) {
+            result.put("p" + (percentile == 99.9 ? "999" : String.valueOf((int) percentile)),
+                total.getValueAtPercentile(percentile));
+        }
+        result.put("errorRate", count > 0 ? (double) errorCount / count * 100 : 0);
+        result.put("statusClasses", byStatusClass);
+        return result;
+    }
+
+    private static String buildMetricsKey(String method, String route, String statusClass) {
+        return method + ":" + route + ":" + statusClass;
+    }
+
+    private static String nodeKey(String day, String node) {
+        return KEY_PREFIX + day + ":node:" + node;
+    }
+
+    private static String nodesKey(String day) {
+        return KEY_PREFIX + day + ":nodes";
+    }
+
+    static String statusClass(int statusCode) {
+        int index = statusCode / 100 - 1;
+        return index >= 0 && index < STATUS_CLASSES.length ? STATUS_CLASSES[index] : "5xx";
+    }
+
+    /**
+     * Collapse identifier-like path segments (numbers, UUIDs, long hex/alphanumeric ids)
+     * to {@code {id}} so routes, not individual resources, are tracked.
+     */
+    static String normalizeRoute(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder route = null;
+        int segmentStart = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > segmentStart && isIdentifier(path, segmentStart, i)) {
+                    if (route == null) {
+                        route = new StringBuilder(length).append(path, 0, segmentStart);
+                    }
+                    route.append("{id}");
+                } else if (route != null) {
+                    route.append(path, segmentStart, i);
+                }
+                if (route != null && i < length) {
+                    route.append('/');
+                }
+                segmentStart = i + 1;
+            }
         }
+        return route != null ? route.toString() : path;
     }
 
-    private String buildMetricsKey(String path, String method, int statusCode) {
-        return method + ":" + path;
+    private static boolean isIdentifier(String path, int start, int end) {
+        boolean allDigits = true;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else {
+                allDigits = false;
+                if (!(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F') && c != '-') {
+                    return false;
+                }
+            }
+        }
+        // Pure numbers, or hex/UUID-shaped tokens that contain digits
+        return allDigits || (end - start >= 16 && digits > 0);
     }
 
-    private String toJson(ApiMetrics metrics) {
-        return String.format(
-            "{\"path\":\"%s\",\"method\":\"%s\",\"count\":%d,\"totalTime\":%d,\"minTime\":%d,\"maxTime\":%d,\"avgTime\":%.2f,\"errorCount\":%d}",
-            metrics.path, metrics.method, metrics.count, metrics.totalTime,
-            metrics.minTime, metrics.maxTime, metrics.getAverageTime(), metrics.errorCount
-        );
+    private static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
     }
 
-    private Map<String, Object> parseMetricsJson(String json) {
-        // Simple JSON parsing - in production, use proper JSON library
-        return Map.of("raw", json);
+    private static Histogram decode(byte[] encoded) {
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded), 0);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt analytics histogram", e);
+        }
     }
 
     /**
-     * Inner class to hold metrics for a specific endpoint.
+     * Latency recorder for one route and status class.
+     * Writers pick a stripe by thread so concurrent requests rarely share cache lines;
+     * readers fold the stripes' interval histograms into the running total.
      */
-    public static class ApiMetrics {
-        private final String path;
-        private final String method;
-        private final int statusCode;
-        private long count = 1;
-        private long totalTime;
-        private long minTime = Long.MAX_VALUE;
-        private long maxTime = 0;
-        private long errorCount = 0;
-        private final Instant firstSeen = Instant.now();
-        private Instant lastSeen = Instant.now();
-
-        public ApiMetrics(String path, String method, int statusCode, long duration) {
-            this.path = path;
-            this.method = method;
-            this.statusCode = statusCode;
-            this.totalTime = duration;
-            this.minTime = duration;
-            this.maxTime = duration;
-            this.errorCount = (statusCode >= 400) ? 1 : 0;
-        }
-
-        public void record(long duration) {
-            count++;
-            totalTime += duration;
-            minTime = Math.min(minTime, duration);
-            maxTime = Math.max(maxTime, duration);
-            lastSeen = Instant.now();
-        }
-
-        public double getAverageTime() {
-            return count > 0 ? (double) totalTime / count : 0;
-        }
-
-        public double getErrorRate() {
-            return count > 0 ? (double) errorCount / count * 100 : 0;
-        }
-
-        public Map<String, Object> toMap() {
-            return Map.of(
-                "path", path,
-                "method", method,
-                "count", count,
-                "totalTime", totalTime,
-                "minTime", minTime,
-                "maxTime", maxTime,
-                "averageTime", getAverageTime(),
-                "errorRate", getErrorRate(),
-                "firstSeen", firstSeen.toString(),
-                "lastSeen", lastSeen.toString()
-            );
+    static final class RouteStats {
+        private final Recorder[] stripes;
+        private final int mask;
+        private final long highestTrackable;
+        private Histogram total;
+
+        RouteStats(int stripeCount, long highestTrackable) {
+            this.stripes = new Recorder[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                stripes[i] = new Recorder(1, highestTrackable, 2);
+            }
+            this.mask = stripeCount - 1;
+            this.highestTrackable = highestTrackable;
+            this.total = new Histogram(1, highestTrackable, 2);
+        }
+
+        void record(long durationMillis) {
+            long value = Math.max(1, Math.min(durationMillis, highestTrackable));
+            stripes[(int) (Thread.currentThread().threadId() & mask)].recordValue(value);
+        }
+
+        /**
+         * Fold pending intervals into the total and return a copy of it.
+         */
+        synchronized Histogram snapshot() {
+            for (Recorder stripe : stripes) {
+                total.add(stripe.getIntervalHistogram());
+            }
+            return total.copy();
+        }
+
+        /**
+         * Fold pending intervals into the total, return it and start a new total, so every
+         * value lands in exactly one of the two.
+         */
+        synchronized Histogram drain() {
+            for (Recorder stripe : stripes) {
+                total.add(stripe.getIntervalHistogram());
+            }
+            Histogram drained = total;
+            total = new Histogram(1, highestTrackable, 2);
+            return drained;
         }
     }
 }
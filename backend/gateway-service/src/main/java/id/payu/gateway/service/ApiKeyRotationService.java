@@ -1,22 +1,43 @@
 package id.payu.gateway.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import id.payu.gateway.config.GatewayConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.quarkus.logging.Log;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.scheduler.Scheduled;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.Cancellable;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
-import java.util.Map;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service to manage API key rotation.
  * Automatically generates and rotates API keys on a schedule.
+ *
+ * <p>Validation results are kept in an in-process near-cache keyed by the SHA-256 of the
+ * key (raw keys are never held): valid keys for {@code near-cache.ttl}, unknown keys for
+ * the shorter {@code negative-ttl}. Concurrent misses for one key share a single Redis
+ * lookup. Each entry carries the key's own expiry, read with its PTTL, and a hit past it
+ * is treated as unknown. Rotation and revocation publish the key hash on a Redis channel,
+ * and every gateway node evicts it as soon as the message arrives, so a revoked key is
+ * only served from the cache when that message is lost, and then for at most
+ * {@code near-cache.ttl}.
  */
 @ApplicationScoped
 public class ApiKeyRotationService {
@@ -32,12 +53,48 @@ public class ApiKeyRotationService {
     @Inject
     ReactiveRedisDataSource redis;
 
+    @Inject
+    MeterRegistry meterRegistry;
+
     private boolean enabled;
+    private AsyncCache<String, Validation> nearCache;
+    private Cancellable invalidationSubscription;
 
     @PostConstruct
     void init() {
         this.enabled = config.apiKeys().enabled() && config.apiKeys().rotation().enabled();
-        Log.infof("API Key Rotation service initialized (enabled: %s)", enabled);
+
+        GatewayConfig.ApiKeyConfig.NearCacheConfig cacheConfig = config.apiKeys().nearCache();
+        if (enabled && cacheConfig.enabled()) {
+            this.nearCache = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.maxSize())
+                .expireAfter(new ValidationExpiry(cacheConfig.ttl(), cacheConfig.negativeTtl()))
+                .recordStats()
+                .buildAsync();
+            CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "gateway.apikey.near-cache");
+            subscribeToInvalidations(cacheConfig.invalidationChannel());
+        }
+
+        Log.infof("API Key Rotation service initialized (enabled: %s, near-cache: %s)", enabled, nearCache != null);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (invalidationSubscription != null) {
+            invalidationSubscription.cancel();
+        }
+    }
+
+    private void subscribeToInvalidations(String channel) {
+        this.invalidationSubscription = redis.pubsub(String.class).subscribe(channel)
+            .onFailure().invoke(failure -> Log.warnf("API key invalidation subscription lost: %s", failure.getMessage()))
+            .onFailure().retry().withBackOff(Duration.ofMillis(100), Duration.ofSeconds(10)).indefinitely()
+            .subscribe().with(
+                keyHash -> {
+                    nearCache.synchronous().invalidate(keyHash);
+                    Log.debugf("Evicted API key %s from near-cache", keyHash);
+                },
+                failure -> Log.errorf(failure, "API key invalidation subscription failed"));
     }
 
     /**
@@ -60,6 +117,8 @@ public class ApiKeyRotationService {
                     Log.infof("Generated new API key for user %s, expires at %s", userId, expiresAt);
                     // Store metadata
                     storeMetadata(apiKey, userId, expiresAt);
+                    // Drop any negative entry from a lookup that raced the write
+                    publishInvalidation(apiKey).subscribe().with(count -> {}, failure -> {});
                 },
                 failure -> Log.errorf(failure, "Failed to store API key for user %s", userId)
             );
@@ -69,17 +128,27 @@ public class ApiKeyRotationService {
 
     /**
      * Validate an API key.
+     * Returns the owning user ID, or {@code null} if the key is unknown.
      */
     public Uni<String> validateApiKey(String apiKey) {
         if (!enabled) {
             return Uni.createFrom().item((String) null);
         }
 
-        String redisKey = API_KEY_PREFIX + apiKey;
+        if (nearCache == null) {
+            return lookup(apiKey).map(Validation::userId);
+        }
 
-        return redis.value(String.class).get(redisKey)
-            .map(userId -> {
-                Log.debugf("API key validated for user: %s", userId);
+        // Misses for the same key share one Redis lookup; failed lookups are not cached
+        String keyHash = hashKey(apiKey);
+        CompletableFuture<Validation> validation = nearCache.get(keyHash,
+            (hash, executor) -> lookup(apiKey).subscribeAsCompletionStage());
+        return Uni.createFrom().completionStage(validation)
+            .map(cached -> {
+                String userId = cached.userIdAt(System.currentTimeMillis());
+                if (userId == null && cached.valid()) {
+                    nearCache.synchronous().invalidate(keyHash);
+                }
                 return userId;
             })
             .onFailure().recoverWithUni(throwable -> {
@@ -88,6 +157,42 @@ public class ApiKeyRotationService {
             });
     }
 
+    private Uni<Validation> lookup(String apiKey) {
+        String redisKey = API_KEY_PREFIX + apiKey;
+
+        Uni<Validation> validation = Uni.combine().all()
+            .unis(redis.value(String.class).get(redisKey), redis.key().pttl(redisKey))
+            .asTuple()
+            .map(result -> {
+                String userId = result.getItem1();
+                if (userId == null) {
+                    return new Validation(null, 0);
+                }
+                Log.debugf("API key validated for user: %s", userId);
+                // -1: no expiry; -2: the key expired between the two reads
+                long ttl = result.getItem2();
+                long expiresAt = ttl == -1 ? Long.MAX_VALUE : System.currentTimeMillis() + Math.max(ttl, 0);
+                return new Validation(userId, expiresAt);
+            });
+        if (nearCache != null) {
+            return validation;
+        }
+        return validation.onFailure().recoverWithUni(throwable -> {
+            Log.warnf(throwable, "Failed to validate API key");
+            return Uni.createFrom().item(new Validation(null, 0));
+        });
+    }
+
+    /**
+     * Revoke an API key immediately on every gateway node.
+     */
+    public Uni<Void> revokeApiKey(String apiKey) {
+        return redis.key().del(API_KEY_PREFIX + apiKey, API_KEY_METADATA_PREFIX + apiKey)
+            .invoke(deleted -> Log.infof("Revoked API key (%d records removed)", deleted))
+            .call(deleted -> publishInvalidation(apiKey))
+            .replaceWithVoid();
+    }
+
     /**
      * Rotate an API key (generate new one, invalidate old).
      */
@@ -103,6 +208,7 @@ public class ApiKeyRotationService {
 
                 // Delete old key
                 return redis.key().del(redisKey)
+                    .call(deleted -> publishInvalidation(oldApiKey))
                     .flatMap(deleted -> {
                         // Generate new key
                         String newApiKey = generateApiKey(userId);
@@ -172,6 +278,78 @@ public class ApiKeyRotationService {
             );
     }
 
+    /**
+     * Evict a key from the local near-cache and tell the other nodes to do the same.
+     */
+    private Uni<Integer> publishInvalidation(String apiKey) {
+        if (nearCache == null) {
+            return Uni.createFrom().item(0);
+        }
+        String keyHash = hashKey(apiKey);
+        nearCache.synchronous().invalidate(keyHash);
+        return redis.pubsub(String.class)
+            .publish(config.apiKeys().nearCache().invalidationChannel(), keyHash)
+            .replaceWith(1)
+            .onFailure().recoverWithItem(failure -> {
+                Log.warnf(failure, "Failed to publish API key invalidation, other nodes evict on TTL");
+                return 0;
+            });
+    }
+
+    static String hashKey(String apiKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Cached validation outcome; {@code userId} is {@code null} for an unknown key.
+     * {@code expiresAtMillis} is when the key itself expires in Redis.
+     */
+    record Validation(String userId, long expiresAtMillis) {
+        boolean valid() {
+            return userId != null;
+        }
+
+        /**
+         * The owning user, or {@code null} once the key has expired.
+         */
+        String userIdAt(long nowMillis) {
+            return nowMillis < expiresAtMillis ? userId : null;
+        }
+    }
+
+    /**
+     * Valid keys live for the TTL, unknown keys for the shorter negative TTL.
+     */
+    static final class ValidationExpiry implements Expiry<String, Validation> {
+        private final long ttlNanos;
+        private final long negativeTtlNanos;
+
+        ValidationExpiry(Duration ttl, Duration negativeTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.negativeTtlNanos = negativeTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Validation value, long currentTime) {
+            return value.valid() ? ttlNanos : negativeTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Validation value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Validation value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     /**
      * Record for API key metadata.
      */
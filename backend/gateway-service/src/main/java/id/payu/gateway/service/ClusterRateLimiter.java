@@ -0,0 +1,367 @@
+package id.payu.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import id.payu.gateway.config.GatewayConfig;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cluster-wide rate limiter with local token leasing.
+ * The authoritative bucket for each key lives in Redis and is only touched by Lua
+ * scripts that hand out batches of tokens (leases) and take back what a node did not
+ * use. Each gateway node serves requests from its local lease and asks Redis for the
+ * next batch shortly before the lease runs out, so the hot path costs one Redis call per
+ * lease rather than per request. Leases are sized from the rule's rate and the number
+ * of gateway nodes, and unused tokens are refunded when a lease expires.
+ * An empty lease waits for the next batch, or, on the event loop where blocking is not
+ * allowed, admits the request against the batch being fetched: the lease goes into debt
+ * by at most one lease size, repaid from the grant. Requests are only rejected while the
+ * cluster bucket is known to be empty. When Redis is unreachable the limiter falls back
+ * to the node-local {@link TokenBucketStore}, until {@code fallback-retry} has elapsed.
+ * Both scripts are run by digest ({@code EVALSHA}), so the hot path does not send their text.
+ */
+@ApplicationScoped
+public class ClusterRateLimiter {
+
+    private static final String KEY_PREFIX = "ratelimit:cluster:";
+
+    /**
+     * Refills the bucket from Redis server time and grants up to ARGV[4] tokens.
+     * KEYS[1] = bucket key, ARGV = capacity, refill tokens, refill millis, requested.
+     * Returns the number of tokens granted and the tokens left in the bucket.
+     */
+    static final LuaScript LEASE_SCRIPT = new LuaScript("""
+        local capacity = tonumber(ARGV[1])
+        local refill_tokens = tonumber(ARGV[2])
+        local refill_ms = tonumber(ARGV[3])
+        local requested = tonumber(ARGV[4])
+        local time = redis.call('TIME')
+        local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+        local state = redis.call('HMGET', KEYS[1], 'tokens', 'ts')
+        local tokens = tonumber(state[1])
+        local ts = tonumber(state[2])
+        if tokens == nil or ts == nil then
+          tokens = capacity
+          ts = now
+        end
+        if tokens >= capacity then
+          ts = now
+        elseif now > ts then
+          local refill = math.floor((now - ts) * refill_tokens / refill_ms)
+          if refill > 0 then
+            tokens = math.min(capacity, tokens + refill)
+            if tokens >= capacity then
+              ts = now
+            else
+              ts = ts + math.floor(refill * refill_ms / refill_tokens)
+            end
+          end
+        end
+        local granted = math.min(tokens, requested)
+        tokens = tokens - granted
+        redis.call('HSET', KEYS[1], 'tokens', tokens, 'ts', ts)
+        redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / refill_tokens) * refill_ms + 1000)
+        return {granted, tokens}
+        """);
+
+    /**
+     * Returns unused leased tokens to the bucket, never above its capacity.
+     * KEYS[1] = bucket key, ARGV = capacity, unused tokens.
+     * Returns the number of tokens refunded.
+     */
+    static final LuaScript REFUND_SCRIPT = new LuaScript("""
+        local tokens = tonumber(redis.call('HGET', KEYS[1], 'tokens'))
+        if tokens == nil then
+          return 0
+        end
+        local refund = math.min(tonumber(ARGV[2]), tonumber(ARGV[1]) - tokens)
+        if refund <= 0 then
+          return 0
+        end
+        redis.call('HINCRBY', KEYS[1], 'tokens', refund)
+        return refund
+        """);
+
+    @Inject
+    GatewayConfig config;
+
+    @Inject
+    ReactiveRedisDataSource redisDataSource;
+
+    @Inject
+    TokenBucketStore localBuckets;
+
+    private Cache<String, Lease> leases;
+    private volatile long redisRetryAtNanos = System.nanoTime();
+
+    @PostConstruct
+    void init() {
+        this.leases = Caffeine.newBuilder()
+            .maximumSize(config.rateLimitV2().maxBuckets())
+            .expireAfterAccess(config.rateLimitV2().idleTimeout())
+            .removalListener((String key, Lease lease, RemovalCause cause) -> {
+                if (key != null && lease != null) {
+                    refund(key, lease, lease.drain());
+                }
+            })
+            .build();
+        GatewayConfig.ClusterRateLimitConfig cluster = config.clusterRateLimit();
+        Log.infof("Cluster rate limiter initialized (enabled: %s, nodes: %d, max-lease: %d)",
+            cluster.enabled(), cluster.nodes(), cluster.maxLeaseSize());
+    }
+
+    /**
+     * Try to take one token for a key under the given rule, enforced across all gateway nodes.
+     *
+     * @return true if the request is within the limit
+     */
+    public boolean tryAcquire(String key, GatewayConfig.TokenBucketConfig rule) {
+        long now = System.nanoTime();
+        if (!config.clusterRateLimit().enabled() || now - redisRetryAtNanos < 0) {
+            return localBuckets.tryConsume(key, rule);
+        }
+
+        Lease lease = leases.get(key, k -> new Lease());
+        long leaseSize = leaseSize(rule);
+
+        long remaining = lease.tryTake(now);
+        if (remaining >= 0) {
+            if (remaining <= leaseSize / 5) {
+                fetch(key, rule, lease, leaseSize);
+            }
+            return true;
+        }
+
+        refund(key, lease, lease.drainExpired(now));
+        if (lease.isDenied(now)) {
+            return false;
+        }
+
+        CompletableFuture<Void> pending = fetch(key, rule, lease, leaseSize);
+        if (Context.isOnEventLoopThread()) {
+            // Never block the event loop: admit against the lease on its way, within its size
+            return lease.borrow(leaseSize);
+        }
+        return awaitLease(key, rule, lease, pending);
+    }
+
+    /**
+     * Estimated tokens left for a key across the cluster: what the bucket held when this
+     * node last leased from it, plus this node's own lease. Leases held by other nodes are
+     * not visible, so the estimate can be high by at most one lease per node.
+     */
+    public long remaining(String key) {
+        Lease lease = leases.getIfPresent(key);
+        return lease != null ? Math.max(0, lease.tokens.get()) + lease.clusterTokens : 0;
+    }
+
+    /**
+     * Return unused tokens of expired leases to their buckets, so a node that goes quiet
+     * does not hold back capacity the rest of the cluster could use.
+     */
+    @Scheduled(every = "{gateway.rate-limit-cluster.lease-ttl}", delayed = "10s")
+    void refundExpiredLeases() {
+        long now = System.nanoTime();
+        leases.asMap().forEach((key, lease) -> refund(key, lease, lease.drainExpired(now)));
+    }
+
+    private boolean awaitLease(String key, GatewayConfig.TokenBucketConfig rule, Lease lease,
+                               CompletableFuture<Void> pending) {
+        try {
+            pending.get(config.clusterRateLimit().redisTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            markRedisUnavailable(e instanceof ExecutionException ? e.getCause() : e);
+            return localBuckets.tryConsume(key, rule);
+        }
+        return lease.tryTake(System.nanoTime()) >= 0;
+    }
+
+    /**
+     * Request the next lease unless one is already on its way; callers share the pending fetch.
+     */
+    private CompletableFuture<Void> fetch(String key, GatewayConfig.TokenBucketConfig rule,
+                                          Lease lease, long leaseSize) {
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CompletableFuture<Void> existing = lease.pending.compareAndExchange(null, pending);
+        if (existing != null) {
+            return existing;
+        }
+        requestLease(key, rule, leaseSize)
+            .ifNoItem().after(config.clusterRateLimit().redisTimeout()).fail()
+            .subscribe().with(
+                grant -> {
+                    applyGrant(lease, rule, grant);
+                    lease.pending.set(null);
+                    pending.complete(null);
+                },
+                failure -> {
+                    markRedisUnavailable(failure);
+                    lease.pending.set(null);
+                    pending.completeExceptionally(failure);
+                });
+        return pending;
+    }
+
+    private Uni<long[]> requestLease(String key, GatewayConfig.TokenBucketConfig rule, long leaseSize) {
+        return LEASE_SCRIPT.execute(redisDataSource, 1, KEY_PREFIX + key,
+                String.valueOf(rule.capacity()),
+                String.valueOf(rule.refillTokens()),
+                String.valueOf(rule.refillDuration().toMillis()),
+                String.valueOf(leaseSize))
+            .map(response -> response != null && response.size() == 2
+                ? new long[] {response.get(0).toLong(), response.get(1).toLong()}
+                : new long[] {0L, 0L});
+    }
+
+    private void refund(String key, Lease lease, long unused) {
+        GatewayConfig.TokenBucketConfig rule = lease.rule;
+        if (unused <= 0 || rule == null) {
+            return;
+        }
+        REFUND_SCRIPT.execute(redisDataSource, 1, KEY_PREFIX + key,
+                String.valueOf(rule.capacity()), String.valueOf(unused))
+            .ifNoItem().after(config.clusterRateLimit().redisTimeout()).fail()
+            .subscribe().with(
+                refunded -> Log.tracef("Refunded %s unused tokens for %s", refunded, key),
+                failure -> Log.debugf("Failed to refund %d tokens for %s: %s", unused, key, failure.getMessage()));
+    }
+
+    private void applyGrant(Lease lease, GatewayConfig.TokenBucketConfig rule, long[] grant) {
+        long now = System.nanoTime();
+        long granted = grant[0];
+        lease.rule = rule;
+        lease.clusterTokens = grant[1];
+        if (granted > 0) {
+            lease.grant(granted, now + config.clusterRateLimit().leaseTtl().toNanos());
+        } else {
+            // Bucket is empty cluster-wide: reject locally until the next token is due
+            long perToken = rule.refillDuration().toNanos() / Math.max(1, rule.refillTokens());
+            lease.deny(now + Math.min(perToken, config.clusterRateLimit().leaseTtl().toNanos()));
+        }
+    }
+
+    private void markRedisUnavailable(Throwable failure) {
+        long now = System.nanoTime();
+        if (now - redisRetryAtNanos >= 0) {
+            Log.warnf("Redis unavailable for cluster rate limiting, using local limits for %s: %s",
+                config.clusterRateLimit().fallbackRetry(), failure.getMessage());
+        }
+        redisRetryAtNanos = now + config.clusterRateLimit().fallbackRetry().toNanos();
+    }
+
+    /**
+     * Tokens to lease per Redis call: this node's share of the bucket's burst, or of the
+     * tokens refilled cluster-wide during one lease TTL when that is larger. At the limit a
+     * node makes one Redis call per lease, so a key whose lease holds 100 or more tokens
+     * costs less than one call per 100 requests. Leases are never larger than a node's
+     * share, so buckets under 100 tokens per node take more calls: a bigger lease would let
+     * one node hold tokens the others need and reject requests that are within the limit.
+     */
+    long leaseSize(GatewayConfig.TokenBucketConfig rule) {
+        GatewayConfig.ClusterRateLimitConfig cluster = config.clusterRateLimit();
+        long nodes = Math.max(1, cluster.nodes());
+        long burstShare = rule.capacity() / nodes;
+        long refillShare = rule.refillTokens() * cluster.leaseTtl().toMillis()
+            / Math.max(1, rule.refillDuration().toMillis()) / nodes;
+        return Math.max(1, Math.min(Math.max(burstShare, refillShare), cluster.maxLeaseSize()));
+    }
+
+    /**
+     * Tokens this node has leased from the cluster bucket for one key.
+     */
+    static final class Lease {
+        final AtomicLong tokens = new AtomicLong();
+        final AtomicReference<CompletableFuture<Void>> pending = new AtomicReference<>();
+        volatile long expiresAtNanos = System.nanoTime();
+        volatile long deniedUntilNanos = System.nanoTime();
+        volatile long clusterTokens;
+        volatile GatewayConfig.TokenBucketConfig rule;
+
+        /**
+         * Take one token, returning the tokens left or -1 if the lease is empty or expired.
+         */
+        long tryTake(long now) {
+            if (now - expiresAtNanos >= 0) {
+                return -1;
+            }
+            for (;;) {
+                long current = tokens.get();
+                if (current <= 0) {
+                    return -1;
+                }
+                if (tokens.compareAndSet(current, current - 1)) {
+                    return current - 1;
+                }
+            }
+        }
+
+        void grant(long granted, long expiresAt) {
+            tokens.addAndGet(granted);
+            expiresAtNanos = expiresAt;
+        }
+
+        /**
+         * Take every token left in an expired lease, returning how many there were.
+         */
+        long drainExpired(long now) {
+            return now - expiresAtNanos >= 0 ? drain() : 0;
+        }
+
+        /**
+         * Admit one request ahead of a grant, letting the lease owe at most {@code limit}
+         * tokens. Returns false once that much is owed.
+         */
+        boolean borrow(long limit) {
+            for (;;) {
+                long current = tokens.get();
+                if (current <= -limit) {
+                    return false;
+                }
+                if (tokens.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Take every token left in the lease, returning how many there were. Tokens owed
+         * are kept, so the next grant still repays them.
+         */
+        long drain() {
+            for (;;) {
+                long current = tokens.get();
+                if (current <= 0) {
+                    return 0;
+                }
+                if (tokens.compareAndSet(current, 0)) {
+                    return current;
+                }
+            }
+        }
+
+        void deny(long until) {
+            deniedUntilNanos = until;
+        }
+
+        boolean isDenied(long now) {
+            return now - deniedUntilNanos < 0;
+        }
+    }
+}
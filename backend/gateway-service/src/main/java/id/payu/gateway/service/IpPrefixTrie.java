@@ -0,0 +1,336 @@
+package id.payu.gateway.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable binary radix trie of IPv4 and IPv6 prefixes.
+ * Prefixes of any length are compiled once; {@link #matches(CharSequence)} parses IPv4
+ * text to an int and IPv6 text to two longs, then walks the trie, without allocating or
+ * going through {@link InetAddress}. IPv4-mapped IPv6 addresses
+ * ({@code ::ffff:10.0.0.1}) are matched against the IPv4 prefixes.
+ */
+public final class IpPrefixTrie {
+
+    private final Tree v4;
+    private final Tree v6;
+    private final int prefixCount;
+
+    private IpPrefixTrie(Tree v4, Tree v6, int prefixCount) {
+        this.v4 = v4;
+        this.v6 = v6;
+        this.prefixCount = prefixCount;
+    }
+
+    /**
+     * Compile addresses and CIDR blocks ({@code 10.0.0.0/8}, {@code 2001:db8::/32},
+     * {@code 203.0.113.7}). Host bits beyond the prefix length are ignored.
+     *
+     * @throws IllegalArgumentException if an entry is not an IP literal or prefix
+     */
+    public static IpPrefixTrie compile(Collection<String> prefixes) {
+        Tree v4 = new Tree();
+        Tree v6 = new Tree();
+        for (String prefix : prefixes) {
+            String entry = prefix.trim();
+            int slash = entry.indexOf('/');
+            String literal = slash >= 0 ? entry.substring(0, slash) : entry;
+            byte[] address = parseLiteral(literal);
+            // An IPv4-mapped IPv6 prefix (::ffff:a.b.c.d/120) is stored as its IPv4 equivalent
+            boolean mapped = address.length == 4 && literal.indexOf(':') >= 0;
+            int bits = mapped ? 128 : address.length * 8;
+            int length = bits;
+            if (slash >= 0) {
+                try {
+                    length = Integer.parseInt(entry.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid prefix length in " + prefix, e);
+                }
+                if (length < 0 || length > bits) {
+                    throw new IllegalArgumentException("Invalid prefix length in " + prefix);
+                }
+            }
+            if (mapped) {
+                if (length < 96) {
+                    throw new IllegalArgumentException("IPv4-mapped prefix shorter than /96: " + prefix);
+                }
+                length -= 96;
+            }
+            (address.length == 4 ? v4 : v6).insert(address, length);
+        }
+        return new IpPrefixTrie(v4.compact(), v6.compact(), prefixes.size());
+    }
+
+    public int size() {
+        return prefixCount;
+    }
+
+    /**
+     * Whether the address falls inside any compiled prefix. Malformed input never matches.
+     * Accepts bracketed IPv6 and strips a zone id.
+     */
+    public boolean matches(CharSequence address) {
+        if (address == null) {
+            return false;
+        }
+        int from = 0;
+        int to = address.length();
+        if (to > 0 && address.charAt(0) == '[') {
+            int close = indexOf(address, ']', 1, to);
+            if (close < 0) {
+                return false;
+            }
+            from = 1;
+            to = close;
+        }
+        int zone = indexOf(address, '%', from, to);
+        if (zone >= 0) {
+            to = zone;
+        }
+        if (from >= to) {
+            return false;
+        }
+
+        if (indexOf(address, ':', from, to) < 0) {
+            long ipv4 = parseIpv4(address, from, to);
+            return ipv4 >= 0 && matchesIpv4((int) ipv4);
+        }
+        return matchesIpv6(address, from, to);
+    }
+
+    private boolean matchesIpv4(int address) {
+        int node = 0;
+        for (int bit = 31; bit >= 0; bit--) {
+            if (v4.terminal[node]) {
+                return true;
+            }
+            node = v4.children[(node << 1) | ((address >>> bit) & 1)];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return v4.terminal[node];
+    }
+
+    /**
+     * IPv6 text has too many equivalent spellings ({@code ::} anywhere, embedded dotted
+     * quads, leading zeros) to walk safely while parsing, so it is parsed to two longs
+     * first and the prefix bits are compared on those.
+     */
+    private boolean matchesIpv6(CharSequence s, int from, int to) {
+        long hi = 0;
+        long lo = 0;
+        long headHi = 0;
+        long headLo = 0;
+        int groups = 0;
+        int headGroups = -1; // groups before "::", or -1 without one
+        int i = from;
+        if (s.charAt(i) == ':') {
+            if (i + 1 == to || s.charAt(i + 1) != ':') {
+                return false;
+            }
+            headGroups = 0;
+            i += 2;
+        }
+        while (i < to) {
+            int end = i;
+            boolean dotted = false;
+            while (end < to && s.charAt(end) != ':') {
+                dotted |= s.charAt(end) == '.';
+                end++;
+            }
+            if (dotted) {
+                // An embedded dotted quad is the last 32 bits
+                long ipv4 = end == to ? parseIpv4(s, i, end) : -1;
+                if (ipv4 < 0) {
+                    return false;
+                }
+                hi = (hi << 32) | (lo >>> 32);
+                lo = (lo << 32) | ipv4;
+                groups += 2;
+            } else {
+                if (end == i || end - i > 4) {
+                    return false;
+                }
+                int group = 0;
+                for (int j = i; j < end; j++) {
+                    int digit = hexDigit(s.charAt(j));
+                    if (digit < 0) {
+                        return false;
+                    }
+                    group = (group << 4) | digit;
+                }
+                hi = (hi << 16) | (lo >>> 48);
+                lo = (lo << 16) | group;
+                groups++;
+            }
+            if (groups > 8) {
+                return false;
+            }
+            if (end == to) {
+                break;
+            }
+            i = end + 1;
+            if (i == to) {
+                return false; // trailing single colon
+            }
+            if (s.charAt(i) == ':') {
+                if (headGroups >= 0) {
+                    return false;
+                }
+                headGroups = groups;
+                headHi = hi;
+                headLo = lo;
+                hi = 0;
+                lo = 0;
+                i++;
+            }
+        }
+        if (headGroups < 0) {
+            if (groups != 8) {
+                return false;
+            }
+        } else {
+            if (groups > 7) {
+                return false; // "::" stands for at least one zero group
+            }
+            // Move the groups read before "::" to the top; the rest are already at the bottom
+            int shift = 16 * (8 - headGroups);
+            if (shift < 64) {
+                hi |= (headHi << shift) | (headLo >>> (64 - shift));
+                lo |= headLo << shift;
+            } else if (shift < 128) {
+                hi |= headLo << (shift - 64);
+            }
+        }
+        if (hi == 0 && (lo >>> 32) == 0xFFFFL) {
+            // IPv4-mapped (::ffff:a.b.c.d) is matched as the IPv4 address
+            return matchesIpv4((int) lo);
+        }
+        int node = 0;
+        for (int bit = 0; bit < 128; bit++) {
+            if (v6.terminal[node]) {
+                return true;
+            }
+            long word = bit < 64 ? hi : lo;
+            node = v6.children[(node << 1) | (int) ((word >>> (63 - (bit & 63))) & 1)];
+            if (node == 0) {
+                return false;
+            }
+        }
+        return v6.terminal[node];
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a dotted quad into its unsigned value, or -1 if malformed.
+     */
+    static long parseIpv4(CharSequence s, int from, int to) {
+        int value = 0;
+        int dots = 0;
+        int octet = -1;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.') {
+                if (octet < 0 || dots == 3) {
+                    return -1;
+                }
+                value = (value << 8) | octet;
+                dots++;
+                octet = -1;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || dots != 3) {
+            return -1;
+        }
+        return ((value << 8) | octet) & 0xFFFFFFFFL;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] parseLiteral(String literal) {
+        // Only literals reach InetAddress, so no name lookup can happen
+        boolean ipv4 = parseIpv4(literal, 0, literal.length()) >= 0;
+        if (!ipv4 && literal.indexOf(':') < 0) {
+            throw new IllegalArgumentException("Not an IP address: " + literal);
+        }
+        try {
+            // IPv4-mapped IPv6 literals come back as Inet4Address, matching matches()
+            return InetAddress.getByName(ipv4 ? literal : "[" + literal + "]").getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Not an IP address: " + literal, e);
+        }
+    }
+
+    /**
+     * Flat node arrays: node {@code n} has children at {@code 2n} (bit 0) and {@code 2n + 1}
+     * (bit 1); 0 means no child, since the root is never a child.
+     */
+    private static final class Tree {
+        private int[] children = new int[64];
+        private boolean[] terminal = new boolean[32];
+        private int nodes = 1;
+
+        void insert(byte[] address, int length) {
+            int node = 0;
+            for (int bit = 0; bit < length; bit++) {
+                if (terminal[node]) {
+                    return; // already covered by a shorter prefix
+                }
+                int branch = (address[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+                int slot = (node << 1) | branch;
+                if (children[slot] == 0) {
+                    // Allocate first: newNode() may replace the children array
+                    int child = newNode();
+                    children[slot] = child;
+                }
+                node = children[slot];
+            }
+            terminal[node] = true;
+        }
+
+        private int newNode() {
+            if (nodes == terminal.length) {
+                terminal = Arrays.copyOf(terminal, nodes * 2);
+                children = Arrays.copyOf(children, nodes * 4);
+            }
+            return nodes++;
+        }
+
+        Tree compact() {
+            terminal = Arrays.copyOf(terminal, nodes);
+            children = Arrays.copyOf(children, nodes * 2);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package id.payu.gateway.service;
+
+import id.payu.gateway.config.GatewayConfig;
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.config.SmallRyeConfig;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.config.source.yaml.YamlConfigSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled IP whitelist rules.
+ * Each path rule's addresses and CIDR blocks are compiled once into an {@link IpPrefixTrie}
+ * and its path wildcard into a {@link Pattern}. The compiled set is an immutable snapshot
+ * swapped atomically when the rules change, so requests never see a partial update and
+ * never recompile anything.
+ *
+ * <p>Application config is fixed once the gateway has started, so rules that change at
+ * runtime come from {@code rules-file}: it is read at startup and again whenever its
+ * modification time moves.</p>
+ */
+@ApplicationScoped
+public class IpWhitelistRules {
+
+    @Inject
+    GatewayConfig config;
+
+    private volatile Snapshot snapshot = new Snapshot(List.of(), List.of());
+    private volatile FileTime rulesFileModified;
+
+    @PostConstruct
+    void init() {
+        Optional<Path> rulesFile = config.ipWhitelist().rulesFile().map(Path::of);
+        if (rulesFile.isPresent()) {
+            reload();
+            if (rulesFileModified != null) {
+                return;
+            }
+            Log.warnf("IP whitelist rules file %s unreadable, using the configured rules", rulesFile.get());
+        }
+        List<RuleSource> sources = new ArrayList<>();
+        if (config.ipWhitelist().paths() != null) {
+            for (GatewayConfig.IpWhitelistConfig.IpWhitelistPathConfig path : config.ipWhitelist().paths()) {
+                sources.add(new RuleSource(path.pattern(), List.copyOf(path.ips()), config.ipWhitelist().mode()));
+            }
+        }
+        this.snapshot = compile(sources);
+        Log.infof("IP whitelist compiled: %d path rules", sources.size());
+    }
+
+    /**
+     * Re-read the rules file if it changed and recompile it.
+     * A rule set that fails to read or compile is rejected and the previous one stays active.
+     */
+    @Scheduled(every = "{gateway.ip-whitelist.reload-interval}", delayed = "{gateway.ip-whitelist.reload-interval}",
+               concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void reload() {
+        Optional<String> rulesFile = config.ipWhitelist().rulesFile();
+        if (rulesFile.isEmpty()) {
+            return;
+        }
+        Path path = Path.of(rulesFile.get());
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            if (modified.equals(rulesFileModified)) {
+                return;
+            }
+            List<RuleSource> sources = readSources(path);
+            if (!sources.equals(snapshot.sources())) {
+                this.snapshot = compile(sources);
+                Log.infof("IP whitelist rules loaded from %s, compiled %d path rules", path, sources.size());
+            }
+            rulesFileModified = modified;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.errorf("Ignoring invalid IP whitelist update from %s: %s", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse a rules file through a config instance of its own, so it is read fresh each time.
+     */
+    static List<RuleSource> readSources(Path rulesFile) throws IOException {
+        SmallRyeConfig rules = new SmallRyeConfigBuilder()
+            .withSources(new YamlConfigSource(rulesFile.toUri().toURL()))
+            .build();
+        String mode = rules.getOptionalValue("mode", String.class).orElse("allow");
+        List<RuleSource> sources = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            String prefix = "paths[" + i + "]";
+            Optional<String> pattern = rules.getOptionalValue(prefix + ".pattern", String.class);
+            if (pattern.isEmpty()) {
+                return sources;
+            }
+            List<String> ips = rules.getOptionalValues(prefix + ".ips", String.class).orElse(List.of());
+            sources.add(new RuleSource(pattern.get(), List.copyOf(ips), mode));
+        }
+    }
+
+    /**
+     * The first rule whose path pattern matches, or {@code null} if the path is unrestricted.
+     */
+    public Rule find(String path) {
+        for (Rule rule : snapshot.rules()) {
+            if (rule.pathPattern().matcher(path).matches()) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    static Snapshot compile(List<RuleSource> sources) {
+        List<Rule> rules = new ArrayList<>(sources.size());
+        for (RuleSource source : sources) {
+            // Simple wildcard matching
+            Pattern pathPattern = Pattern.compile(source.pattern().replace("*", ".*"));
+            rules.add(new Rule(pathPattern, IpPrefixTrie.compile(source.ips()), "allow".equalsIgnoreCase(source.mode())));
+        }
+        return new Snapshot(List.copyOf(sources), List.copyOf(rules));
+    }
+
+    /**
+     * A compiled path rule.
+     */
+    public record Rule(Pattern pathPattern, IpPrefixTrie prefixes, boolean allowMode) {
+
+        public boolean isAllowed(String ip) {
+            // In allow mode, IP must be in the list; in deny mode, it must NOT be
+            return prefixes.matches(ip) == allowMode;
+        }
+    }
+
+    record RuleSource(String pattern, List<String> ips, String mode) {
+    }
+
+    record Snapshot(List<RuleSource> sources, List<Rule> rules) {
+    }
+}
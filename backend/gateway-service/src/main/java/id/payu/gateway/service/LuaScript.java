@@ -0,0 +1,62 @@
+package id.payu.gateway.service;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A Lua script run by its SHA1 digest, so only the digest travels with each call.
+ * The script text is sent once, with {@code EVAL}, when Redis does not know it yet
+ * (first use, restart or {@code SCRIPT FLUSH}); that also loads it for later calls.
+ */
+public final class LuaScript {
+
+    private final String source;
+    private final String sha;
+
+    public LuaScript(String source) {
+        this.source = source;
+        this.sha = sha1(source);
+    }
+
+    public String sha() {
+        return sha;
+    }
+
+    /**
+     * Run the script with {@code keyCount} keys followed by the script arguments.
+     */
+    public Uni<Response> execute(ReactiveRedisDataSource redis, int keyCount, String... keysAndArgs) {
+        String[] evalsha = arguments(sha, keyCount, keysAndArgs);
+        return redis.execute("EVALSHA", evalsha)
+            .onFailure(LuaScript::isNoScript)
+            .recoverWithUni(() -> redis.execute("EVAL", arguments(source, keyCount, keysAndArgs)));
+    }
+
+    static boolean isNoScript(Throwable failure) {
+        String message = failure.getMessage();
+        return message != null && message.startsWith("NOSCRIPT");
+    }
+
+    private static String[] arguments(String script, int keyCount, String[] keysAndArgs) {
+        String[] arguments = new String[keysAndArgs.length + 2];
+        arguments[0] = script;
+        arguments[1] = String.valueOf(keyCount);
+        System.arraycopy(keysAndArgs, 0, arguments, 2, keysAndArgs.length);
+        return arguments;
+    }
+
+    private static String sha1(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
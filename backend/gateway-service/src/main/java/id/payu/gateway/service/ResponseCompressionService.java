@@ -0,0 +1,515 @@
+package id.payu.gateway.service;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
+import com.github.luben.zstd.util.Native;
+import id.payu.gateway.config.GatewayConfig;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.mutiny.core.buffer.Buffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response compression stage shared by the proxy routes and the response filter.
+ * Negotiates Brotli, zstd or gzip from {@code Accept-Encoding} and encodes bodies
+ * chunk by chunk, so a streamed upstream body is never buffered whole. Bodies the
+ * upstream already encoded are left alone.
+ *
+ * <p>CPU is bounded by {@code max-concurrent}: when every permit is taken the response
+ * is sent identity-encoded instead of queueing. A permit is held only while a body is
+ * being encoded, from the subscription to its termination, so a response that is never
+ * sent holds nothing. gzip {@link Deflater}s are pooled. Bodies of at least
+ * {@code offload-threshold} bytes, or of unknown length, are encoded on the worker pool
+ * so a large response never holds up the event loop.
+ */
+@ApplicationScoped
+public class ResponseCompressionService {
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    @Inject
+    GatewayConfig config;
+
+    private List<ContentEncoding> preference;
+    private Semaphore permits;
+    private BlockingQueue<Deflater> deflaters;
+
+    @PostConstruct
+    void init() {
+        GatewayConfig.CompressionConfig compression = config.compression();
+        List<ContentEncoding> enabled = new ArrayList<>();
+        for (String name : compression.algorithms()) {
+            ContentEncoding encoding = ContentEncoding.fromToken(name.trim());
+            if (encoding == null) {
+                Log.warnf("Unknown compression algorithm '%s', ignoring", name);
+            } else if (!encoding.isAvailable()) {
+                Log.warnf("Compression algorithm '%s' has no native support on this platform, ignoring", name);
+            } else if (!enabled.contains(encoding)) {
+                enabled.add(encoding);
+            }
+        }
+        this.preference = List.copyOf(enabled);
+        this.permits = new Semaphore(compression.maxConcurrent());
+        this.deflaters = new ArrayBlockingQueue<>(compression.deflaterPoolSize());
+        Log.infof("Response compression initialized (encodings: %s, max-concurrent: %d)",
+            preference, compression.maxConcurrent());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Open an encoder for a response, or return empty if it should go out unchanged:
+     * compression disabled, body already encoded, type not compressible, body known to
+     * be smaller than {@code min-size}, no acceptable encoding, or no free permit.
+     *
+     * @param contentLength body length, or {@code -1} if unknown (streamed)
+     */
+    public Optional<StreamEncoder> open(String acceptEncoding, String contentType,
+                                        String contentEncoding, long contentLength) {
+        GatewayConfig.CompressionConfig compression = config.compression();
+        if (!compression.enabled()) {
+            return Optional.empty();
+        }
+        if (contentEncoding != null && !contentEncoding.isBlank() && !"identity".equalsIgnoreCase(contentEncoding)) {
+            return Optional.empty();
+        }
+        if (!isCompressible(contentType)) {
+            return Optional.empty();
+        }
+        if (contentLength >= 0 && contentLength < compression.minSize()) {
+            return Optional.empty();
+        }
+        Optional<ContentEncoding> encoding = negotiate(acceptEncoding, preference);
+        if (encoding.isEmpty() || permits.availablePermits() == 0) {
+            return Optional.empty();
+        }
+        StreamEncoder encoder = newEncoder(encoding.get());
+        encoder.offload = contentLength < 0 || contentLength >= compression.offloadThreshold();
+        return Optional.of(encoder);
+    }
+
+    /**
+     * Compress a fully buffered body in one pass, on the calling thread.
+     */
+    public byte[] compress(StreamEncoder encoder, byte[] body) {
+        try {
+            encoder.start();
+            encoder.write(ByteBuffer.wrap(body));
+            return encoder.finish().getBytes();
+        } finally {
+            encoder.close();
+        }
+    }
+
+    public boolean isCompressible(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        for (String mimeType : config.compression().mimeTypes()) {
+            if (type.startsWith(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pick the encoding to use for an {@code Accept-Encoding} header: the highest q-value
+     * wins, ties go to the earliest entry in {@code preference}.
+     */
+    public static Optional<ContentEncoding> negotiate(String acceptEncoding, List<ContentEncoding> preference) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return Optional.empty();
+        }
+        double[] quality = new double[ContentEncoding.values().length];
+        double wildcard = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String token = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("*".equals(token)) {
+                wildcard = q;
+                continue;
+            }
+            ContentEncoding encoding = ContentEncoding.fromToken(token);
+            if (encoding != null) {
+                // Explicit q=0 is recorded as a negative value so the wildcard cannot revive it
+                quality[encoding.ordinal()] = q > 0 ? q : -1;
+            }
+        }
+
+        ContentEncoding best = null;
+        double bestQuality = 0;
+        for (ContentEncoding encoding : preference) {
+            double q = quality[encoding.ordinal()];
+            if (q == 0 && wildcard > 0) {
+                q = wildcard;
+            }
+            if (q > bestQuality) {
+                best = encoding;
+                bestQuality = q;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private StreamEncoder newEncoder(ContentEncoding encoding) {
+        GatewayConfig.CompressionConfig compression = config.compression();
+        return switch (encoding) {
+            case GZIP -> new GzipEncoder();
+            case BROTLI -> new OutputStreamEncoder(encoding, sink -> new BrotliOutputStream(sink,
+                new Encoder.Parameters().setQuality(compression.brotliQuality()).setMode(Encoder.Mode.TEXT)));
+            case ZSTD -> new OutputStreamEncoder(encoding,
+                sink -> new ZstdOutputStreamNoFinalizer(sink, compression.zstdLevel()));
+        };
+    }
+
+    private Deflater acquireDeflater() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(config.compression().level(), true);
+    }
+
+    private void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Content codings the gateway can produce.
+     */
+    public enum ContentEncoding {
+        BROTLI("br"),
+        ZSTD("zstd"),
+        GZIP("gzip");
+
+        private final String token;
+
+        ContentEncoding(String token) {
+            this.token = token;
+        }
+
+        public String token() {
+            return token;
+        }
+
+        static ContentEncoding fromToken(String token) {
+            for (ContentEncoding encoding : values()) {
+                if (encoding.token.equalsIgnoreCase(token)) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+
+        boolean isAvailable() {
+            try {
+                return switch (this) {
+                    case GZIP -> true;
+                    case BROTLI -> Brotli4jLoader.isAvailable();
+                    case ZSTD -> {
+                        Native.load();
+                        yield Native.isLoaded();
+                    }
+                };
+            } catch (Throwable t) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Incremental encoder for one response body. Takes a compression permit (and, for
+     * gzip, a pooled deflater) when encoding starts and holds them until {@link #close()}.
+     * Encoding and closing are mutually exclusive, so a cancellation arriving while a chunk
+     * is being encoded on another thread releases the deflater only once that chunk is done.
+     */
+    public abstract class StreamEncoder implements AutoCloseable {
+
+        private final ContentEncoding encoding;
+        private boolean started;
+        private boolean permitted;
+        private boolean closed;
+        private boolean offload;
+        final BufferSink sink = new BufferSink();
+
+        StreamEncoder(ContentEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        public ContentEncoding encoding() {
+            return encoding;
+        }
+
+        /**
+         * Whether this body is large enough (or of unknown length) to be encoded off the event loop.
+         */
+        public boolean offload() {
+            return offload;
+        }
+
+        /**
+         * Encode a body stream. The encoder starts when the stream is subscribed and is
+         * closed when it completes, fails or is cancelled.
+         */
+        public Multi<Buffer> encodeStream(Multi<Buffer> body) {
+            Multi<Buffer> source = offload ? body.emitOn(Infrastructure.getDefaultWorkerPool()) : body;
+            return source
+                .onSubscription().invoke(this::start)
+                .map(this::encode)
+                .onCompletion().continueWith(() -> List.of(finish()))
+                .select().where(chunk -> chunk.length() > 0)
+                .onTermination().invoke(this::close);
+        }
+
+        /**
+         * Take a permit and open the codec. open() only saw a free permit, so another
+         * response may have taken it since; the body is then encoded anyway, because its
+         * Content-Encoding has already been decided, and the bound is exceeded by that race.
+         */
+        synchronized void start() {
+            if (started || closed) {
+                return;
+            }
+            started = true;
+            permitted = permits.tryAcquire();
+            begin();
+        }
+
+        /**
+         * Encode one chunk and return whatever compressed output is ready (possibly empty).
+         */
+        public synchronized Buffer encode(Buffer chunk) {
+            if (closed) {
+                return Buffer.buffer();
+            }
+            start();
+            write(chunk.getDelegate().getByteBuf().nioBuffer());
+            return sink.drain();
+        }
+
+        /**
+         * Flush the remaining compressed output and end the stream.
+         */
+        public synchronized Buffer finish() {
+            if (closed) {
+                return Buffer.buffer();
+            }
+            start();
+            finishStream();
+            return sink.drain();
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!closed) {
+                closed = true;
+                if (started) {
+                    release();
+                }
+                if (permitted) {
+                    permits.release();
+                }
+            }
+        }
+
+        abstract void begin();
+
+        abstract void write(ByteBuffer input);
+
+        abstract void finishStream();
+
+        abstract void release();
+    }
+
+    /**
+     * gzip framing around a raw deflate stream from the pool, fed directly from the chunk's buffer.
+     */
+    private final class GzipEncoder extends StreamEncoder {
+
+        private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+        private final CRC32 crc = new CRC32();
+        private final byte[] scratch = new byte[SCRATCH_SIZE];
+        private Deflater deflater;
+
+        GzipEncoder() {
+            super(ContentEncoding.GZIP);
+        }
+
+        @Override
+        void begin() {
+            deflater = acquireDeflater();
+            sink.write(HEADER, 0, HEADER.length);
+        }
+
+        @Override
+        void write(ByteBuffer input) {
+            crc.update(input.duplicate());
+            deflater.setInput(input);
+            while (!deflater.needsInput()) {
+                int n = deflater.deflate(scratch, 0, scratch.length, Deflater.NO_FLUSH);
+                sink.write(scratch, 0, n);
+            }
+        }
+
+        @Override
+        void finishStream() {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(scratch, 0, scratch.length, Deflater.NO_FLUSH);
+                sink.write(scratch, 0, n);
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) deflater.getBytesRead());
+        }
+
+        private void writeIntLE(int value) {
+            sink.write(value);
+            sink.write(value >>> 8);
+            sink.write(value >>> 16);
+            sink.write(value >>> 24);
+        }
+
+        @Override
+        void release() {
+            if (deflater != null) {
+                releaseDeflater(deflater);
+            }
+        }
+    }
+
+    /**
+     * Brotli and zstd, driven through their native streaming output streams.
+     */
+    private final class OutputStreamEncoder extends StreamEncoder {
+
+        private final StreamFactory factory;
+        private OutputStream stream;
+        private byte[] scratch;
+        private boolean finished;
+
+        OutputStreamEncoder(ContentEncoding encoding, StreamFactory factory) {
+            super(encoding);
+            this.factory = factory;
+        }
+
+        @Override
+        void begin() {
+            try {
+                stream = factory.open(sink);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void write(ByteBuffer input) {
+            try {
+                if (input.hasArray()) {
+                    stream.write(input.array(), input.arrayOffset() + input.position(), input.remaining());
+                    return;
+                }
+                if (scratch == null) {
+                    scratch = new byte[SCRATCH_SIZE];
+                }
+                while (input.hasRemaining()) {
+                    int n = Math.min(scratch.length, input.remaining());
+                    input.get(scratch, 0, n);
+                    stream.write(scratch, 0, n);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void finishStream() {
+            try {
+                finished = true;
+                stream.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void release() {
+            if (stream != null && !finished) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    Log.debugf("Failed to close %s stream: %s", encoding().token(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamFactory {
+        OutputStream open(OutputStream sink) throws IOException;
+    }
+
+    /**
+     * Collects encoder output until the next chunk is emitted.
+     */
+    static final class BufferSink extends OutputStream {
+
+        private Buffer pending = Buffer.buffer();
+
+        @Override
+        public void write(int b) {
+            pending.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (len > 0) {
+                pending.appendBytes(b, off, len);
+            }
+        }
+
+        Buffer drain() {
+            Buffer drained = pending;
+            pending = Buffer.buffer();
+            return drained;
+        }
+    }
+}
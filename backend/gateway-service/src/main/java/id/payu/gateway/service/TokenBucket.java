@@ -0,0 +1,123 @@
+package id.payu.gateway.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+
+/**
+ * Lock-free token bucket.
+ * The whole bucket state lives in a single {@code long} that is updated with CAS:
+ * the upper {@value #TOKEN_BITS} bits hold the available tokens, the lower
+ * {@value #TIME_BITS} bits the last refill time in milliseconds since the bucket
+ * was created. Refill is continuous and driven by {@link System#nanoTime()}, so it
+ * is immune to wall-clock adjustments.
+ */
+public final class TokenBucket {
+
+    static final int TOKEN_BITS = 22;
+    static final int TIME_BITS = Long.SIZE - TOKEN_BITS;
+    static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    public static final long MAX_CAPACITY = (1L << TOKEN_BITS) - 1;
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(TokenBucket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final long capacity;
+    private final long refillTokens;
+    private final long refillMillis;
+    private final long originNanos;
+
+    @SuppressWarnings("unused") // accessed through STATE
+    private volatile long state;
+
+    public TokenBucket(int capacity, int refillTokens, Duration refillDuration) {
+        if (capacity <= 0 || refillTokens <= 0 || refillDuration.toMillis() <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity, refill tokens and refill duration must be positive");
+        }
+        this.capacity = Math.min(capacity, MAX_CAPACITY);
+        this.refillTokens = refillTokens;
+        this.refillMillis = refillDuration.toMillis();
+        this.originNanos = System.nanoTime();
+        this.state = pack(this.capacity, 0);
+    }
+
+    /**
+     * Try to take a single token.
+     *
+     * @return true if a token was available
+     */
+    public boolean tryConsume() {
+        long now = nowMillis();
+        for (;;) {
+            long current = (long) STATE.getVolatile(this);
+            long tokens = current >>> TIME_BITS;
+            long last = current & TIME_MASK;
+
+            long elapsed = now - last;
+            if (tokens >= capacity) {
+                // A full bucket does not bank idle time
+                last = now;
+            } else if (elapsed > 0) {
+                long refill = elapsed * refillTokens / refillMillis;
+                if (refill > 0) {
+                    tokens = Math.min(capacity, tokens + refill);
+                    // Only advance by the time that produced whole tokens, keep the remainder
+                    last = tokens >= capacity ? now : last + refill * refillMillis / refillTokens;
+                }
+            }
+
+            if (tokens == 0) {
+                return false;
+            }
+
+            if (STATE.compareAndSet(this, current, pack(tokens - 1, last))) {
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Tokens currently available, without consuming any.
+     */
+    public long availableTokens() {
+        long current = (long) STATE.getVolatile(this);
+        long tokens = current >>> TIME_BITS;
+        long elapsed = nowMillis() - (current & TIME_MASK);
+        if (elapsed > 0 && tokens < capacity) {
+            tokens = Math.min(capacity, tokens + elapsed * refillTokens / refillMillis);
+        }
+        return tokens;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Milliseconds until the next token is added, 0 if one is available.
+     */
+    public long millisUntilRefill() {
+        if (availableTokens() > 0) {
+            return 0;
+        }
+        long elapsed = nowMillis() - ((long) STATE.getVolatile(this) & TIME_MASK);
+        long perToken = Math.max(1, refillMillis / refillTokens);
+        return Math.max(1, perToken - Math.max(0, elapsed));
+    }
+
+    private long nowMillis() {
+        return (System.nanoTime() - originNanos) / 1_000_000L;
+    }
+
+    private static long pack(long tokens, long timeMillis) {
+        return (tokens << TIME_BITS) | (timeMillis & TIME_MASK);
+    }
+}
@@ -0,0 +1,53 @@
+package id.payu.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import id.payu.gateway.config.GatewayConfig;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * Bounded, expiring store of local token buckets.
+ * Buckets that see no traffic for {@code idle-timeout} are evicted, and the total
+ * number of buckets is capped at {@code max-buckets}, so a burst of distinct keys
+ * (credential stuffing across many IPs) cannot grow gateway memory without bound.
+ */
+@ApplicationScoped
+public class TokenBucketStore {
+
+    @Inject
+    GatewayConfig config;
+
+    private Cache<String, TokenBucket> buckets;
+
+    @PostConstruct
+    void init() {
+        GatewayConfig.RateLimitV2Config rateLimit = config.rateLimitV2();
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(rateLimit.maxBuckets())
+            .expireAfterAccess(rateLimit.idleTimeout())
+            .build();
+        Log.infof("Token bucket store initialized (max-buckets: %d, idle-timeout: %s)",
+            rateLimit.maxBuckets(), rateLimit.idleTimeout());
+    }
+
+    /**
+     * Get the bucket for a key, creating it from the given rule on first use.
+     */
+    public TokenBucket bucket(String key, GatewayConfig.TokenBucketConfig rule) {
+        return buckets.get(key, k -> new TokenBucket(rule.capacity(), rule.refillTokens(), rule.refillDuration()));
+    }
+
+    /**
+     * Try to take a token from the bucket for a key.
+     */
+    public boolean tryConsume(String key, GatewayConfig.TokenBucketConfig rule) {
+        return bucket(key, rule).tryConsume();
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+}
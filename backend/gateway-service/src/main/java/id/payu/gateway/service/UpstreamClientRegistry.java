@@ -0,0 +1,187 @@
+package id.payu.gateway.service;
+
+import id.payu.gateway.config.GatewayConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.http.HttpClient;
+import io.vertx.mutiny.core.http.HttpClientRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of per-upstream HTTP clients.
+ * Every backend service and simulator gets its own connection pool, sized and tuned from
+ * {@link GatewayConfig.ServiceConfig#pool()}, so a slow upstream can only exhaust its own
+ * connections. Target addresses are parsed once at startup. Services and simulators are
+ * looked up separately, so a simulator may share a name with a backend service.
+ */
+@ApplicationScoped
+public class UpstreamClientRegistry {
+
+    @Inject
+    GatewayConfig config;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    private final Map<String, UpstreamClient> services = new ConcurrentHashMap<>();
+    private final Map<String, UpstreamClient> simulators = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        config.services().forEach((name, serviceConfig) -> register(services, "service", name, serviceConfig));
+        config.simulators().forEach((name, serviceConfig) -> register(simulators, "simulator", name, serviceConfig));
+        Log.infof("Upstream client registry initialized with %d pools", services.size() + simulators.size());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        services.values().forEach(client -> client.httpClient.closeAndForget());
+        simulators.values().forEach(client -> client.httpClient.closeAndForget());
+    }
+
+    /**
+     * Get the client for a backend service, or {@code null} if it is not configured.
+     */
+    public UpstreamClient service(String name) {
+        return services.get(name);
+    }
+
+    /**
+     * Get the client for a simulator, or {@code null} if it is not configured.
+     */
+    public UpstreamClient simulator(String name) {
+        return simulators.get(name);
+    }
+
+    private void register(Map<String, UpstreamClient> clients, String type, String name,
+                          GatewayConfig.ServiceConfig serviceConfig) {
+        URI target = URI.create(serviceConfig.url());
+        boolean ssl = "https".equalsIgnoreCase(target.getScheme());
+        int port = target.getPort() != -1 ? target.getPort() : (ssl ? 443 : 80);
+
+        GatewayConfig.PoolConfig pool = serviceConfig.pool();
+        HttpClientOptions options = new HttpClientOptions()
+            .setDefaultHost(target.getHost())
+            .setDefaultPort(port)
+            .setSsl(ssl)
+            .setMaxPoolSize(pool.maxConnections())
+            .setMaxWaitQueueSize(pool.maxWaitQueueSize())
+            .setConnectTimeout((int) pool.connectTimeout().toMillis())
+            .setKeepAlive(true)
+            .setKeepAliveTimeout((int) pool.keepAliveTimeout().toSeconds());
+
+        if (pool.http2()) {
+            // Prior-knowledge h2c: upstreams are internal, so skip the HTTP/1.1 upgrade dance
+            options.setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false)
+                .setHttp2MaxPoolSize(pool.maxConnections())
+                .setHttp2MultiplexingLimit(pool.http2MultiplexingLimit())
+                .setHttp2KeepAliveTimeout((int) pool.keepAliveTimeout().toSeconds());
+        } else if (pool.pipelining()) {
+            options.setPipelining(true)
+                .setPipeliningLimit(pool.pipeliningLimit());
+        }
+
+        UpstreamClient client = new UpstreamClient(name, target.getHost(), port, ssl,
+            serviceConfig.timeout(), vertx.createHttpClient(options),
+            Timer.builder("gateway.upstream.pool.wait")
+                .description("Time spent waiting for an upstream connection")
+                .tag("service", name)
+                .tag("type", type)
+                .register(meterRegistry));
+
+        Gauge.builder("gateway.upstream.pool.queue.depth", client.pending, AtomicInteger::get)
+            .description("Requests waiting for an upstream connection")
+            .tag("service", name)
+            .tag("type", type)
+            .register(meterRegistry);
+        Gauge.builder("gateway.upstream.pool.max.connections", pool, GatewayConfig.PoolConfig::maxConnections)
+            .tag("service", name)
+            .tag("type", type)
+            .register(meterRegistry);
+
+        clients.put(name, client);
+        Log.debugf("Registered %s upstream %s -> %s:%d (ssl: %s, http2: %s, max-connections: %d)",
+            type, name, target.getHost(), port, ssl, pool.http2(), pool.maxConnections());
+    }
+
+    /**
+     * Pooled client bound to a single upstream address.
+     */
+    public static final class UpstreamClient {
+        private final String name;
+        private final String host;
+        private final int port;
+        private final boolean ssl;
+        private final Duration timeout;
+        private final HttpClient httpClient;
+        private final Timer poolWait;
+        private final AtomicInteger pending = new AtomicInteger();
+
+        UpstreamClient(String name, String host, int port, boolean ssl, Duration timeout,
+                       HttpClient httpClient, Timer poolWait) {
+            this.name = name;
+            this.host = host;
+            this.port = port;
+            this.ssl = ssl;
+            this.timeout = timeout;
+            this.httpClient = httpClient;
+            this.poolWait = poolWait;
+        }
+
+        /**
+         * Acquire a connection from this upstream's pool and open a request on it.
+         * The time until a connection is handed out is recorded as pool wait time.
+         */
+        public Uni<HttpClientRequest> request(HttpMethod method, String uri) {
+            RequestOptions options = new RequestOptions()
+                .setMethod(method)
+                .setHost(host)
+                .setPort(port)
+                .setSsl(ssl)
+                .setURI(uri);
+
+            return Uni.createFrom().deferred(() -> {
+                long start = System.nanoTime();
+                pending.incrementAndGet();
+                return httpClient.request(options)
+                    .onTermination().invoke(() -> {
+                        pending.decrementAndGet();
+                        poolWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    });
+            });
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public String baseUrl() {
+            return (ssl ? "https://" : "http://") + host + ":" + port;
+        }
+
+        public Duration timeout() {
+            return timeout;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package id.payu.gateway.benchmark;
+
+import id.payu.gateway.service.IpPrefixTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request IP whitelist check: compiled prefix trie against the list-scanning
+ * matcher previously in IpWhitelistFilter. Rules are /16 and /24 blocks (the only
+ * lengths besides /8 the old matcher supported) and half the probes miss every rule,
+ * which is the worst case for a linear scan.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.gateway.benchmark.IpWhitelistBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IpWhitelistBenchmark {
+
+    @Param({"10", "100", "500"})
+    int ruleCount;
+
+    private IpPrefixTrie trie;
+    private ListMatcher listMatcher;
+    private String[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(random.nextBoolean()
+                ? "10." + random.nextInt(256) + "." + random.nextInt(256) + ".0/24"
+                : "172." + (16 + random.nextInt(16)) + ".0.0/16");
+        }
+        trie = IpPrefixTrie.compile(rules);
+        listMatcher = new ListMatcher(rules);
+
+        probes = new String[1024];
+        for (int i = 0; i < probes.length; i++) {
+            String rule = rules.get(random.nextInt(rules.size()));
+            String[] octets = rule.substring(0, rule.indexOf('/')).split("\\.");
+            probes[i] = i % 2 == 0
+                ? octets[0] + "." + octets[1] + "." + octets[2] + "." + random.nextInt(256)
+                : "203.0." + random.nextInt(256) + "." + random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public boolean trie() {
+        return trie.matches(probes[next++ & 1023]);
+    }
+
+    @Benchmark
+    public boolean listScan() {
+        return listMatcher.isIpInList(probes[next++ & 1023]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(IpWhitelistBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+
+    /**
+     * The matcher previously embedded in IpWhitelistFilter.WhitelistRule, kept as the baseline.
+     */
+    static final class ListMatcher {
+        private final List<String> allowedIps;
+
+        ListMatcher(List<String> allowedIps) {
+            this.allowedIps = allowedIps;
+        }
+
+        boolean isIpInList(String ip) {
+            for (String allowedIp : allowedIps) {
+                if (ipMatches(ip, allowedIp)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean ipMatches(String ip, String pattern) {
+            if (ip.equals(pattern)) {
+                return true;
+            }
+            if (pattern.contains("/")) {
+                return matchesCidr(ip, pattern);
+            }
+            return false;
+        }
+
+        private boolean matchesCidr(String ip, String cidr) {
+            String[] parts = cidr.split("/");
+            String networkIp = parts[0];
+            int prefixLength = Integer.parseInt(parts[1]);
+
+            String[] ipOctets = ip.split("\\.");
+            String[] networkOctets = networkIp.split("\\.");
+
+            if (prefixLength == 8) {
+                return ipOctets[0].equals(networkOctets[0]);
+            } else if (prefixLength == 16) {
+                return ipOctets[0].equals(networkOctets[0]) &&
+                       ipOctets[1].equals(networkOctets[1]);
+            } else if (prefixLength == 24) {
+                return ipOctets[0].equals(networkOctets[0]) &&
+                       ipOctets[1].equals(networkOctets[1]) &&
+                       ipOctets[2].equals(networkOctets[2]);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package id.payu.gateway.benchmark;
+
+import id.payu.gateway.service.TokenBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contended-key throughput of the CAS token bucket against the previous
+ * {@code synchronized} implementation. All threads hit one bucket, which is the
+ * hot-key case during a credential-stuffing burst.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.gateway.benchmark.TokenBucketBenchmark}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBucketBenchmark {
+
+    private TokenBucket casBucket;
+    private SynchronizedTokenBucket synchronizedBucket;
+
+    @Setup
+    public void setUp() {
+        // Large capacity with fast refill so both paths (grant and reject) are exercised
+        casBucket = new TokenBucket(1_000_000, 1_000_000, Duration.ofSeconds(1));
+        synchronizedBucket = new SynchronizedTokenBucket(1_000_000, 1_000_000, Duration.ofSeconds(1));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean casContended() {
+        return casBucket.tryConsume();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean synchronizedContended() {
+        return synchronizedBucket.tryConsume();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean casUncontended() {
+        return casBucket.tryConsume();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean synchronizedUncontended() {
+        return synchronizedBucket.tryConsume();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(TokenBucketBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+
+    /**
+     * The bucket previously embedded in RateLimitV2Filter, kept as the baseline.
+     */
+    static final class SynchronizedTokenBucket {
+        private final int capacity;
+        private final int refillTokens;
+        private final long refillDurationMillis;
+        private long tokens;
+        private long lastRefillTimestamp;
+
+        SynchronizedTokenBucket(int capacity, int refillTokens, Duration refillDuration) {
+            this.capacity = capacity;
+            this.refillTokens = refillTokens;
+            this.refillDurationMillis = refillDuration.toMillis();
+            this.tokens = capacity;
+            this.lastRefillTimestamp = System.currentTimeMillis();
+        }
+
+        synchronized boolean tryConsume() {
+            long now = System.currentTimeMillis();
+            long elapsed = now - lastRefillTimestamp;
+            if (elapsed >= refillDurationMillis) {
+                long refillCount = elapsed / refillDurationMillis;
+                tokens = Math.min(capacity, tokens + refillTokens * refillCount);
+                lastRefillTimestamp = now;
+            }
+            if (tokens > 0) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+    }
+}
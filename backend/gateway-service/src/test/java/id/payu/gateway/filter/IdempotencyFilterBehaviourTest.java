@@ -0,0 +1,264 @@
+package id.payu.gateway.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import id.payu.gateway.config.GatewayConfig;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Idempotency Filter Behaviour Tests")
+public class IdempotencyFilterBehaviourTest {
+
+    private static final String KEY = "order-42";
+    private static final String BODY = "{\"amount\":100}";
+
+    private final Map<String, byte[]> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger claims = new AtomicInteger();
+    private IdempotencyFilter filter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        GatewayConfig config = mock(GatewayConfig.class, RETURNS_DEEP_STUBS);
+        when(config.idempotency().enabled()).thenReturn(true);
+        when(config.idempotency().headerName()).thenReturn("X-Idempotency-Key");
+        when(config.idempotency().ttl()).thenReturn(Duration.ofHours(24));
+        when(config.idempotency().lockTimeout()).thenReturn(Duration.ofSeconds(30));
+        when(config.idempotency().waitTimeout()).thenReturn(Duration.ofSeconds(2));
+        when(config.apiKeys().headerName()).thenReturn("X-API-Key");
+
+        ReactiveRedisDataSource dataSource = mock(ReactiveRedisDataSource.class);
+        ReactiveValueCommands<String, byte[]> values = mock(ReactiveValueCommands.class);
+        ReactiveKeyCommands<String> keys = mock(ReactiveKeyCommands.class);
+        when(dataSource.value(byte[].class)).thenReturn(values);
+        when(dataSource.key()).thenReturn(keys);
+
+        io.vertx.mutiny.redis.client.Response ok = mock(io.vertx.mutiny.redis.client.Response.class);
+        when(ok.toString()).thenReturn("OK");
+        when(dataSource.execute(anyString(), any(String[].class))).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            if ("SET".equals(args[0])) {
+                claims.incrementAndGet();
+                byte[] marker = ((String) args[2]).getBytes(StandardCharsets.UTF_8);
+                return Uni.createFrom().item(redis.putIfAbsent((String) args[1], marker) == null ? ok : null);
+            }
+            // EVAL RELEASE_SCRIPT 1 key marker
+            byte[] marker = ((String) args[4]).getBytes(StandardCharsets.UTF_8);
+            redis.computeIfPresent((String) args[3], (k, v) -> Arrays.equals(v, marker) ? null : v);
+            return Uni.createFrom().item(ok);
+        });
+        when(values.get(anyString())).thenAnswer(invocation ->
+            Uni.createFrom().item(redis.get((String) invocation.getArgument(0))));
+        when(values.psetex(anyString(), anyLong(), any(byte[].class))).thenAnswer(invocation -> {
+            redis.put(invocation.getArgument(0), invocation.getArgument(2));
+            return Uni.createFrom().voidItem();
+        });
+
+        filter = new IdempotencyFilter();
+        filter.config = config;
+        filter.redisDataSource = dataSource;
+        filter.objectMapper = new ObjectMapper();
+        filter.init();
+    }
+
+    @Test
+    @DisplayName("Should let the first request through and store its response with the body fingerprint")
+    public void testClaimAndStore() {
+        Request first = request("tenant-a", BODY);
+
+        assertNull(first.filter());
+        assertEquals(1, redis.size());
+        assertTrue(new String(redis.values().iterator().next(), StandardCharsets.UTF_8).startsWith("~pending:"));
+
+        first.complete(201, "{\"id\":1}");
+
+        IdempotencyFilter.CachedResponse stored = IdempotencyFilter.CachedResponse.decode(redis.values().iterator().next());
+        assertEquals(201, stored.status());
+        assertEquals(fingerprint(BODY), stored.fingerprint());
+    }
+
+    @Test
+    @DisplayName("Should replay the stored response for a duplicate with the same body")
+    public void testReplay() {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+        first.complete(201, "{\"id\":1}");
+
+        Response replayed = request("tenant-a", BODY).filter();
+
+        assertEquals(201, replayed.getStatus());
+        assertEquals("true", replayed.getHeaderString("X-Idempotency-Replayed"));
+        assertArrayEquals("{\"id\":1}".getBytes(StandardCharsets.UTF_8), (byte[]) replayed.getEntity());
+    }
+
+    @Test
+    @DisplayName("Should reject a reused key whose body differs with 422")
+    public void testPayloadMismatch() {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+        first.complete(201, "{\"id\":1}");
+
+        assertEquals(422, request("tenant-a", "{\"amount\":999}").filter().getStatus());
+    }
+
+    @Test
+    @DisplayName("Should scope keys by tenant so different callers never share a response")
+    public void testScopedByTenant() {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+        first.complete(201, "{\"id\":1}");
+
+        assertNull(request("tenant-b", BODY).filter());
+        assertEquals(2, claims.get());
+    }
+
+    @Test
+    @DisplayName("Should wait for a request running on another node and replay its response")
+    public void testCrossNodeWait() throws Exception {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+        String redisKey = redis.keySet().iterator().next();
+        // Another node holds the claim: forget the local leader, keep the Redis marker
+        first.end();
+        redis.put(redisKey, ("~pending:" + fingerprint(BODY)).getBytes(StandardCharsets.UTF_8));
+
+        CompletableFuture<Response> waiting = request("tenant-a", BODY).filterAsync();
+        Thread.sleep(50);
+        assertFalse(waiting.isDone(), "Duplicate should wait while the key is pending");
+
+        redis.put(redisKey, new IdempotencyFilter.CachedResponse(fingerprint(BODY), 201, List.of(),
+            "{\"id\":7}".getBytes(StandardCharsets.UTF_8)).encode());
+
+        Response replayed = waiting.get(2, TimeUnit.SECONDS);
+        assertEquals(201, replayed.getStatus());
+        assertEquals("true", replayed.getHeaderString("X-Idempotency-Replayed"));
+    }
+
+    @Test
+    @DisplayName("Should coalesce local duplicates onto the in-flight request without touching Redis")
+    public void testLocalCoalescing() throws Exception {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+
+        CompletableFuture<Response> duplicate = request("tenant-a", BODY).filterAsync();
+        assertFalse(duplicate.isDone());
+
+        first.complete(201, "{\"id\":1}");
+
+        assertEquals(201, duplicate.get(1, TimeUnit.SECONDS).getStatus());
+        assertEquals(1, claims.get(), "Only the first request should claim the key");
+    }
+
+    @Test
+    @DisplayName("Should release waiters and the claim when the leading request ends without a response")
+    public void testReleaseOnEnd() throws Exception {
+        Request first = request("tenant-a", BODY);
+        first.filter();
+        CompletableFuture<Response> duplicate = request("tenant-a", BODY).filterAsync();
+
+        first.end();
+
+        assertEquals(409, duplicate.get(1, TimeUnit.SECONDS).getStatus());
+        assertTrue(redis.isEmpty(), "Pending claim should be released");
+        assertNull(request("tenant-a", BODY).filter(), "A retry should execute again");
+    }
+
+    private Request request(String tenant, String body) {
+        return new Request(tenant, body);
+    }
+
+    private static String fingerprint(String body) {
+        try {
+            return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A mocked POST with its request properties and the end handler the filter registers.
+     */
+    private final class Request {
+        private final ContainerRequestContext context = mock(ContainerRequestContext.class);
+        private final RoutingContext routingContext = mock(RoutingContext.class);
+        private final Map<String, Object> properties = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Request(String tenant, String body) {
+            UriInfo uriInfo = mock(UriInfo.class);
+            when(uriInfo.getPath()).thenReturn("/api/v1/transactions");
+            when(context.getUriInfo()).thenReturn(uriInfo);
+            when(context.getMethod()).thenReturn("POST");
+            when(context.getHeaderString("X-Idempotency-Key")).thenReturn(KEY);
+            when(context.getHeaderString(TenantFilter.TENANT_ID_HEADER)).thenReturn(tenant);
+            InputStream entity = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+            when(context.getEntityStream()).thenReturn(entity);
+            doAnswer(invocation -> properties.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(context).setProperty(anyString(), any());
+            when(context.getProperty(anyString())).thenAnswer(invocation -> properties.get(invocation.getArgument(0)));
+        }
+
+        Response filter() {
+            return filter.filter(context, routingContext).await().atMost(Duration.ofSeconds(2));
+        }
+
+        CompletableFuture<Response> filterAsync() {
+            return filter.filter(context, routingContext).subscribeAsCompletionStage();
+        }
+
+        void complete(int status, String entity) {
+            ContainerResponseContext response = mock(ContainerResponseContext.class);
+            when(response.getStatus()).thenReturn(status);
+            when(response.getStringHeaders()).thenReturn(new MultivaluedHashMap<>());
+            when(response.getEntity()).thenReturn(entity);
+            filter.storeResponse(context, response);
+            end();
+        }
+
+        @SuppressWarnings("unchecked")
+        void end() {
+            ArgumentCaptor<Handler<AsyncResult<Void>>> endHandler = ArgumentCaptor.forClass(Handler.class);
+            verify(routingContext).addEndHandler(endHandler.capture());
+            endHandler.getValue().handle(null);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package id.payu.gateway.filter;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("Idempotency Cached Response Codec Tests")
+public class IdempotencyFilterCodecTest {
+
+    @Test
+    @DisplayName("Should round-trip status, headers and body")
+    public void testRoundTrip() {
+        byte[] body = "{\"id\":\"acc-1\"}".getBytes(StandardCharsets.UTF_8);
+        List<Map.Entry<String, String>> headers = List.of(
+            Map.entry("Content-Type", "application/json"),
+            Map.entry("Set-Cookie", "a=1"),
+            Map.entry("Set-Cookie", "b=2")
+        );
+
+        IdempotencyFilter.CachedResponse decoded = IdempotencyFilter.CachedResponse.decode(
+            new IdempotencyFilter.CachedResponse("ab12", 201, headers, body).encode());
+
+        assertEquals("ab12", decoded.fingerprint());
+        assertEquals(201, decoded.status());
+        assertEquals(headers, decoded.headers());
+        assertArrayEquals(body, decoded.body());
+    }
+
+    @Test
+    @DisplayName("Should round-trip an empty response")
+    public void testEmptyBody() {
+        IdempotencyFilter.CachedResponse decoded = IdempotencyFilter.CachedResponse.decode(
+            new IdempotencyFilter.CachedResponse("", 204, List.of(), new byte[0]).encode());
+
+        assertEquals(204, decoded.status());
+        assertEquals(0, decoded.headers().size());
+        assertEquals(0, decoded.body().length);
+    }
+
+    @Test
+    @DisplayName("Should reject the pending marker and unknown versions")
+    public void testRejectsNonRecordValues() {
+        assertThrows(IllegalStateException.class,
+            () -> IdempotencyFilter.CachedResponse.decode("~pending:ab12".getBytes(StandardCharsets.UTF_8)));
+    }
+}
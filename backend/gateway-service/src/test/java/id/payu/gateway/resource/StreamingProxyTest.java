@@ -0,0 +1,148 @@
+package id.payu.gateway.resource;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerResponse;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Proxies against a local upstream that holds back the second half of a large body until
+ * the test releases it, so a streamed response can be told apart from a buffered one.
+ */
+@QuarkusTest
+@QuarkusTestResource(value = StreamingProxyTest.Upstream.class, restrictToAnnotatedClass = true)
+@DisplayName("Streaming Proxy Tests")
+class StreamingProxyTest {
+
+    private static final int HALF = 4 * 1024 * 1024;
+
+    @TestHTTPResource("/api/v1/transactions/history")
+    URI history;
+
+    @TestHTTPResource("/api/v1/accounts/statement")
+    URI statement;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    @DisplayName("Should pass a large body through chunked before the upstream has finished it")
+    void shouldStreamLargeBody() throws Exception {
+        HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(history).build(),
+            HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Length").isEmpty(), "Streamed bodies are chunked");
+        try (InputStream body = response.body()) {
+            // A buffered proxy would hold this until the upstream ends, which only happens after release
+            byte[] first = CompletableFuture.supplyAsync(() -> readN(body, HALF)).get(10, TimeUnit.SECONDS);
+            assertEquals(HALF, first.length);
+
+            release();
+            byte[] rest = body.readAllBytes();
+            assertEquals(HALF, rest.length);
+            assertEquals((byte) 'b', rest[rest.length - 1]);
+        }
+    }
+
+    @Test
+    @DisplayName("Should buffer a path listed under buffered-paths and keep its body and length")
+    void shouldBufferListedPath() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(statement).build(),
+            HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(Upstream.STATEMENT, response.body());
+        assertEquals(String.valueOf(Upstream.STATEMENT.getBytes(StandardCharsets.UTF_8).length),
+            response.headers().firstValue("Content-Length").orElse(null));
+    }
+
+    private void release() throws Exception {
+        String upstream = ConfigProvider.getConfig().getValue("gateway.services.transaction-service.url", String.class);
+        client.send(HttpRequest.newBuilder(URI.create(upstream + "/release")).build(),
+            HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static byte[] readN(InputStream in, int length) {
+        try {
+            return in.readNBytes(length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Upstream implements QuarkusTestResourceLifecycleManager {
+
+        static final String STATEMENT = "{\"accountId\":\"acc-1\",\"entries\":[" + "{\"amount\":\"1000.00\"},".repeat(200) + "{}]}";
+
+        private Vertx vertx;
+
+        @Override
+        public Map<String, String> start() {
+            vertx = Vertx.vertx();
+            CompletableFuture<Void> released = new CompletableFuture<>();
+            HttpServer server = vertx.createHttpServer().requestHandler(request -> {
+                HttpServerResponse response = request.response();
+                switch (request.path()) {
+                    case "/api/v1/transactions/history" -> {
+                        response.setChunked(true).putHeader("Content-Type", "application/octet-stream");
+                        response.write(filled(HALF, 'a'));
+                        released.thenRun(() -> vertx.runOnContext(v -> response.end(filled(HALF, 'b'))));
+                    }
+                    case "/api/v1/accounts/statement" -> {
+                        // Chunked upstream: the gateway has to read it in full to set a length
+                        response.setChunked(true).putHeader("Content-Type", "application/json");
+                        int middle = STATEMENT.length() / 2;
+                        response.write(STATEMENT.substring(0, middle));
+                        response.end(STATEMENT.substring(middle));
+                    }
+                    case "/release" -> {
+                        released.complete(null);
+                        response.end();
+                    }
+                    default -> response.setStatusCode(404).end();
+                }
+            });
+            int port = server.listen(0).toCompletionStage().toCompletableFuture().join().actualPort();
+            String url = "http://localhost:" + port;
+            return Map.of(
+                "gateway.services.transaction-service.url", url,
+                "gateway.services.account-service.url", url,
+                "gateway.streaming.buffered-paths", "/api/v1/accounts/*");
+        }
+
+        @Override
+        public void stop() {
+            if (vertx != null) {
+                vertx.close().toCompletionStage().toCompletableFuture().join();
+            }
+        }
+
+        private static Buffer filled(int length, char value) {
+            byte[] bytes = new byte[length];
+            Arrays.fill(bytes, (byte) value);
+            return Buffer.buffer(bytes);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package id.payu.gateway.service;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("API Analytics Service Tests")
+public class ApiAnalyticsServiceTest {
+
+    @Test
+    @DisplayName("Should collapse identifier segments into route templates")
+    public void testNormalizeRoute() {
+        assertEquals("/api/v1/accounts/{id}", ApiAnalyticsService.normalizeRoute("/api/v1/accounts/12345"));
+        assertEquals("/api/v1/wallets/{id}/balance",
+            ApiAnalyticsService.normalizeRoute("/api/v1/wallets/3f2b8c1e-9a4d-4c7b-8e21-5d6f7a8b9c0d/balance"));
+        assertEquals("/api/v1/transactions", ApiAnalyticsService.normalizeRoute("/api/v1/transactions"));
+        assertEquals("/api/v1/cards/debit", ApiAnalyticsService.normalizeRoute("/api/v1/cards/debit"));
+    }
+
+    @Test
+    @DisplayName("Should map status codes to status classes")
+    public void testStatusClass() {
+        assertEquals("2xx", ApiAnalyticsService.statusClass(204));
+        assertEquals("4xx", ApiAnalyticsService.statusClass(429));
+        assertEquals("5xx", ApiAnalyticsService.statusClass(503));
+    }
+
+    @Test
+    @DisplayName("Should aggregate striped recordings into percentiles")
+    public void testRouteStatsPercentiles() {
+        ApiAnalyticsService.RouteStats stats = new ApiAnalyticsService.RouteStats(4, 60_000);
+        for (int i = 1; i <= 1000; i++) {
+            stats.record(i);
+        }
+        stats.record(120_000); // clamped to highest trackable
+
+        Histogram snapshot = stats.snapshot();
+        assertEquals(1001, snapshot.getTotalCount());
+        assertEquals(500, snapshot.getValueAtPercentile(50.0), 5);
+        assertEquals(990, snapshot.getValueAtPercentile(99.0), 10);
+        assertTrue(snapshot.getMaxValue() >= 59_000);
+    }
+
+    @Test
+    @DisplayName("Should keep totals across snapshots until drained")
+    public void testRouteStatsDrain() {
+        ApiAnalyticsService.RouteStats stats = new ApiAnalyticsService.RouteStats(2, 60_000);
+        stats.record(10);
+        assertEquals(1, stats.snapshot().getTotalCount());
+        stats.record(20);
+        stats.record(30);
+
+        // Values recorded since the last snapshot go to the drained (closing) total
+        assertEquals(3, stats.drain().getTotalCount());
+        assertEquals(0, stats.snapshot().getTotalCount());
+    }
+}
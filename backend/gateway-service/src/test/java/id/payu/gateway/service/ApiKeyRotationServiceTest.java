@@ -0,0 +1,48 @@
+package id.payu.gateway.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("API Key Rotation Service Tests")
+public class ApiKeyRotationServiceTest {
+
+    @Test
+    @DisplayName("Should key the near-cache by a stable SHA-256 hash, never the raw key")
+    public void testHashKey() {
+        String hash = ApiKeyRotationService.hashKey("pk_live_abc123");
+
+        assertEquals(64, hash.length());
+        assertEquals(hash, ApiKeyRotationService.hashKey("pk_live_abc123"));
+        assertNotEquals(hash, ApiKeyRotationService.hashKey("pk_live_abc124"));
+        assertFalse(hash.contains("abc123"));
+    }
+
+    @Test
+    @DisplayName("Should expire unknown keys sooner than validated keys")
+    public void testValidationExpiry() {
+        ApiKeyRotationService.ValidationExpiry expiry =
+            new ApiKeyRotationService.ValidationExpiry(Duration.ofSeconds(30), Duration.ofSeconds(5));
+
+        ApiKeyRotationService.Validation valid = new ApiKeyRotationService.Validation("user-1", Long.MAX_VALUE);
+        ApiKeyRotationService.Validation unknown = new ApiKeyRotationService.Validation(null, 0);
+
+        assertEquals(Duration.ofSeconds(30).toNanos(), expiry.expireAfterCreate("h", valid, 0));
+        assertEquals(Duration.ofSeconds(5).toNanos(), expiry.expireAfterCreate("h", unknown, 0));
+        // Reads do not extend the lifetime, so revocation without a message still converges
+        assertEquals(123L, expiry.expireAfterRead("h", valid, 0, 123L));
+    }
+
+    @Test
+    @DisplayName("Should stop serving a cached key once the key itself has expired")
+    public void testValidationHonoursKeyExpiry() {
+        ApiKeyRotationService.Validation validation = new ApiKeyRotationService.Validation("user-1", 1_000L);
+
+        assertEquals("user-1", validation.userIdAt(999L));
+        assertNull(validation.userIdAt(1_000L));
+        assertNull(new ApiKeyRotationService.Validation(null, Long.MAX_VALUE).userIdAt(0L));
+    }
+}
@@ -0,0 +1,86 @@
+package id.payu.gateway.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Cluster Rate Limiter Lease Tests")
+public class ClusterRateLimiterTest {
+
+    @Test
+    @DisplayName("Should serve exactly the granted tokens from a lease")
+    public void testLeaseGrant() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+        assertEquals(-1, lease.tryTake(now), "A new lease should be empty");
+
+        lease.grant(3, now + TimeUnit.SECONDS.toNanos(10));
+        assertEquals(2, lease.tryTake(now));
+        assertEquals(1, lease.tryTake(now));
+        assertEquals(0, lease.tryTake(now));
+        assertEquals(-1, lease.tryTake(now));
+    }
+
+    @Test
+    @DisplayName("Should stop serving an expired lease")
+    public void testLeaseExpiry() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+        lease.grant(100, now + TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertEquals(-1, lease.tryTake(now + TimeUnit.MILLISECONDS.toNanos(2)));
+    }
+
+    @Test
+    @DisplayName("Should add prefetched tokens to a live lease")
+    public void testLeasePrefetch() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+        lease.grant(2, now + TimeUnit.SECONDS.toNanos(10));
+        lease.grant(5, now + TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(6, lease.tryTake(now));
+    }
+
+    @Test
+    @DisplayName("Should reject locally while the cluster bucket is empty")
+    public void testLeaseDenied() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+        lease.deny(now + TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(lease.isDenied(now));
+        assertFalse(lease.isDenied(now + TimeUnit.SECONDS.toNanos(2)));
+    }
+
+    @Test
+    @DisplayName("Should hand back unused tokens only once the lease has expired")
+    public void testLeaseDrainExpired() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+        lease.grant(10, now + TimeUnit.SECONDS.toNanos(1));
+        lease.tryTake(now);
+
+        assertEquals(0, lease.drainExpired(now), "A live lease should keep its tokens");
+        assertEquals(9, lease.drainExpired(now + TimeUnit.SECONDS.toNanos(2)));
+        assertEquals(0, lease.drainExpired(now + TimeUnit.SECONDS.toNanos(2)), "Tokens should be refunded once");
+    }
+
+    @Test
+    @DisplayName("Should admit requests ahead of a grant up to the lease size and repay them from it")
+    public void testLeaseBorrow() {
+        ClusterRateLimiter.Lease lease = new ClusterRateLimiter.Lease();
+        long now = System.nanoTime();
+
+        assertTrue(lease.borrow(2), "The first request for a new key should be admitted");
+        assertTrue(lease.borrow(2));
+        assertFalse(lease.borrow(2), "No more than one lease may be owed");
+        assertEquals(0, lease.drain(), "Owed tokens should survive a drain");
+
+        lease.grant(5, now + TimeUnit.SECONDS.toNanos(10));
+        assertEquals(2, lease.tryTake(now), "The grant should repay the two borrowed tokens first");
+    }
+}
@@ -0,0 +1,121 @@
+package id.payu.gateway.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IP Prefix Trie Tests")
+public class IpPrefixTrieTest {
+
+    @Test
+    @DisplayName("Should match IPv4 prefixes of arbitrary length")
+    public void testIpv4Prefixes() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("172.16.0.0/12", "203.0.113.64/26", "198.51.100.7"));
+
+        assertTrue(trie.matches("172.16.0.1"));
+        assertTrue(trie.matches("172.31.255.255"));
+        assertFalse(trie.matches("172.32.0.1"));
+        assertTrue(trie.matches("203.0.113.64"));
+        assertTrue(trie.matches("203.0.113.127"));
+        assertFalse(trie.matches("203.0.113.128"));
+        assertTrue(trie.matches("198.51.100.7"));
+        assertFalse(trie.matches("198.51.100.8"));
+    }
+
+    @Test
+    @DisplayName("Should match IPv6 prefixes including compressed forms")
+    public void testIpv6Prefixes() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("2001:db8::/32", "fe80::1"));
+
+        assertTrue(trie.matches("2001:db8::1"));
+        assertTrue(trie.matches("2001:0db8:ffff:0000:0000:0000:0000:0001"));
+        assertTrue(trie.matches("[2001:db8:1::2]"));
+        assertFalse(trie.matches("2001:db9::1"));
+        assertTrue(trie.matches("fe80::1"));
+        assertTrue(trie.matches("fe80::1%eth0"));
+        assertTrue(trie.matches("fe80:0:0:0:0:0:0:1"));
+        assertFalse(trie.matches("fe80::2"));
+        assertFalse(trie.matches("::"));
+    }
+
+    @Test
+    @DisplayName("Should expand :: wherever it appears before comparing prefix bits")
+    public void testIpv6GapPositions() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("2001:db8::/48", "::/128", "fd00:1:2:3::/64"));
+
+        assertTrue(trie.matches("2001:db8::"));
+        assertTrue(trie.matches("2001:db8:0::ffff"));
+        assertTrue(trie.matches("2001:0db8:0000::1:2:3"));
+        assertFalse(trie.matches("2001:db8:1::"));
+        assertTrue(trie.matches("::"));
+        assertFalse(trie.matches("::1"));
+        assertTrue(trie.matches("fd00:1:2:3::"));
+        assertTrue(trie.matches("fd00:1:2:3:4::5"));
+        assertFalse(trie.matches("fd00:1:2::3"));
+    }
+
+    @Test
+    @DisplayName("Should match IPv4-mapped IPv6 addresses against IPv4 prefixes")
+    public void testIpv4MappedAddresses() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("10.0.0.0/8", "::ffff:192.168.1.0/120"));
+
+        assertTrue(trie.matches("::ffff:10.1.2.3"));
+        assertTrue(trie.matches("::ffff:0a01:0203"));
+        assertTrue(trie.matches("192.168.1.77"));
+        assertFalse(trie.matches("::ffff:11.1.2.3"));
+    }
+
+    @Test
+    @DisplayName("Should read an embedded dotted quad as the last 32 bits of an IPv6 address")
+    public void testEmbeddedDottedQuad() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("64:ff9b::c000:221/128"));
+
+        assertTrue(trie.matches("64:ff9b::192.0.2.33"));
+        assertTrue(trie.matches("64:FF9B:0:0:0:0:192.0.2.33"));
+        assertFalse(trie.matches("64:ff9b::192.0.2.34"));
+    }
+
+    @Test
+    @DisplayName("Should treat /0 as match-all and empty trie as match-none")
+    public void testBoundaryPrefixes() {
+        assertTrue(IpPrefixTrie.compile(List.of("0.0.0.0/0")).matches("8.8.8.8"));
+        assertFalse(IpPrefixTrie.compile(List.of("0.0.0.0/0")).matches("2001:db8::1"));
+        assertFalse(IpPrefixTrie.compile(List.of()).matches("8.8.8.8"));
+    }
+
+    @Test
+    @DisplayName("Should never match malformed addresses")
+    public void testMalformedAddresses() {
+        IpPrefixTrie trie = IpPrefixTrie.compile(List.of("0.0.0.0/0", "::/0"));
+
+        assertFalse(trie.matches(null));
+        assertFalse(trie.matches(""));
+        assertFalse(trie.matches("unknown"));
+        assertFalse(trie.matches("256.1.1.1"));
+        assertFalse(trie.matches("1.2.3"));
+        assertFalse(trie.matches("1.2.3.4.5"));
+        assertFalse(trie.matches("1::2::3"));
+        assertFalse(trie.matches("1:2:3:4:5:6:7"));
+        assertFalse(trie.matches("12345::1"));
+        assertFalse(trie.matches("1:2:3:4:5:6:7:8:"));
+        assertFalse(trie.matches(":1::"));
+        assertFalse(trie.matches("1:2:3:4:5:6:7:8:9"));
+        assertFalse(trie.matches("1:2:3:4:5:6:7:8::"));
+        assertFalse(trie.matches("1:::2"));
+        assertFalse(trie.matches("1.2.3.4::"));
+        assertFalse(trie.matches("::1.2.3"));
+        assertFalse(trie.matches("::\uFF11"));
+        assertFalse(trie.matches("example.com:80"));
+    }
+
+    @Test
+    @DisplayName("Should reject invalid prefixes at compile time")
+    public void testInvalidPrefixes() {
+        assertThrows(IllegalArgumentException.class, () -> IpPrefixTrie.compile(List.of("10.0.0.0/33")));
+        assertThrows(IllegalArgumentException.class, () -> IpPrefixTrie.compile(List.of("partner.example.com")));
+        assertThrows(IllegalArgumentException.class, () -> IpPrefixTrie.compile(List.of("10.0.0.0/x")));
+    }
+}
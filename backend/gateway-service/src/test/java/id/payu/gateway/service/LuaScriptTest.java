@@ -0,0 +1,62 @@
+package id.payu.gateway.service;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Lua Script Tests")
+public class LuaScriptTest {
+
+    private final ReactiveRedisDataSource redis = mock(ReactiveRedisDataSource.class);
+    private final Response response = mock(Response.class);
+
+    @Test
+    @DisplayName("Should use the digest Redis reports for SCRIPT LOAD")
+    public void testSha() {
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", new LuaScript("return 1").sha());
+    }
+
+    @Test
+    @DisplayName("Should run a known script by digest only")
+    public void testEvalsha() {
+        LuaScript script = new LuaScript("return 1");
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenReturn(Uni.createFrom().item(response));
+
+        assertSame(response, script.execute(redis, 1, "key", "arg").await().indefinitely());
+        verify(redis).execute("EVALSHA", script.sha(), "1", "key", "arg");
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+
+    @Test
+    @DisplayName("Should send the script text once Redis reports NOSCRIPT")
+    public void testNoScriptFallback() {
+        LuaScript script = new LuaScript("return 1");
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenReturn(Uni.createFrom().failure(
+            new RuntimeException("NOSCRIPT No matching script. Please use EVAL.")));
+        when(redis.execute(eq("EVAL"), any(String[].class))).thenReturn(Uni.createFrom().item(response));
+
+        assertSame(response, script.execute(redis, 1, "key").await().indefinitely());
+        verify(redis).execute("EVAL", "return 1", "1", "key");
+    }
+
+    @Test
+    @DisplayName("Should not retry other script errors")
+    public void testOtherFailure() {
+        LuaScript script = new LuaScript("return 1");
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenReturn(Uni.createFrom().failure(
+            new RuntimeException("ERR wrong number of arguments")));
+
+        assertThrows(RuntimeException.class, () -> script.execute(redis, 1, "key").await().indefinitely());
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+}
@@ -0,0 +1,149 @@
+package id.payu.gateway.service;
+
+import id.payu.gateway.config.GatewayConfig;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.subscription.Cancellable;
+import io.vertx.mutiny.core.buffer.Buffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static id.payu.gateway.service.ResponseCompressionService.ContentEncoding.BROTLI;
+import static id.payu.gateway.service.ResponseCompressionService.ContentEncoding.GZIP;
+import static id.payu.gateway.service.ResponseCompressionService.ContentEncoding.ZSTD;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DisplayName("Response Compression Service Tests")
+public class ResponseCompressionServiceTest {
+
+    private static final List<ResponseCompressionService.ContentEncoding> PREFERENCE = List.of(BROTLI, ZSTD, GZIP);
+
+    private ResponseCompressionService service;
+
+    @BeforeEach
+    public void setUp() {
+        GatewayConfig config = mock(GatewayConfig.class, RETURNS_DEEP_STUBS);
+        when(config.compression().enabled()).thenReturn(true);
+        when(config.compression().algorithms()).thenReturn(List.of("gzip"));
+        when(config.compression().mimeTypes()).thenReturn(List.of("application/json", "text/plain"));
+        when(config.compression().minSize()).thenReturn(1024);
+        when(config.compression().level()).thenReturn(6);
+        when(config.compression().maxConcurrent()).thenReturn(1);
+        when(config.compression().deflaterPoolSize()).thenReturn(2);
+        when(config.compression().offloadThreshold()).thenReturn(65536);
+
+        service = new ResponseCompressionService();
+        service.config = config;
+        service.init();
+    }
+
+    @Test
+    @DisplayName("Should prefer the server order among equally weighted encodings")
+    public void testNegotiateServerPreference() {
+        assertEquals(Optional.of(BROTLI), ResponseCompressionService.negotiate("gzip, deflate, br, zstd", PREFERENCE));
+        assertEquals(Optional.of(GZIP), ResponseCompressionService.negotiate("gzip", PREFERENCE));
+    }
+
+    @Test
+    @DisplayName("Should honour q-values, explicit refusals and wildcards")
+    public void testNegotiateQValues() {
+        assertEquals(Optional.of(GZIP), ResponseCompressionService.negotiate("br;q=0.5, gzip;q=0.9", PREFERENCE));
+        assertEquals(Optional.of(ZSTD), ResponseCompressionService.negotiate("br;q=0, *", PREFERENCE));
+        assertEquals(Optional.empty(), ResponseCompressionService.negotiate("identity", PREFERENCE));
+        assertEquals(Optional.empty(), ResponseCompressionService.negotiate("*;q=0", PREFERENCE));
+        assertEquals(Optional.empty(), ResponseCompressionService.negotiate(null, PREFERENCE));
+    }
+
+    @Test
+    @DisplayName("Should skip encoded, small and non-compressible responses")
+    public void testOpenSkips() {
+        assertTrue(service.open("gzip", "application/json", "br", -1).isEmpty());
+        assertTrue(service.open("gzip", "application/json", null, 100).isEmpty());
+        assertTrue(service.open("gzip", "image/png", null, -1).isEmpty());
+        assertTrue(service.open("br", "application/json", null, -1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should bound concurrent encoders and release the permit on close")
+    public void testConcurrencyBound() {
+        ResponseCompressionService.StreamEncoder first = service.open("gzip", "application/json", null, -1).orElseThrow();
+        first.start();
+        assertTrue(service.open("gzip", "application/json", null, -1).isEmpty());
+
+        first.close();
+        first.close();
+        ResponseCompressionService.StreamEncoder second = service.open("gzip", "application/json", null, -1).orElseThrow();
+        second.close();
+    }
+
+    @Test
+    @DisplayName("Should not take a permit for a stream that is never subscribed")
+    public void testUnsubscribedStreamHoldsNoPermit() {
+        ResponseCompressionService.StreamEncoder encoder = service.open("gzip", "application/json", null, -1).orElseThrow();
+        Multi<Buffer> encoded = encoder.encodeStream(Multi.createFrom().item(Buffer.buffer("{\"id\":1}")));
+        assertNotNull(encoded);
+
+        // The response was abandoned before it was written; the next one can still compress
+        service.open("gzip", "application/json", null, -1).orElseThrow().close();
+    }
+
+    @Test
+    @DisplayName("Should gzip a chunked stream into a valid gzip body")
+    public void testGzipStream() throws IOException {
+        String line = "{\"id\":\"acc-1\",\"balance\":\"1000.00\",\"currency\":\"IDR\"}\n";
+        List<Buffer> chunks = List.of(Buffer.buffer(line.repeat(50)), Buffer.buffer(line.repeat(200)), Buffer.buffer(line));
+
+        ResponseCompressionService.StreamEncoder encoder = service.open("gzip", "application/json", null, -1).orElseThrow();
+        Buffer encoded = Buffer.buffer();
+        encoder.encodeStream(Multi.createFrom().iterable(chunks))
+            .subscribe().asIterable()
+            .forEach(encoded::appendBuffer);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded.getBytes()))) {
+            assertEquals(line.repeat(251), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertTrue(encoded.length() < line.length() * 251 / 10);
+        // Stream termination released the permit
+        service.open("gzip", "application/json", null, -1).orElseThrow().close();
+    }
+
+    @Test
+    @DisplayName("Should release the permit and deflater when the client cancels mid-stream")
+    public void testCancellationReleases() {
+        ResponseCompressionService.StreamEncoder encoder = service.open("gzip", "application/json", null, -1).orElseThrow();
+        assertTrue(encoder.offload(), "Bodies of unknown length are encoded off the event loop");
+
+        Cancellable subscription = encoder.encodeStream(Multi.createFrom().<Buffer>emitter(emitter ->
+                emitter.emit(Buffer.buffer("{\"id\":1}".repeat(100)))))
+            .subscribe().with(chunk -> { });
+        assertTrue(service.open("gzip", "application/json", null, -1).isEmpty(), "Permit is held while streaming");
+
+        subscription.cancel();
+
+        service.open("gzip", "application/json", null, -1).orElseThrow().close();
+        assertEquals(0, encoder.encode(Buffer.buffer("late")).length(), "A closed encoder ignores late chunks");
+    }
+
+    @Test
+    @DisplayName("Should reuse pooled deflaters for one-shot compression")
+    public void testCompressBuffered() throws IOException {
+        byte[] body = "payu ".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < 3; i++) {
+            ResponseCompressionService.StreamEncoder encoder = service.open("gzip", "text/plain", null, body.length).orElseThrow();
+            byte[] compressed = service.compress(encoder, body);
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                assertArrayEquals(body, in.readAllBytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package id.payu.gateway.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Token Bucket Tests")
+public class TokenBucketTest {
+
+    @Test
+    @DisplayName("Should grant exactly capacity tokens before refill")
+    public void testCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 1, Duration.ofHours(1));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryConsume(), "Token " + i + " should be granted");
+        }
+        assertFalse(bucket.tryConsume());
+        assertEquals(0, bucket.availableTokens());
+        assertTrue(bucket.millisUntilRefill() > 0);
+    }
+
+    @Test
+    @DisplayName("Should refill continuously over time")
+    public void testRefill() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(2, 2, Duration.ofMillis(100));
+        assertTrue(bucket.tryConsume());
+        assertTrue(bucket.tryConsume());
+        assertFalse(bucket.tryConsume());
+
+        Thread.sleep(150);
+
+        assertTrue(bucket.tryConsume());
+    }
+
+    @Test
+    @DisplayName("Should never over-grant under contention")
+    public void testContention() throws InterruptedException {
+        int capacity = 10_000;
+        TokenBucket bucket = new TokenBucket(capacity, 1, Duration.ofHours(1));
+        AtomicInteger granted = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < capacity; i++) {
+                    if (bucket.tryConsume()) {
+                        granted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(capacity, granted.get());
+    }
+
+    @Test
+    @DisplayName("Should reject invalid configuration")
+    public void testInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 1, Duration.ZERO));
+    }
+}
@@ -0,0 +1,63 @@
+package id.payu.gateway.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+@DisplayName("Upstream Client Registry Tests")
+public class UpstreamClientRegistryTest {
+
+    @Inject
+    UpstreamClientRegistry registry;
+
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Should register a client per configured service and simulator")
+    public void testClientsRegistered() {
+        assertNotNull(registry.service("wallet-service"));
+        assertNotNull(registry.service("lending-service"));
+        assertNotNull(registry.simulator("bi-fast"));
+        assertNotSame(registry.service("wallet-service"), registry.service("lending-service"));
+    }
+
+    @Test
+    @DisplayName("Should return null for unknown upstream")
+    public void testUnknownUpstream() {
+        assertNull(registry.service("unknown-service"));
+    }
+
+    @Test
+    @DisplayName("Should keep services and simulators in separate namespaces")
+    public void testSeparateNamespaces() {
+        assertNull(registry.service("bi-fast"));
+        assertNull(registry.simulator("wallet-service"));
+        assertNotNull(meterRegistry.find("gateway.upstream.pool.queue.depth")
+            .tags("service", "bi-fast", "type", "simulator").gauge());
+    }
+
+    @Test
+    @DisplayName("Should pre-parse target address and timeout")
+    public void testPreParsedAddress() {
+        UpstreamClientRegistry.UpstreamClient client = registry.service("account-service");
+        assertEquals("http://localhost:8081", client.baseUrl());
+        assertEquals(Duration.ofSeconds(30), client.timeout());
+    }
+
+    @Test
+    @DisplayName("Should expose pool metrics per upstream")
+    public void testPoolMetrics() {
+        assertNotNull(meterRegistry.find("gateway.upstream.pool.queue.depth")
+            .tag("service", "wallet-service").gauge());
+        assertNotNull(meterRegistry.find("gateway.upstream.pool.wait")
+            .tag("service", "lending-service").timer());
+    }
+}
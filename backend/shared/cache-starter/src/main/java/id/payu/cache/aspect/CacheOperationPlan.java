@@ -0,0 +1,195 @@
+package id.payu.cache.aspect;
+
+import id.payu.cache.key.CacheKeyBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Everything the aspect needs for one annotated method, resolved on its first call:
+ * the cache name, the parsed key, condition and unless expressions, the parameter
+ * names they refer to, and the hit/miss counters. Expressions come from a parser in
+ * {@code SpelCompilerMode.IMMEDIATE}, so they are compiled to bytecode after their
+ * first evaluation.
+ *
+ * <p>Without a key expression the key is
+ * {@code cacheName:method(ParamType,...):arg:arg}, built by {@link CacheKeyBuilder}.</p>
+ */
+final class CacheOperationPlan {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    // One evaluation context per thread, rebound for every evaluation: a fresh
+    // StandardEvaluationContext would also rebuild its accessors and their reflection caches
+    private static final ThreadLocal<Context> CONTEXTS = ThreadLocal.withInitial(Context::new);
+
+    private final Method method;
+    private final String cacheName;
+    private final String defaultKeyPrefix;
+    private final Expression key;
+    private final Expression condition;
+    private final Expression unless;
+    private final Map<String, Integer> parameterIndexes;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    CacheOperationPlan(
+            Method method,
+            String cacheName,
+            String value,
+            String key,
+            String condition,
+            String unless,
+            ExpressionParser parser) {
+        this.method = method;
+        this.cacheName = StringUtils.hasText(cacheName) ? cacheName : value;
+        this.defaultKeyPrefix = this.cacheName + CacheKeyBuilder.SEPARATOR + signature(method);
+        this.key = parse(parser, key);
+        this.condition = parse(parser, condition);
+        this.unless = parse(parser, unless);
+        this.parameterIndexes = parameterIndexes(method);
+        this.hitCounter = Metrics.counter("cache.aspect.hit", "cache", this.cacheName);
+        this.missCounter = Metrics.counter("cache.aspect.miss", "cache", this.cacheName);
+    }
+
+    String cacheName() {
+        return cacheName;
+    }
+
+    Method method() {
+        return method;
+    }
+
+    Counter hitCounter() {
+        return hitCounter;
+    }
+
+    Counter missCounter() {
+        return missCounter;
+    }
+
+    boolean hasCondition() {
+        return condition != null;
+    }
+
+    boolean hasUnless() {
+        return unless != null;
+    }
+
+    String key(Object[] args, Object target) {
+        if (key == null) {
+            CacheKeyBuilder builder = CacheKeyBuilder.of(defaultKeyPrefix);
+            for (Object arg : args) {
+                builder.add(arg);
+            }
+            return builder.build();
+        }
+        return cacheName + CacheKeyBuilder.SEPARATOR + evaluate(key, args, target, null, String.class);
+    }
+
+    boolean condition(Object[] args, Object target) {
+        return Boolean.TRUE.equals(evaluate(condition, args, target, null, Boolean.class));
+    }
+
+    boolean unless(Object[] args, Object target, Object result) {
+        return Boolean.TRUE.equals(evaluate(unless, args, target, result, Boolean.class));
+    }
+
+    private <T> T evaluate(Expression expression, Object[] args, Object target, Object result, Class<T> type) {
+        Context context = CONTEXTS.get();
+        if (context.plan != null) {
+            // Re-entered from a method called by an expression on this thread
+            context = new Context();
+        }
+        context.bind(this, args, target, result);
+        try {
+            return expression.getValue(context, type);
+        } catch (SpelEvaluationException e) {
+            // Compiled code is specialised to the types seen so far; fall back for this one
+            if (e.getMessageCode() == SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION
+                    && expression instanceof SpelExpression spel) {
+                spel.revertToInterpreted();
+                return expression.getValue(context, type);
+            }
+            throw e;
+        } finally {
+            context.bind(null, null, null, null);
+        }
+    }
+
+    private static Expression parse(ExpressionParser parser, String expression) {
+        return StringUtils.hasText(expression) ? parser.parseExpression(expression) : null;
+    }
+
+    private static String signature(Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(types[i].getName());
+        }
+        return signature.append(')').toString();
+    }
+
+    private static Map<String, Integer> parameterIndexes(Method method) {
+        Map<String, Integer> indexes = new HashMap<>();
+        String[] names = PARAMETER_NAMES.getParameterNames(method);
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            indexes.put("p" + i, i);
+            indexes.put("a" + i, i);
+            if (names != null) {
+                indexes.put(names[i], i);
+            }
+        }
+        return Map.copyOf(indexes);
+    }
+
+    /**
+     * Evaluation context resolving {@code #paramName}, {@code #p0}/{@code #a0},
+     * {@code #method}, {@code #target} and {@code #result} straight from the call,
+     * without copying arguments into a variable map. Bound to one call at a time and
+     * unbound afterwards, so it never keeps arguments alive.
+     */
+    static final class Context extends StandardEvaluationContext {
+
+        private CacheOperationPlan plan;
+        private Object[] args;
+        private Object target;
+        private Object result;
+
+        void bind(CacheOperationPlan plan, Object[] args, Object target, Object result) {
+            this.plan = plan;
+            this.args = args;
+            this.target = target;
+            this.result = result;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            Integer index = plan.parameterIndexes.get(name);
+            if (index != null && index < args.length) {
+                return args[index];
+            }
+            return switch (name) {
+                case "method" -> plan.method;
+                case "target" -> target;
+                case "result" -> result;
+                default -> super.lookupVariable(name);
+            };
+        }
+    }
+}
@@ -2,29 +2,22 @@ package id.payu.cache.aspect;
 
 import id.payu.cache.annotation.CacheInvalidate;
 import id.payu.cache.annotation.CacheWithTTL;
-import id.payu.cache.model.CacheEntry;
 import id.payu.cache.service.CacheService;
-import io.micrometer.core.instrument.Metrics;
+import id.payu.cache.service.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.core.DefaultParameterNameDiscoverer;
-import org.springframework.core.ParameterNameDiscoverer;
-import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
-import org.springframework.util.ConcurrentReferenceHashMap;
 
 import java.lang.reflect.Method;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Aspect for implementing @CacheWithTTL and @CacheInvalidate annotations.
@@ -32,9 +25,10 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <p>Features:</p>
  * <ul>
  *   <li>Automatic cache key generation with SpEL support</li>
+ *   <li>Per-method plans: expressions parsed and compiled once, see {@link CacheOperationPlan}</li>
  *   <li>Stale-while-revalidate pattern</li>
  *   <li>Conditional caching based on SpEL expressions</li>
- *   <li>Sync access to prevent cache stampede</li>
+ *   <li>Sync access to prevent cache stampede, through the cache's {@link SingleFlight}</li>
  *   <li>Async refresh background processing</li>
  * </ul>
  */
@@ -44,30 +38,27 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CacheWithTTLAspect {
 
     private final CacheService cacheService;
-    private final Executor cacheRefreshExecutor;
 
-    private final ExpressionParser parser = new SpelExpressionParser();
-    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+    private final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, CacheWithTTLAspect.class.getClassLoader()));
 
-    // In-flight requests tracker for sync access
-    private final ConcurrentReferenceHashMap<String, CompletableFuture<?>> inFlightRequests =
-            new ConcurrentReferenceHashMap<>();
+    // Per-method plans, built on first call
+    private final Map<Method, CacheOperationPlan> cachingPlans = new ConcurrentHashMap<>();
+    private final Map<Method, CacheOperationPlan> invalidationPlans = new ConcurrentHashMap<>();
 
     @Around("@annotation(cacheWithTTL)")
     public Object aroundCacheWithTTL(ProceedingJoinPoint joinPoint, CacheWithTTL cacheWithTTL) throws Throwable {
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
+        CacheOperationPlan plan = cachingPlan(joinPoint, cacheWithTTL);
+        Object[] args = joinPoint.getArgs();
 
         // Check condition
-        if (StringUtils.isNotBlank(cacheWithTTL.condition())) {
-            if (!evaluateCondition(cacheWithTTL.condition(), method, joinPoint.getArgs(), joinPoint.getTarget())) {
-                log.debug("Cache condition false, bypassing cache for method: {}", method.getName());
-                return joinPoint.proceed();
-            }
+        if (plan.hasCondition() && !evaluateCondition(plan, args, joinPoint.getTarget(), null, false)) {
+            log.debug("Cache condition false, bypassing cache for method: {}", plan.method().getName());
+            return joinPoint.proceed();
         }
 
         // Generate cache key
-        String cacheKey = generateCacheKey(cacheWithTTL.cacheName(), cacheWithTTL.key(), method, joinPoint.getArgs());
+        String cacheKey = plan.key(args, joinPoint.getTarget());
 
         // Calculate TTLs
         long ttlSeconds = cacheWithTTL.timeUnit().toSeconds(cacheWithTTL.ttl());
@@ -76,9 +67,9 @@ public class CacheWithTTLAspect {
 
         if (cacheWithTTL.staleWhileRevalidate()) {
             return handleStaleWhileRevalidate(
-                    joinPoint, cacheWithTTL, cacheKey, softTtlSeconds, hardTtlSeconds);
+                    joinPoint, cacheKey, softTtlSeconds, hardTtlSeconds);
         } else {
-            return handleSimpleCache(joinPoint, cacheWithTTL, cacheKey, ttlSeconds);
+            return handleSimpleCache(joinPoint, cacheWithTTL, plan, cacheKey, ttlSeconds);
         }
     }
 
@@ -86,15 +77,13 @@ public class CacheWithTTLAspect {
     public Object aroundCacheInvalidate(ProceedingJoinPoint joinPoint, CacheInvalidate cacheInvalidate) throws Throwable {
         Object result = joinPoint.proceed();
 
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Method method = signature.getMethod();
+        CacheOperationPlan plan = invalidationPlan(joinPoint, cacheInvalidate);
 
         if (cacheInvalidate.allEntries()) {
-            // Note: This would require a different approach to clear all entries
-            // For now, we just log
-            log.warn("Cache invalidation for all entries requested for: {} - not implemented", cacheInvalidate.cacheName());
+            long removed = cacheService.invalidateGroup(plan.cacheName());
+            log.debug("Invalidated {} entries of cache: {}", removed, plan.cacheName());
         } else {
-            String cacheKey = generateCacheKey(cacheInvalidate.cacheName(), cacheInvalidate.key(), method, joinPoint.getArgs());
+            String cacheKey = plan.key(joinPoint.getArgs(), joinPoint.getTarget());
             cacheService.invalidate(cacheKey);
             log.debug("Invalidated cache entry: {}", cacheKey);
         }
@@ -105,100 +94,100 @@ public class CacheWithTTLAspect {
     private Object handleSimpleCache(
             ProceedingJoinPoint joinPoint,
             CacheWithTTL cacheWithTTL,
+            CacheOperationPlan plan,
             String cacheKey,
             long ttlSeconds) throws Throwable {
 
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        Class<?> returnType = signature.getReturnType();
+        Class<?> returnType = plan.method().getReturnType();
 
         if (cacheWithTTL.sync()) {
-            return handleSyncCache(joinPoint, cacheWithTTL, cacheKey, ttlSeconds, returnType);
+            return handleSyncCache(joinPoint, plan, cacheKey, ttlSeconds, returnType);
         } else {
-            return handleAsyncCache(joinPoint, cacheWithTTL, cacheKey, ttlSeconds, returnType);
+            return handleAsyncCache(joinPoint, plan, cacheKey, ttlSeconds, returnType);
         }
     }
 
     private Object handleSyncCache(
             ProceedingJoinPoint joinPoint,
-            CacheWithTTL cacheWithTTL,
+            CacheOperationPlan plan,
             String cacheKey,
             long ttlSeconds,
             Class<?> returnType) throws Throwable {
 
-        // Check if there's already an in-flight request for this key
-        CompletableFuture<?> inFlight = inFlightRequests.get(cacheKey);
-        if (inFlight != null) {
-            log.debug("Waiting for in-flight request for key: {}", cacheKey);
-            try {
-                return inFlight.get();
-            } catch (Exception e) {
-                log.error("Error waiting for in-flight request: {}", e.getMessage());
-                // Fall through to execute the method
-            }
-        }
-
-        // Try to get from cache
         Object cachedValue = cacheService.get(cacheKey, returnType);
         if (cachedValue != null) {
-            Metrics.counter("cache.aspect.hit", "cache", cacheWithTTL.cacheName()).increment();
+            plan.hitCounter().increment();
             log.debug("Cache hit for key: {}", cacheKey);
             return cachedValue;
         }
 
-        // Create future for this request
-        Metrics.counter("cache.aspect.miss", "cache", cacheWithTTL.cacheName()).increment();
+        plan.missCounter().increment();
         log.debug("Cache miss for key: {}", cacheKey);
 
-        CompletableFuture<Object> future = CompletableFuture.supplyAsync(() -> {
-            try {
-                Object result = joinPoint.proceed();
-
-                // Check unless condition
-                if (StringUtils.isNotBlank(cacheWithTTL.unless())) {
-                    MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-                    Method method = signature.getMethod();
-                    if (evaluateCondition(cacheWithTTL.unless(), method, joinPoint.getArgs(), joinPoint.getTarget())) {
-                        log.debug("Cache unless condition true, not caching: {}", cacheKey);
-                        return result;
-                    }
+        // Concurrent misses share one invocation, on the caller's thread
+        SingleFlight singleFlight = cacheService.getSingleFlight();
+        try {
+            return singleFlight.execute(cacheKey, () -> cacheService.get(cacheKey, returnType), () -> {
+                // A previous leader may have filled the cache while we queued up
+                Object cached = cacheService.get(cacheKey, returnType);
+                if (cached != null) {
+                    return cached;
+                }
+                Object result = proceed(joinPoint);
+                if (plan.hasUnless()
+                        && evaluateCondition(plan, joinPoint.getArgs(), joinPoint.getTarget(), result, true)) {
+                    log.debug("Cache unless condition true, not caching: {}", cacheKey);
+                    return result;
                 }
-
                 if (result != null) {
-                    cacheService.put(cacheKey, result, java.time.Duration.ofSeconds(ttlSeconds));
+                    cacheService.putLoaded(cacheKey, result, java.time.Duration.ofSeconds(ttlSeconds),
+                            java.time.Duration.ofSeconds(ttlSeconds));
                     log.debug("Cached result for key: {}", cacheKey);
                 }
-
                 return result;
-            } catch (Throwable e) {
-                log.error("Error executing cached method: {}", e.getMessage());
-                throw new RuntimeException(e);
-            } finally {
-                inFlightRequests.remove(cacheKey);
-            }
-        });
-
-        inFlightRequests.put(cacheKey, future);
-        return future.get();
+            });
+        } catch (InvocationFailure e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Run the intercepted method inside a {@code Supplier}; its checked exceptions are
+     * carried out in an {@link InvocationFailure} and rethrown as they were.
+     */
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new InvocationFailure(t);
+        }
     }
 
     private Object handleAsyncCache(
             ProceedingJoinPoint joinPoint,
-            CacheWithTTL cacheWithTTL,
+            CacheOperationPlan plan,
             String cacheKey,
             long ttlSeconds,
             Class<?> returnType) throws Throwable {
 
         Object cachedValue = cacheService.get(cacheKey, returnType);
         if (cachedValue != null) {
-            Metrics.counter("cache.aspect.hit", "cache", cacheWithTTL.cacheName()).increment();
+            plan.hitCounter().increment();
             return cachedValue;
         }
 
-        Metrics.counter("cache.aspect.miss", "cache", cacheWithTTL.cacheName()).increment();
+        plan.missCounter().increment();
         Object result = joinPoint.proceed();
 
+        if (plan.hasUnless() && evaluateCondition(plan, joinPoint.getArgs(), joinPoint.getTarget(), result, true)) {
+            return result;
+        }
+
         if (result != null) {
-            cacheService.put(cacheKey, result, java.time.Duration.ofSeconds(ttlSeconds));
+            cacheService.putLoaded(cacheKey, result, java.time.Duration.ofSeconds(ttlSeconds),
+                    java.time.Duration.ofSeconds(ttlSeconds));
         }
 
         return result;
@@ -206,7 +195,6 @@ public class CacheWithTTLAspect {
 
     private Object handleStaleWhileRevalidate(
             ProceedingJoinPoint joinPoint,
-            CacheWithTTL cacheWithTTL,
             String cacheKey,
             long softTtlSeconds,
             long hardTtlSeconds) throws Throwable {
@@ -217,7 +205,7 @@ public class CacheWithTTLAspect {
         java.time.Duration softTtl = java.time.Duration.ofSeconds(softTtlSeconds);
         java.time.Duration hardTtl = java.time.Duration.ofSeconds(hardTtlSeconds);
 
-        // Try to get from cache with stale-while-revalidate
+        // Stale entries are served and refreshed in the background by CacheService
         @SuppressWarnings("unchecked")
         Object result = cacheService.getWithStaleWhileRevalidate(
                 cacheKey,
@@ -233,95 +221,44 @@ public class CacheWithTTLAspect {
                 hardTtl
         );
 
-        // Check if we need to trigger async refresh
-        CacheEntry<?> entry = cacheService.getDistributedCache().getEntry(cacheKey, Object.class);
-        if (entry != null && entry.isStale() && !entry.isExpired()) {
-            triggerAsyncRefresh(joinPoint, cacheWithTTL, cacheKey, softTtlSeconds, hardTtlSeconds);
-        }
-
         return result;
     }
 
-    private void triggerAsyncRefresh(
-            ProceedingJoinPoint joinPoint,
-            CacheWithTTL cacheWithTTL,
-            String cacheKey,
-            long softTtlSeconds,
-            long hardTtlSeconds) {
-
-        CompletableFuture.runAsync(() -> {
-            try {
-                log.debug("Async refresh for key: {}", cacheKey);
-                Object result = joinPoint.proceed();
-
-                if (result != null) {
-                    cacheService.put(
-                            cacheKey,
-                            result,
-                            java.time.Duration.ofSeconds(softTtlSeconds),
-                            java.time.Duration.ofSeconds(hardTtlSeconds)
-                    );
-                    Metrics.counter("cache.aspect.refresh", "cache", cacheWithTTL.cacheName()).increment();
-                }
-            } catch (Throwable e) {
-                log.error("Error during async refresh for key {}: {}", cacheKey, e.getMessage());
-                Metrics.counter("cache.aspect.refresh_error", "cache", cacheWithTTL.cacheName()).increment();
-            }
-        }, cacheRefreshExecutor);
+    private CacheOperationPlan cachingPlan(ProceedingJoinPoint joinPoint, CacheWithTTL cacheWithTTL) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CacheOperationPlan plan = cachingPlans.get(method);
+        if (plan == null) {
+            plan = cachingPlans.computeIfAbsent(method, m -> new CacheOperationPlan(
+                    m, cacheWithTTL.cacheName(), cacheWithTTL.value(), cacheWithTTL.key(),
+                    cacheWithTTL.condition(), cacheWithTTL.unless(), parser));
+        }
+        return plan;
     }
 
-    private String generateCacheKey(String cacheName, String keyExpression, Method method, Object[] args) {
-        if (StringUtils.isNotBlank(keyExpression)) {
-            // Use custom SpEL expression
-            EvaluationContext context = createEvaluationContext(method, args, null);
-            Expression expression = parser.parseExpression(keyExpression);
-            String key = expression.getValue(context, String.class);
-            return cacheName + ":" + key;
-        } else {
-            // Generate default key from method signature and parameters
-            StringBuilder keyBuilder = new StringBuilder(cacheName);
-            keyBuilder.append(":");
-            keyBuilder.append(method.getName());
-
-            if (args != null && args.length > 0) {
-                keyBuilder.append(":");
-                for (Object arg : args) {
-                    if (arg != null) {
-                        keyBuilder.append(arg.hashCode()).append("_");
-                    }
-                }
-            }
-
-            return keyBuilder.toString();
+    private CacheOperationPlan invalidationPlan(ProceedingJoinPoint joinPoint, CacheInvalidate cacheInvalidate) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        CacheOperationPlan plan = invalidationPlans.get(method);
+        if (plan == null) {
+            plan = invalidationPlans.computeIfAbsent(method, m -> new CacheOperationPlan(
+                    m, cacheInvalidate.cacheName(), cacheInvalidate.value(), cacheInvalidate.key(),
+                    null, null, parser));
         }
+        return plan;
     }
 
-    private boolean evaluateCondition(String conditionExpression, Method method, Object[] args, Object target) {
+    private boolean evaluateCondition(CacheOperationPlan plan, Object[] args, Object target, Object result, boolean unless) {
         try {
-            EvaluationContext context = createEvaluationContext(method, args, target);
-            Expression expression = parser.parseExpression(conditionExpression);
-            Boolean result = expression.getValue(context, Boolean.class);
-            return Boolean.TRUE.equals(result);
+            return unless ? plan.unless(args, target, result) : plan.condition(args, target);
         } catch (Exception e) {
             log.error("Error evaluating condition: {}", e.getMessage());
             return false;
         }
     }
 
-    private EvaluationContext createEvaluationContext(Method method, Object[] args, Object target) {
-        StandardEvaluationContext context = new StandardEvaluationContext();
-        context.setVariable("method", method);
-        context.setVariable("target", target);
+    private static final class InvocationFailure extends RuntimeException {
 
-        if (args != null) {
-            String[] parameterNames = parameterNameDiscoverer.getParameterNames(method);
-            if (parameterNames != null) {
-                for (int i = 0; i < args.length; i++) {
-                    context.setVariable(parameterNames[i], args[i]);
-                }
-            }
+        private InvocationFailure(Throwable cause) {
+            super(cause);
         }
-
-        return context;
     }
 }
@@ -0,0 +1,55 @@
+package id.payu.cache.codec;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary codec for one cached value type.
+ *
+ * <p>Values of a type with a registered codec are written as a small numeric id plus
+ * the codec's own bytes, instead of a class name plus a Smile document. Register a codec
+ * as a Spring bean for hot, stable types such as balances or account snapshots:</p>
+ * <pre>
+ * {@literal @Bean}
+ * CacheCodec&lt;Money&gt; moneyCodec() {
+ *     return new CacheCodec&lt;&gt;() {
+ *         public int id() { return 100; }
+ *         public Class&lt;Money&gt; type() { return Money.class; }
+ *         public void encode(Money value, DataOutput out) throws IOException {
+ *             CodecIO.writeString(out, value.currency());
+ *             out.writeLong(value.minorUnits());
+ *         }
+ *         public Money decode(DataInput in) throws IOException {
+ *             return new Money(CodecIO.readString(in), in.readLong());
+ *         }
+ *     };
+ * }
+ * </pre>
+ *
+ * <p>The id is part of the stored format: never reuse an id for a different type or
+ * change a codec's layout without also changing its id.</p>
+ *
+ * @param <T> Value type
+ */
+public interface CacheCodec<T> {
+
+    /**
+     * First id available to application codecs; lower ids are reserved for built-in codecs.
+     */
+    int FIRST_APPLICATION_ID = 64;
+
+    /**
+     * Stable wire id of this codec.
+     */
+    int id();
+
+    /**
+     * Exact type this codec handles; subclasses are not matched.
+     */
+    Class<T> type();
+
+    void encode(T value, DataOutput out) throws IOException;
+
+    T decode(DataInput in) throws IOException;
+}
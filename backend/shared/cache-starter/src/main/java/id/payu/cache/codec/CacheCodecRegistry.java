@@ -0,0 +1,164 @@
+package id.payu.cache.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lookup of {@link CacheCodec}s by type and by wire id.
+ *
+ * <p>Built-in codecs cover the scalar types most cached values are made of (strings,
+ * numbers, {@link BigDecimal} amounts, {@link UUID} ids and timestamps); application
+ * codecs are added on top and must use ids from {@link CacheCodec#FIRST_APPLICATION_ID}.</p>
+ */
+@Slf4j
+public class CacheCodecRegistry {
+
+    private final Map<Class<?>, CacheCodec<?>> byType = new HashMap<>();
+    private final Map<Integer, CacheCodec<?>> byId = new HashMap<>();
+
+    /**
+     * Registry with the built-in codecs only.
+     */
+    public CacheCodecRegistry() {
+        this(List.of());
+    }
+
+    /**
+     * Registry with the built-in codecs plus the given application codecs.
+     *
+     * @throws IllegalArgumentException if an id or type is registered twice or an
+     *                                  application codec uses a reserved id
+     */
+    public CacheCodecRegistry(Collection<? extends CacheCodec<?>> codecs) {
+        builtins().forEach(this::register);
+        for (CacheCodec<?> codec : codecs) {
+            if (codec.id() < CacheCodec.FIRST_APPLICATION_ID) {
+                throw new IllegalArgumentException("Cache codec id " + codec.id() + " for "
+                        + codec.type().getName() + " is reserved, use " + CacheCodec.FIRST_APPLICATION_ID + " or above");
+            }
+            register(codec);
+        }
+        if (!codecs.isEmpty()) {
+            log.info("Registered {} application cache codecs", codecs.size());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CacheCodec<T> find(Class<T> type) {
+        return (CacheCodec<T>) byType.get(type);
+    }
+
+    public CacheCodec<?> find(int id) {
+        return byId.get(id);
+    }
+
+    private void register(CacheCodec<?> codec) {
+        CacheCodec<?> sameId = byId.putIfAbsent(codec.id(), codec);
+        if (sameId != null) {
+            throw new IllegalArgumentException("Cache codec id " + codec.id() + " registered for both "
+                    + sameId.type().getName() + " and " + codec.type().getName());
+        }
+        if (byType.putIfAbsent(codec.type(), codec) != null) {
+            throw new IllegalArgumentException("More than one cache codec for " + codec.type().getName());
+        }
+    }
+
+    private static List<CacheCodec<?>> builtins() {
+        List<CacheCodec<?>> codecs = new ArrayList<>();
+        codecs.add(codec(1, String.class, CodecIO::writeString, CodecIO::readString));
+        codecs.add(codec(2, Long.class, CodecIO::writeVarLong, CodecIO::readVarLong));
+        codecs.add(codec(3, Integer.class, (out, v) -> CodecIO.writeVarLong(out, v), in -> (int) CodecIO.readVarLong(in)));
+        codecs.add(codec(4, Boolean.class, DataOutput::writeBoolean, DataInput::readBoolean));
+        codecs.add(codec(5, Double.class, DataOutput::writeDouble, DataInput::readDouble));
+        codecs.add(codec(6, BigDecimal.class, CacheCodecRegistry::writeBigDecimal, CacheCodecRegistry::readBigDecimal));
+        codecs.add(codec(7, BigInteger.class,
+                (out, v) -> CodecIO.writeBytes(out, v.toByteArray()), in -> new BigInteger(CodecIO.readBytes(in))));
+        codecs.add(codec(8, UUID.class, (out, v) -> {
+            out.writeLong(v.getMostSignificantBits());
+            out.writeLong(v.getLeastSignificantBits());
+        }, in -> new UUID(in.readLong(), in.readLong())));
+        codecs.add(codec(9, Instant.class, (out, v) -> {
+            CodecIO.writeVarLong(out, v.getEpochSecond());
+            CodecIO.writeVarInt(out, v.getNano());
+        }, in -> Instant.ofEpochSecond(CodecIO.readVarLong(in), CodecIO.readVarInt(in))));
+        codecs.add(codec(10, LocalDate.class,
+                (out, v) -> CodecIO.writeVarLong(out, v.toEpochDay()), in -> LocalDate.ofEpochDay(CodecIO.readVarLong(in))));
+        codecs.add(codec(11, LocalDateTime.class, (out, v) -> {
+            CodecIO.writeVarLong(out, v.toLocalDate().toEpochDay());
+            CodecIO.writeVarLong(out, v.toLocalTime().toNanoOfDay());
+        }, in -> LocalDateTime.of(LocalDate.ofEpochDay(CodecIO.readVarLong(in)),
+                LocalTime.ofNanoOfDay(CodecIO.readVarLong(in)))));
+        codecs.add(codec(12, byte[].class, CodecIO::writeBytes, CodecIO::readBytes));
+        return codecs;
+    }
+
+    private static void writeBigDecimal(DataOutput out, BigDecimal value) throws IOException {
+        CodecIO.writeVarLong(out, value.scale());
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 63) {
+            // Fits in a long: the common case for money amounts
+            out.writeBoolean(true);
+            CodecIO.writeVarLong(out, unscaled.longValue());
+        } else {
+            out.writeBoolean(false);
+            CodecIO.writeBytes(out, unscaled.toByteArray());
+        }
+    }
+
+    private static BigDecimal readBigDecimal(DataInput in) throws IOException {
+        int scale = (int) CodecIO.readVarLong(in);
+        if (in.readBoolean()) {
+            return BigDecimal.valueOf(CodecIO.readVarLong(in), scale);
+        }
+        return new BigDecimal(new BigInteger(CodecIO.readBytes(in)), scale);
+    }
+
+    private static <T> CacheCodec<T> codec(int id, Class<T> type, Writer<T> writer, Reader<T> reader) {
+        return new CacheCodec<>() {
+            @Override
+            public int id() {
+                return id;
+            }
+
+            @Override
+            public Class<T> type() {
+                return type;
+            }
+
+            @Override
+            public void encode(T value, DataOutput out) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public T decode(DataInput in) throws IOException {
+                return reader.read(in);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Writer<T> {
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+}
@@ -0,0 +1,321 @@
+package id.payu.cache.codec;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import id.payu.cache.model.CacheEntry;
+import id.payu.cache.properties.CacheProperties;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact binary value serializer for the distributed cache.
+ *
+ * <p>Layout: one header byte (format version and flags), then, when the LZ4 flag is
+ * set, the uncompressed length and an LZ4 block. The body is a kind byte followed by:</p>
+ * <ul>
+ *   <li>{@code ENTRY} - a {@link CacheEntry}: its timestamps as epoch millis, its version,
+ *       then the wrapped value</li>
+ *   <li>{@code CODEC} - the id of a registered {@link CacheCodec} and the codec's bytes</li>
+ *   <li>{@code LIST}, {@code SET}, {@code MAP} - the size, then every element (keys and values
+ *       for a map) written as a value of its own, so element types survive the round trip</li>
+ *   <li>{@code OPTIONAL} - the contained value, or {@code NULL} when empty</li>
+ *   <li>{@code SMILE} - the class name and a Smile (binary JSON) document, for any other type</li>
+ * </ul>
+ *
+ * <p>Smile documents are only read back into classes from the configured
+ * {@code allowed-packages}, so a tampered cache entry cannot name an arbitrary class.
+ * Other containers (queues, object arrays, ...) would lose their element types in a Smile
+ * document and are rejected unless a {@link CacheCodec} is registered for them.</p>
+ *
+ * <p>Values written by the previous JDK-serializing template are never deserialized, since
+ * Java serialization would instantiate whatever class the stream names. They read as
+ * {@code null}, a cache miss, so they are reloaded and overwritten in the new format.</p>
+ */
+public class CacheValueSerializer implements RedisSerializer<Object> {
+
+    static final int FORMAT_VERSION = 1;
+    static final int FLAG_LZ4 = 0x01;
+
+    private static final int KIND_NULL = 0;
+    private static final int KIND_ENTRY = 1;
+    private static final int KIND_CODEC = 2;
+    private static final int KIND_SMILE = 3;
+    private static final int KIND_LIST = 4;
+    private static final int KIND_SET = 5;
+    private static final int KIND_MAP = 6;
+    private static final int KIND_OPTIONAL = 7;
+
+    private static final long NO_INSTANT = Long.MIN_VALUE;
+
+    private final CacheCodecRegistry codecs;
+    private final ObjectMapper smileMapper;
+    private final boolean compression;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+    private final List<String> allowedPackages;
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+
+    public CacheValueSerializer(CacheCodecRegistry codecs, CacheProperties.Serialization config) {
+        this.codecs = codecs;
+        this.smileMapper = SmileMapper.builder()
+                .addModule(new JavaTimeModule())
+                .addModule(new Jdk8Module())
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+        this.compression = config.isCompression();
+        this.compressionThreshold = (int) Math.min(Integer.MAX_VALUE, config.getCompressionThreshold().toBytes());
+        LZ4Factory lz4 = LZ4Factory.fastestInstance();
+        this.compressor = lz4.fastCompressor();
+        this.decompressor = lz4.fastDecompressor();
+        this.allowedPackages = config.getAllowedPackages().stream()
+                .map(name -> name.endsWith(".") ? name : name + ".")
+                .toList();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeByte(FORMAT_VERSION << 4);
+            writeValue(out, value);
+            out.flush();
+            byte[] bytes = buffer.toByteArray();
+            return compression && bytes.length > compressionThreshold ? compress(bytes) : bytes;
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED) {
+            // Java serialization stream magic: written before this serializer was introduced
+            return null;
+        }
+        int header = bytes[0] & 0xFF;
+        if (header >>> 4 != FORMAT_VERSION) {
+            throw new SerializationException("Unsupported cache value format " + (header >>> 4));
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1));
+            if ((header & FLAG_LZ4) != 0) {
+                in = new DataInputStream(new ByteArrayInputStream(decompress(in, bytes)));
+            }
+            return readValue(in);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Cannot deserialize cache value", e);
+        }
+    }
+
+    private void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(KIND_NULL);
+            return;
+        }
+        if (value instanceof CacheEntry<?> entry) {
+            out.writeByte(KIND_ENTRY);
+            writeInstant(out, entry.getCreatedAt());
+            writeInstant(out, entry.getSoftTtl());
+            writeInstant(out, entry.getHardTtl());
+            CodecIO.writeVarLong(out, entry.getVersion());
+            writeValue(out, entry.getValue());
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        CacheCodec<Object> codec = (CacheCodec<Object>) codecs.find(value.getClass());
+        if (codec != null) {
+            out.writeByte(KIND_CODEC);
+            CodecIO.writeVarInt(out, codec.id());
+            codec.encode(value, out);
+            return;
+        }
+        if (value instanceof List<?> list) {
+            out.writeByte(KIND_LIST);
+            writeElements(out, list);
+            return;
+        }
+        if (value instanceof Set<?> set) {
+            out.writeByte(KIND_SET);
+            writeElements(out, set);
+            return;
+        }
+        if (value instanceof Map<?, ?> map) {
+            out.writeByte(KIND_MAP);
+            CodecIO.writeVarInt(out, map.size());
+            for (Map.Entry<?, ?> element : map.entrySet()) {
+                writeValue(out, element.getKey());
+                writeValue(out, element.getValue());
+            }
+            return;
+        }
+        if (value instanceof Optional<?> optional) {
+            out.writeByte(KIND_OPTIONAL);
+            writeValue(out, optional.orElse(null));
+            return;
+        }
+        if (value instanceof Iterable<?> || value.getClass().isArray()) {
+            throw new IOException("No cache codec registered for container type " + value.getClass().getName());
+        }
+        if (!isAllowed(value.getClass().getName())) {
+            throw new IOException("Type " + value.getClass().getName() + " is outside the allowed cache packages");
+        }
+        out.writeByte(KIND_SMILE);
+        CodecIO.writeString(out, value.getClass().getName());
+        CodecIO.writeBytes(out, smileMapper.writeValueAsBytes(value));
+    }
+
+    private Object readValue(DataInput in) throws IOException {
+        int kind = in.readUnsignedByte();
+        switch (kind) {
+            case KIND_NULL:
+                return null;
+            case KIND_ENTRY: {
+                Instant createdAt = readInstant(in);
+                Instant softTtl = readInstant(in);
+                Instant hardTtl = readInstant(in);
+                long version = CodecIO.readVarLong(in);
+                return new CacheEntry<>(readValue(in), createdAt, softTtl, hardTtl, version);
+            }
+            case KIND_CODEC: {
+                int id = CodecIO.readVarInt(in);
+                CacheCodec<?> codec = codecs.find(id);
+                if (codec == null) {
+                    throw new IOException("No cache codec registered with id " + id);
+                }
+                return codec.decode(in);
+            }
+            case KIND_SMILE: {
+                Class<?> type = resolve(CodecIO.readString(in));
+                return smileMapper.readValue(CodecIO.readBytes(in), type);
+            }
+            case KIND_LIST: {
+                int size = CodecIO.readVarInt(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case KIND_SET: {
+                int size = CodecIO.readVarInt(in);
+                Set<Object> set = new LinkedHashSet<>(Math.max(16, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    set.add(readValue(in));
+                }
+                return set;
+            }
+            case KIND_MAP: {
+                int size = CodecIO.readVarInt(in);
+                Map<Object, Object> map = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            }
+            case KIND_OPTIONAL:
+                return Optional.ofNullable(readValue(in));
+            default:
+                throw new IOException("Unknown cache value kind " + kind);
+        }
+    }
+
+    private byte[] compress(byte[] bytes) throws IOException {
+        int length = bytes.length - 1;
+        byte[] block = new byte[compressor.maxCompressedLength(length)];
+        int compressedLength = compressor.compress(bytes, 1, length, block, 0, block.length);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(compressedLength + 6);
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeByte(bytes[0] | FLAG_LZ4);
+        CodecIO.writeVarInt(out, length);
+        out.write(block, 0, compressedLength);
+        out.flush();
+        // Incompressible payloads are stored as they are
+        return buffer.size() < bytes.length ? buffer.toByteArray() : bytes;
+    }
+
+    private byte[] decompress(DataInputStream in, byte[] bytes) throws IOException {
+        int length = CodecIO.readVarInt(in);
+        int offset = bytes.length - in.available();
+        byte[] restored = new byte[length];
+        decompressor.decompress(bytes, offset, restored, 0, length);
+        return restored;
+    }
+
+    private void writeElements(DataOutput out, Collection<?> elements) throws IOException {
+        CodecIO.writeVarInt(out, elements.size());
+        for (Object element : elements) {
+            writeValue(out, element);
+        }
+    }
+
+    private boolean isAllowed(String className) {
+        for (String prefix : allowedPackages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Class<?> resolve(String className) throws IOException {
+        Class<?> type = classes.get(className);
+        if (type != null) {
+            return type;
+        }
+        if (!isAllowed(className)) {
+            throw new IOException("Cached value type " + className + " is outside the allowed cache packages");
+        }
+        try {
+            type = ClassUtils.forName(className, ClassUtils.getDefaultClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IOException("Cached value type no longer exists: " + className, e);
+        }
+        classes.putIfAbsent(className, type);
+        return type;
+    }
+
+    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        CodecIO.writeVarLong(out, instant == null ? NO_INSTANT : instant.toEpochMilli());
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        long millis = CodecIO.readVarLong(in);
+        return millis == NO_INSTANT ? null : Instant.ofEpochMilli(millis);
+    }
+}
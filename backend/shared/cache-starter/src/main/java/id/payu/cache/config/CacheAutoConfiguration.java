@@ -1,9 +1,18 @@
 package id.payu.cache.config;
 
 import id.payu.cache.aspect.CacheWithTTLAspect;
+import id.payu.cache.codec.CacheCodec;
+import id.payu.cache.codec.CacheCodecRegistry;
+import id.payu.cache.codec.CacheValueSerializer;
+import id.payu.cache.hotkey.HotKeyDetector;
+import id.payu.cache.hotkey.HotKeyEndpoint;
 import id.payu.cache.service.*;
 import id.payu.cache.properties.CacheProperties;
+import id.payu.cache.warming.CacheWarmer;
+import id.payu.cache.warming.HotKeySnapshot;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
@@ -11,10 +20,12 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.StringUtils;
 
 import java.util.concurrent.Executor;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -26,11 +37,16 @@ import org.springframework.beans.factory.annotation.Qualifier;
  * <ul>
  *   <li>CacheService - Primary cache service with distributed + local fallback</li>
  *   <li>DistributedCacheService - Redis-based cache service</li>
+ *   <li>CacheValueSerializer - Compact binary values, extended by {@code CacheCodec} beans</li>
  *   <li>LocalCacheService - Caffeine-based local cache fallback</li>
+ *   <li>NearCacheInvalidator - Redis pub/sub broadcast keeping local caches coherent</li>
+ *   <li>SingleFlight - Per-key coalescing of concurrent cache misses</li>
+ *   <li>HotKeyDetector - Sampled hot key tracking, with the {@code hotkeys} actuator endpoint</li>
  *   <li>CacheWithTTLAspect - Aspect for @CacheWithTTL annotation</li>
- *   <li>CacheWarmingService - Cache warming on startup</li>
+ *   <li>CacheWarmingService - Cache warming on startup through {@code CacheWarmer} beans</li>
  *   <li>CacheInvalidationPublisher - Kafka-based cache invalidation publisher</li>
  *   <li>CacheInvalidationConsumer - Kafka-based cache invalidation consumer</li>
+ *   <li>CacheRefresher - Deduplicated background refresh-ahead for stale-while-revalidate</li>
  *   <li>Async refresh executor for stale-while-revalidate</li>
  *   <li>Cache warming executor</li>
  * </ul>
@@ -51,27 +67,70 @@ public class CacheAutoConfiguration {
         return new LocalCacheService(properties);
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    public HotKeyDetector hotKeyDetector() {
+        return new HotKeyDetector(properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public NearCacheInvalidator nearCacheInvalidator(
+            RedisConnectionFactory connectionFactory,
+            LocalCacheService localCacheService) {
+        return new NearCacheInvalidator(connectionFactory, localCacheService, properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheCodecRegistry cacheCodecRegistry(ObjectProvider<CacheCodec<?>> codecs) {
+        return new CacheCodecRegistry(codecs.orderedStream().toList());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheValueSerializer cacheValueSerializer(CacheCodecRegistry cacheCodecRegistry) {
+        return new CacheValueSerializer(cacheCodecRegistry, properties.getSerialization());
+    }
+
     @Bean
     @ConditionalOnMissingBean
     public DistributedCacheService distributedCacheService(
-            RedisConnectionFactory connectionFactory) {
-        return new DistributedCacheService(connectionFactory, properties);
+            RedisConnectionFactory connectionFactory,
+            CacheValueSerializer cacheValueSerializer) {
+        return new DistributedCacheService(connectionFactory, properties, cacheValueSerializer);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SingleFlight singleFlight(RedisConnectionFactory connectionFactory) {
+        return new SingleFlight(connectionFactory, properties);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public CacheRefresher cacheRefresher(
+            @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor) {
+        return new CacheRefresher(cacheRefreshExecutor, properties);
     }
 
     @Bean
     @ConditionalOnMissingBean
     public CacheService cacheService(
             DistributedCacheService distributedCacheService,
-            LocalCacheService localCacheService) {
-        return new CacheService(distributedCacheService, localCacheService, properties);
+            LocalCacheService localCacheService,
+            SingleFlight singleFlight,
+            CacheRefresher cacheRefresher,
+            NearCacheInvalidator nearCacheInvalidator,
+            HotKeyDetector hotKeyDetector) {
+        return new CacheService(distributedCacheService, localCacheService, properties,
+                singleFlight, cacheRefresher, nearCacheInvalidator, hotKeyDetector);
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public CacheWithTTLAspect cacheWithTTLAspect(
-            CacheService cacheService,
-            @Qualifier("cacheRefreshExecutor") Executor cacheRefreshExecutor) {
-        return new CacheWithTTLAspect(cacheService, cacheRefreshExecutor);
+    public CacheWithTTLAspect cacheWithTTLAspect(CacheService cacheService) {
+        return new CacheWithTTLAspect(cacheService);
     }
 
     @Bean(name = "cacheRefreshExecutor")
@@ -80,7 +139,7 @@ public class CacheAutoConfiguration {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(properties.getStaleWhileRevalidate().getRefreshThreadPoolSize());
         executor.setMaxPoolSize(properties.getStaleWhileRevalidate().getRefreshThreadPoolSize() * 2);
-        executor.setQueueCapacity(100);
+        executor.setQueueCapacity(properties.getStaleWhileRevalidate().getRefreshQueueCapacity());
         executor.setThreadNamePrefix("cache-refresh-");
         executor.initialize();
         return executor;
@@ -112,8 +171,20 @@ public class CacheAutoConfiguration {
     )
     public CacheWarmingService cacheWarmingService(
             CacheService cacheService,
-            @Qualifier("cacheWarmExecutor") Executor cacheWarmExecutor) {
-        return new CacheWarmingService(cacheService, properties, cacheWarmExecutor);
+            RedisConnectionFactory connectionFactory,
+            ObjectProvider<CacheWarmer> cacheWarmers,
+            @Qualifier("cacheWarmExecutor") Executor cacheWarmExecutor,
+            @Value("${spring.application.name:application}") String applicationName) {
+        CacheProperties.CacheWarming warming = properties.getCacheWarming();
+        HotKeySnapshot snapshot = null;
+        if (warming.isSnapshotEnabled() && cacheService.getLocalCache().isEnabled()) {
+            String key = StringUtils.hasText(warming.getSnapshotKey())
+                    ? warming.getSnapshotKey()
+                    : "cache:warm:snapshot:" + applicationName;
+            snapshot = new HotKeySnapshot(connectionFactory, key, warming.getSnapshotTtl());
+        }
+        return new CacheWarmingService(cacheService, properties, cacheWarmExecutor,
+                cacheWarmers.orderedStream().toList(), snapshot);
     }
 
     @Bean
@@ -139,4 +210,15 @@ public class CacheAutoConfiguration {
             CacheService cacheService) {
         return new CacheInvalidationConsumer(cacheService, properties);
     }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class HotKeyEndpointConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public HotKeyEndpoint hotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+            return new HotKeyEndpoint(hotKeyDetector);
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package id.payu.cache.hotkey;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size frequency sketch: four rows of counters, each key incrementing one counter
+ * per row. The smallest of a key's counters is an estimate that can only be too high,
+ * by at most the counts of the keys sharing its counters. Memory stays constant however
+ * many keys are seen.
+ *
+ * <p>Each row hashes the key's characters with murmur3 under its own seed, so the rows
+ * are independent: keys that collide in one row (or share a {@code String.hashCode})
+ * are unlikely to collide in the others.</p>
+ */
+final class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final AtomicLongArray counters;
+    private final int width;
+    private final int mask;
+
+    CountMinSketch(int width) {
+        this.width = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(16, width) - 1));
+        this.mask = this.width - 1;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+    }
+
+    /**
+     * Add to a key's count.
+     *
+     * @return The key's estimated count after the increment
+     */
+    long add(String key, long increment) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(key, row), increment));
+        }
+        return estimate;
+    }
+
+    long estimate(String key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(key, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halve every counter, so old reads weigh less than recent ones.
+     */
+    void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.updateAndGet(i, count -> count >>> 1);
+        }
+    }
+
+    int index(String key, int row) {
+        return row * width + (murmur3(key, SEEDS[row]) & mask);
+    }
+
+    /**
+     * 32-bit murmur3 of the key's UTF-16 code units, two per block, without encoding
+     * the string to bytes first.
+     */
+    static int murmur3(String key, int seed) {
+        int h = seed;
+        int length = key.length();
+        int i = 0;
+        for (; i + 1 < length; i += 2) {
+            h ^= mixK(key.charAt(i) | (key.charAt(i + 1) << 16));
+            h = Integer.rotateLeft(h, 13) * 5 + 0xE6546B64;
+        }
+        if (i < length) {
+            h ^= mixK(key.charAt(i));
+        }
+        h ^= length * 2;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int mixK(int k) {
+        return Integer.rotateLeft(k * 0xCC9E2D51, 15) * 0x1B873593;
+    }
+}
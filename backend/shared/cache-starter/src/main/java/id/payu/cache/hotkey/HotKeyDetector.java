@@ -0,0 +1,219 @@
+package id.payu.cache.hotkey;
+
+import id.payu.cache.properties.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the keys read most often on this node, so that a single popular key (a busy
+ * merchant's QRIS lookup, a viral promotion) shows up before it saturates its Redis shard.
+ *
+ * <p>One read in {@code sample-rate} is counted in a {@link CountMinSketch}. Keys whose
+ * estimate is among the highest are kept as top-K candidates. At the end of every
+ * {@code window} all counts are halved, so an estimate converges to about twice the
+ * reads of one window and reflects the recent rate. Keys above {@code threshold} reads
+ * per second are reported as hot until their rate drops below it again.</p>
+ *
+ * <p>The rate gauge is tagged with each top key's cache (its group, the prefix before the
+ * tagging delimiter) and rank, never the key itself: keys carry customer identifiers and
+ * would give every key its own time series. The keys are on the {@code hotkeys}
+ * endpoint. For the same reason INFO logs name a hot key only by its cache and a 32-bit
+ * fingerprint, which many identifiers share; the key itself is logged at DEBUG.</p>
+ */
+@Slf4j
+public class HotKeyDetector {
+
+    private final boolean enabled;
+    private final int sampleRate;
+    private final long windowNanos;
+    private final double windowSeconds;
+    private final long thresholdCount;
+    private final int topK;
+    private final int capacity;
+    private final String delimiter;
+    private final CountMinSketch sketch;
+    private final LongSupplier clock;
+
+    private final Map<String, Long> candidates = new ConcurrentHashMap<>();
+    private final Set<String> hot = ConcurrentHashMap.newKeySet();
+    private final AtomicLong windowStart;
+    private final ReentrantLock pruning = new ReentrantLock();
+    private volatile long admissionFloor;
+    private volatile List<HotKey> topKeys = List.of();
+
+    private final Counter detectedCounter;
+    private final MultiGauge rateGauge;
+
+    public HotKeyDetector(CacheProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    HotKeyDetector(CacheProperties properties, LongSupplier clock) {
+        CacheProperties.HotKeys config = properties.getHotKeys();
+        this.enabled = config.isEnabled();
+        this.sampleRate = Math.max(1, config.getSampleRate());
+        this.windowNanos = config.getWindow().toNanos();
+        this.windowSeconds = windowNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        this.thresholdCount = Math.max(1, Math.round(config.getThreshold() * 2 * windowSeconds));
+        this.topK = Math.max(1, config.getTopK());
+        this.capacity = topK * 4;
+        this.delimiter = properties.getTagging().getDelimiter();
+        this.sketch = new CountMinSketch(config.getSketchWidth());
+        this.clock = clock;
+        this.windowStart = new AtomicLong(clock.getAsLong());
+
+        this.detectedCounter = Metrics.counter("cache.hotkey.detected");
+        this.rateGauge = MultiGauge.builder("cache.hotkey.rate")
+                .description("Estimated reads per second of the hottest keys on this node")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("cache.hotkey.hot", hot, Set::size).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Count a read of the key.
+     */
+    public void record(String key) {
+        if (!enabled || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+        rotateIfDue();
+
+        long count = sketch.add(key, sampleRate);
+        if (count >= admissionFloor || candidates.size() < capacity) {
+            candidates.put(key, count);
+            if (candidates.size() > capacity) {
+                prune();
+            }
+        }
+        if (count >= thresholdCount && hot.add(key)) {
+            detectedCounter.increment();
+            log.info("Hot key detected in cache {}: #{} (~{} reads/s)",
+                    cacheOf(key), fingerprint(key), readsPerSecond(count));
+            log.debug("Hot key #{} is {}", fingerprint(key), key);
+        }
+    }
+
+    /**
+     * Whether the key is currently read more than {@code threshold} times per second.
+     */
+    public boolean isHot(String key) {
+        return !hot.isEmpty() && hot.contains(key);
+    }
+
+    /**
+     * The hottest keys as of the last completed window, hottest first.
+     */
+    public List<HotKey> topKeys() {
+        rotateIfDue();
+        return topKeys;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void rotateIfDue() {
+        long now = clock.getAsLong();
+        long start = windowStart.get();
+        long elapsed = now - start;
+        if (elapsed < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+
+        List<HotKey> ranked = candidates.keySet().stream()
+                .map(key -> hotKey(key, sketch.estimate(key)))
+                .sorted(Comparator.comparingLong(HotKey::readsPerSecond).reversed())
+                .limit(topK)
+                .toList();
+        topKeys = ranked;
+        List<MultiGauge.Row<?>> rows = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            HotKey hotKey = ranked.get(i);
+            rows.add(MultiGauge.Row.of(Tags.of("cache", cacheOf(hotKey.key()), "rank", String.valueOf(i + 1)),
+                    hotKey.readsPerSecond()));
+        }
+        rateGauge.register(rows, true);
+
+        hot.removeIf(key -> {
+            boolean cooled = sketch.estimate(key) < thresholdCount;
+            if (cooled) {
+                log.info("Hot key cooled down in cache {}: #{}", cacheOf(key), fingerprint(key));
+            }
+            return cooled;
+        });
+
+        // Idle windows decay the counts too, at most until they are gone
+        long windows = Math.min(elapsed / windowNanos, 16);
+        for (long i = 0; i < windows; i++) {
+            sketch.halve();
+        }
+        candidates.replaceAll((key, count) -> count >>> windows);
+        candidates.values().removeIf(count -> count == 0);
+        admissionFloor >>>= windows;
+    }
+
+    /**
+     * Keep the highest half of the candidates and only admit keys counted at least as
+     * often as the lowest of them from now on.
+     */
+    private void prune() {
+        if (!pruning.tryLock()) {
+            return;
+        }
+        try {
+            List<Map.Entry<String, Long>> ranked = candidates.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .toList();
+            int keep = capacity / 2;
+            for (int i = keep; i < ranked.size(); i++) {
+                candidates.remove(ranked.get(i).getKey());
+            }
+            admissionFloor = ranked.get(Math.min(keep, ranked.size()) - 1).getValue();
+        } finally {
+            pruning.unlock();
+        }
+    }
+
+    private String cacheOf(String key) {
+        int end = key.indexOf(delimiter);
+        return end > 0 ? key.substring(0, end) : "none";
+    }
+
+    private static String fingerprint(String key) {
+        return Integer.toHexString(key.hashCode());
+    }
+
+    private HotKey hotKey(String key, long count) {
+        return new HotKey(key, readsPerSecond(count), count >= thresholdCount);
+    }
+
+    private long readsPerSecond(long count) {
+        return Math.round(count / (2 * windowSeconds));
+    }
+
+    /**
+     * A frequently read key.
+     *
+     * @param key            Cache key
+     * @param readsPerSecond Estimated reads per second on this node
+     * @param hot            Whether the rate is above the threshold
+     */
+    public record HotKey(String key, long readsPerSecond, boolean hot) {
+    }
+}
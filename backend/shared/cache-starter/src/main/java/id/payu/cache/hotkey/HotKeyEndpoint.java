@@ -0,0 +1,25 @@
+package id.payu.cache.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/hotkeys}: the most frequently read cache keys on this node, with their
+ * estimated read rate. Expose it with {@code management.endpoints.web.exposure.include}.
+ */
+@Endpoint(id = "hotkeys")
+public class HotKeyEndpoint {
+
+    private final HotKeyDetector detector;
+
+    public HotKeyEndpoint(HotKeyDetector detector) {
+        this.detector = detector;
+    }
+
+    @ReadOperation
+    public List<HotKeyDetector.HotKey> hotKeys() {
+        return detector.topKeys();
+    }
+}
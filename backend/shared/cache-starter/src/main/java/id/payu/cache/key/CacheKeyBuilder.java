@@ -0,0 +1,142 @@
+package id.payu.cache.key;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.InvalidDefinitionException;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.temporal.Temporal;
+import java.time.temporal.TemporalAmount;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Builds cache keys from typed parts, {@code prefix:part:part}, without collisions.
+ *
+ * <p>Scalars (strings, numbers, booleans, characters, enums, UUIDs and java.time values)
+ * are written as text, with {@code :}, {@code #} and {@code \} escaped so that part
+ * boundaries stay unambiguous: {@code ("a:b", "c")} and {@code ("a", "b:c")} give
+ * different keys. {@code null} is written as {@code \0}. Any other object is written as
+ * {@code #} and the SHA-256 of its canonical JSON (properties and map entries sorted),
+ * so equal values give the same key on every node, unlike {@code hashCode()}. Objects
+ * without serializable properties are rejected rather than all written as {@code {}};
+ * such arguments need an explicit key expression.</p>
+ *
+ * <pre>
+ * String key = CacheKeyBuilder.of("balance").add("account").add(accountId).build();
+ * </pre>
+ */
+public final class CacheKeyBuilder {
+
+    public static final char SEPARATOR = ':';
+
+    private static final ObjectMapper CANONICAL_JSON = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private static final Base64.Encoder DIGEST_ENCODING = Base64.getUrlEncoder().withoutPadding();
+
+    private final StringBuilder key;
+
+    private CacheKeyBuilder(String prefix) {
+        this.key = new StringBuilder(prefix.length() + 48).append(prefix);
+    }
+
+    /**
+     * Start a key with a literal prefix, typically the cache or group name. The prefix is
+     * not escaped.
+     */
+    public static CacheKeyBuilder of(String prefix) {
+        return new CacheKeyBuilder(prefix);
+    }
+
+    /**
+     * Build {@code prefix:part:part...} in one call.
+     */
+    public static String key(String prefix, Object... parts) {
+        CacheKeyBuilder builder = of(prefix);
+        for (Object part : parts) {
+            builder.add(part);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Append a separator and one part.
+     */
+    public CacheKeyBuilder add(Object part) {
+        key.append(SEPARATOR);
+        appendPart(key, part);
+        return this;
+    }
+
+    public String build() {
+        return key.toString();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    /**
+     * Whether a value is written as text rather than as a digest.
+     */
+    public static boolean isScalar(Class<?> type) {
+        return CharSequence.class.isAssignableFrom(type)
+                || Number.class.isAssignableFrom(type)
+                || type.isPrimitive()
+                || type == Boolean.class
+                || type == Character.class
+                || type.isEnum()
+                || type == UUID.class
+                || Temporal.class.isAssignableFrom(type)
+                || TemporalAmount.class.isAssignableFrom(type);
+    }
+
+    private static void appendPart(StringBuilder key, Object part) {
+        if (part == null) {
+            key.append("\\0");
+        } else if (part instanceof Enum<?> constant) {
+            appendEscaped(key, constant.name());
+        } else if (isScalar(part.getClass())) {
+            appendEscaped(key, part.toString());
+        } else {
+            key.append('#').append(digest(part));
+        }
+    }
+
+    private static void appendEscaped(StringBuilder key, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == SEPARATOR || c == '#' || c == '\\') {
+                key.append('\\');
+            }
+            key.append(c);
+        }
+    }
+
+    private static String digest(Object part) {
+        try {
+            byte[] json = CANONICAL_JSON.writeValueAsBytes(part);
+            return DIGEST_ENCODING.encodeToString(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (InvalidDefinitionException e) {
+            throw new IllegalArgumentException("Cannot derive a cache key from "
+                    + part.getClass().getName() + ": it has no serializable properties, so every instance"
+                    + " would get the same key. Use an explicit key expression", e);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot derive a cache key from "
+                    + part.getClass().getName() + ", use an explicit key expression", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package id.payu.cache.properties;
 
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 import java.util.ArrayList;
@@ -25,6 +26,9 @@ import java.util.Map;
  *     stale-while-revalidate:
  *       enabled: true
  *       soft-ttl-multiplier: 0.5
+ *     single-flight:
+ *       enabled: true
+ *       distributed-lock: false
  *     cache-warming:
  *       enabled: true
  *       startup-delay: 10s
@@ -64,6 +68,21 @@ public class CacheProperties {
      */
     private StaleWhileRevalidate staleWhileRevalidate = new StaleWhileRevalidate();
 
+    /**
+     * Single-flight loading configuration.
+     */
+    private SingleFlight singleFlight = new SingleFlight();
+
+    /**
+     * Distributed cache value serialization.
+     */
+    private Serialization serialization = new Serialization();
+
+    /**
+     * Tag and group indexes for invalidation.
+     */
+    private Tagging tagging = new Tagging();
+
     /**
      * Per-cache configuration.
      */
@@ -74,6 +93,11 @@ public class CacheProperties {
      */
     private LocalCache localCache = new LocalCache();
 
+    /**
+     * Hot key detection and local pinning configuration.
+     */
+    private HotKeys hotKeys = new HotKeys();
+
     /**
      * Cache warming configuration.
      */
@@ -164,6 +188,115 @@ public class CacheProperties {
          * Thread pool size for async refresh.
          */
         private int refreshThreadPoolSize = 4;
+
+        /**
+         * Maximum number of queued background refreshes; further refreshes are skipped.
+         */
+        private int refreshQueueCapacity = 100;
+
+        /**
+         * Fraction of the soft TTL after which a read schedules a background refresh.
+         */
+        private double refreshAhead = 0.8;
+
+        /**
+         * Random fraction of the soft TTL subtracted from the refresh point, so entries
+         * written together are not all refreshed at once.
+         */
+        private double refreshJitter = 0.1;
+    }
+
+    @Data
+    public static class SingleFlight {
+        /**
+         * Share one loader call between concurrent misses on the same key.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum time a coalesced caller waits for the in-flight load before loading itself.
+         */
+        private Duration waitTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Also coalesce loads across nodes with a short Redis lock.
+         */
+        private boolean distributedLock = false;
+
+        /**
+         * Key prefix for the Redis load lock.
+         */
+        private String lockPrefix = "lock:load:";
+
+        /**
+         * Expiry of the Redis load lock, bounding how long a crashed loader blocks others.
+         */
+        private Duration lockTtl = Duration.ofSeconds(3);
+
+        /**
+         * Maximum time to poll the cache while another node holds the load lock.
+         */
+        private Duration lockWait = Duration.ofSeconds(2);
+
+        /**
+         * Interval between cache polls while another node holds the load lock.
+         */
+        private Duration lockPollInterval = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class Serialization {
+        /**
+         * LZ4-compress serialized values larger than the compression threshold.
+         */
+        private boolean compression = true;
+
+        /**
+         * Serialized size above which values are compressed.
+         */
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+
+        /**
+         * Packages whose classes may be written and read as Smile documents; types
+         * outside them are rejected.
+         */
+        private List<String> allowedPackages = new ArrayList<>(List.of("id.payu", "java.lang", "java.math", "java.time"));
+    }
+
+    @Data
+    public static class Tagging {
+        /**
+         * Index every key under its tags and group so groups can be invalidated without KEYS.
+         */
+        private boolean enabled = true;
+
+        /**
+         * A key's group is its prefix before the first delimiter.
+         */
+        private String delimiter = ":";
+
+        /**
+         * Key prefix of the Redis sets holding each tag's keys.
+         */
+        private String indexPrefix = "cache:tag:";
+
+        /**
+         * Keys fetched per SSCAN/SCAN page and deleted per UNLINK.
+         */
+        private int batchSize = 500;
+
+        /**
+         * Width of the expiry-time buckets a tag's index is split into. An index holds at
+         * most this long of already expired keys.
+         */
+        private Duration bucketWidth = Duration.ofMinutes(5);
+
+        /**
+         * Also SCAN for a group's keys on invalidation, to catch keys written before
+         * indexing was enabled. Walks the whole keyspace, so only turn it on while such
+         * keys may still exist.
+         */
+        private boolean scanFallback = false;
     }
 
     @Data
@@ -215,6 +348,70 @@ public class CacheProperties {
          * Enable cache stats recording.
          */
         private boolean recordStats = true;
+
+        /**
+         * Broadcast local evictions and writes to every node over Redis pub/sub, so no node
+         * keeps serving a local copy after it changed elsewhere.
+         */
+        private boolean broadcastInvalidation = true;
+
+        /**
+         * Redis pub/sub channel for local cache invalidations. Nodes sharing a channel
+         * must share the key space.
+         */
+        private String invalidationChannel = "cache:local:invalidate";
+    }
+
+    @Data
+    public static class HotKeys {
+        /**
+         * Track read frequency per key and report the hottest keys.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Only one read in this many is counted, to keep tracking off the hot path.
+         * Estimates are scaled back up.
+         */
+        private int sampleRate = 16;
+
+        /**
+         * Counts are halved at the end of every window, so estimates follow the recent
+         * read rate.
+         */
+        private Duration window = Duration.ofSeconds(10);
+
+        /**
+         * Estimated reads per second on this node from which a key counts as hot.
+         */
+        private double threshold = 200;
+
+        /**
+         * Number of hottest keys reported.
+         */
+        private int topK = 20;
+
+        /**
+         * Counters per row of the count-min sketch. Rounded up to a power of two.
+         */
+        private int sketchWidth = 4096;
+
+        /**
+         * Keep a local copy of hot keys apart from the regular local cache, so size
+         * eviction cannot push them out. Requires the local cache.
+         */
+        private boolean pinning = true;
+
+        /**
+         * How long a pinned copy is served before it is read from Redis again. It also
+         * bounds staleness should an invalidation broadcast be missed.
+         */
+        private Duration pinTtl = Duration.ofSeconds(5);
+
+        /**
+         * Maximum number of pinned keys.
+         */
+        private long pinMaxSize = 100;
     }
 
     @Data
@@ -225,19 +422,69 @@ public class CacheProperties {
         private boolean enabled = false;
 
         /**
-         * Delay before starting cache warming.
+         * Delay before starting cache warming in the background. Not used when
+         * {@code async} is false.
          */
         private Duration startupDelay = Duration.ofSeconds(10);
 
         /**
-         * Enable async cache warming.
+         * Warm in the background after {@code startupDelay}. When false, warming runs
+         * before the application reports ready, so traffic only arrives once it is done.
          */
         private boolean async = true;
 
+        /**
+         * Longest time readiness waits for warming when {@code async} is false. Entries
+         * still loading after that are warmed in the background.
+         */
+        private Duration readinessTimeout = Duration.ofSeconds(60);
+
         /**
          * Thread pool size for cache warming.
          */
         private int threadPoolSize = 4;
+
+        /**
+         * Batches loaded at the same time, across all warmers.
+         */
+        private int concurrency = 4;
+
+        /**
+         * Keys per {@code CacheWarmer.load} call and per cache write.
+         */
+        private int batchSize = 100;
+
+        /**
+         * Upper bound on warmer calls per second, to keep warming from swamping the
+         * database. Zero or less means unlimited.
+         */
+        private int maxLoadsPerSecond = 50;
+
+        /**
+         * Record the hottest local cache keys in Redis and warm them on the next start.
+         */
+        private boolean snapshotEnabled = true;
+
+        /**
+         * Redis key of the hot key snapshot. Defaults to
+         * {@code cache:warm:snapshot:<spring.application.name>}.
+         */
+        private String snapshotKey;
+
+        /**
+         * Number of hottest keys recorded.
+         */
+        private int snapshotSize = 1000;
+
+        /**
+         * How often the snapshot is written; it is also written on shutdown.
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * How long a snapshot is kept after it was last written.
+         */
+        private Duration snapshotTtl = Duration.ofDays(1);
     }
 
     @Data
@@ -6,11 +6,9 @@ import io.micrometer.core.instrument.Metrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -91,40 +89,26 @@ public class CacheInvalidationConsumer {
     }
 
     /**
-     * Invalidate cache keys matching a pattern.
+     * Invalidate cache keys matching a pattern, with SCAN and batched UNLINK.
      */
     private void invalidatePattern(CacheInvalidationEvent event) {
         String pattern = buildCacheKey(event.getCacheName(), event.getKey());
-
-        // Use Redis SCAN to find matching keys
-        var redisTemplate = cacheService.getDistributedCache().getRedisTemplate();
-        Set<String> keys = redisTemplate.keys(pattern.replace("*", ".*"));
-
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-            log.debug("Invalidated {} keys matching pattern: {}", keys.size(), pattern);
-        }
+        long removed = cacheService.invalidatePattern(pattern);
+        log.debug("Invalidated {} keys matching pattern: {}", removed, pattern);
     }
 
     /**
-     * Invalidate all keys in a cache.
+     * Invalidate all keys in a cache through its group index.
      */
     private void invalidateAll(CacheInvalidationEvent event) {
-        String pattern = buildCacheKey(event.getCacheName(), "*");
-
-        var redisTemplate = cacheService.getDistributedCache().getRedisTemplate();
-        Set<String> keys = redisTemplate.keys(pattern);
-
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-            log.debug("Invalidated {} keys in cache: {}", keys.size(), event.getCacheName());
-        }
+        long removed = cacheService.invalidateGroup(event.getCacheName());
+        log.debug("Invalidated {} keys in cache: {}", removed, event.getCacheName());
     }
 
     /**
-     * Build a full cache key with cache name prefix.
+     * Build a full cache key with cache name prefix, the way {@code CacheWithTTLAspect} does.
      */
     private String buildCacheKey(String cacheName, String key) {
-        return cacheName + "::" + key;
+        return cacheName + properties.getTagging().getDelimiter() + key;
     }
 }
@@ -0,0 +1,144 @@
+package id.payu.cache.service;
+
+import id.payu.cache.model.CacheEntry;
+import id.payu.cache.properties.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background refresh-ahead for stale-while-revalidate entries.
+ *
+ * <p>A read decides with {@link #shouldRefresh(CacheEntry)} whether the entry it just got
+ * is due for a refresh: from a jittered point before its soft TTL (so hot keys are
+ * reloaded before they ever go stale, and keys written together do not all reload at
+ * the same instant) until its hard TTL. {@link #refresh(String, Runnable)} then runs the
+ * reload on a bounded executor, at most once per key at a time. When the executor is
+ * saturated the refresh is dropped; the entry keeps being served and the next read
+ * tries again.</p>
+ */
+@Slf4j
+public class CacheRefresher {
+
+    private final Executor executor;
+    private final double refreshAhead;
+    private final double refreshJitter;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    // Metrics
+    private final Counter scheduledCounter;
+    private final Counter deduplicatedCounter;
+    private final Counter rejectedCounter;
+    private final Counter errorCounter;
+    private final Timer refreshTimer;
+
+    /**
+     * Refresher with its own bounded pool, sized from
+     * {@code payu.cache.stale-while-revalidate}.
+     */
+    public CacheRefresher(CacheProperties properties) {
+        this(newExecutor(properties.getStaleWhileRevalidate()), properties);
+    }
+
+    public CacheRefresher(Executor executor, CacheProperties properties) {
+        this.executor = executor;
+        this.refreshAhead = properties.getStaleWhileRevalidate().getRefreshAhead();
+        this.refreshJitter = properties.getStaleWhileRevalidate().getRefreshJitter();
+
+        // Initialize metrics
+        String prefix = "cache.refresh";
+        this.scheduledCounter = Metrics.counter(prefix + ".scheduled");
+        this.deduplicatedCounter = Metrics.counter(prefix + ".deduplicated");
+        this.rejectedCounter = Metrics.counter(prefix + ".rejected");
+        this.errorCounter = Metrics.counter(prefix + ".errors");
+        this.refreshTimer = Metrics.timer(prefix + ".duration");
+    }
+
+    /**
+     * Whether a read of this entry should trigger a background refresh: the entry is
+     * past its jittered refresh-ahead point but not yet expired.
+     */
+    public boolean shouldRefresh(CacheEntry<?> entry) {
+        Instant createdAt = entry.getCreatedAt();
+        Instant softTtl = entry.getSoftTtl();
+        if (createdAt == null || softTtl == null || entry.isExpired()) {
+            return false;
+        }
+        long window = softTtl.toEpochMilli() - createdAt.toEpochMilli();
+        double factor = refreshAhead - ThreadLocalRandom.current().nextDouble() * refreshJitter;
+        long refreshAt = createdAt.toEpochMilli() + (long) (window * Math.max(0, factor));
+        return System.currentTimeMillis() >= refreshAt;
+    }
+
+    /**
+     * Run {@code task} in the background unless a refresh of {@code key} is already
+     * queued or running.
+     *
+     * @return whether the refresh was scheduled
+     */
+    public boolean refresh(String key, Runnable task) {
+        if (!pending.add(key)) {
+            deduplicatedCounter.increment();
+            return false;
+        }
+        try {
+            executor.execute(() -> run(key, task));
+            scheduledCounter.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            rejectedCounter.increment();
+            log.debug("Refresh queue full, skipping refresh of key: {}", key);
+            return false;
+        }
+    }
+
+    /**
+     * Number of keys with a refresh queued or running.
+     */
+    public int pending() {
+        return pending.size();
+    }
+
+    private void run(String key, Runnable task) {
+        Timer.Sample sample = Timer.start();
+        try {
+            log.debug("Background refresh for key: {}", key);
+            task.run();
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.warn("Background refresh failed for key {}: {}", key, e.getMessage());
+        } finally {
+            pending.remove(key);
+            sample.stop(refreshTimer);
+        }
+    }
+
+    private static Executor newExecutor(CacheProperties.StaleWhileRevalidate config) {
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                config.getRefreshThreadPoolSize(),
+                config.getRefreshThreadPoolSize(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getRefreshQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
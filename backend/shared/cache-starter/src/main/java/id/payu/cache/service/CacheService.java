@@ -1,5 +1,6 @@
 package id.payu.cache.service;
 
+import id.payu.cache.hotkey.HotKeyDetector;
 import id.payu.cache.model.CacheEntry;
 import id.payu.cache.properties.CacheProperties;
 import io.micrometer.core.instrument.Counter;
@@ -8,7 +9,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.QueryTimeoutException;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 /**
  * Primary cache service combining distributed (Redis) and local (Caffeine) caching.
@@ -16,8 +25,13 @@ import java.util.function.Supplier;
  * <p>Features:</p>
  * <ul>
  *   <li>Multi-layer caching: Redis (L1) + Local (L2 fallback)</li>
+ *   <li>Local copies kept coherent across nodes, see {@link NearCacheInvalidator}</li>
  *   <li>Automatic fallback when Redis is unavailable</li>
- *   <li>Stale-while-revalidate pattern</li>
+ *   <li>Stale-while-revalidate with jittered background refresh-ahead</li>
+ *   <li>Single-flight loading: concurrent misses on a key share one fallback call</li>
+ *   <li>Group, tag and pattern invalidation without blocking Redis</li>
+ *   <li>Batched get/put/invalidate, one Redis round trip per batch</li>
+ *   <li>Hot key detection; hot keys are pinned in the local cache, see {@link HotKeyDetector}</li>
  *   <li>Unified API for all cache operations</li>
  *   <li>Metrics and observability</li>
  * </ul>
@@ -45,6 +59,9 @@ import java.util.function.Supplier;
  *     Duration.ofSeconds(15),  // soft TTL
  *     Duration.ofSeconds(30)   // hard TTL
  * );
+ *
+ * // Drop every "account:*" entry
+ * cacheService.invalidateGroup("account");
  * </pre>
  */
 @Slf4j
@@ -53,6 +70,10 @@ public class CacheService {
     private final DistributedCacheService distributedCache;
     private final LocalCacheService localCache;
     private final CacheProperties properties;
+    private final SingleFlight singleFlight;
+    private final CacheRefresher refresher;
+    private final NearCacheInvalidator nearCache;
+    private final HotKeyDetector hotKeys;
 
     // Metrics
     private final Counter localFallbackCounter;
@@ -62,9 +83,45 @@ public class CacheService {
             DistributedCacheService distributedCache,
             LocalCacheService localCache,
             CacheProperties properties) {
+        this(distributedCache, localCache, properties, new SingleFlight(properties), new CacheRefresher(properties));
+    }
+
+    public CacheService(
+            DistributedCacheService distributedCache,
+            LocalCacheService localCache,
+            CacheProperties properties,
+            SingleFlight singleFlight,
+            CacheRefresher refresher) {
+        this(distributedCache, localCache, properties, singleFlight, refresher,
+                new NearCacheInvalidator(localCache, properties));
+    }
+
+    public CacheService(
+            DistributedCacheService distributedCache,
+            LocalCacheService localCache,
+            CacheProperties properties,
+            SingleFlight singleFlight,
+            CacheRefresher refresher,
+            NearCacheInvalidator nearCache) {
+        this(distributedCache, localCache, properties, singleFlight, refresher, nearCache,
+                new HotKeyDetector(properties));
+    }
+
+    public CacheService(
+            DistributedCacheService distributedCache,
+            LocalCacheService localCache,
+            CacheProperties properties,
+            SingleFlight singleFlight,
+            CacheRefresher refresher,
+            NearCacheInvalidator nearCache,
+            HotKeyDetector hotKeys) {
         this.distributedCache = distributedCache;
         this.localCache = localCache;
         this.properties = properties;
+        this.singleFlight = singleFlight;
+        this.refresher = refresher;
+        this.nearCache = nearCache;
+        this.hotKeys = hotKeys;
 
         // Initialize metrics
         this.localFallbackCounter = Metrics.counter("cache.local.fallback");
@@ -76,6 +133,7 @@ public class CacheService {
 
     /**
      * Get value from cache with automatic fallback to local cache and supplier.
+     * Concurrent misses on the same key share a single supplier call.
      *
      * @param key      Cache key
      * @param type     Expected type
@@ -84,9 +142,39 @@ public class CacheService {
      * @return Cached or fresh value
      */
     public <T> T get(String key, Class<T> type, Supplier<T> fallback) {
+        hotKeys.record(key);
+        T cached = lookup(key, type);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Fallback to supplier, once per key across concurrent callers
+        return singleFlight.execute(key, () -> lookup(key, type), () -> {
+            // A previous leader may have filled the cache while we queued up
+            T value = lookup(key, type);
+            if (value != null) {
+                return value;
+            }
+            value = fallback.get();
+            if (value != null) {
+                write(key, value, false);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Get value from cache without fallback.
+     */
+    public <T> T get(String key, Class<T> type) {
+        hotKeys.record(key);
+        return lookup(key, type);
+    }
+
+    private <T> T lookup(String key, Class<T> type) {
         // Try local cache first (fastest)
         if (localCache.isEnabled()) {
-            T localValue = localCache.get(key, type);
+            T localValue = unwrap(localCache.get(key, Object.class), type);
             if (localValue != null) {
                 log.debug("Local cache hit for key: {}", key);
                 return localValue;
@@ -98,38 +186,86 @@ public class CacheService {
             T value = distributedCache.get(key, type);
             if (value != null) {
                 // Update local cache
-                if (localCache.isEnabled()) {
-                    localCache.put(key, value);
-                }
+                keepLocally(key, value);
                 return value;
             }
         } catch (Exception e) {
             log.warn("Distributed cache error, falling back to local: {}", e.getMessage());
             localFallbackCounter.increment();
         }
+        return null;
+    }
 
-        // Fallback to supplier
-        T value = fallback.get();
-        if (value != null) {
-            put(key, value);
+    /**
+     * Get many values at once: local cache first, then one MGET for the rest.
+     * Keys that are not cached are absent from the result.
+     */
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        Set<String> remaining = new LinkedHashSet<>(keys);
+        remaining.forEach(hotKeys::record);
+        if (localCache.isEnabled()) {
+            remaining.removeIf(key -> {
+                T value = unwrap(localCache.get(key, Object.class), type);
+                if (value != null) {
+                    found.put(key, value);
+                }
+                return value != null;
+            });
         }
-        return value;
+        if (remaining.isEmpty()) {
+            return found;
+        }
+
+        Map<String, T> distributed = distributedCache.getAll(remaining, type);
+        distributed.forEach(this::keepLocally);
+        found.putAll(distributed);
+        return found;
     }
 
     /**
-     * Get value from cache without fallback.
+     * Get many values at once, loading every miss with a single call to
+     * {@code bulkLoader} and caching what it returns with one pipelined write.
+     * Keys the loader does not return are absent from the result.
+     *
+     * @param keys       Cache keys
+     * @param type       Expected type
+     * @param bulkLoader Loads the missing keys, e.g. with one {@code WHERE id IN (...)} query
+     * @param ttl        TTL for loaded values
      */
-    public <T> T get(String key, Class<T> type) {
-        return get(key, type, () -> null);
+    public <T> Map<String, T> getAll(
+            Collection<String> keys,
+            Class<T> type,
+            Function<Set<String>, Map<String, ? extends T>> bulkLoader,
+            Duration ttl) {
+        Map<String, T> found = getAll(keys, type);
+        Set<String> missing = new LinkedHashSet<>(keys);
+        missing.removeAll(found.keySet());
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<String, ? extends T> loaded = bulkLoader.apply(missing);
+        Map<String, T> toCache = new HashMap<>();
+        loaded.forEach((key, value) -> {
+            if (value != null && missing.contains(key)) {
+                toCache.put(key, value);
+            }
+        });
+        writeAll(toCache, ttl, ttl, false);
+        found.putAll(toCache);
+        return found;
     }
 
     /**
      * Get value with stale-while-revalidate pattern.
-     * Returns stale data immediately if available and triggers async refresh.
+     * Returns cached data without blocking while it is within the hard TTL. From a jittered
+     * point shortly before the soft TTL, a read also schedules a background refresh through
+     * {@code fallback}, so frequently read keys are reloaded before they go stale.
      *
      * @param key             Cache key
      * @param type            Expected type
-     * @param fallback        Fallback supplier when cache miss
+     * @param fallback        Loads the value on a miss and refreshes it in the background
      * @param softTtl         Soft TTL - after this, data is stale but served
      * @param hardTtl         Hard TTL - after this, data must be refreshed
      * @param <T>             Return type
@@ -142,49 +278,117 @@ public class CacheService {
             Duration softTtl,
             Duration hardTtl) {
 
+        hotKeys.record(key);
+
         // Try local cache first
-        if (localCache.isEnabled()) {
-            T localValue = localCache.get(key, type);
-            if (localValue != null) {
-                return localValue;
+        Object local = localCache.isEnabled() ? localCache.get(key, Object.class) : null;
+        if (local != null && !(local instanceof CacheEntry) && type.isInstance(local)) {
+            // Written without TTL metadata, nothing to refresh against
+            return type.cast(local);
+        }
+
+        CacheEntry<T> entry = local instanceof CacheEntry<?> localEntry && !localEntry.isExpired()
+                ? cast(localEntry)
+                : readEntry(key, type);
+        if (entry != null) {
+            if (refresher.shouldRefresh(entry)) {
+                refreshInBackground(key, type, entry, fallback, softTtl, hardTtl);
             }
+            return entry.getValue();
         }
 
-        // Try distributed cache with stale-while-revalidate
+        // Cache miss or expired - get fresh value, once per key across concurrent callers
+        return singleFlight.execute(key, () -> valueOf(readEntry(key, type)), () -> {
+            T value = valueOf(readEntry(key, type));
+            if (value != null) {
+                return value;
+            }
+            value = fallback.get();
+            if (value != null) {
+                write(key, value, softTtl, hardTtl, List.of(), false);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Read an unexpired entry from the distributed cache in a single GET and keep it
+     * locally with its TTL metadata.
+     */
+    private <T> CacheEntry<T> readEntry(String key, Class<T> type) {
         try {
             CacheEntry<T> entry = distributedCache.getEntry(key, type);
-            if (entry != null) {
-                if (entry.isExpired()) {
-                    // Data expired, need refresh
-                    T value = fallback.get();
-                    put(key, value, softTtl, hardTtl);
-                    return value;
-                }
-
-                // Update local cache
-                if (localCache.isEnabled()) {
-                    localCache.put(key, entry.getValue());
-                }
-
-                if (entry.isStale()) {
-                    // Data is stale but serve it and trigger async refresh
-                    // The caller is responsible for scheduling the refresh
-                    return entry.getValue();
-                }
-
-                return entry.getValue();
+            if (entry != null && !entry.isExpired()) {
+                keepLocally(key, entry);
+                return entry;
             }
         } catch (Exception e) {
             log.warn("Distributed cache error in stale-while-revalidate: {}", e.getMessage());
             localFallbackCounter.increment();
         }
+        return null;
+    }
 
-        // Cache miss - get fresh value
-        T value = fallback.get();
-        if (value != null) {
-            put(key, value, softTtl, hardTtl);
+    private <T> void refreshInBackground(
+            String key,
+            Class<T> type,
+            CacheEntry<T> seen,
+            Supplier<T> fallback,
+            Duration softTtl,
+            Duration hardTtl) {
+
+        refresher.refresh(key, () -> {
+            // Another node may already have refreshed it; then only the local copy is behind
+            CacheEntry<T> current = distributedCache.getEntry(key, type);
+            if (current != null && current.getCreatedAt() != null && seen.getCreatedAt() != null
+                    && current.getCreatedAt().isAfter(seen.getCreatedAt()) && !refresher.shouldRefresh(current)) {
+                if (localCache.isEnabled()) {
+                    localCache.put(key, current);
+                }
+                return;
+            }
+            T value = fallback.get();
+            // Only over an entry that still exists: an eviction during the reload wins
+            if (value != null && distributedCache.replace(key, value, softTtl.getSeconds(), hardTtl.getSeconds())
+                    && localCache.isEnabled()) {
+                localCache.put(key, CacheEntry.create(value, softTtl.getSeconds(), hardTtl.getSeconds()));
+            }
+        });
+    }
+
+    /**
+     * Keep a value read from Redis locally; pinned when the key is hot.
+     */
+    private void keepLocally(String key, Object value) {
+        if (!localCache.isEnabled()) {
+            return;
+        }
+        if (hotKeys.isHot(key)) {
+            localCache.pin(key, value);
+        } else {
+            localCache.put(key, value);
         }
-        return value;
+    }
+
+    private static <T> T valueOf(CacheEntry<T> entry) {
+        return entry != null ? entry.getValue() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> CacheEntry<T> cast(CacheEntry<?> entry) {
+        return (CacheEntry<T>) entry;
+    }
+
+    /**
+     * A locally cached value, which is either the value itself or, for entries written
+     * with soft and hard TTLs, its {@link CacheEntry}.
+     */
+    private static <T> T unwrap(Object local, Class<T> type) {
+        Object value = local;
+        if (local instanceof CacheEntry<?> entry) {
+            value = entry.isExpired() ? null : entry.getValue();
+        }
+        return type.isInstance(value) ? type.cast(value) : null;
     }
 
     /**
@@ -203,7 +407,7 @@ public class CacheService {
             if (entry != null && !entry.isExpired()) {
                 // Entry exists and not expired, refresh it
                 T newValue = refresher.get();
-                put(key, newValue, softTtl, hardTtl);
+                putLoaded(key, newValue, softTtl, hardTtl);
                 return newValue;
             }
         } catch (Exception e) {
@@ -213,19 +417,30 @@ public class CacheService {
         // No entry or expired, get fresh value
         T value = refresher.get();
         if (value != null) {
-            put(key, value, softTtl, hardTtl);
+            putLoaded(key, value, softTtl, hardTtl);
         }
         return value;
     }
 
     /**
      * Put value in cache with default TTL.
+     *
+     * <p>Every {@code put} is taken as a changed value: other nodes are told to drop their
+     * local copies. Values just read from their source go through {@link #putLoaded}
+     * instead.</p>
      */
     public void put(String key, Object value) {
+        write(key, value, true);
+    }
+
+    private void write(String key, Object value, boolean changed) {
         try {
             distributedCache.put(key, value);
             if (localCache.isEnabled()) {
                 localCache.put(key, value);
+                if (changed) {
+                    nearCache.written(key);
+                }
             }
         } catch (Exception e) {
             log.error("Error putting to cache for key {}: {}", key, e.getMessage());
@@ -246,22 +461,115 @@ public class CacheService {
 
     /**
      * Put value in cache with soft and hard TTL (stale-while-revalidate).
+     * The local copy keeps the TTL metadata so local hits can be refreshed ahead too.
      */
     public void put(String key, Object value, Duration softTtl, Duration hardTtl) {
+        put(key, value, softTtl, hardTtl, List.of());
+    }
+
+    /**
+     * Put value in cache with custom TTL, tagged for {@link #invalidateTag(String)}.
+     */
+    public void put(String key, Object value, Duration ttl, Collection<String> tags) {
+        put(key, value, ttl, ttl, tags);
+    }
+
+    /**
+     * Put value in cache with soft and hard TTL, tagged for {@link #invalidateTag(String)}.
+     */
+    public void put(String key, Object value, Duration softTtl, Duration hardTtl, Collection<String> tags) {
+        write(key, value, softTtl, hardTtl, tags, true);
+    }
+
+    /**
+     * Cache a value that was just loaded from its source, e.g. on a miss. Unlike
+     * {@link #put}, this is not broadcast: the value did not change, and a node only
+     * misses a key that was evicted (already broadcast) or expired, so no other node
+     * holds an outdated copy of it.
+     */
+    public void putLoaded(String key, Object value, Duration softTtl, Duration hardTtl) {
+        write(key, value, softTtl, hardTtl, List.of(), false);
+    }
+
+    /**
+     * Cache many values just loaded from their source, in one Redis round trip and
+     * without a broadcast, see {@link #putLoaded}.
+     */
+    public void putAllLoaded(Map<String, ?> values, Duration softTtl, Duration hardTtl) {
+        writeAll(values, softTtl, hardTtl, false);
+    }
+
+    private void write(String key, Object value, Duration softTtl, Duration hardTtl, Collection<String> tags,
+                       boolean changed) {
+        CacheEntry<Object> entry = CacheEntry.create(value, softTtl.getSeconds(), hardTtl.getSeconds());
         try {
-            distributedCache.put(key, value, softTtl.getSeconds(), hardTtl.getSeconds());
+            distributedCache.put(key, value, softTtl.getSeconds(), hardTtl.getSeconds(), tags);
             if (localCache.isEnabled()) {
-                localCache.put(key, value);
+                localCache.put(key, entry);
+                if (changed) {
+                    nearCache.written(key);
+                }
             }
         } catch (Exception e) {
             log.error("Error putting to cache for key {}: {}", key, e.getMessage());
             if (localCache.isEnabled()) {
-                localCache.put(key, value);
+                localCache.put(key, entry);
                 localWriteCounter.increment();
             }
         }
     }
 
+    /**
+     * Put many values with custom TTL, in one Redis round trip.
+     */
+    public void putAll(Map<String, ?> values, Duration ttl) {
+        putAll(values, ttl, ttl);
+    }
+
+    /**
+     * Put many values with soft and hard TTL, in one Redis round trip.
+     */
+    public void putAll(Map<String, ?> values, Duration softTtl, Duration hardTtl) {
+        writeAll(values, softTtl, hardTtl, true);
+    }
+
+    private void writeAll(Map<String, ?> values, Duration softTtl, Duration hardTtl, boolean changed) {
+        if (values.isEmpty()) {
+            return;
+        }
+        boolean distributed = false;
+        try {
+            distributedCache.putAll(values, softTtl.getSeconds(), hardTtl.getSeconds());
+            distributed = true;
+        } catch (Exception e) {
+            log.error("Error putting {} keys to cache: {}", values.size(), e.getMessage());
+        }
+        if (localCache.isEnabled()) {
+            values.forEach((key, value) ->
+                    localCache.put(key, CacheEntry.create(value, softTtl.getSeconds(), hardTtl.getSeconds())));
+            if (!distributed) {
+                localWriteCounter.increment(values.size());
+            } else if (changed) {
+                nearCache.written(values.keySet());
+            }
+        }
+    }
+
+    /**
+     * Evict many entries with a single UNLINK.
+     */
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            distributedCache.evictAll(keys);
+        } catch (Exception e) {
+            log.error("Error invalidating {} cache keys: {}", keys.size(), e.getMessage());
+        }
+        nearCache.invalidate(keys);
+    }
+
     /**
      * Evict entry from cache.
      */
@@ -271,9 +579,97 @@ public class CacheService {
         } catch (Exception e) {
             log.error("Error invalidating cache for key {}: {}", key, e.getMessage());
         }
+        nearCache.invalidate(List.of(key));
+    }
+
+    /**
+     * Evict every entry tagged with {@code tag}, in Redis and in the local cache.
+     *
+     * @return Number of Redis keys deleted
+     */
+    public long invalidateTag(String tag) {
+        return distributedCache.evictTagged(tag, nearCache::invalidate);
+    }
+
+    /**
+     * Evict every entry of a group, i.e. every key starting with
+     * {@code group + payu.cache.tagging.delimiter}. Uses the group's index, plus a SCAN
+     * for keys written before indexing when {@code payu.cache.tagging.scan-fallback} is on.
+     *
+     * @return Number of Redis keys deleted
+     */
+    public long invalidateGroup(String group) {
+        CacheProperties.Tagging tagging = properties.getTagging();
+        String prefix = group + tagging.getDelimiter();
+        long removed = distributedCache.evictTagged(group, this::evictLocal);
+        if (tagging.isScanFallback()) {
+            removed += distributedCache.evictMatching(escapeGlob(prefix) + "*", this::evictLocal);
+        }
+        // Also drops local-only entries written while Redis was down, which have no index
+        nearCache.invalidatePrefix(prefix);
+        return removed;
+    }
+
+    /**
+     * Evict every entry whose key matches a Redis glob pattern ({@code *}, {@code ?},
+     * {@code [abc]}). Walks the whole keyspace with SCAN; prefer
+     * {@link #invalidateGroup(String)} or {@link #invalidateTag(String)} on hot paths.
+     *
+     * @return Number of Redis keys deleted
+     */
+    public long invalidatePattern(String pattern) {
+        long removed = distributedCache.evictMatching(pattern, this::evictLocal);
+        nearCache.invalidatePattern(pattern);
+        return removed;
+    }
+
+    private void evictLocal(Collection<String> keys) {
         if (localCache.isEnabled()) {
-            localCache.evict(key);
+            localCache.evictAll(keys);
+        }
+    }
+
+    static String escapeGlob(String literal) {
+        StringBuilder escaped = new StringBuilder(literal.length() + 4);
+        for (char c : literal.toCharArray()) {
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                    regex.append(']');
+                } else if (c == '^' && glob.charAt(i - 1) == '[') {
+                    regex.append('^');
+                } else if (c == '-') {
+                    regex.append('-');
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[') {
+                inClass = true;
+                regex.append('[');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
         }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
     }
 
     /**
@@ -284,7 +680,7 @@ public class CacheService {
             return distributedCache.exists(key);
         } catch (Exception e) {
             log.error("Error checking cache existence for key {}: {}", key, e.getMessage());
-            return localCache.isEnabled() && localCache.get(key, Object.class) != null;
+            return localCache.isEnabled() && unwrap(localCache.get(key, Object.class), Object.class) != null;
         }
     }
 
@@ -302,6 +698,34 @@ public class CacheService {
         return localCache;
     }
 
+    /**
+     * Get the single-flight loader shared by this service.
+     */
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    /**
+     * Get the background refresher used for stale-while-revalidate.
+     */
+    public CacheRefresher getRefresher() {
+        return refresher;
+    }
+
+    /**
+     * Get the invalidator keeping local caches coherent across nodes.
+     */
+    public NearCacheInvalidator getNearCache() {
+        return nearCache;
+    }
+
+    /**
+     * Get the detector tracking the most frequently read keys.
+     */
+    public HotKeyDetector getHotKeys() {
+        return hotKeys;
+    }
+
     /**
      * Get cache properties.
      */
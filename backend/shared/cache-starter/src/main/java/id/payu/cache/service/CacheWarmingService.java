@@ -1,165 +1,371 @@
 package id.payu.cache.service;
 
+import id.payu.cache.key.CacheKeyBuilder;
 import id.payu.cache.properties.CacheProperties;
+import id.payu.cache.warming.CacheWarmer;
+import id.payu.cache.warming.HotKeySnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Metrics;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Cache warming service that pre-loads cache entries on application startup.
  *
  * <p>Features:</p>
  * <ul>
- *   <li>Warm-up specified cache keys on startup</li>
- *   <li>Async execution with configurable thread pool</li>
- *   <li>Metrics tracking for warm-up operations</li>
- *   <li>Configurable startup delay</li>
+ *   <li>Loads the keys of every registered {@link CacheWarmer}, the configured warm keys
+ *       and the hot keys recorded by the previous instance</li>
+ *   <li>Parallel batches, bounded by {@code concurrency} and {@code max-loads-per-second}</li>
+ *   <li>Entries already in Redis are only copied to the local cache, without a load</li>
+ *   <li>With {@code async: false}, the application reports ready only once warming is done</li>
+ *   <li>Progress and duration metrics</li>
  * </ul>
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 @ConditionalOnProperty(
     prefix = "payu.cache.cache-warming",
     name = "enabled",
     havingValue = "true"
 )
-public class CacheWarmingService implements ApplicationListener<ApplicationReadyEvent> {
+public class CacheWarmingService implements ApplicationListener<ApplicationReadyEvent>, DisposableBean {
 
     private final CacheService cacheService;
     private final CacheProperties properties;
     private final Executor cacheWarmExecutor;
+    private final List<CacheWarmer> warmers;
+    private final HotKeySnapshot snapshot;
+    private final LoadBudget budget;
 
-    private final io.micrometer.core.instrument.Counter warmedCounter;
-    private final io.micrometer.core.instrument.Counter failedCounter;
-    private final io.micrometer.core.instrument.Timer warmTimer;
+    private final Counter warmedCounter;
+    private final Counter failedCounter;
+    private final Timer warmTimer;
+
+    private volatile WarmupRun lastRun = new WarmupRun();
+    private volatile boolean warm;
+    private ScheduledExecutorService snapshotScheduler;
 
     public CacheWarmingService(
             CacheService cacheService,
             CacheProperties properties,
             Executor cacheWarmExecutor) {
+        this(cacheService, properties, cacheWarmExecutor, List.of(), null);
+    }
+
+    public CacheWarmingService(
+            CacheService cacheService,
+            CacheProperties properties,
+            Executor cacheWarmExecutor,
+            List<CacheWarmer> warmers,
+            HotKeySnapshot snapshot) {
         this.cacheService = cacheService;
         this.properties = properties;
         this.cacheWarmExecutor = cacheWarmExecutor;
+        this.warmers = List.copyOf(warmers);
+        this.snapshot = snapshot;
+        this.budget = new LoadBudget(properties.getCacheWarming().getMaxLoadsPerSecond());
 
         String prefix = properties.getMetrics().getPrefix();
         this.warmedCounter = Metrics.counter(prefix + ".warmed");
         this.failedCounter = Metrics.counter(prefix + ".warm.failed");
         this.warmTimer = Metrics.timer(prefix + ".warm");
+        Gauge.builder(prefix + ".warm.keys", this, service -> service.lastRun.planned.get())
+                .register(Metrics.globalRegistry);
+        Gauge.builder(prefix + ".warm.progress", this, service -> service.lastRun.progress())
+                .register(Metrics.globalRegistry);
     }
 
+    /**
+     * Start warming once the application has started. Spring Boot switches readiness to
+     * {@code ACCEPTING_TRAFFIC} only after the ready event listeners return, so blocking
+     * here keeps traffic away until the warm set is loaded, while liveness is already up.
+     */
     @Override
     public void onApplicationEvent(ApplicationReadyEvent event) {
-        if (!properties.getCacheWarming().isEnabled()) {
+        CacheProperties.CacheWarming config = properties.getCacheWarming();
+        if (!config.isEnabled()) {
             log.info("Cache warming is disabled");
             return;
         }
+        scheduleSnapshots();
 
-        log.info("Scheduling cache warming with delay: {}",
-            properties.getCacheWarming().getStartupDelay());
+        if (config.isAsync()) {
+            log.info("Scheduling cache warming with delay: {}", config.getStartupDelay());
+            CompletableFuture.delayedExecutor(
+                    config.getStartupDelay().toMillis(), TimeUnit.MILLISECONDS, cacheWarmExecutor)
+                .execute(this::warmCache);
+            return;
+        }
 
-        // Schedule cache warming after configured delay
-        if (properties.getCacheWarming().isAsync()) {
-            CompletableFuture.runAsync(this::warmCache, cacheWarmExecutor);
-        } else {
-            warmCache();
+        log.info("Warming caches before accepting traffic");
+        try {
+            warmCache().get(config.getReadinessTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Cache warming still running after {}, accepting traffic with a partly warm cache",
+                config.getReadinessTimeout());
+        } catch (ExecutionException e) {
+            log.error("Error during cache warming", e.getCause());
+        } catch (InterruptedException e) {
+            log.warn("Cache warming wait interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Warm every registered warmer's keys, the configured warm keys and the hot key
+     * snapshot.
+     *
+     * @return Completes when every batch has been loaded or has failed
+     */
+    public CompletableFuture<Void> warmCache() {
+        List<CompletableFuture<Map<String, CacheWarmer>>> sources = new ArrayList<>();
+        for (CacheWarmer warmer : warmers) {
+            sources.add(CompletableFuture.supplyAsync(() -> {
+                budget.acquire();
+                Map<String, CacheWarmer> owned = new LinkedHashMap<>();
+                warmer.warmKeys().forEach(key -> owned.put(key, warmer));
+                return owned;
+            }, cacheWarmExecutor).exceptionally(e -> {
+                log.warn("Failed to list warm keys of '{}': {}", warmer.name(), e.getMessage());
+                return Map.of();
+            }));
         }
+        sources.add(CompletableFuture.supplyAsync(() -> route(recordedKeys()), cacheWarmExecutor)
+            .exceptionally(e -> {
+                log.warn("Failed to read hot key snapshot: {}", e.getMessage());
+                return Map.of();
+            }));
+
+        return CompletableFuture.allOf(sources.toArray(CompletableFuture[]::new))
+            .thenCompose(ignored -> {
+                Map<String, CacheWarmer> owners = new LinkedHashMap<>();
+                // A key listed by a warmer keeps that warmer; recorded keys only fill gaps
+                sources.forEach(source -> source.join().forEach(owners::putIfAbsent));
+                return run(owners);
+            });
     }
 
     /**
-     * Warm up cache entries based on configuration.
+     * Warm the keys configured for one cache region.
      */
-    private void warmCache() {
+    public CompletableFuture<Void> warmCache(String cacheName) {
+        log.info("Manual cache warming triggered for '{}'", cacheName);
+        var cacheConfig = properties.getCaches().get(cacheName);
+
+        if (cacheConfig == null || cacheConfig.getWarmKeys().isEmpty()) {
+            log.warn("No warm keys configured for cache '{}'", cacheName);
+            return CompletableFuture.completedFuture(null);
+        }
+        return run(route(cacheConfig.getWarmKeys().stream()
+            .map(key -> cacheName + CacheKeyBuilder.SEPARATOR + key)
+            .toList()));
+    }
+
+    /**
+     * Whether the startup warm-up has finished.
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * Record the hottest local cache keys for the next instance.
+     */
+    public void saveSnapshot() {
+        if (snapshot == null) {
+            return;
+        }
         try {
-            // Wait for configured delay
-            TimeUnit.MILLISECONDS.sleep(
-                properties.getCacheWarming().getStartupDelay().toMillis()
-            );
-        } catch (InterruptedException e) {
-            log.warn("Cache warming delay interrupted", e);
-            Thread.currentThread().interrupt();
+            snapshot.save(cacheService.getLocalCache().hottestKeys(properties.getCacheWarming().getSnapshotSize()));
+        } catch (Exception e) {
+            log.warn("Failed to save hot key snapshot: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        saveSnapshot();
+    }
+
+    private void scheduleSnapshots() {
+        if (snapshot == null || snapshotScheduler != null) {
             return;
         }
+        long interval = properties.getCacheWarming().getSnapshotInterval().toMillis();
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleAtFixedRate(this::saveSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
 
-        log.info("Starting cache warming...");
-        io.micrometer.core.instrument.Timer.Sample sample = io.micrometer.core.instrument.Timer.start();
+    /**
+     * Configured warm keys followed by the previous instance's hot keys.
+     */
+    private List<String> recordedKeys() {
+        List<String> keys = new ArrayList<>();
+        properties.getCaches().forEach((cacheName, cacheConfig) ->
+            cacheConfig.getWarmKeys().forEach(key -> keys.add(cacheName + CacheKeyBuilder.SEPARATOR + key)));
+        if (snapshot != null) {
+            keys.addAll(snapshot.load());
+        }
+        return keys;
+    }
+
+    /**
+     * Assign each key to the first warmer supporting it. Keys no warmer supports map to
+     * {@code null}: they are copied from Redis to the local cache if present there.
+     */
+    private Map<String, CacheWarmer> route(Collection<String> keys) {
+        Map<String, CacheWarmer> owners = new LinkedHashMap<>();
+        for (String key : keys) {
+            owners.put(key, warmers.stream().filter(warmer -> warmer.supports(key)).findFirst().orElse(null));
+        }
+        return owners;
+    }
+
+    private CompletableFuture<Void> run(Map<String, CacheWarmer> owners) {
+        CacheProperties.CacheWarming config = properties.getCacheWarming();
+        Map<CacheWarmer, List<String>> byWarmer = new LinkedHashMap<>();
+        owners.forEach((key, warmer) -> byWarmer.computeIfAbsent(warmer, ignored -> new ArrayList<>()).add(key));
+
+        Queue<Batch> batches = new ConcurrentLinkedQueue<>();
+        int batchSize = Math.max(1, config.getBatchSize());
+        byWarmer.forEach((warmer, keys) -> {
+            for (int from = 0; from < keys.size(); from += batchSize) {
+                batches.add(new Batch(warmer, keys.subList(from, Math.min(from + batchSize, keys.size()))));
+            }
+        });
+
+        WarmupRun run = new WarmupRun();
+        run.planned.set(owners.size());
+        lastRun = run;
+        log.info("Starting cache warming: {} keys in {} batches", owners.size(), batches.size());
+        Timer.Sample sample = Timer.start();
+
+        int workers = Math.min(Math.max(1, config.getConcurrency()), batches.size());
+        CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = CompletableFuture.runAsync(() -> drain(batches, run), cacheWarmExecutor);
+        }
+        return CompletableFuture.allOf(running).whenComplete((ignored, error) -> {
+            long elapsed = sample.stop(warmTimer);
+            warm = true;
+            log.info("Cache warming completed in {} ms: {} of {} keys warmed, {} failed",
+                TimeUnit.NANOSECONDS.toMillis(elapsed), run.warmed.get(), run.planned.get(), run.failed.get());
+        });
+    }
 
+    private void drain(Queue<Batch> batches, WarmupRun run) {
+        Batch batch;
+        while ((batch = batches.poll()) != null) {
+            warm(batch, run);
+        }
+    }
+
+    private void warm(Batch batch, WarmupRun run) {
         try {
-            int totalWarmed = 0;
-            int totalFailed = 0;
-
-            // Warm caches configured for each cache region
-            for (var entry : properties.getCaches().entrySet()) {
-                String cacheName = entry.getKey();
-                var cacheConfig = entry.getValue();
-
-                if (cacheConfig.getWarmKeys().isEmpty()) {
-                    continue;
-                }
-
-                log.info("Warming cache '{}' with {} keys", cacheName, cacheConfig.getWarmKeys().size());
-
-                for (String key : cacheConfig.getWarmKeys()) {
-                    try {
-                        warmCacheKey(cacheName, key);
-                        totalWarmed++;
-                        warmedCounter.increment();
-                    } catch (Exception e) {
-                        log.warn("Failed to warm key '{}' in cache '{}': {}", key, cacheName, e.getMessage());
-                        totalFailed++;
-                        failedCounter.increment();
+            Map<String, Object> cached = cacheService.getAll(batch.keys(), Object.class);
+            long warmed = cached.size();
+            if (batch.warmer() != null && cached.size() < batch.keys().size()) {
+                List<String> missing = batch.keys().stream().filter(key -> !cached.containsKey(key)).toList();
+                budget.acquire();
+                Map<String, Object> loaded = new HashMap<>();
+                batch.warmer().load(missing).forEach((key, value) -> {
+                    if (value != null && !cached.containsKey(key)) {
+                        loaded.put(key, value);
                     }
-                }
+                });
+                cacheService.putAllLoaded(loaded, batch.warmer().softTtl(), batch.warmer().ttl());
+                warmed += loaded.size();
             }
-
-            sample.stop(warmTimer);
-            log.info("Cache warming completed: {} entries warmed, {} failed", totalWarmed, totalFailed);
+            run.warmed.addAndGet(warmed);
+            warmedCounter.increment(warmed);
         } catch (Exception e) {
-            log.error("Error during cache warming", e);
-            failedCounter.increment();
+            log.warn("Failed to warm {} keys with '{}': {}", batch.keys().size(), batch.name(), e.getMessage());
+            run.failed.addAndGet(batch.keys().size());
+            failedCounter.increment(batch.keys().size());
+        } finally {
+            run.done.addAndGet(batch.keys().size());
         }
     }
 
-    /**
-     * Warm a specific cache key.
-     * This method can be overridden in subclasses to implement custom warm-up logic.
-     */
-    protected void warmCacheKey(String cacheName, String key) {
-        // Default implementation: just check if the key exists
-        // Actual warm-up logic should be provided by the application
-        log.debug("Warming key '{}' in cache '{}'", key, cacheName);
+    private record Batch(CacheWarmer warmer, List<String> keys) {
+
+        String name() {
+            return warmer != null ? warmer.name() : "redis";
+        }
+    }
+
+    private static final class WarmupRun {
 
-        // Trigger cache load via CacheService
-        // The actual data loading should be handled by CacheWithTTLAspect fallback suppliers
+        private final AtomicLong planned = new AtomicLong();
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicLong warmed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        double progress() {
+            long total = planned.get();
+            return total == 0 ? 1.0 : (double) done.get() / total;
+        }
     }
 
     /**
-     * Manually trigger cache warming for a specific cache name.
+     * Spaces warmer calls evenly so they never exceed the configured rate, whatever
+     * the number of workers.
      */
-    public void warmCache(String cacheName) {
-        log.info("Manual cache warming triggered for '{}'", cacheName);
-        var cacheConfig = properties.getCaches().get(cacheName);
+    private static final class LoadBudget {
 
-        if (cacheConfig == null || cacheConfig.getWarmKeys().isEmpty()) {
-            log.warn("No warm keys configured for cache '{}'", cacheName);
-            return;
+        private final long intervalNanos;
+        private long next = System.nanoTime();
+
+        LoadBudget(int perSecond) {
+            this.intervalNanos = perSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / perSecond : 0;
         }
 
-        for (String key : cacheConfig.getWarmKeys()) {
+        void acquire() {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, next);
+                next = start + intervalNanos;
+                wait = start - now;
+            }
             try {
-                warmCacheKey(cacheName, key);
-                warmedCounter.increment();
-            } catch (Exception e) {
-                log.warn("Failed to warm key '{}' in cache '{}': {}", key, cacheName, e.getMessage());
-                failedCounter.increment();
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
     }
@@ -1,19 +1,43 @@
 package id.payu.cache.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import id.payu.cache.codec.CacheCodecRegistry;
+import id.payu.cache.codec.CacheValueSerializer;
 import id.payu.cache.model.CacheEntry;
 import id.payu.cache.properties.CacheProperties;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -24,17 +48,48 @@ import java.util.function.Supplier;
  *   <li>Redis-based distributed caching</li>
  *   <li>Stale-while-revalidate pattern</li>
  *   <li>Metrics tracking</li>
- *   <li>Automatic JSON serialization</li>
+ *   <li>Compact binary serialization with per-type codecs, see {@link CacheValueSerializer}</li>
+ *   <li>Tag indexes for group invalidation without KEYS</li>
+ *   <li>Batched reads, writes and evictions in one round trip</li>
  *   <li>Connection failure handling</li>
  * </ul>
+ *
+ * <p>Every write adds its key to a Redis set per tag: the key's group (the prefix before
+ * the first {@code payu.cache.tagging.delimiter}, e.g. {@code balance} for
+ * {@code balance:account:42}) plus any explicit tags. The set write is pipelined with the
+ * value write. {@link #evictTagged} then walks a tag's sets with SSCAN and deletes their
+ * members in UNLINK batches, so no single command blocks Redis for long.</p>
+ *
+ * <p>A tag's index is split into buckets by the expiry time of its members, each
+ * {@code payu.cache.tagging.bucket-width} wide. A bucket expires as soon as all its
+ * members have, so an index never holds more than one bucket width of expired keys and
+ * never outlives its entries, however often the tag is written. A per-tag sorted set lists
+ * the live buckets for eviction.</p>
  */
 @Slf4j
 public class DistributedCacheService {
 
+    /**
+     * Add ARGV[1] to the index bucket KEYS[1], which expires in ARGV[2] ms when all its
+     * members have, and list the bucket in the tag's bucket set KEYS[2] scored by that
+     * expiry (epoch ms ARGV[3]). Buckets expired by ARGV[4] are dropped from the list.
+     * Sent by SHA; the text only goes out again after Redis answers NOSCRIPT.
+     */
+    private static final RedisScript<Long> INDEX_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('sadd', KEYS[1], ARGV[1]) "
+            + "if redis.call('pttl', KEYS[1]) < tonumber(ARGV[2]) then redis.call('pexpire', KEYS[1], ARGV[2]) end "
+            + "redis.call('zadd', KEYS[2], ARGV[3], KEYS[1]) "
+            + "redis.call('zremrangebyscore', KEYS[2], '-inf', '(' .. ARGV[4]) "
+            + "if redis.call('pttl', KEYS[2]) < tonumber(ARGV[2]) then redis.call('pexpire', KEYS[2], ARGV[2]) end "
+            + "return 1", Long.class);
+    private static final byte[] INDEX_SCRIPT_TEXT = INDEX_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+
     private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringTemplate;
+    private final RedisSerializer<Object> valueSerializer;
     private final ValueOperations<String, Object> valueOps;
     private final CacheProperties properties;
-    private final ObjectMapper objectMapper;
+    private final CacheProperties.Tagging tagging;
 
     // Metrics
     private final Counter hitCounter;
@@ -43,21 +98,33 @@ public class DistributedCacheService {
     private final Counter errorCounter;
     private final Timer getTimer;
     private final Timer putTimer;
+    private final Counter evictedCounter;
 
     public DistributedCacheService(
             RedisConnectionFactory connectionFactory,
             CacheProperties properties) {
-        this.properties = properties;
+        this(connectionFactory, properties,
+                new CacheValueSerializer(new CacheCodecRegistry(), properties.getSerialization()));
+    }
 
-        // Create ObjectMapper for JSON serialization
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModules(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
+    public DistributedCacheService(
+            RedisConnectionFactory connectionFactory,
+            CacheProperties properties,
+            RedisSerializer<Object> valueSerializer) {
+        this.properties = properties;
+        this.tagging = properties.getTagging();
+        this.valueSerializer = valueSerializer;
 
-        // Create RedisTemplate
+        // Create RedisTemplate: plain string keys, binary values
         this.redisTemplate = new RedisTemplate<>();
         this.redisTemplate.setConnectionFactory(connectionFactory);
+        this.redisTemplate.setKeySerializer(RedisSerializer.string());
+        this.redisTemplate.setValueSerializer(valueSerializer);
+        this.redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        this.redisTemplate.setHashValueSerializer(valueSerializer);
         this.redisTemplate.afterPropertiesSet();
         this.valueOps = redisTemplate.opsForValue();
+        this.stringTemplate = new StringRedisTemplate(connectionFactory);
 
         // Initialize metrics
         String prefix = "cache.distributed";
@@ -67,6 +134,7 @@ public class DistributedCacheService {
         this.errorCounter = Metrics.counter(prefix + ".errors");
         this.getTimer = Metrics.timer(prefix + ".get");
         this.putTimer = Metrics.timer(prefix + ".put");
+        this.evictedCounter = Metrics.counter(prefix + ".evicted");
 
         log.info("Distributed cache service initialized");
     }
@@ -144,8 +212,12 @@ public class DistributedCacheService {
 
     /**
      * Get value with stale-while-revalidate pattern.
-     * Returns stale data immediately if available and schedules refresh.
+     * Returns stale data immediately if available but does not refresh it.
+     *
+     * @deprecated use {@link CacheService#getWithStaleWhileRevalidate}, which refreshes
+     * entries in the background before they go stale
      */
+    @Deprecated
     public <T> T getWithStaleWhileRevalidate(
             String key,
             Class<T> type,
@@ -180,7 +252,6 @@ public class DistributedCacheService {
                 if (entry.isStale()) {
                     staleCounter.increment();
                     log.debug("Cache entry stale for key: {}, serving stale data", key);
-                    // Return stale data, caller should schedule refresh
                     return entry.getValue();
                 }
 
@@ -200,20 +271,98 @@ public class DistributedCacheService {
     }
 
     /**
-     * Get raw CacheEntry for advanced use cases.
+     * Get raw CacheEntry, i.e. the value together with its staleness, in a single read.
      */
     public <T> CacheEntry<T> getEntry(String key, Class<T> type) {
+        Timer.Sample sample = Timer.start();
+
         try {
             Object value = valueOps.get(key);
             if (value instanceof CacheEntry) {
-                return (CacheEntry<T>) value;
+                CacheEntry<T> entry = (CacheEntry<T>) value;
+                if (entry.isExpired()) {
+                    missCounter.increment();
+                } else if (entry.isStale()) {
+                    staleCounter.increment();
+                } else {
+                    hitCounter.increment();
+                }
+                return entry;
             }
+            missCounter.increment();
         } catch (Exception e) {
+            errorCounter.increment();
             log.error("Error getting cache entry for key {}: {}", key, e.getMessage());
+        } finally {
+            sample.stop(getTimer);
         }
         return null;
     }
 
+    /**
+     * Get many values with a single MGET. Missing and expired keys are absent from the
+     * result; stale entries are returned like {@link #get(String, Class)} does.
+     */
+    public <T> Map<String, T> getAll(Collection<String> keys, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        Timer.Sample sample = Timer.start();
+
+        try {
+            List<String> keyList = List.copyOf(new LinkedHashSet<>(keys));
+            List<Object> values = valueOps.multiGet(keyList);
+            for (int i = 0; i < keyList.size(); i++) {
+                Object raw = values != null ? values.get(i) : null;
+                Object value = raw;
+                if (raw instanceof CacheEntry<?> entry) {
+                    value = entry.isExpired() ? null : entry.getValue();
+                }
+                if (!type.isInstance(value)) {
+                    missCounter.increment();
+                    continue;
+                }
+                if (raw instanceof CacheEntry<?> entry && entry.isStale()) {
+                    staleCounter.increment();
+                } else {
+                    hitCounter.increment();
+                }
+                found.put(keyList.get(i), type.cast(value));
+            }
+            log.debug("Multi-get of {} keys found {}", keyList.size(), found.size());
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error multi-getting {} keys from cache: {}", keys.size(), e.getMessage());
+        } finally {
+            sample.stop(getTimer);
+        }
+        return found;
+    }
+
+    /**
+     * Put many values with soft and hard TTL, pipelined into one round trip.
+     */
+    public void putAll(Map<String, ?> values, long softTtlSeconds, long hardTtlSeconds) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start();
+
+        try {
+            Map<String, CacheEntry<Object>> entries = new LinkedHashMap<>();
+            values.forEach((key, value) -> entries.put(key, CacheEntry.create(value, softTtlSeconds, hardTtlSeconds)));
+            writeAll(entries, Duration.ofSeconds(hardTtlSeconds), List.of());
+            log.debug("Put {} keys in cache with softTTL: {}s, hardTTL: {}s",
+                    entries.size(), softTtlSeconds, hardTtlSeconds);
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error putting {} keys to cache: {}", values.size(), e.getMessage());
+        } finally {
+            sample.stop(putTimer);
+        }
+    }
+
     /**
      * Put value in cache with default TTL.
      */
@@ -223,7 +372,7 @@ public class DistributedCacheService {
         try {
             Duration ttl = properties.getDefaultTtl();
             CacheEntry<Object> entry = CacheEntry.create(value, ttl.getSeconds());
-            valueOps.set(key, entry, ttl);
+            write(key, entry, ttl, List.of());
             log.debug("Put key in cache: {} with TTL: {}", key, ttl);
         } catch (Exception e) {
             errorCounter.increment();
@@ -244,11 +393,19 @@ public class DistributedCacheService {
      * Put value in cache with soft and hard TTL (stale-while-revalidate).
      */
     public void put(String key, Object value, long softTtlSeconds, long hardTtlSeconds) {
+        put(key, value, softTtlSeconds, hardTtlSeconds, List.of());
+    }
+
+    /**
+     * Put value in cache with soft and hard TTL, indexed under the given tags in addition
+     * to its group.
+     */
+    public void put(String key, Object value, long softTtlSeconds, long hardTtlSeconds, Collection<String> tags) {
         Timer.Sample sample = Timer.start();
 
         try {
             CacheEntry<Object> entry = CacheEntry.create(value, softTtlSeconds, hardTtlSeconds);
-            valueOps.set(key, entry, Duration.ofSeconds(hardTtlSeconds));
+            write(key, entry, Duration.ofSeconds(hardTtlSeconds), tags);
             log.debug("Put key in cache: {} with softTTL: {}s, hardTTL: {}s",
                     key, softTtlSeconds, hardTtlSeconds);
         } catch (Exception e) {
@@ -259,6 +416,126 @@ public class DistributedCacheService {
         }
     }
 
+    /**
+     * Overwrite an entry only while it still exists (SET XX), so a reload that finishes
+     * after the key was invalidated does not bring the old value back. The key's group
+     * index is extended to the new expiry.
+     *
+     * @return whether the entry was replaced
+     */
+    public boolean replace(String key, Object value, long softTtlSeconds, long hardTtlSeconds) {
+        Timer.Sample sample = Timer.start();
+
+        try {
+            CacheEntry<Object> entry = CacheEntry.create(value, softTtlSeconds, hardTtlSeconds);
+            Duration ttl = Duration.ofSeconds(hardTtlSeconds);
+            if (!Boolean.TRUE.equals(valueOps.setIfPresent(key, entry, ttl))) {
+                log.debug("Key {} was removed while reloading, not replacing it", key);
+                return false;
+            }
+            Set<String> indexTags = indexTags(key, List.of());
+            if (!indexTags.isEmpty()) {
+                IndexBucket bucket = IndexBucket.of(System.currentTimeMillis(), ttl, tagging.getBucketWidth());
+                executeIndexed(byScript -> connection -> {
+                    index(connection, key, indexTags, bucket, byScript);
+                    return null;
+                }, false);
+            }
+            return true;
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error replacing cache entry for key {}: {}", key, e.getMessage());
+            return false;
+        } finally {
+            sample.stop(putTimer);
+        }
+    }
+
+    private void write(String key, CacheEntry<Object> entry, Duration ttl, Collection<String> tags) {
+        if (indexTags(key, tags).isEmpty()) {
+            valueOps.set(key, entry, ttl);
+            return;
+        }
+        writeAll(Map.of(key, entry), ttl, tags);
+    }
+
+    /**
+     * SET PX every entry, plus its index updates, in one pipeline. MSET would save a few
+     * bytes but cannot set expiries.
+     */
+    private void writeAll(Map<String, CacheEntry<Object>> entries, Duration ttl, Collection<String> tags) {
+        Expiration expiration = Expiration.from(ttl);
+        IndexBucket bucket = IndexBucket.of(System.currentTimeMillis(), ttl, tagging.getBucketWidth());
+        Function<Boolean, RedisCallback<Object>> writes = byScript -> connection -> {
+            for (Map.Entry<String, CacheEntry<Object>> entry : entries.entrySet()) {
+                byte[] rawKey = RedisSerializer.string().serialize(entry.getKey());
+                connection.stringCommands().set(rawKey, valueSerializer.serialize(entry.getValue()), expiration,
+                        RedisStringCommands.SetOption.upsert());
+                index(connection, entry.getKey(), indexTags(entry.getKey(), tags), bucket, byScript);
+            }
+            return null;
+        };
+        // A key and its indexes hash to different slots, which cluster pipelines reject
+        executeIndexed(writes, !properties.getRedis().isCluster());
+    }
+
+    /**
+     * Run index updates by script SHA. A pipeline only reports NOSCRIPT once it is closed,
+     * so when Redis has lost the script (restart, failover, SCRIPT FLUSH) the whole batch
+     * is sent again with the script text, which also loads it for later writes. Repeating
+     * the SETs and SADDs is harmless.
+     */
+    private void executeIndexed(Function<Boolean, RedisCallback<Object>> writes, boolean pipelined) {
+        try {
+            execute(writes.apply(false), pipelined);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            log.debug("Tag index script not loaded, resending it");
+            execute(writes.apply(true), pipelined);
+        }
+    }
+
+    private void execute(RedisCallback<Object> writes, boolean pipelined) {
+        if (pipelined) {
+            redisTemplate.executePipelined(writes, RedisSerializer.string());
+        } else {
+            redisTemplate.execute(writes);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a key to the bucket of each tag's index that matches its expiry.
+     */
+    private void index(RedisConnection connection, String key, Set<String> tags, IndexBucket bucket,
+                       boolean byScript) {
+        byte[] rawKey = RedisSerializer.string().serialize(key);
+        byte[] rawTtl = RedisSerializer.string().serialize(String.valueOf(bucket.ttlMillis()));
+        byte[] rawExpiresAt = RedisSerializer.string().serialize(String.valueOf(bucket.expiresAt()));
+        byte[] rawNow = RedisSerializer.string().serialize(String.valueOf(bucket.now()));
+        for (String tag : tags) {
+            byte[][] keysAndArgs = {
+                    RedisSerializer.string().serialize(bucketKey(tag, bucket.id())),
+                    RedisSerializer.string().serialize(bucketsKey(tag)),
+                    rawKey, rawTtl, rawExpiresAt, rawNow};
+            if (byScript) {
+                connection.scriptingCommands().eval(INDEX_SCRIPT_TEXT, ReturnType.INTEGER, 2, keysAndArgs);
+            } else {
+                connection.scriptingCommands().evalSha(INDEX_SCRIPT.getSha1(), ReturnType.INTEGER, 2, keysAndArgs);
+            }
+        }
+    }
+
     /**
      * Evict entry from cache.
      */
@@ -271,6 +548,182 @@ public class DistributedCacheService {
         }
     }
 
+    /**
+     * Evict many entries with a single UNLINK.
+     *
+     * @return Number of keys deleted
+     */
+    public long evictAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        try {
+            Long removed = stringTemplate.unlink(keys);
+            log.debug("Evicted {} of {} keys from cache", removed, keys.size());
+            return removed != null ? removed : 0;
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error evicting {} keys from cache: {}", keys.size(), e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Evict every key indexed under a tag (or group), in UNLINK batches of
+     * {@code payu.cache.tagging.batch-size}. Each index bucket is detached first, so
+     * entries written while the eviction runs are tracked in a fresh bucket and survive.
+     *
+     * @param tag     Tag or group name
+     * @param evicted Called with each batch of evicted keys
+     * @return Number of keys deleted
+     */
+    public long evictTagged(String tag, Consumer<Collection<String>> evicted) {
+        List<String> indexKeys = new ArrayList<>();
+        try {
+            Set<String> buckets = stringTemplate.opsForZSet()
+                    .rangeByScore(bucketsKey(tag), System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            if (buckets != null) {
+                indexKeys.addAll(buckets);
+            }
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error listing cache index buckets of {}: {}", tag, e.getMessage());
+        }
+        // Unbucketed index written before buckets were introduced; expires with its members
+        indexKeys.add(indexKey(tag));
+
+        long removed = 0;
+        for (String indexKey : indexKeys) {
+            removed += drain(tag, indexKey, evicted);
+        }
+        log.debug("Evicted {} keys tagged {}", removed, tag);
+        return removed;
+    }
+
+    private long drain(String tag, String indexKey, Consumer<Collection<String>> evicted) {
+        // Same hash tag as the index, so the rename stays within one cluster slot
+        String draining = indexKey + ":evicting:" + UUID.randomUUID();
+        try {
+            if (!Boolean.TRUE.equals(stringTemplate.hasKey(indexKey))) {
+                return 0;
+            }
+            stringTemplate.rename(indexKey, draining);
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error detaching cache index {}: {}", indexKey, e.getMessage());
+            return 0;
+        }
+
+        long removed = 0;
+        ScanOptions options = ScanOptions.scanOptions().count(tagging.getBatchSize()).build();
+        try (Cursor<String> cursor = stringTemplate.opsForSet().scan(draining, options)) {
+            removed = unlinkAll(cursor, evicted);
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error evicting cache tag {}: {}", tag, e.getMessage());
+        } finally {
+            stringTemplate.unlink(draining);
+        }
+        return removed;
+    }
+
+    /**
+     * Evict every key matching a Redis glob pattern, using cursor-paged SCAN instead of
+     * KEYS. Costs a full keyspace walk, spread over many short commands; prefer
+     * {@link #evictTagged} for keys written with tag indexes.
+     *
+     * @param pattern Redis glob pattern, e.g. {@code accounts:*}
+     * @param evicted Called with each batch of evicted keys
+     * @return Number of keys deleted
+     */
+    public long evictMatching(String pattern, Consumer<Collection<String>> evicted) {
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(tagging.getBatchSize()).build();
+        try (Cursor<String> cursor = stringTemplate.scan(options)) {
+            long removed = unlinkAll(cursor, evicted);
+            log.debug("Evicted {} keys matching {}", removed, pattern);
+            return removed;
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.error("Error evicting cache keys matching {}: {}", pattern, e.getMessage());
+            return 0;
+        }
+    }
+
+    private long unlinkAll(Cursor<String> cursor, Consumer<Collection<String>> evicted) {
+        long removed = 0;
+        List<String> batch = new ArrayList<>(tagging.getBatchSize());
+        while (cursor.hasNext()) {
+            batch.add(cursor.next());
+            if (batch.size() >= tagging.getBatchSize()) {
+                removed += unlink(batch, evicted);
+                batch = new ArrayList<>(tagging.getBatchSize());
+            }
+        }
+        return removed + unlink(batch, evicted);
+    }
+
+    private long unlink(List<String> keys, Consumer<Collection<String>> evicted) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        // UNLINK frees the values on a background thread in Redis
+        Long removed = stringTemplate.unlink(keys);
+        evicted.accept(keys);
+        long count = removed != null ? removed : 0;
+        evictedCounter.increment(count);
+        return count;
+    }
+
+    /**
+     * Group of a key: the prefix before the first tagging delimiter, or {@code null}.
+     */
+    public String groupOf(String key) {
+        int end = key.indexOf(tagging.getDelimiter());
+        return end > 0 ? key.substring(0, end) : null;
+    }
+
+    private Set<String> indexTags(String key, Collection<String> tags) {
+        if (!tagging.isEnabled()) {
+            return Set.of();
+        }
+        Set<String> indexTags = new LinkedHashSet<>();
+        String group = groupOf(key);
+        if (group != null) {
+            indexTags.add(group);
+        }
+        indexTags.addAll(tags);
+        return indexTags;
+    }
+
+    private String indexKey(String tag) {
+        return tagging.getIndexPrefix() + "{" + tag + "}";
+    }
+
+    private String bucketKey(String tag, long bucket) {
+        return indexKey(tag) + ":" + bucket;
+    }
+
+    private String bucketsKey(String tag) {
+        return indexKey(tag) + ":buckets";
+    }
+
+    /**
+     * The index bucket of entries written at {@code now} with the given TTL: buckets are
+     * numbered by expiry time and expire at the end of their window.
+     */
+    record IndexBucket(long id, long now, long expiresAt) {
+
+        static IndexBucket of(long now, Duration ttl, Duration width) {
+            long widthMillis = Math.max(1, width.toMillis());
+            long id = Math.floorDiv(now + ttl.toMillis(), widthMillis);
+            return new IndexBucket(id, now, (id + 1) * widthMillis);
+        }
+
+        long ttlMillis() {
+            return expiresAt - now;
+        }
+    }
+
     /**
      * Check if key exists in cache.
      */
@@ -8,7 +8,12 @@ import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 /**
  * Local cache service using Caffeine as a fallback when Redis is unavailable.
@@ -20,12 +25,14 @@ import java.util.concurrent.TimeUnit;
  *   <li>Statistics tracking with Micrometer</li>
  *   <li>Automatic eviction</li>
  *   <li>Failure detection and circuit breaker pattern</li>
+ *   <li>Separate short-lived region pinning hot keys, safe from size eviction</li>
  * </ul>
  */
 @Slf4j
 public class LocalCacheService {
 
     private final Cache<String, Object> cache;
+    private final Cache<String, Object> pinned;
     private final CacheProperties properties;
     private final boolean enabled;
     private final boolean recordStats;
@@ -56,6 +63,12 @@ public class LocalCacheService {
             }
 
             this.cache = builder.build();
+            this.pinned = properties.getHotKeys().isEnabled() && properties.getHotKeys().isPinning()
+                    ? Caffeine.newBuilder()
+                            .maximumSize(properties.getHotKeys().getPinMaxSize())
+                            .expireAfterWrite(properties.getHotKeys().getPinTtl())
+                            .build()
+                    : null;
 
             // Initialize metrics
             String prefix = properties.getMetrics().getPrefix() + ".local";
@@ -70,6 +83,7 @@ public class LocalCacheService {
                     recordStats);
         } else {
             this.cache = null;
+            this.pinned = null;
             this.hitCounter = null;
             this.missCounter = null;
             this.evictionCounter = null;
@@ -87,7 +101,10 @@ public class LocalCacheService {
         }
 
         try {
-            Object value = cache.getIfPresent(key);
+            Object value = pinned != null ? pinned.getIfPresent(key) : null;
+            if (value == null) {
+                value = cache.getIfPresent(key);
+            }
             if (value != null) {
                 if (recordStats) {
                     hitCounter.increment();
@@ -114,6 +131,9 @@ public class LocalCacheService {
         }
 
         try {
+            if (pinned != null && pinned.asMap().replace(key, value) != null) {
+                return;
+            }
             cache.put(key, value);
             log.debug("Put key in local cache: {}", key);
         } catch (Exception e) {
@@ -132,6 +152,9 @@ public class LocalCacheService {
         try {
             // For custom TTL, we would need to use a different approach
             // Caffeine uses a single TTL setting per cache instance
+            if (pinned != null && pinned.asMap().replace(key, value) != null) {
+                return;
+            }
             cache.asMap().put(key, value);
             log.debug("Put key in local cache with custom TTL: {}", key);
         } catch (Exception e) {
@@ -139,6 +162,30 @@ public class LocalCacheService {
         }
     }
 
+    /**
+     * Keep a hot key in the pinned region until {@code pin-ttl} passes or it is evicted.
+     * Plain {@link #put(String, Object)} otherwise.
+     */
+    public void pin(String key, Object value) {
+        if (!enabled) {
+            return;
+        }
+        if (pinned == null) {
+            put(key, value);
+            return;
+        }
+        pinned.put(key, value);
+        cache.invalidate(key);
+        log.debug("Pinned hot key in local cache: {}", key);
+    }
+
+    /**
+     * Number of keys currently pinned.
+     */
+    public long pinnedSize() {
+        return pinned != null ? pinned.estimatedSize() : 0;
+    }
+
     /**
      * Evict entry from local cache.
      */
@@ -149,12 +196,58 @@ public class LocalCacheService {
 
         try {
             cache.invalidate(key);
+            if (pinned != null) {
+                pinned.invalidate(key);
+            }
             log.debug("Evicted key from local cache: {}", key);
         } catch (Exception e) {
             log.warn("Error evicting from local cache: {}", e.getMessage());
         }
     }
 
+    /**
+     * Evict the given entries from local cache.
+     */
+    public void evictAll(Collection<String> keys) {
+        if (!enabled) {
+            return;
+        }
+        cache.invalidateAll(keys);
+        if (pinned != null) {
+            pinned.invalidateAll(keys);
+        }
+    }
+
+    /**
+     * Evict every entry whose key matches.
+     */
+    public void evictIf(Predicate<String> keyFilter) {
+        if (!enabled) {
+            return;
+        }
+        cache.asMap().keySet().removeIf(keyFilter);
+        if (pinned != null) {
+            pinned.asMap().keySet().removeIf(keyFilter);
+        }
+    }
+
+    /**
+     * Keys most likely to be read again, hottest first: pinned hot keys, then the rest as
+     * ranked by Caffeine's frequency-based eviction policy.
+     */
+    public List<String> hottestKeys(int limit) {
+        if (!enabled) {
+            return List.of();
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        if (pinned != null) {
+            pinned.asMap().keySet().stream().limit(limit).forEach(keys::add);
+        }
+        cache.policy().eviction()
+                .ifPresent(eviction -> keys.addAll(eviction.hottest(limit - keys.size()).keySet()));
+        return List.copyOf(keys);
+    }
+
     /**
      * Clear all entries from local cache.
      */
@@ -165,6 +258,9 @@ public class LocalCacheService {
 
         try {
             cache.invalidateAll();
+            if (pinned != null) {
+                pinned.invalidateAll();
+            }
             log.debug("Cleared local cache");
         } catch (Exception e) {
             log.warn("Error clearing local cache: {}", e.getMessage());
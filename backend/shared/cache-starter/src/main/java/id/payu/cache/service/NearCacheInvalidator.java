@@ -0,0 +1,223 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps every node's {@link LocalCacheService} coherent with Redis.
+ *
+ * <p>Local evictions made through {@link CacheService} are applied here and broadcast on a
+ * Redis pub/sub channel ({@code payu.cache.local-cache.invalidation-channel}); every other
+ * node applies them to its own local cache as soon as the message arrives. Writes that
+ * change a value are broadcast as evictions too, so other nodes reload the new value from
+ * Redis on their next read; values loaded or refreshed from their source are not. Unlike
+ * the Kafka invalidation topic, every node receives every message.</p>
+ *
+ * <p>Pub/sub is fire-and-forget: a node that loses its subscription may miss messages,
+ * so it clears its local cache whenever the subscription is re-established. The local
+ * TTL still bounds staleness while Redis is unreachable.</p>
+ *
+ * <p>Message format: the sender's node id, an operation ({@code KEYS}, {@code PREFIX} or
+ * {@code PATTERN}) and its arguments, one per line.</p>
+ */
+@Slf4j
+public class NearCacheInvalidator implements MessageListener, SubscriptionListener, SmartLifecycle {
+
+    static final String KEYS = "KEYS";
+    static final String PREFIX = "PREFIX";
+    static final String PATTERN = "PATTERN";
+
+    private final LocalCacheService localCache;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String channel;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer container;
+    private final AtomicBoolean subscribedOnce = new AtomicBoolean();
+    private volatile boolean running;
+
+    // Metrics
+    private final Counter sentCounter;
+    private final Counter receivedCounter;
+    private final Counter errorCounter;
+    private final Counter resubscribedCounter;
+
+    /**
+     * Invalidator for a single node: evictions are applied locally only.
+     */
+    public NearCacheInvalidator(LocalCacheService localCache, CacheProperties properties) {
+        this(null, localCache, properties);
+    }
+
+    public NearCacheInvalidator(
+            RedisConnectionFactory connectionFactory,
+            LocalCacheService localCache,
+            CacheProperties properties) {
+        CacheProperties.LocalCache config = properties.getLocalCache();
+        this.localCache = localCache;
+        this.channel = config.getInvalidationChannel();
+
+        if (connectionFactory != null && localCache.isEnabled() && config.isBroadcastInvalidation()) {
+            this.redisTemplate = new StringRedisTemplate(connectionFactory);
+            this.container = new RedisMessageListenerContainer();
+            this.container.setConnectionFactory(connectionFactory);
+            this.container.addMessageListener(this, new ChannelTopic(channel));
+            this.container.afterPropertiesSet();
+        } else {
+            this.redisTemplate = null;
+            this.container = null;
+        }
+
+        // Initialize metrics
+        String prefix = "cache.local.broadcast";
+        this.sentCounter = Metrics.counter(prefix + ".sent");
+        this.receivedCounter = Metrics.counter(prefix + ".received");
+        this.errorCounter = Metrics.counter(prefix + ".errors");
+        this.resubscribedCounter = Metrics.counter(prefix + ".resubscribed");
+    }
+
+    /**
+     * Evict keys here and on every other node.
+     */
+    public void invalidate(Collection<String> keys) {
+        if (keys.isEmpty() || !localCache.isEnabled()) {
+            return;
+        }
+        localCache.evictAll(keys);
+        publish(KEYS, keys);
+    }
+
+    /**
+     * Evict every key starting with {@code prefix}, here and on every other node.
+     */
+    public void invalidatePrefix(String prefix) {
+        if (!localCache.isEnabled()) {
+            return;
+        }
+        localCache.evictIf(key -> key.startsWith(prefix));
+        publish(PREFIX, List.of(prefix));
+    }
+
+    /**
+     * Evict every key matching a Redis glob pattern, here and on every other node.
+     */
+    public void invalidatePattern(String pattern) {
+        if (!localCache.isEnabled()) {
+            return;
+        }
+        evictMatching(pattern);
+        publish(PATTERN, List.of(pattern));
+    }
+
+    /**
+     * Tell other nodes a key was rewritten, so they drop their now outdated local copy.
+     * The local copy on this node is left alone.
+     */
+    public void written(String key) {
+        written(List.of(key));
+    }
+
+    /**
+     * Tell other nodes these keys were rewritten, in one message.
+     */
+    public void written(Collection<String> keys) {
+        if (!keys.isEmpty() && localCache.isEnabled()) {
+            publish(KEYS, keys);
+        }
+    }
+
+    /**
+     * Whether evictions are broadcast to other nodes.
+     */
+    public boolean isBroadcasting() {
+        return container != null;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] lines = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+        if (lines.length < 2 || nodeId.equals(lines[0])) {
+            return;
+        }
+        receivedCounter.increment();
+        List<String> args = Arrays.asList(lines).subList(2, lines.length);
+        switch (lines[1]) {
+            case KEYS -> localCache.evictAll(args);
+            case PREFIX -> args.forEach(prefix -> localCache.evictIf(key -> key.startsWith(prefix)));
+            case PATTERN -> args.forEach(this::evictMatching);
+            default -> log.warn("Ignoring unknown local cache invalidation: {}", lines[1]);
+        }
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        if (subscribedOnce.compareAndSet(false, true)) {
+            return;
+        }
+        // Messages published while we were disconnected are lost
+        resubscribedCounter.increment();
+        localCache.clear();
+        log.warn("Re-subscribed to local cache invalidations, cleared local cache");
+    }
+
+    @Override
+    public void start() {
+        if (container != null) {
+            container.start();
+            log.info("Broadcasting local cache invalidations on channel: {}", channel);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void evictMatching(String pattern) {
+        Pattern regex = CacheService.globToRegex(pattern);
+        localCache.evictIf(key -> regex.matcher(key).matches());
+    }
+
+    private void publish(String operation, Collection<String> args) {
+        if (redisTemplate == null) {
+            return;
+        }
+        StringBuilder message = new StringBuilder(64).append(nodeId).append('\n').append(operation);
+        for (String arg : args) {
+            message.append('\n').append(arg);
+        }
+        try {
+            redisTemplate.convertAndSend(channel, message.toString());
+            sentCounter.increment();
+        } catch (Exception e) {
+            errorCounter.increment();
+            log.warn("Error broadcasting local cache invalidation: {}", e.getMessage());
+        }
+    }
+}
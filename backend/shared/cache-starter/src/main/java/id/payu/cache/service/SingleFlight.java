@@ -0,0 +1,223 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Per-key single-flight loading for cache misses.
+ *
+ * <p>When many callers miss the same key at once, only the first one (the leader) runs
+ * the loader; the others wait for its result instead of hitting the backing store.
+ * With {@code payu.cache.single-flight.distributed-lock} enabled, the leader also takes
+ * a short Redis lock so that only one node loads the key; leaders on other nodes poll
+ * the cache until the value shows up or the lock wait runs out.</p>
+ *
+ * <p>Waiting is always bounded: a caller whose wait times out loads the value itself,
+ * so a stuck loader or an unreachable Redis degrades to the previous behaviour.</p>
+ */
+@Slf4j
+public class SingleFlight {
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ConcurrentHashMap<String, Call> calls = new ConcurrentHashMap<>();
+    private final CacheProperties.SingleFlight config;
+    private final StringRedisTemplate redisTemplate;
+
+    // Metrics
+    private final Counter leaderCounter;
+    private final Counter coalescedCounter;
+    private final Counter waitTimeoutCounter;
+    private final Counter lockContendedCounter;
+    private final Counter lockTimeoutCounter;
+    private final Timer waitTimer;
+
+    /**
+     * Local-only single flight.
+     */
+    public SingleFlight(CacheProperties properties) {
+        this(null, properties);
+    }
+
+    /**
+     * Single flight with an optional Redis lock, used when
+     * {@code payu.cache.single-flight.distributed-lock} is enabled.
+     */
+    public SingleFlight(RedisConnectionFactory connectionFactory, CacheProperties properties) {
+        this.config = properties.getSingleFlight();
+        if (connectionFactory != null && config.isDistributedLock()) {
+            this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        } else {
+            this.redisTemplate = null;
+        }
+
+        // Initialize metrics
+        String prefix = "cache.singleflight";
+        this.leaderCounter = Metrics.counter(prefix + ".loads");
+        this.coalescedCounter = Metrics.counter(prefix + ".coalesced");
+        this.waitTimeoutCounter = Metrics.counter(prefix + ".wait.timeouts");
+        this.lockContendedCounter = Metrics.counter(prefix + ".lock.contended");
+        this.lockTimeoutCounter = Metrics.counter(prefix + ".lock.timeouts");
+        this.waitTimer = Metrics.timer(prefix + ".wait");
+
+        log.info("Single-flight loading enabled: {}, distributed lock: {}",
+                config.isEnabled(), redisTemplate != null);
+    }
+
+    /**
+     * Load a value for {@code key}, sharing one loader invocation between concurrent callers.
+     *
+     * @param key         Cache key
+     * @param cacheLookup Re-reads the cache; used while another node holds the load lock
+     * @param loader      Loads the value and writes it to the cache
+     * @param <T>         Return type
+     * @return Loaded value, possibly produced by another caller
+     */
+    public <T> T execute(String key, Supplier<T> cacheLookup, Supplier<T> loader) {
+        if (!config.isEnabled()) {
+            return loader.get();
+        }
+
+        Call call = new Call(Thread.currentThread());
+        Call existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            if (existing.leader == Thread.currentThread()) {
+                // Re-entrant load of the same key: waiting would deadlock
+                return loader.get();
+            }
+            return await(key, existing, loader);
+        }
+
+        leaderCounter.increment();
+        try {
+            T value = lead(key, cacheLookup, loader);
+            call.result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            call.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * Number of keys currently being loaded on this node.
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(String key, Call call, Supplier<T> loader) {
+        coalescedCounter.increment();
+        Timer.Sample sample = Timer.start();
+        try {
+            return (T) call.result.get(config.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            waitTimeoutCounter.increment();
+            log.warn("Timed out waiting for in-flight load of key {}, loading directly", key);
+            return loader.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Cache load failed for key " + key, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for cache load of key " + key, e);
+        } finally {
+            sample.stop(waitTimer);
+        }
+    }
+
+    private <T> T lead(String key, Supplier<T> cacheLookup, Supplier<T> loader) {
+        if (redisTemplate == null) {
+            return loader.get();
+        }
+
+        String lockKey = config.getLockPrefix() + key;
+        String token = UUID.randomUUID().toString();
+        Boolean acquired;
+        try {
+            acquired = redisTemplate.opsForValue().setIfAbsent(lockKey, token, config.getLockTtl());
+        } catch (Exception e) {
+            log.warn("Could not take load lock for key {}: {}", key, e.getMessage());
+            return loader.get();
+        }
+
+        if (Boolean.TRUE.equals(acquired)) {
+            try {
+                return loader.get();
+            } finally {
+                release(lockKey, token);
+            }
+        }
+
+        // Another node is loading the key, wait for it to land in the cache
+        lockContendedCounter.increment();
+        Timer.Sample sample = Timer.start();
+        try {
+            long deadline = System.nanoTime() + config.getLockWait().toNanos();
+            long pollMillis = Math.max(1, config.getLockPollInterval().toMillis());
+            while (System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                T value = cacheLookup.get();
+                if (value != null) {
+                    return value;
+                }
+            }
+        } finally {
+            sample.stop(waitTimer);
+        }
+
+        lockTimeoutCounter.increment();
+        log.debug("Load lock for key {} not released in time, loading directly", key);
+        return loader.get();
+    }
+
+    private void release(String lockKey, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), token);
+        } catch (Exception e) {
+            // The lock expires on its own after lock-ttl
+            log.warn("Could not release load lock {}: {}", lockKey, e.getMessage());
+        }
+    }
+
+    private static final class Call {
+        final Thread leader;
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Call(Thread leader) {
+            this.leader = leader;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package id.payu.cache.warming;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Loads the entries of one slice of the key space so they are cached before the service
+ * takes traffic. Register implementations as Spring beans; {@code CacheWarmingService}
+ * runs all of them in parallel on startup:
+ * <pre>
+ * {@literal @Component}
+ * class FxRateWarmer implements CacheWarmer {
+ *     public String name() { return "fx-rates"; }
+ *     public Collection&lt;String&gt; warmKeys() { return List.of("fx:rate:USD:IDR", "fx:rate:SGD:IDR"); }
+ *     public boolean supports(String key) { return key.startsWith("fx:rate:"); }
+ *     public Map&lt;String, ?&gt; load(Collection&lt;String&gt; keys) { return rates.findAll(keys); }
+ *     public Duration ttl() { return Duration.ofMinutes(1); }
+ * }
+ * </pre>
+ *
+ * <p>Keys come from {@link #warmKeys()}, from the {@code warm-keys} configured per cache,
+ * and from the hot keys recorded by the previous instance. Configured and recorded keys go
+ * to the first warmer whose {@link #supports(String)} accepts them.</p>
+ */
+public interface CacheWarmer {
+
+    /**
+     * Name used in logs.
+     */
+    String name();
+
+    /**
+     * Keys to warm on every start, for example the most active accounts.
+     */
+    Collection<String> warmKeys();
+
+    /**
+     * Whether this warmer can load the given key.
+     */
+    boolean supports(String key);
+
+    /**
+     * Load the values of a batch of keys, ideally with one query. Keys missing from the
+     * result are not cached.
+     */
+    Map<String, ?> load(Collection<String> keys);
+
+    /**
+     * Hard TTL of warmed entries.
+     */
+    Duration ttl();
+
+    /**
+     * Soft TTL of warmed entries, after which reads refresh them in the background.
+     */
+    default Duration softTtl() {
+        return ttl();
+    }
+}
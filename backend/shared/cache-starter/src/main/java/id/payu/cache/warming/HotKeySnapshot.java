@@ -0,0 +1,57 @@
+package id.payu.cache.warming;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The hottest local cache keys of a service, kept in Redis so that the next instance
+ * to start can warm them. Instances of the same service share one snapshot; the last
+ * one written wins.
+ *
+ * <p>The snapshot is a single newline-separated string value, written with one
+ * {@code SET PX}, so readers never see a partially written list.</p>
+ */
+@Slf4j
+public class HotKeySnapshot {
+
+    private final StringRedisTemplate redis;
+    private final String key;
+    private final Duration ttl;
+
+    public HotKeySnapshot(RedisConnectionFactory connectionFactory, String key, Duration ttl) {
+        this.redis = new StringRedisTemplate(connectionFactory);
+        this.key = key;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Replace the snapshot with the given keys, hottest first.
+     */
+    public void save(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        String value = keys.stream()
+                .filter(cacheKey -> cacheKey.indexOf('\n') < 0)
+                .collect(Collectors.joining("\n"));
+        redis.opsForValue().set(key, value, ttl);
+        log.debug("Saved {} hot keys to {}", keys.size(), key);
+    }
+
+    /**
+     * Keys of the last saved snapshot, hottest first, or an empty list.
+     */
+    public List<String> load() {
+        String value = redis.opsForValue().get(key);
+        if (value == null || value.isEmpty()) {
+            return List.of();
+        }
+        return List.of(value.split("\n"));
+    }
+}
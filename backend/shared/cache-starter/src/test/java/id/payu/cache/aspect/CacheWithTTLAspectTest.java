@@ -0,0 +1,177 @@
+package id.payu.cache.aspect;
+
+import id.payu.cache.annotation.CacheInvalidate;
+import id.payu.cache.annotation.CacheWithTTL;
+import id.payu.cache.key.CacheKeyBuilder;
+import id.payu.cache.properties.CacheProperties;
+import id.payu.cache.service.CacheService;
+import id.payu.cache.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheWithTTLAspectTest {
+
+    private final CacheService cacheService = mock(CacheService.class);
+    private final AccountQueries queries = proxy(new AccountQueries());
+
+    @Test
+    void keyExpressionIsEvaluatedOnEveryCall() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(cacheService.get("accounts:account:" + first, String.class)).thenReturn("cached-1");
+        when(cacheService.get("accounts:account:" + second, String.class)).thenReturn("cached-2");
+
+        // Repeated calls go through the compiled expression
+        for (int i = 0; i < 3; i++) {
+            assertThat(queries.account(first)).isEqualTo("cached-1");
+            assertThat(queries.account(second)).isEqualTo("cached-2");
+        }
+    }
+
+    @Test
+    void defaultKeysKeepArgumentBoundaries() {
+        queries.statement("a:b", "c");
+        queries.statement("a", "b:c");
+
+        verify(cacheService).putLoaded(eq("statements:statement(String,String):a\\:b:c"), any(),
+                any(Duration.class), any(Duration.class));
+        verify(cacheService).putLoaded(eq("statements:statement(String,String):a:b\\:c"), any(),
+                any(Duration.class), any(Duration.class));
+    }
+
+    @Test
+    void defaultKeysForObjectsAreStableAcrossInstances() {
+        queries.search(Map.of("currency", "IDR", "status", "ACTIVE"));
+        queries.search(Map.of("status", "ACTIVE", "currency", "IDR"));
+
+        String key = CacheKeyBuilder.key("searches:search(Map)", Map.of("currency", "IDR", "status", "ACTIVE"));
+        verify(cacheService, times(2)).putLoaded(eq(key), any(), any(Duration.class), any(Duration.class));
+    }
+
+    @Test
+    void falseConditionBypassesCache() {
+        assertThat(queries.conditional("ab")).isEqualTo("loaded:ab");
+
+        verify(cacheService, never()).get(any(), any());
+    }
+
+    @Test
+    void unlessSeesTheResult() {
+        queries.conditional("abcdef");
+        queries.conditional("skip-me");
+
+        verify(cacheService).putLoaded(eq("conditional:abcdef"), eq("loaded:abcdef"),
+                any(Duration.class), any(Duration.class));
+        verify(cacheService, never()).putLoaded(eq("conditional:skip-me"), any(),
+                any(Duration.class), any(Duration.class));
+    }
+
+    @Test
+    void concurrentSyncMissesShareOneInvocation() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new CacheProperties());
+        when(cacheService.getSingleFlight()).thenReturn(singleFlight);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = callers.submit(() -> queries.slow("ACC-1"));
+            while (singleFlight.inFlight() == 0) {
+                Thread.onSpinWait();
+            }
+            Future<String> follower = callers.submit(() -> queries.slow("ACC-1"));
+            Thread.sleep(50);
+            queries.release.countDown();
+
+            assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("loaded:ACC-1");
+            assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("loaded:ACC-1");
+            assertThat(queries.slowCalls).hasValue(1);
+            verify(cacheService).putLoaded(eq("slow:ACC-1"), eq("loaded:ACC-1"),
+                    any(Duration.class), any(Duration.class));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void syncPathRethrowsCheckedExceptions() {
+        when(cacheService.getSingleFlight()).thenReturn(new SingleFlight(new CacheProperties()));
+
+        assertThatThrownBy(() -> queries.failing("ACC-1")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void cacheNameFallsBackToValueAttribute() {
+        queries.evict("ACC-1");
+
+        verify(cacheService).invalidate("profiles:ACC-1");
+    }
+
+    private <T> T proxy(T target) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CacheWithTTLAspect(cacheService));
+        return factory.getProxy();
+    }
+
+    static class AccountQueries {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger slowCalls = new AtomicInteger();
+
+        @CacheWithTTL(cacheName = "slow", key = "#p0", ttl = 1)
+        public String slow(String accountId) throws InterruptedException {
+            slowCalls.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "loaded:" + accountId;
+        }
+
+        @CacheWithTTL(cacheName = "failing", key = "#p0", ttl = 1)
+        public String failing(String accountId) throws IOException {
+            throw new IOException("statement store unavailable for " + accountId);
+        }
+
+        @CacheWithTTL(cacheName = "accounts", key = "'account:' + #accountId", ttl = 10, sync = false)
+        public String account(UUID accountId) {
+            return "loaded:" + accountId;
+        }
+
+        @CacheWithTTL(cacheName = "statements", ttl = 5, timeUnit = TimeUnit.MINUTES, sync = false)
+        public String statement(String accountId, String period) {
+            return accountId + "/" + period;
+        }
+
+        @CacheWithTTL(cacheName = "searches", ttl = 1, sync = false)
+        public String search(Map<String, String> filter) {
+            return "found";
+        }
+
+        @CacheWithTTL(cacheName = "conditional", key = "#p0", ttl = 1, sync = false,
+                condition = "#value.length() > 2", unless = "#result.startsWith('loaded:skip')")
+        public String conditional(String value) {
+            return "loaded:" + value;
+        }
+
+        @CacheInvalidate(value = "profiles", key = "#accountId")
+        public void evict(String accountId) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package id.payu.cache.benchmark;
+
+import id.payu.cache.annotation.CacheWithTTL;
+import id.payu.cache.aspect.CacheWithTTLAspect;
+import id.payu.cache.properties.CacheProperties;
+import id.payu.cache.service.CacheService;
+import id.payu.cache.service.LocalCacheService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link CacheWithTTLAspect} on a cache hit, the common case on hot read
+ * paths. {@code direct} calls the unproxied method, {@code cachedHit} goes through the
+ * aspect with a key expression, and {@code cachedHitDefaultKey} uses the generated key.
+ * {@code perCallExpressionKey} measures only the key derivation the aspect used to do:
+ * parsing the expression and building a fresh evaluation context on every call.
+ * The cache answers from a map, so Redis round trips are not part of the numbers.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.cache.benchmark.CacheAspectBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheAspectBenchmark {
+
+    private BalanceQueries direct;
+    private BalanceQueries proxied;
+    private Method method;
+    private SpelExpressionParser parser;
+    private DefaultParameterNameDiscoverer parameterNames;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        CacheProperties properties = new CacheProperties();
+        properties.getLocalCache().setEnabled(false);
+        CacheService hits = new CacheService(null, new LocalCacheService(properties), properties) {
+            @Override
+            public <T> T get(String key, Class<T> type) {
+                return type.cast(BALANCE);
+            }
+        };
+        AspectJProxyFactory factory = new AspectJProxyFactory(new BalanceQueries());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new CacheWithTTLAspect(hits));
+
+        direct = new BalanceQueries();
+        proxied = factory.getProxy();
+        method = BalanceQueries.class.getMethod("balance", String.class);
+        parser = new SpelExpressionParser();
+        parameterNames = new DefaultParameterNameDiscoverer();
+    }
+
+    @Benchmark
+    public BigDecimal direct() {
+        return direct.balance("ACC-100042");
+    }
+
+    @Benchmark
+    public BigDecimal cachedHit() {
+        return proxied.balance("ACC-100042");
+    }
+
+    @Benchmark
+    public BigDecimal cachedHitDefaultKey() {
+        return proxied.available("ACC-100042", "IDR");
+    }
+
+    @Benchmark
+    public String perCallExpressionKey() {
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.setVariable("method", method);
+        String[] names = parameterNames.getParameterNames(method);
+        context.setVariable(names[0], "ACC-100042");
+        return "balances:" + parser.parseExpression("'account:' + #accountId").getValue(context, String.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CacheAspectBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    private static final BigDecimal BALANCE = new BigDecimal("10000000.00");
+
+    public static class BalanceQueries {
+
+        @CacheWithTTL(cacheName = "balances", key = "'account:' + #accountId", ttl = 30,
+                timeUnit = TimeUnit.SECONDS, sync = false)
+        public BigDecimal balance(String accountId) {
+            return BALANCE;
+        }
+
+        @CacheWithTTL(cacheName = "balances", ttl = 30, timeUnit = TimeUnit.SECONDS, sync = false)
+        public BigDecimal available(String accountId, String currency) {
+            return BALANCE;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package id.payu.cache.benchmark;
+
+import id.payu.cache.codec.CacheCodecRegistry;
+import id.payu.cache.codec.CacheValueSerializer;
+import id.payu.cache.model.CacheEntry;
+import id.payu.cache.properties.CacheProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of cached values: {@link CacheValueSerializer} against the JDK
+ * serialization a bare {@code RedisTemplate} used before. Payloads are a balance amount,
+ * a wallet snapshot and a 50-line statement page, each wrapped in a {@link CacheEntry}
+ * the way DistributedCacheService stores them. Payload sizes are printed before the run.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.cache.benchmark.CacheSerializationBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheSerializationBenchmark {
+
+    @Param({"balance", "wallet", "statement"})
+    String payload;
+
+    private JdkSerializationRedisSerializer jdk;
+    private CacheValueSerializer binary;
+    private CacheEntry<Object> entry;
+    private byte[] jdkBytes;
+    private byte[] binaryBytes;
+
+    @Setup
+    public void setUp() {
+        jdk = new JdkSerializationRedisSerializer();
+        binary = new CacheValueSerializer(new CacheCodecRegistry(), new CacheProperties.Serialization());
+        entry = CacheEntry.create(payload(payload), 15, 30);
+        jdkBytes = jdk.serialize(entry);
+        binaryBytes = binary.serialize(entry);
+    }
+
+    @Benchmark
+    public byte[] jdkEncode() {
+        return jdk.serialize(entry);
+    }
+
+    @Benchmark
+    public Object jdkDecode() {
+        return jdk.deserialize(jdkBytes);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binary.serialize(entry);
+    }
+
+    @Benchmark
+    public Object binaryDecode() {
+        return binary.deserialize(binaryBytes);
+    }
+
+    static Object payload(String name) {
+        return switch (name) {
+            case "balance" -> new BigDecimal("10000000.00");
+            case "wallet" -> wallet(1);
+            case "statement" -> {
+                List<WalletSnapshot> lines = new ArrayList<>();
+                for (int i = 0; i < 50; i++) {
+                    lines.add(wallet(i));
+                }
+                yield new Statement(lines);
+            }
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    private static WalletSnapshot wallet(int seed) {
+        WalletSnapshot wallet = new WalletSnapshot();
+        wallet.setId(new UUID(seed, seed * 31L));
+        wallet.setAccountId("ACC-" + (100000 + seed));
+        wallet.setBalance(new BigDecimal("10000000.00").add(BigDecimal.valueOf(seed)));
+        wallet.setReservedBalance(new BigDecimal("250000.00"));
+        wallet.setCurrency("IDR");
+        wallet.setStatus("ACTIVE");
+        wallet.setVersion((long) seed);
+        wallet.setUpdatedAt(LocalDateTime.of(2026, 1, 18, 23, 30).plusMinutes(seed));
+        return wallet;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        JdkSerializationRedisSerializer jdk = new JdkSerializationRedisSerializer();
+        CacheValueSerializer binary =
+                new CacheValueSerializer(new CacheCodecRegistry(), new CacheProperties.Serialization());
+        for (String name : List.of("balance", "wallet", "statement")) {
+            CacheEntry<Object> entry = CacheEntry.create(payload(name), 15, 30);
+            System.out.printf("%-10s jdk=%6d bytes  binary=%6d bytes%n",
+                    name, jdk.serialize(entry).length, binary.serialize(entry).length);
+        }
+        new Runner(new OptionsBuilder()
+                .include(CacheSerializationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Same shape as the wallet-service Wallet, made Serializable so the JDK baseline can run.
+     */
+    public static class WalletSnapshot implements Serializable {
+        private UUID id;
+        private String accountId;
+        private BigDecimal balance;
+        private BigDecimal reservedBalance;
+        private String currency;
+        private String status;
+        private Long version;
+        private LocalDateTime updatedAt;
+
+        public UUID getId() {
+            return id;
+        }
+
+        public void setId(UUID id) {
+            this.id = id;
+        }
+
+        public String getAccountId() {
+            return accountId;
+        }
+
+        public void setAccountId(String accountId) {
+            this.accountId = accountId;
+        }
+
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        public void setBalance(BigDecimal balance) {
+            this.balance = balance;
+        }
+
+        public BigDecimal getReservedBalance() {
+            return reservedBalance;
+        }
+
+        public void setReservedBalance(BigDecimal reservedBalance) {
+            this.reservedBalance = reservedBalance;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public void setCurrency(String currency) {
+            this.currency = currency;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(LocalDateTime updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    public static class Statement implements Serializable {
+        private List<WalletSnapshot> lines;
+
+        public Statement() {
+        }
+
+        Statement(List<WalletSnapshot> lines) {
+            this.lines = lines;
+        }
+
+        public List<WalletSnapshot> getLines() {
+            return lines;
+        }
+
+        public void setLines(List<WalletSnapshot> lines) {
+            this.lines = lines;
+        }
+    }
+}
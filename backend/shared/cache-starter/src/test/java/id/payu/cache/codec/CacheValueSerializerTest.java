@@ -0,0 +1,262 @@
+package id.payu.cache.codec;
+
+import id.payu.cache.model.CacheEntry;
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheValueSerializerTest {
+
+    private final CacheValueSerializer serializer =
+            new CacheValueSerializer(new CacheCodecRegistry(), new CacheProperties.Serialization());
+
+    @Test
+    void shouldRoundTripCacheEntryWithBuiltinValue() {
+        CacheEntry<BigDecimal> entry = CacheEntry.create(new BigDecimal("10000000.50"), 15, 30);
+
+        @SuppressWarnings("unchecked")
+        CacheEntry<Object> restored = (CacheEntry<Object>) serializer.deserialize(serializer.serialize(entry));
+
+        assertThat(restored.getValue()).isEqualTo(new BigDecimal("10000000.50"));
+        assertThat(restored.getSoftTtl().toEpochMilli()).isEqualTo(entry.getSoftTtl().toEpochMilli());
+        assertThat(restored.getHardTtl().toEpochMilli()).isEqualTo(entry.getHardTtl().toEpochMilli());
+        assertThat(restored.isStale()).isFalse();
+    }
+
+    @Test
+    void shouldRoundTripScalarsCompactly() {
+        UUID id = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(serializer.deserialize(serializer.serialize("wallet"))).isEqualTo("wallet");
+        assertThat(serializer.deserialize(serializer.serialize(-42L))).isEqualTo(-42L);
+        assertThat(serializer.deserialize(serializer.serialize(id))).isEqualTo(id);
+        assertThat(serializer.deserialize(serializer.serialize(now))).isEqualTo(now);
+        assertThat(serializer.serialize(new BigDecimal("250000.00"))).hasSizeLessThan(10);
+    }
+
+    @Test
+    void shouldRoundTripPojoThroughSmile() {
+        Account account = new Account();
+        account.setId(UUID.randomUUID());
+        account.setBalance(new BigDecimal("125.75"));
+        account.setUpdatedAt(LocalDateTime.of(2026, 1, 18, 23, 30));
+
+        Object restored = serializer.deserialize(serializer.serialize(CacheEntry.create(account, 60)));
+
+        assertThat(((CacheEntry<?>) restored).getValue()).isEqualTo(account);
+    }
+
+    @Test
+    void shouldRoundTripContainersWithElementTypes() {
+        Account account = new Account();
+        account.setId(UUID.randomUUID());
+        account.setBalance(new BigDecimal("99.90"));
+        Map<String, Object> byId = new LinkedHashMap<>();
+        byId.put("acc-1", account);
+        byId.put("acc-2", null);
+
+        Object list = serializer.deserialize(serializer.serialize(CacheEntry.create(List.of(account, account), 60)));
+        Object map = serializer.deserialize(serializer.serialize(byId));
+        Object set = serializer.deserialize(serializer.serialize(Set.of(UUID.nameUUIDFromBytes(new byte[]{1}))));
+
+        assertThat((List<?>) ((CacheEntry<?>) list).getValue()).containsExactly(account, account);
+        assertThat(map).isEqualTo(byId);
+        assertThat(set).isEqualTo(Set.of(UUID.nameUUIDFromBytes(new byte[]{1})));
+    }
+
+    @Test
+    void shouldRoundTripOptionals() {
+        Profile profile = new Profile();
+        profile.setAlias(Optional.of("dompet utama"));
+
+        assertThat(serializer.deserialize(serializer.serialize(Optional.of(new BigDecimal("1.5")))))
+                .isEqualTo(Optional.of(new BigDecimal("1.5")));
+        assertThat(serializer.deserialize(serializer.serialize(Optional.empty()))).isEqualTo(Optional.empty());
+        assertThat(serializer.deserialize(serializer.serialize(profile))).isEqualTo(profile);
+    }
+
+    @Test
+    void shouldRejectContainersWithoutCodec() {
+        assertThatThrownBy(() -> serializer.serialize(new ArrayDeque<>(List.of("a"))))
+                .isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> serializer.serialize(new Account[]{new Account()}))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void shouldRejectTypesOutsideAllowedPackages() {
+        CacheProperties.Serialization config = new CacheProperties.Serialization();
+        config.setAllowedPackages(List.of("id.payu.wallet"));
+        CacheValueSerializer restricted = new CacheValueSerializer(new CacheCodecRegistry(), config);
+        Account account = new Account();
+        account.setId(UUID.randomUUID());
+
+        byte[] written = serializer.serialize(account);
+
+        assertThatThrownBy(() -> restricted.deserialize(written)).isInstanceOf(SerializationException.class);
+        assertThatThrownBy(() -> restricted.serialize(account)).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void shouldUseRegisteredCodec() {
+        CacheValueSerializer withCodec = new CacheValueSerializer(
+                new CacheCodecRegistry(List.of(new AccountCodec())), new CacheProperties.Serialization());
+        Account account = new Account();
+        account.setId(UUID.randomUUID());
+        account.setBalance(BigDecimal.ONE);
+
+        byte[] bytes = withCodec.serialize(account);
+
+        assertThat(withCodec.deserialize(bytes)).isEqualTo(account);
+        assertThat(bytes.length).isLessThan(serializer.serialize(account).length);
+    }
+
+    @Test
+    void shouldRejectReservedCodecIds() {
+        AccountCodec codec = new AccountCodec() {
+            @Override
+            public int id() {
+                return 1;
+            }
+        };
+
+        assertThatThrownBy(() -> new CacheCodecRegistry(List.of(codec)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldCompressLargeValues() {
+        CacheProperties.Serialization config = new CacheProperties.Serialization();
+        config.setCompressionThreshold(DataSize.ofBytes(64));
+        CacheValueSerializer compressing = new CacheValueSerializer(new CacheCodecRegistry(), config);
+        String statement = "TRANSFER IDR 50000 ".repeat(200);
+
+        byte[] bytes = compressing.serialize(statement);
+
+        assertThat(bytes[0] & CacheValueSerializer.FLAG_LZ4).isEqualTo(CacheValueSerializer.FLAG_LZ4);
+        assertThat(bytes.length).isLessThan(statement.length() / 4);
+        assertThat(compressing.deserialize(bytes)).isEqualTo(statement);
+    }
+
+    @Test
+    void shouldTreatValuesWrittenByJdkSerializationAsMisses() {
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(CacheEntry.create("old", 60));
+        byte[] outsideAllowList = new JdkSerializationRedisSerializer().serialize(new AtomicLong(7));
+
+        assertThat(serializer.deserialize(legacy)).isNull();
+        assertThat(serializer.deserialize(outsideAllowList)).isNull();
+    }
+
+    public static class Account {
+        private UUID id;
+        private BigDecimal balance;
+        private LocalDateTime updatedAt;
+
+        public UUID getId() {
+            return id;
+        }
+
+        public void setId(UUID id) {
+            this.id = id;
+        }
+
+        public BigDecimal getBalance() {
+            return balance;
+        }
+
+        public void setBalance(BigDecimal balance) {
+            this.balance = balance;
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public void setUpdatedAt(LocalDateTime updatedAt) {
+            this.updatedAt = updatedAt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Account other
+                    && Objects.equals(id, other.id)
+                    && Objects.equals(balance, other.balance)
+                    && Objects.equals(updatedAt, other.updatedAt);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, balance, updatedAt);
+        }
+    }
+
+    public static class Profile {
+        private Optional<String> alias = Optional.empty();
+
+        public Optional<String> getAlias() {
+            return alias;
+        }
+
+        public void setAlias(Optional<String> alias) {
+            this.alias = alias;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Profile other && Objects.equals(alias, other.alias);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(alias);
+        }
+    }
+
+    static class AccountCodec implements CacheCodec<Account> {
+        @Override
+        public int id() {
+            return CacheCodec.FIRST_APPLICATION_ID;
+        }
+
+        @Override
+        public Class<Account> type() {
+            return Account.class;
+        }
+
+        @Override
+        public void encode(Account value, DataOutput out) throws IOException {
+            out.writeLong(value.getId().getMostSignificantBits());
+            out.writeLong(value.getId().getLeastSignificantBits());
+            CodecIO.writeString(out, value.getBalance().toPlainString());
+        }
+
+        @Override
+        public Account decode(DataInput in) throws IOException {
+            Account account = new Account();
+            account.setId(new UUID(in.readLong(), in.readLong()));
+            account.setBalance(new BigDecimal(CodecIO.readString(in)));
+            return account;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package id.payu.cache.hotkey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTest {
+
+    @Test
+    void murmur3MatchesTheReferenceOverChars() {
+        // Same value as Guava's murmur3_32_fixed(0).hashUnencodedChars(...)
+        assertThat(CountMinSketch.murmur3("balance:account:42", 0)).isEqualTo(-1562985446);
+    }
+
+    @Test
+    void rowsHashIndependently() {
+        CountMinSketch sketch = new CountMinSketch(1024);
+        // Equal String.hashCode, so they used to share every counter
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        long sharedRows = IntStream.range(0, 4)
+                .filter(row -> sketch.index("Aa", row) == sketch.index("BB", row))
+                .count();
+
+        assertThat(sharedRows).isLessThan(4);
+    }
+
+    @Test
+    void estimateIsExactWithoutCollisions() {
+        CountMinSketch sketch = new CountMinSketch(1024);
+        sketch.add("Aa", 40);
+        sketch.add("BB", 1);
+
+        assertThat(sketch.estimate("BB")).isEqualTo(1);
+        assertThat(sketch.estimate("Aa")).isEqualTo(40);
+
+        sketch.halve();
+        assertThat(sketch.estimate("Aa")).isEqualTo(20);
+    }
+}
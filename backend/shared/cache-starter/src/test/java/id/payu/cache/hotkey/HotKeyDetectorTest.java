@@ -0,0 +1,82 @@
+package id.payu.cache.hotkey;
+
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotKeyDetectorTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final HotKeyDetector detector = new HotKeyDetector(properties(), now::get);
+
+    @Test
+    void keyAboveThresholdIsHot() {
+        read("merchant:qris:M1", 25);
+        read("merchant:qris:M2", 3);
+
+        assertThat(detector.isHot("merchant:qris:M1")).isTrue();
+        assertThat(detector.isHot("merchant:qris:M2")).isFalse();
+    }
+
+    @Test
+    void topKeysAreRankedPerWindow() {
+        read("promo:viral", 40);
+        read("merchant:qris:M1", 10);
+        read("merchant:qris:M2", 2);
+        assertThat(detector.topKeys()).isEmpty();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(detector.topKeys()).extracting(HotKeyDetector.HotKey::key)
+                .containsExactly("promo:viral", "merchant:qris:M1");
+        assertThat(detector.topKeys().get(0).readsPerSecond()).isEqualTo(20);
+        assertThat(detector.topKeys().get(0).hot()).isTrue();
+    }
+
+    @Test
+    void keyCoolsDownWhenReadsStop() {
+        read("promo:viral", 30);
+        assertThat(detector.isHot("promo:viral")).isTrue();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        detector.topKeys();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        detector.topKeys();
+
+        assertThat(detector.isHot("promo:viral")).isFalse();
+    }
+
+    @Test
+    void manyColdKeysDoNotPushOutTheHotOne() {
+        read("promo:viral", 50);
+        for (int i = 0; i < 1000; i++) {
+            read("account:" + i, 1);
+        }
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertThat(detector.topKeys().get(0).key()).isEqualTo("promo:viral");
+        assertThat(detector.topKeys()).hasSize(2);
+    }
+
+    private void read(String key, int times) {
+        for (int i = 0; i < times; i++) {
+            detector.record(key);
+        }
+    }
+
+    private static CacheProperties properties() {
+        CacheProperties properties = new CacheProperties();
+        CacheProperties.HotKeys hotKeys = properties.getHotKeys();
+        hotKeys.setSampleRate(1);
+        hotKeys.setWindow(Duration.ofSeconds(1));
+        hotKeys.setThreshold(10);
+        hotKeys.setTopK(2);
+        return properties;
+    }
+}
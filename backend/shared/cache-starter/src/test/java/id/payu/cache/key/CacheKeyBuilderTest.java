@@ -0,0 +1,60 @@
+package id.payu.cache.key;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheKeyBuilderTest {
+
+    enum Status { ACTIVE }
+
+    record Filter(String currency, BigDecimal minAmount) { }
+
+    static class Opaque {
+        private final String secret;
+
+        Opaque(String secret) {
+            this.secret = secret;
+        }
+    }
+
+    @Test
+    void scalarsAreWrittenAsText() {
+        UUID id = UUID.fromString("3f2b8c1e-0000-4000-8000-000000000001");
+
+        String key = CacheKeyBuilder.of("balance").add("account").add(id).add(42L).add(Status.ACTIVE)
+                .add(LocalDate.of(2026, 1, 18)).build();
+
+        assertThat(key).isEqualTo("balance:account:3f2b8c1e-0000-4000-8000-000000000001:42:ACTIVE:2026-01-18");
+    }
+
+    @Test
+    void separatorsInPartsDoNotCollide() {
+        assertThat(CacheKeyBuilder.key("k", "a:b", "c")).isNotEqualTo(CacheKeyBuilder.key("k", "a", "b:c"));
+        assertThat(CacheKeyBuilder.key("k", (Object) null)).isNotEqualTo(CacheKeyBuilder.key("k", "\\0"));
+        assertThat(CacheKeyBuilder.key("k", "#x")).doesNotStartWith("k:#");
+    }
+
+    @Test
+    void objectsAreDigestedByValue() {
+        String first = CacheKeyBuilder.key("search", new Filter("IDR", new BigDecimal("100")));
+        String same = CacheKeyBuilder.key("search", new Filter("IDR", new BigDecimal("100")));
+        String other = CacheKeyBuilder.key("search", new Filter("IDR", new BigDecimal("101")));
+
+        assertThat(first).isEqualTo(same).isNotEqualTo(other).startsWith("search:#");
+        assertThat(CacheKeyBuilder.key("search", List.of(1, 2))).isNotEqualTo(CacheKeyBuilder.key("search", List.of(2, 1)));
+    }
+
+    @Test
+    void objectsWithoutPropertiesAreRejected() {
+        assertThatThrownBy(() -> CacheKeyBuilder.key("search", new Opaque("a")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("explicit key expression");
+    }
+}
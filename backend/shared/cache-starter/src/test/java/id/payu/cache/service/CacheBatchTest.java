@@ -0,0 +1,75 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheBatchTest {
+
+    private final CacheProperties properties = new CacheProperties();
+    private final DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+    private final LocalCacheService localCache = new LocalCacheService(properties);
+    private final CacheService cacheService = new CacheService(distributedCache, localCache, properties);
+
+    @Test
+    void getAllReadsLocalHitsAndFetchesTheRestInOneCall() {
+        localCache.put("balance:account:1", BigDecimal.ONE);
+        when(distributedCache.getAll(Set.of("balance:account:2", "balance:account:3"), BigDecimal.class))
+                .thenReturn(Map.of("balance:account:2", BigDecimal.TWO));
+
+        Map<String, BigDecimal> balances = cacheService.getAll(
+                List.of("balance:account:1", "balance:account:2", "balance:account:3"), BigDecimal.class);
+
+        assertThat(balances).containsOnly(
+                Map.entry("balance:account:1", BigDecimal.ONE),
+                Map.entry("balance:account:2", BigDecimal.TWO));
+        assertThat(localCache.get("balance:account:2", BigDecimal.class)).isEqualTo(BigDecimal.TWO);
+    }
+
+    @Test
+    void getAllLoadsMissesWithOneBulkCall() {
+        when(distributedCache.getAll(Set.of("balance:account:1", "balance:account:2", "balance:account:3"),
+                BigDecimal.class)).thenReturn(Map.of("balance:account:1", BigDecimal.ONE));
+        List<Set<String>> loads = new ArrayList<>();
+
+        Map<String, BigDecimal> balances = cacheService.getAll(
+                List.of("balance:account:1", "balance:account:2", "balance:account:3"), BigDecimal.class,
+                missing -> {
+                    loads.add(Set.copyOf(missing));
+                    return Map.of("balance:account:2", BigDecimal.TWO);
+                },
+                Duration.ofSeconds(30));
+
+        assertThat(loads).containsExactly(Set.of("balance:account:2", "balance:account:3"));
+        assertThat(balances).containsOnlyKeys("balance:account:1", "balance:account:2");
+        verify(distributedCache).putAll(eq(Map.of("balance:account:2", BigDecimal.TWO)), anyLong(), anyLong());
+    }
+
+    @Test
+    void putAllAndInvalidateAllAreSingleBatches() {
+        Map<String, Object> entries = Map.of("balance:account:1", BigDecimal.ONE, "wallet:account:1", "w1");
+
+        cacheService.putAll(entries, Duration.ofSeconds(15), Duration.ofSeconds(30));
+        assertThat(localCache.get("wallet:account:1", Object.class)).isNotNull();
+
+        cacheService.invalidateAll(entries.keySet());
+
+        verify(distributedCache).putAll(entries, 15, 30);
+        verify(distributedCache).evictAll(entries.keySet());
+        assertThat(localCache.get("wallet:account:1", Object.class)).isNull();
+        assertThat(localCache.get("balance:account:1", Object.class)).isNull();
+    }
+}
@@ -0,0 +1,110 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheInvalidationTest {
+
+    private final CacheProperties properties = new CacheProperties();
+    private final DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+    private final LocalCacheService localCache = new LocalCacheService(properties);
+    private final CacheService cacheService = new CacheService(distributedCache, localCache, properties);
+
+    @Test
+    void groupInvalidationEvictsIndexedRedisKeysAndLocalCopies() {
+        properties.getTagging().setScanFallback(true);
+        evictsThroughIndex("balance", List.of("balance:account:1", "balance:account:2"));
+        localCache.put("balance:account:1", "1");
+        localCache.put("balance:account:3", "3");
+        localCache.put("wallet:account:1", "w");
+
+        long removed = cacheService.invalidateGroup("balance");
+
+        assertThat(removed).isEqualTo(2);
+        assertThat(localCache.get("balance:account:1", String.class)).isNull();
+        assertThat(localCache.get("balance:account:3", String.class)).isNull();
+        assertThat(localCache.get("wallet:account:1", String.class)).isEqualTo("w");
+        verify(distributedCache).evictMatching(eq("balance:*"), any());
+    }
+
+    @Test
+    void scanFallbackIsOffByDefault() {
+        cacheService.invalidateGroup("balance");
+
+        verify(distributedCache).evictTagged(eq("balance"), any());
+        verify(distributedCache, never()).evictMatching(any(), any());
+    }
+
+    @Test
+    void indexBucketsFollowEntryExpiry() {
+        Duration width = Duration.ofMinutes(5);
+        long now = Duration.ofHours(1).toMillis() + 1_000;
+
+        DistributedCacheService.IndexBucket bucket =
+                DistributedCacheService.IndexBucket.of(now, Duration.ofMinutes(2), width);
+
+        // Expires when the bucket's window ends, never before its members
+        assertThat(bucket.expiresAt()).isEqualTo(Duration.ofMinutes(65).toMillis());
+        assertThat(bucket.ttlMillis()).isGreaterThanOrEqualTo(Duration.ofMinutes(2).toMillis())
+                .isLessThanOrEqualTo(Duration.ofMinutes(2).plus(width).toMillis());
+        assertThat(DistributedCacheService.IndexBucket.of(now, Duration.ofMinutes(3), width).id())
+                .isEqualTo(bucket.id());
+        assertThat(DistributedCacheService.IndexBucket.of(now, Duration.ofMinutes(10), width).id())
+                .isGreaterThan(bucket.id());
+    }
+
+    @Test
+    void taggedPutIsForwardedWithItsTags() {
+        cacheService.put("statement:ACC-1:2026-01", "page", Duration.ofMinutes(5), List.of("account:ACC-1"));
+
+        verify(distributedCache).put(eq("statement:ACC-1:2026-01"), eq("page"), anyLong(), anyLong(),
+                eq(List.of("account:ACC-1")));
+    }
+
+    @Test
+    void patternInvalidationAppliesGlobToLocalCache() {
+        localCache.put("balance:available:ACC-1", "1");
+        localCache.put("balance:account:ACC-1", "2");
+        localCache.put("balance:account:ACC-10", "3");
+
+        cacheService.invalidatePattern("balance:*:ACC-?");
+
+        assertThat(localCache.get("balance:available:ACC-1", String.class)).isNull();
+        assertThat(localCache.get("balance:account:ACC-1", String.class)).isNull();
+        assertThat(localCache.get("balance:account:ACC-10", String.class)).isEqualTo("3");
+    }
+
+    @Test
+    void globTranslationMatchesRedisSemantics() {
+        assertThat(CacheService.globToRegex("h?llo").matcher("hallo").matches()).isTrue();
+        assertThat(CacheService.globToRegex("h[ae]llo").matcher("hello").matches()).isTrue();
+        assertThat(CacheService.globToRegex("h[^e]llo").matcher("hello").matches()).isFalse();
+        assertThat(CacheService.globToRegex("h[a-b]llo").matcher("hbllo").matches()).isTrue();
+        assertThat(CacheService.globToRegex("a.b*").matcher("axb").matches()).isFalse();
+        assertThat(CacheService.globToRegex("a\\*b").matcher("a*b").matches()).isTrue();
+        assertThat(CacheService.escapeGlob("odd*[name]")).isEqualTo("odd\\*\\[name\\]");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void evictsThroughIndex(String tag, List<String> keys) {
+        when(distributedCache.evictTagged(eq(tag), any())).thenAnswer(invocation -> {
+            Consumer<Collection<String>> evicted = invocation.getArgument(1);
+            evicted.accept(keys);
+            return (long) keys.size();
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package id.payu.cache.service;
+
+import id.payu.cache.model.CacheEntry;
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheRefresherTest {
+
+    private final CacheProperties properties = new CacheProperties();
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @Test
+    void freshEntryIsNotRefreshed() {
+        CacheRefresher refresher = new CacheRefresher(queued::add, properties);
+
+        assertThat(refresher.shouldRefresh(entryAged(Duration.ofSeconds(5), Duration.ofSeconds(15)))).isFalse();
+    }
+
+    @Test
+    void entryIsRefreshedAheadOfSoftTtl() {
+        CacheRefresher refresher = new CacheRefresher(queued::add, properties);
+
+        // 13s into a 15s soft TTL is past the 70-80% refresh-ahead window
+        assertThat(refresher.shouldRefresh(entryAged(Duration.ofSeconds(13), Duration.ofSeconds(15)))).isTrue();
+    }
+
+    @Test
+    void expiredEntryIsNotRefreshedInBackground() {
+        CacheRefresher refresher = new CacheRefresher(queued::add, properties);
+
+        assertThat(refresher.shouldRefresh(entryAged(Duration.ofSeconds(40), Duration.ofSeconds(15)))).isFalse();
+    }
+
+    @Test
+    void concurrentRefreshesOfOneKeyAreDeduplicated() {
+        CacheRefresher refresher = new CacheRefresher(queued::add, properties);
+
+        assertThat(refresher.refresh("balance:account:1", () -> { })).isTrue();
+        assertThat(refresher.refresh("balance:account:1", () -> { })).isFalse();
+        assertThat(refresher.refresh("balance:account:2", () -> { })).isTrue();
+        assertThat(queued).hasSize(2);
+
+        queued.get(0).run();
+        assertThat(refresher.refresh("balance:account:1", () -> { })).isTrue();
+    }
+
+    @Test
+    void rejectedRefreshIsDroppedAndCanBeRetried() {
+        CacheRefresher refresher = new CacheRefresher(task -> {
+            throw new RejectedExecutionException("full");
+        }, properties);
+
+        assertThat(refresher.refresh("key", () -> { })).isFalse();
+        assertThat(refresher.pending()).isZero();
+    }
+
+    @Test
+    void staleReadReturnsCachedValueAndRefreshesInBackground() {
+        properties.getLocalCache().setEnabled(false);
+        DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+        CacheEntry<BigDecimal> stale = entryAged(Duration.ofSeconds(20), Duration.ofSeconds(15));
+        when(distributedCache.getEntry("balance:account:1", BigDecimal.class)).thenReturn(stale);
+        CacheRefresher refresher = new CacheRefresher(queued::add, properties);
+        CacheService cacheService = new CacheService(distributedCache, new LocalCacheService(properties),
+                properties, new SingleFlight(properties), refresher);
+        AtomicInteger loads = new AtomicInteger();
+
+        BigDecimal balance = cacheService.getWithStaleWhileRevalidate("balance:account:1", BigDecimal.class,
+                () -> BigDecimal.valueOf(loads.incrementAndGet()), Duration.ofSeconds(15), Duration.ofSeconds(30));
+
+        assertThat(balance).isEqualTo(stale.getValue());
+        assertThat(loads).hasValue(0);
+        assertThat(queued).hasSize(1);
+
+        queued.get(0).run();
+        assertThat(loads).hasValue(1);
+        verify(distributedCache, times(1)).replace(eq("balance:account:1"), eq(BigDecimal.ONE), anyLong(), anyLong());
+        verify(distributedCache, times(0)).get(any(), any());
+    }
+
+    @Test
+    void refreshDoesNotRecreateKeyEvictedWhileReloading() {
+        DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+        CacheEntry<BigDecimal> stale = entryAged(Duration.ofSeconds(20), Duration.ofSeconds(15));
+        when(distributedCache.getEntry("balance:account:1", BigDecimal.class)).thenReturn(stale);
+        when(distributedCache.replace(eq("balance:account:1"), any(), anyLong(), anyLong())).thenReturn(false);
+        LocalCacheService localCache = new LocalCacheService(properties);
+        CacheService cacheService = new CacheService(distributedCache, localCache,
+                properties, new SingleFlight(properties), new CacheRefresher(queued::add, properties));
+
+        cacheService.getWithStaleWhileRevalidate("balance:account:1", BigDecimal.class,
+                () -> BigDecimal.ONE, Duration.ofSeconds(15), Duration.ofSeconds(30));
+        localCache.evict("balance:account:1");
+        queued.get(0).run();
+
+        verify(distributedCache, never()).put(eq("balance:account:1"), any(), anyLong(), anyLong());
+        assertThat(localCache.get("balance:account:1", Object.class)).isNull();
+    }
+
+    private static CacheEntry<BigDecimal> entryAged(Duration age, Duration softTtl) {
+        Instant createdAt = Instant.now().minus(age);
+        return new CacheEntry<>(new BigDecimal("10000000.00"), createdAt, createdAt.plus(softTtl),
+                createdAt.plus(softTtl.multipliedBy(2)), 0);
+    }
+}
@@ -0,0 +1,127 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import id.payu.cache.warming.CacheWarmer;
+import id.payu.cache.warming.HotKeySnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CacheWarmingServiceTest {
+
+    private final CacheProperties properties = new CacheProperties();
+    private final DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+    private final HotKeySnapshot snapshot = mock(HotKeySnapshot.class);
+    private final RateWarmer warmer = new RateWarmer();
+    private CacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        properties.getCacheWarming().setBatchSize(2);
+        properties.getCacheWarming().setMaxLoadsPerSecond(0);
+        cacheService = new CacheService(distributedCache, new LocalCacheService(properties), properties);
+        when(distributedCache.getAll(anyCollection(), eq(Object.class))).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            return keys.contains("fx:rate:USD") ? Map.of("fx:rate:USD", BigDecimal.TEN) : Map.of();
+        });
+    }
+
+    @Test
+    void loadsOnlyWhatRedisDoesNotHaveInBatches() {
+        warmer.keys = List.of("fx:rate:USD", "fx:rate:SGD", "fx:rate:EUR", "fx:rate:JPY");
+
+        service().warmCache().join();
+
+        assertThat(warmer.loads).containsExactly(List.of("fx:rate:SGD"), List.of("fx:rate:EUR", "fx:rate:JPY"));
+        LocalCacheService local = cacheService.getLocalCache();
+        assertThat(local.get("fx:rate:USD", Object.class)).isNotNull();
+        assertThat(local.get("fx:rate:JPY", Object.class)).isNotNull();
+    }
+
+    @Test
+    void snapshotKeysGoToTheSupportingWarmer() {
+        warmer.keys = List.of("fx:rate:SGD");
+        when(snapshot.load()).thenReturn(List.of("fx:rate:SGD", "fx:rate:EUR", "session:abc"));
+
+        CacheWarmingService service = service();
+        service.warmCache().join();
+
+        assertThat(warmer.loads).containsExactly(List.of("fx:rate:SGD", "fx:rate:EUR"));
+        assertThat(service.isWarm()).isTrue();
+    }
+
+    @Test
+    void failedBatchDoesNotStopTheOthers() {
+        warmer.keys = List.of("fx:rate:SGD", "fx:rate:EUR", "fx:rate:XXX", "fx:rate:JPY");
+
+        service().warmCache().join();
+
+        assertThat(warmer.loads).hasSize(2);
+        assertThat(cacheService.getLocalCache().get("fx:rate:SGD", Object.class)).isNotNull();
+    }
+
+    @Test
+    void configuredWarmKeysArePrefixedWithTheCacheName() {
+        CacheProperties.CacheConfig rates = new CacheProperties.CacheConfig();
+        rates.setWarmKeys(List.of("IDR"));
+        properties.getCaches().put("fx:rate", rates);
+
+        service().warmCache("fx:rate").join();
+
+        assertThat(warmer.loads).containsExactly(List.of("fx:rate:IDR"));
+    }
+
+    private CacheWarmingService service() {
+        return new CacheWarmingService(cacheService, properties, Runnable::run, List.of(warmer), snapshot);
+    }
+
+    static class RateWarmer implements CacheWarmer {
+
+        private Collection<String> keys = List.of();
+        private final List<List<String>> loads = new ArrayList<>();
+
+        @Override
+        public String name() {
+            return "fx-rates";
+        }
+
+        @Override
+        public Collection<String> warmKeys() {
+            return keys;
+        }
+
+        @Override
+        public boolean supports(String key) {
+            return key.startsWith("fx:rate:");
+        }
+
+        @Override
+        public Map<String, ?> load(Collection<String> keys) {
+            loads.add(List.copyOf(keys));
+            if (keys.contains("fx:rate:XXX")) {
+                throw new IllegalStateException("unknown currency");
+            }
+            Map<String, Object> rates = new HashMap<>();
+            keys.forEach(key -> rates.put(key, BigDecimal.ONE));
+            return rates;
+        }
+
+        @Override
+        public Duration ttl() {
+            return Duration.ofMinutes(1);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package id.payu.cache.service;
+
+import id.payu.cache.hotkey.HotKeyDetector;
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotKeyPinningTest {
+
+    private final CacheProperties properties = properties();
+    private final DistributedCacheService distributedCache = mock(DistributedCacheService.class);
+    private final LocalCacheService localCache = new LocalCacheService(properties);
+    private final CacheService cacheService = new CacheService(distributedCache, localCache, properties,
+            new SingleFlight(properties), new CacheRefresher(properties),
+            new NearCacheInvalidator(localCache, properties), new HotKeyDetector(properties));
+
+    @Test
+    void hotKeyIsPinnedAndServedLocally() {
+        when(distributedCache.get("promo:viral", BigDecimal.class)).thenReturn(BigDecimal.TEN);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(cacheService.get("promo:viral", BigDecimal.class)).isEqualTo(BigDecimal.TEN);
+        }
+
+        assertThat(localCache.pinnedSize()).isEqualTo(1);
+        verify(distributedCache, times(1)).get("promo:viral", BigDecimal.class);
+    }
+
+    @Test
+    void invalidationEvictsThePinnedCopy() {
+        when(distributedCache.get("promo:viral", BigDecimal.class)).thenReturn(BigDecimal.TEN);
+        cacheService.get("promo:viral", BigDecimal.class);
+
+        cacheService.invalidate("promo:viral");
+
+        assertThat(localCache.pinnedSize()).isZero();
+        assertThat(localCache.get("promo:viral", Object.class)).isNull();
+    }
+
+    @Test
+    void coldKeyGoesToTheRegularLocalCache() {
+        properties.getHotKeys().setThreshold(1_000_000);
+        CacheService coldService = new CacheService(distributedCache, localCache, properties,
+                new SingleFlight(properties), new CacheRefresher(properties),
+                new NearCacheInvalidator(localCache, properties), new HotKeyDetector(properties));
+        when(distributedCache.get("account:1", String.class)).thenReturn("ACC-1");
+
+        coldService.get("account:1", String.class);
+
+        assertThat(localCache.pinnedSize()).isZero();
+        assertThat(localCache.get("account:1", String.class)).isEqualTo("ACC-1");
+    }
+
+    private static CacheProperties properties() {
+        CacheProperties properties = new CacheProperties();
+        properties.getHotKeys().setSampleRate(1);
+        // Threshold of a single read per window
+        properties.getHotKeys().setThreshold(0.05);
+        return properties;
+    }
+}
@@ -0,0 +1,106 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class NearCacheInvalidatorTest {
+
+    private final CacheProperties properties = new CacheProperties();
+    private final LocalCacheService localCache = new LocalCacheService(properties);
+    private final NearCacheInvalidator invalidator = new NearCacheInvalidator(localCache, properties);
+
+    @Test
+    void remoteKeyInvalidationEvictsLocalCopies() {
+        localCache.put("wallet:account:1", "w1");
+        localCache.put("wallet:account:2", "w2");
+
+        invalidator.onMessage(message("other-node\nKEYS\nwallet:account:1"), null);
+
+        assertThat(localCache.get("wallet:account:1", String.class)).isNull();
+        assertThat(localCache.get("wallet:account:2", String.class)).isEqualTo("w2");
+    }
+
+    @Test
+    void remotePrefixAndPatternInvalidationsAreApplied() {
+        localCache.put("balance:account:1", "1");
+        localCache.put("balance:available:account:1", "1");
+        localCache.put("wallet:account:1", "w1");
+        localCache.put("pocket:ACC-7:savings", "p");
+
+        invalidator.onMessage(message("other-node\nPREFIX\nbalance:"), null);
+        invalidator.onMessage(message("other-node\nPATTERN\npocket:*:savings"), null);
+
+        assertThat(localCache.get("balance:account:1", String.class)).isNull();
+        assertThat(localCache.get("balance:available:account:1", String.class)).isNull();
+        assertThat(localCache.get("pocket:ACC-7:savings", String.class)).isNull();
+        assertThat(localCache.get("wallet:account:1", String.class)).isEqualTo("w1");
+    }
+
+    @Test
+    void resubscriptionClearsLocalCache() {
+        byte[] channel = "cache:local:invalidate".getBytes(StandardCharsets.UTF_8);
+        invalidator.onChannelSubscribed(channel, 1);
+        localCache.put("wallet:account:1", "w1");
+
+        invalidator.onChannelSubscribed(channel, 1);
+
+        assertThat(localCache.size()).isZero();
+    }
+
+    @Test
+    void localOnlyInvalidatorDoesNotBroadcast() {
+        assertThat(invalidator.isBroadcasting()).isFalse();
+
+        localCache.put("wallet:account:1", "w1");
+        invalidator.invalidate(List.of("wallet:account:1"));
+
+        assertThat(localCache.get("wallet:account:1", String.class)).isNull();
+    }
+
+    @Test
+    void cacheServiceBroadcastsWritesAndInvalidations() {
+        NearCacheInvalidator nearCache = mock(NearCacheInvalidator.class);
+        CacheService cacheService = new CacheService(mock(DistributedCacheService.class), localCache, properties,
+                new SingleFlight(properties), new CacheRefresher(properties), nearCache);
+
+        cacheService.put("wallet:account:1", "w1", Duration.ofMinutes(5));
+        cacheService.invalidate("wallet:account:2");
+
+        verify(nearCache).written("wallet:account:1");
+        verify(nearCache).invalidate(List.of("wallet:account:2"));
+    }
+
+    @Test
+    void loadsAndRefreshesAreNotBroadcast() {
+        NearCacheInvalidator nearCache = mock(NearCacheInvalidator.class);
+        CacheService cacheService = new CacheService(mock(DistributedCacheService.class), localCache, properties,
+                new SingleFlight(properties), new CacheRefresher(properties), nearCache);
+
+        cacheService.get("wallet:account:1", String.class, () -> "w1");
+        cacheService.getAll(List.of("wallet:account:2"), String.class,
+                keys -> Map.of("wallet:account:2", "w2"), Duration.ofMinutes(5));
+        cacheService.putLoaded("wallet:account:3", "w3", Duration.ofMinutes(1), Duration.ofMinutes(5));
+
+        assertThat(localCache.get("wallet:account:1", String.class)).isEqualTo("w1");
+        verify(nearCache, never()).written(anyString());
+        verify(nearCache, never()).written(anyCollection());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("cache:local:invalidate".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
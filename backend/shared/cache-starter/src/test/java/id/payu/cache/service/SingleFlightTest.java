@@ -0,0 +1,128 @@
+package id.payu.cache.service;
+
+import id.payu.cache.properties.CacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new CacheProperties());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch arrived = new CountDownLatch(8);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                arrived.countDown();
+                return singleFlight.execute("balance:account:1", () -> null, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "loaded";
+                });
+            }));
+        }
+        arrived.await(5, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    void loaderFailureIsRethrownToWaiters() throws Exception {
+        SingleFlight singleFlight = new SingleFlight(new CacheProperties());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("key", () -> null, () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("database down");
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<Object> waiter = executor.submit(() -> singleFlight.execute("key", () -> null, () -> "unused"));
+        Thread.sleep(50);
+        release.countDown();
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("database down");
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("database down");
+    }
+
+    @Test
+    void waiterLoadsDirectlyAfterTimeout() throws Exception {
+        CacheProperties properties = new CacheProperties();
+        properties.getSingleFlight().setWaitTimeout(Duration.ofMillis(50));
+        SingleFlight singleFlight = new SingleFlight(properties);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> null, () -> {
+            started.countDown();
+            await(release);
+            return "slow";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThat(singleFlight.execute("key", () -> null, () -> "direct")).isEqualTo("direct");
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+    }
+
+    @Test
+    void reentrantLoadOfSameKeyDoesNotDeadlock() {
+        SingleFlight singleFlight = new SingleFlight(new CacheProperties());
+
+        String value = singleFlight.execute("key", () -> null,
+                () -> singleFlight.execute("key", () -> null, () -> "inner") + "-outer");
+
+        assertThat(value).isEqualTo("inner-outer");
+    }
+
+    @Test
+    void disabledSingleFlightCallsLoaderEveryTime() {
+        CacheProperties properties = new CacheProperties();
+        properties.getSingleFlight().setEnabled(false);
+        SingleFlight singleFlight = new SingleFlight(properties);
+        AtomicInteger loads = new AtomicInteger();
+
+        singleFlight.execute("key", () -> null, loads::incrementAndGet);
+        singleFlight.execute("key", () -> null, loads::incrementAndGet);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package id.payu.security.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AES-GCM with the {@link Cipher} kept per thread and deterministic IVs.
+ *
+ * <p>An IV is a 32-bit fixed field followed by a 64-bit invocation counter (NIST SP
+ * 800-38D, section 8.2.1). Both start at random values from a shared DRBG, so IVs never
+ * repeat within an engine and instances sharing a key (other pods, restarts) would have
+ * to draw the same fixed field and overlapping counter ranges to collide. Output is
+ * {@code Base64(iv || ciphertext || tag)}, the same layout as before, so existing values
+ * still decrypt.</p>
+ */
+final class AesGcmEngine {
+
+    static final int GCM_TAG_LENGTH = 128;
+    static final int GCM_IV_LENGTH = 12;
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final SecureRandom DRBG = drbg();
+
+    private final SecretKeySpec key;
+    private final int fixedField;
+    private final AtomicLong counter;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(AesGcmEngine::newCipher);
+
+    AesGcmEngine(SecretKeySpec key) {
+        this.key = key;
+        this.fixedField = DRBG.nextInt();
+        this.counter = new AtomicLong(DRBG.nextLong());
+    }
+
+    String encrypt(String plainText) throws GeneralSecurityException {
+        byte[] input = plainText.getBytes(StandardCharsets.UTF_8);
+        Cipher cipher = ciphers.get();
+
+        byte[] output = new byte[GCM_IV_LENGTH + input.length + GCM_TAG_LENGTH / 8];
+        nextIv(output);
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, output, 0, GCM_IV_LENGTH));
+        cipher.doFinal(input, 0, input.length, output, GCM_IV_LENGTH);
+        return Base64.getEncoder().encodeToString(output);
+    }
+
+    String decrypt(String encryptedText) throws GeneralSecurityException {
+        byte[] combined = Base64.getDecoder().decode(encryptedText);
+        if (combined.length < GCM_IV_LENGTH + GCM_TAG_LENGTH / 8) {
+            throw new GeneralSecurityException("Ciphertext too short");
+        }
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, combined, 0, GCM_IV_LENGTH));
+        byte[] plain = cipher.doFinal(combined, GCM_IV_LENGTH, combined.length - GCM_IV_LENGTH);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private void nextIv(byte[] out) {
+        long invocation = counter.getAndIncrement();
+        int field = fixedField;
+        for (int i = 3; i >= 0; i--) {
+            out[i] = (byte) field;
+            field >>>= 8;
+        }
+        for (int i = GCM_IV_LENGTH - 1; i >= 4; i--) {
+            out[i] = (byte) invocation;
+            invocation >>>= 8;
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    }
+
+    private static SecureRandom drbg() {
+        try {
+            return SecureRandom.getInstance("DRBG");
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+}
@@ -1,25 +1,24 @@
 package id.payu.security.crypto;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.core.JsonFactory;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.codec.Hex;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
-import java.util.Base64;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for field-level encryption/decryption
  * Uses AES-GCM for authenticated encryption
+ *
+ * <p>Ciphers are reused per thread and IVs come from a counter rather than a fresh
+ * {@code SecureRandom} per call, see {@link AesGcmEngine}. JSON field encryption streams
+ * the document instead of building a tree, and field patterns are compiled once per
+ * pattern list.</p>
  * 
  * <p>Note: This class is instantiated via {@link id.payu.security.config.SecurityAutoConfiguration}.
  * Do not add @Service annotation.</p>
@@ -27,18 +26,17 @@ import java.util.Map;
 @Slf4j
 public class EncryptionService {
 
-    private static final String ALGORITHM = "AES/GCM/NoPadding";
-    private static final int GCM_TAG_LENGTH = 128;
-    private static final int GCM_IV_LENGTH = 12;
     private static final int KEY_LENGTH = 256;
+    private static final int MAX_FIELD_MATCHERS = 64;
 
-    private final SecretKeySpec secretKey;
-    private final ObjectMapper objectMapper;
+    private final AesGcmEngine engine;
+    private final JsonFieldTransformer jsonTransformer;
+    private final Map<List<String>, FieldMatcher> fieldMatchers = new ConcurrentHashMap<>();
 
     public EncryptionService(String encryptionKey) {
         // Derive a 256-bit key from the provided key string
-        this.secretKey = deriveKey(encryptionKey);
-        this.objectMapper = new ObjectMapper();
+        this.engine = new AesGcmEngine(deriveKey(encryptionKey));
+        this.jsonTransformer = new JsonFieldTransformer(new JsonFactory());
         log.info("Encryption Service initialized with AES-GCM");
     }
 
@@ -51,26 +49,7 @@ public class EncryptionService {
         }
 
         try {
-            // Generate random IV
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            new SecureRandom().nextBytes(iv);
-
-            // Initialize cipher for encryption
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
-
-            // Encrypt the plaintext
-            byte[] encryptedData = cipher.doFinal(plainText.getBytes(StandardCharsets.UTF_8));
-
-            // Combine IV and encrypted data
-            byte[] combined = ByteBuffer.allocate(iv.length + encryptedData.length)
-                    .put(iv)
-                    .put(encryptedData)
-                    .array();
-
-            // Return as Base64 encoded string
-            return Base64.getEncoder().encodeToString(combined);
+            return engine.encrypt(plainText);
         } catch (Exception e) {
             log.error("Encryption failed", e);
             throw new RuntimeException("Failed to encrypt data", e);
@@ -86,47 +65,47 @@ public class EncryptionService {
         }
 
         try {
-            // Decode Base64
-            byte[] combined = Base64.getDecoder().decode(encryptedText);
-
-            // Extract IV and encrypted data
-            ByteBuffer buffer = ByteBuffer.wrap(combined);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            buffer.get(iv);
-            byte[] encryptedData = new byte[buffer.remaining()];
-            buffer.get(encryptedData);
-
-            // Initialize cipher for decryption
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
-
-            // Decrypt the data
-            byte[] decryptedData = cipher.doFinal(encryptedData);
-
-            return new String(decryptedData, StandardCharsets.UTF_8);
+            return engine.decrypt(encryptedText);
         } catch (Exception e) {
             log.error("Decryption failed", e);
             throw new RuntimeException("Failed to decrypt data", e);
         }
     }
 
+    /**
+     * Encrypt several values, e.g. one column of a page of rows. Null and empty values
+     * are returned as they are, in the same positions.
+     */
+    public List<String> encryptAll(List<String> plainTexts) {
+        List<String> encrypted = new ArrayList<>(plainTexts.size());
+        for (String plainText : plainTexts) {
+            encrypted.add(encrypt(plainText));
+        }
+        return encrypted;
+    }
+
+    /**
+     * Decrypt several values. Null and empty values are returned as they are, in the
+     * same positions.
+     */
+    public List<String> decryptAll(List<String> encryptedTexts) {
+        List<String> decrypted = new ArrayList<>(encryptedTexts.size());
+        for (String encryptedText : encryptedTexts) {
+            decrypted.add(decrypt(encryptedText));
+        }
+        return decrypted;
+    }
+
     /**
      * Encrypt specified fields in a JSON object
      */
-    public String encryptFields(String jsonString, java.util.List<String> fieldsToEncrypt) {
+    public String encryptFields(String jsonString, List<String> fieldsToEncrypt) {
         if (jsonString == null || jsonString.isEmpty()) {
             return jsonString;
         }
 
         try {
-            JsonNode node = objectMapper.readTree(jsonString);
-            if (node.isObject()) {
-                ObjectNode objectNode = (ObjectNode) node;
-                encryptFieldsInObject(objectNode, fieldsToEncrypt);
-                return objectMapper.writeValueAsString(objectNode);
-            }
-            return jsonString;
+            return jsonTransformer.transform(jsonString, fieldMatcher(fieldsToEncrypt), this::encrypt);
         } catch (Exception e) {
             log.error("Failed to encrypt fields in JSON", e);
             return jsonString;
@@ -136,80 +115,38 @@ public class EncryptionService {
     /**
      * Decrypt specified fields in a JSON object
      */
-    public String decryptFields(String jsonString, java.util.List<String> fieldsToDecrypt) {
+    public String decryptFields(String jsonString, List<String> fieldsToDecrypt) {
         if (jsonString == null || jsonString.isEmpty()) {
             return jsonString;
         }
 
         try {
-            JsonNode node = objectMapper.readTree(jsonString);
-            if (node.isObject()) {
-                ObjectNode objectNode = (ObjectNode) node;
-                decryptFieldsInObject(objectNode, fieldsToDecrypt);
-                return objectMapper.writeValueAsString(objectNode);
-            }
-            return jsonString;
+            return jsonTransformer.transform(jsonString, fieldMatcher(fieldsToDecrypt), this::decryptOrKeep);
         } catch (Exception e) {
             log.error("Failed to decrypt fields in JSON", e);
             return jsonString;
         }
     }
 
-    private void encryptFieldsInObject(ObjectNode objectNode, java.util.List<String> fieldsToEncrypt) {
-        Iterator<Map.Entry<String, JsonNode>> fields = objectNode.fields();
-        while (fields.hasNext()) {
-            Map.Entry<String, JsonNode> field = fields.next();
-            String fieldName = field.getKey();
-            JsonNode fieldValue = field.getValue();
-
-            // Check if field should be encrypted
-            boolean shouldEncrypt = fieldsToEncrypt.stream()
-                    .anyMatch(pattern -> fieldName.matches(pattern));
-
-            if (shouldEncrypt && fieldValue.isTextual()) {
-                String encryptedValue = encrypt(fieldValue.asText());
-                objectNode.put(fieldName, encryptedValue);
-            } else if (fieldValue.isObject()) {
-                encryptFieldsInObject((ObjectNode) fieldValue, fieldsToEncrypt);
-            } else if (fieldValue.isArray()) {
-                for (JsonNode arrayItem : fieldValue) {
-                    if (arrayItem.isObject()) {
-                        encryptFieldsInObject((ObjectNode) arrayItem, fieldsToEncrypt);
-                    }
-                }
-            }
+    private String decryptOrKeep(String value) {
+        try {
+            return value.isEmpty() ? value : engine.decrypt(value);
+        } catch (Exception e) {
+            // If decryption fails, leave the value as is
+            log.debug("Failed to decrypt field value, might not be encrypted");
+            return value;
         }
     }
 
-    private void decryptFieldsInObject(ObjectNode objectNode, java.util.List<String> fieldsToDecrypt) {
-        Iterator<Map.Entry<String, JsonNode>> fields = objectNode.fields();
-        while (fields.hasNext()) {
-            Map.Entry<String, JsonNode> field = fields.next();
-            String fieldName = field.getKey();
-            JsonNode fieldValue = field.getValue();
-
-            // Check if field should be decrypted
-            boolean shouldDecrypt = fieldsToDecrypt.stream()
-                    .anyMatch(pattern -> fieldName.matches(pattern));
-
-            if (shouldDecrypt && fieldValue.isTextual()) {
-                try {
-                    String decryptedValue = decrypt(fieldValue.asText());
-                    objectNode.put(fieldName, decryptedValue);
-                } catch (Exception e) {
-                    // If decryption fails, leave the value as is
-                    log.debug("Failed to decrypt field {}, might not be encrypted", fieldName);
-                }
-            } else if (fieldValue.isObject()) {
-                decryptFieldsInObject((ObjectNode) fieldValue, fieldsToDecrypt);
-            } else if (fieldValue.isArray()) {
-                for (JsonNode arrayItem : fieldValue) {
-                    if (arrayItem.isObject()) {
-                        decryptFieldsInObject((ObjectNode) arrayItem, fieldsToDecrypt);
-                    }
-                }
-            }
+    private FieldMatcher fieldMatcher(List<String> patterns) {
+        FieldMatcher matcher = fieldMatchers.get(patterns);
+        if (matcher != null) {
+            return matcher;
+        }
+        if (fieldMatchers.size() >= MAX_FIELD_MATCHERS) {
+            return new FieldMatcher(patterns);
         }
+        return fieldMatchers.computeIfAbsent(List.copyOf(patterns), FieldMatcher::new);
     }
 
     /**
@@ -0,0 +1,40 @@
+package id.payu.security.crypto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Field name patterns compiled once into a single alternation. Field names come from a
+ * small, fixed set of schemas, so the answer per name is remembered as well.
+ */
+final class FieldMatcher {
+
+    private static final int MAX_REMEMBERED_NAMES = 1024;
+
+    private final Pattern pattern;
+    private final Map<String, Boolean> matches = new ConcurrentHashMap<>();
+
+    FieldMatcher(List<String> patterns) {
+        this.pattern = patterns.isEmpty() ? null : Pattern.compile(patterns.stream()
+                .map(p -> "(?:" + p + ")")
+                .collect(Collectors.joining("|")));
+    }
+
+    boolean matches(String fieldName) {
+        if (pattern == null) {
+            return false;
+        }
+        Boolean known = matches.get(fieldName);
+        if (known != null) {
+            return known;
+        }
+        boolean match = pattern.matcher(fieldName).matches();
+        if (matches.size() < MAX_REMEMBERED_NAMES) {
+            matches.put(fieldName, match);
+        }
+        return match;
+    }
+}
@@ -0,0 +1,56 @@
+package id.payu.security.crypto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites the string values of matching fields while copying a JSON document token by
+ * token, without building a tree. Only a string directly under a matching field name is
+ * transformed; objects are descended into whatever their name, and everything else is
+ * copied exactly, numbers included.
+ */
+final class JsonFieldTransformer {
+
+    private final JsonFactory factory;
+
+    JsonFieldTransformer(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * @return the rewritten document, or {@code json} itself when it is not an object
+     */
+    String transform(String json, FieldMatcher matcher, UnaryOperator<String> valueTransform) throws IOException {
+        try (JsonParser parser = factory.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return json;
+            }
+            StringWriter out = new StringWriter(json.length() + 64);
+            try (JsonGenerator generator = factory.createGenerator(out)) {
+                generator.writeStartObject();
+                boolean transformNext = false;
+                JsonToken token;
+                while ((token = parser.nextToken()) != null) {
+                    if (token == JsonToken.FIELD_NAME) {
+                        transformNext = matcher.matches(parser.currentName());
+                        generator.copyCurrentEvent(parser);
+                        continue;
+                    }
+                    if (transformNext && token == JsonToken.VALUE_STRING) {
+                        generator.writeString(valueTransform.apply(parser.getText()));
+                    } else {
+                        generator.copyCurrentEventExact(parser);
+                    }
+                    transformNext = false;
+                }
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package id.payu.security.masking;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Formats values for logs with sensitive data masked.
+ *
+ * <p>How a type is written is worked out once per class and cached: text-like values
+ * (strings, numbers, UUIDs) go through {@link #maskString(String)}, booleans, enums and
+ * dates are written as is, other JDK types are opaque, and application classes are
+ * written field by field with the configured sensitive fields replaced by {@code ****}.
+ * Emails and digit runs are recognised by hand-written scanners rather than regexes.</p>
+ *
+ * <p>{@link #lazy(Object)} and {@link #lazyArgs(Object[])} defer all of this to the
+ * moment the logging framework renders the message, so nothing is masked for log lines
+ * that are filtered out.</p>
+ */
+public final class MaskingFormatter {
+
+    private static final String MASK = "****";
+
+    private final Set<String> sensitiveFields;
+    private final ClassValue<TypePlan> plans = new ClassValue<>() {
+        @Override
+        protected TypePlan computeValue(Class<?> type) {
+            return plan(type);
+        }
+    };
+
+    public MaskingFormatter(Collection<String> sensitiveFields) {
+        this.sensitiveFields = sensitiveFields.stream()
+                .map(field -> field.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Masked representation of a value.
+     */
+    public String format(Object value) {
+        StringBuilder out = new StringBuilder();
+        new Writer(out).write(value);
+        return out.toString();
+    }
+
+    /**
+     * Masked representation of method arguments, as {@code [a, b]}.
+     */
+    public String formatArgs(Object[] args) {
+        if (args == null || args.length == 0) {
+            return "[]";
+        }
+        StringBuilder out = new StringBuilder().append('[');
+        Writer writer = new Writer(out);
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            writer.write(args[i]);
+        }
+        return out.append(']').toString();
+    }
+
+    /**
+     * A log argument that masks the value only when the message is rendered.
+     */
+    public Object lazy(Object value) {
+        return new Lazy(() -> format(value));
+    }
+
+    /**
+     * A log argument that masks the arguments only when the message is rendered.
+     */
+    public Object lazyArgs(Object[] args) {
+        return new Lazy(() -> formatArgs(args));
+    }
+
+    /**
+     * Mask a string by what it looks like: emails keep their first letter and domain,
+     * phone numbers (10 to 15 digits) their first and last three digits, card numbers
+     * (16 digits) their first and last four, longer digit runs their first four, and
+     * anything else its first four characters.
+     */
+    public static String maskString(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        int at = value.indexOf('@');
+        if (at >= 0 && isEmail(value, at)) {
+            return maskEmail(value);
+        }
+        int length = value.length();
+        if (length >= 10 && isDigits(value)) {
+            if (length <= 15) {
+                return maskPhone(value);
+            }
+            if (length == 16) {
+                return maskCard(value);
+            }
+            return maskAccount(value);
+        }
+        return maskGeneric(value);
+    }
+
+    static String maskEmail(String email) {
+        int at = email.indexOf('@');
+        if (at < 0 || !isEmail(email, at)) {
+            return maskGeneric(email);
+        }
+        return email.charAt(0) + "***" + email.substring(at);
+    }
+
+    static String maskPhone(String phone) {
+        int length = phone.length();
+        if (length < 10 || !isDigits(phone)) {
+            return maskGeneric(phone);
+        }
+        return phone.substring(0, 3) + MASK + phone.substring(length - 3);
+    }
+
+    static String maskCard(String card) {
+        int length = card.length();
+        if (length < 16 || !isDigits(card)) {
+            return maskGeneric(card);
+        }
+        return card.substring(0, 4) + "********" + card.substring(length - 4);
+    }
+
+    static String maskAccount(String account) {
+        if (account.length() < 10 || !isDigits(account)) {
+            return maskGeneric(account);
+        }
+        return account.substring(0, 4) + "******";
+    }
+
+    static String maskGeneric(String value) {
+        if (value.length() <= 4) {
+            return MASK;
+        }
+        return value.substring(0, 4) + MASK;
+    }
+
+    private static boolean isDigits(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A word character, at least one more word character or dot, an {@code @}, then at
+     * least one word character or dot up to the end.
+     */
+    private static boolean isEmail(String value, int at) {
+        if (at < 2 || at == value.length() - 1 || !isWordChar(value.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (i != at && !isWordChar(c) && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private TypePlan plan(Class<?> type) {
+        if (CharSequence.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type)
+                || type == UUID.class || type == Character.class) {
+            return TypePlan.TEXT;
+        }
+        if (type == Boolean.class || type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())
+                || TemporalAccessor.class.isAssignableFrom(type)) {
+            return TypePlan.PLAIN;
+        }
+        String name = type.getName();
+        if (type.isArray() || name.startsWith("java.") || name.startsWith("javax.")
+                || name.startsWith("jakarta.") || name.startsWith("sun.")) {
+            return TypePlan.opaque(type);
+        }
+
+        List<FieldPlan> fields = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    return TypePlan.opaque(type);
+                }
+                fields.add(new FieldPlan(field, sensitiveFields.contains(field.getName().toLowerCase(Locale.ROOT))));
+            }
+        }
+        return TypePlan.bean(type, fields.toArray(FieldPlan[]::new));
+    }
+
+    private enum Kind { TEXT, PLAIN, OPAQUE, BEAN }
+
+    private record FieldPlan(Field field, boolean sensitive) {
+    }
+
+    private record TypePlan(Kind kind, String name, FieldPlan[] fields) {
+
+        static final TypePlan TEXT = new TypePlan(Kind.TEXT, null, null);
+        static final TypePlan PLAIN = new TypePlan(Kind.PLAIN, null, null);
+
+        static TypePlan opaque(Class<?> type) {
+            return new TypePlan(Kind.OPAQUE, type.getSimpleName(), null);
+        }
+
+        static TypePlan bean(Class<?> type, FieldPlan[] fields) {
+            return new TypePlan(Kind.BEAN, type.getSimpleName(), fields);
+        }
+    }
+
+    /**
+     * Writes one log argument; tracks the objects on the current path to cut cycles.
+     */
+    private final class Writer {
+
+        private final StringBuilder out;
+        private IdentityHashMap<Object, Boolean> path;
+
+        Writer(StringBuilder out) {
+            this.out = out;
+        }
+
+        void write(Object value) {
+            if (value == null) {
+                out.append("null");
+                return;
+            }
+            TypePlan plan = plans.get(value.getClass());
+            switch (plan.kind()) {
+                case TEXT -> out.append(maskString(value.toString()));
+                case PLAIN -> out.append(value);
+                case OPAQUE -> out.append(plan.name()).append("[MASKED]");
+                case BEAN -> writeBean(value, plan);
+            }
+        }
+
+        private void writeBean(Object value, TypePlan plan) {
+            if (path == null) {
+                path = new IdentityHashMap<>();
+            }
+            if (path.put(value, Boolean.TRUE) != null) {
+                out.append(plan.name()).append("[...]");
+                return;
+            }
+            try {
+                out.append(plan.name()).append('{');
+                FieldPlan[] fields = plan.fields();
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) {
+                        out.append(", ");
+                    }
+                    Object fieldValue = fields[i].field().get(value);
+                    out.append(fields[i].field().getName()).append('=');
+                    if (fields[i].sensitive() && fieldValue != null) {
+                        out.append(MASK);
+                    } else {
+                        write(fieldValue);
+                    }
+                }
+                out.append('}');
+            } catch (IllegalAccessException e) {
+                out.append("[MASKED]");
+            } finally {
+                path.remove(value);
+            }
+        }
+    }
+
+    private record Lazy(Supplier<String> formatted) {
+
+        @Override
+        public String toString() {
+            return formatted.get();
+        }
+    }
+}
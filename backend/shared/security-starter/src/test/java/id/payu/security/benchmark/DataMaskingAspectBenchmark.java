@@ -0,0 +1,89 @@
+package id.payu.security.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import id.payu.security.benchmark.service.TransferService;
+import id.payu.security.config.SecurityProperties;
+import id.payu.security.masking.DataMaskingAspect;
+import id.payu.security.masking.MaskingFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link DataMaskingAspect} on a service call with debug logging off, the
+ * production setting. {@code direct} calls the unproxied method and {@code maskedDebugOff}
+ * goes through the aspect; the two should be within the cost of the proxy itself.
+ * {@code formatArgs} measures the masking that only runs once a debug line is rendered.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.security.benchmark.DataMaskingAspectBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataMaskingAspectBenchmark {
+
+    private static final TransferService.TransferRequest REQUEST = new TransferService.TransferRequest(
+            "1234567890123", "budi.santoso@example.co.id", new BigDecimal("250000.00"));
+
+    private TransferService direct;
+    private TransferService proxied;
+    private MaskingFormatter formatter;
+    private Object[] args;
+
+    @Setup
+    public void setUp() {
+        ((Logger) LoggerFactory.getLogger(DataMaskingAspect.class)).setLevel(Level.INFO);
+
+        SecurityProperties properties = new SecurityProperties();
+        properties.setMaskingEnabled(true);
+        AspectJProxyFactory factory = new AspectJProxyFactory(new TransferService());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new DataMaskingAspect(properties));
+
+        direct = new TransferService();
+        proxied = factory.getProxy();
+        formatter = new MaskingFormatter(properties.getMasking().getFields());
+        args = new Object[] {"9876543210", REQUEST};
+    }
+
+    @Benchmark
+    public String direct() {
+        return direct.transfer("9876543210", REQUEST);
+    }
+
+    @Benchmark
+    public String maskedDebugOff() {
+        return proxied.transfer("9876543210", REQUEST);
+    }
+
+    @Benchmark
+    public String formatArgs() {
+        return formatter.formatArgs(args);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DataMaskingAspectBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,122 @@
+package id.payu.security.benchmark;
+
+import id.payu.security.crypto.EncryptionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encrypting a PII value such as a NIK, and of encrypting the sensitive fields of
+ * a customer document. {@code perCallCipherEncrypt} is what {@code encrypt} used to do: a
+ * new {@link SecureRandom} and {@link Cipher} for every value. Runs on four threads, as
+ * a busy service would. Allocation per operation is reported by the GC profiler.
+ *
+ * <p>Run with: {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=id.payu.security.benchmark.EncryptionServiceBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class EncryptionServiceBenchmark {
+
+    private static final String NIK = "3171234567890001";
+    private static final String CUSTOMER = "{\"customerId\":\"CUST-000042\",\"name\":\"Budi Santoso\","
+            + "\"nik\":\"3171234567890001\",\"accountNumber\":\"1234567890123\",\"balance\":1500000.50,"
+            + "\"address\":{\"city\":\"Jakarta\",\"postalCode\":\"10110\"},"
+            + "\"cards\":[{\"creditCard\":\"4111222233331111\",\"expiry\":\"12/29\"}]}";
+    private static final List<String> FIELDS = List.of(
+            ".*password.*", ".*ssn.*", ".*creditCard.*", ".*accountNumber.*", ".*idCard.*", ".*nik.*", ".*secret.*");
+
+    private EncryptionService encryptionService;
+    private SecretKeySpec key;
+    private String encryptedNik;
+    private String encryptedCustomer;
+    private List<String> batch;
+
+    @Setup
+    public void setUp() {
+        encryptionService = new EncryptionService("benchmark-encryption-key-0123456789abcdef");
+        key = new SecretKeySpec(new byte[32], "AES");
+        encryptedNik = encryptionService.encrypt(NIK);
+        encryptedCustomer = encryptionService.encryptFields(CUSTOMER, FIELDS);
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(NIK.substring(0, 12) + String.format("%04d", i));
+        }
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionService.encrypt(NIK);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionService.decrypt(encryptedNik);
+    }
+
+    @Benchmark
+    public String perCallCipherEncrypt() throws GeneralSecurityException {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(NIK.getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> encryptAll() {
+        return encryptionService.encryptAll(batch);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String encryptFields() {
+        return encryptionService.encryptFields(CUSTOMER, FIELDS);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String decryptFields() {
+        return encryptionService.decryptFields(encryptedCustomer, FIELDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EncryptionServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
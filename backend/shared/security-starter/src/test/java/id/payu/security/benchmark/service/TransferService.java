@@ -0,0 +1,25 @@
+package id.payu.security.benchmark.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Benchmark target; lives in a {@code service} package so the masking pointcut applies.
+ */
+public class TransferService {
+
+    public static class TransferRequest {
+        private final String accountNumber;
+        private final String email;
+        private final BigDecimal amount;
+
+        public TransferRequest(String accountNumber, String email, BigDecimal amount) {
+            this.accountNumber = accountNumber;
+            this.email = email;
+            this.amount = amount;
+        }
+    }
+
+    public String transfer(String sourceAccount, TransferRequest request) {
+        return "TRX-000001";
+    }
+}
@@ -3,7 +3,17 @@ package id.payu.security.crypto;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -223,4 +233,71 @@ class EncryptionServiceTest {
         assertNotNull(result);
         assertNotEquals(json, result);
     }
+
+    @Test
+    void testIvsAreUnique() {
+        Set<String> ivs = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] combined = Base64.getDecoder().decode(encryptionService.encrypt("same"));
+            ivs.add(Base64.getEncoder().encodeToString(Arrays.copyOf(combined, 12)));
+        }
+        assertEquals(1000, ivs.size());
+    }
+
+    @Test
+    void testDecryptValueEncryptedWithRandomIv() throws Exception {
+        byte[] key = Arrays.copyOf(MessageDigest.getInstance("SHA-256")
+                .digest(TEST_KEY.getBytes(StandardCharsets.UTF_8)), 32);
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal("3171234567890001".getBytes(StandardCharsets.UTF_8));
+        byte[] combined = new byte[iv.length + encrypted.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encrypted, 0, combined, iv.length, encrypted.length);
+
+        assertEquals("3171234567890001", encryptionService.decrypt(Base64.getEncoder().encodeToString(combined)));
+    }
+
+    @Test
+    void testEncryptAllAndDecryptAll() {
+        List<String> plainTexts = Arrays.asList("3171234567890001", null, "", "budi@example.com");
+
+        List<String> encrypted = encryptionService.encryptAll(plainTexts);
+
+        assertNull(encrypted.get(1));
+        assertEquals("", encrypted.get(2));
+        assertNotEquals(plainTexts.get(0), encrypted.get(0));
+        assertEquals(plainTexts, encryptionService.decryptAll(encrypted));
+    }
+
+    @Test
+    void testEncryptFieldsNestedObjectsAndArrays() {
+        String json = "{\"amount\":1500.50,\"customer\":{\"nik\":\"3171234567890001\"},"
+                + "\"contacts\":[{\"nik\":\"3171234567890002\"},\"nik\"],\"tags\":[\"nik\"]}";
+        List<String> fields = List.of(".*nik.*");
+
+        String encrypted = encryptionService.encryptFields(json, fields);
+
+        assertFalse(encrypted.contains("3171234567890001"));
+        assertFalse(encrypted.contains("3171234567890002"));
+        assertTrue(encrypted.startsWith("{\"amount\":1500.50,"));
+        assertTrue(encrypted.endsWith(",\"nik\"],\"tags\":[\"nik\"]}"));
+        assertEquals(json, encryptionService.decryptFields(encrypted, fields));
+    }
+
+    @Test
+    void testDecryptFieldsKeepsValuesThatAreNotEncrypted() {
+        String json = "{\"nik\":\"plain-value\"}";
+
+        assertEquals(json, encryptionService.decryptFields(json, List.of("nik")));
+    }
+
+    @Test
+    void testEncryptFieldsNotAnObject() {
+        String json = "[{\"ssn\":\"123-45-6789\"}]";
+
+        assertEquals(json, encryptionService.encryptFields(json, List.of("ssn")));
+    }
 }
@@ -0,0 +1,152 @@
+package id.payu.security.masking;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import id.payu.security.config.SecurityProperties;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for DataMaskingAspect and MaskingFormatter
+ */
+class DataMaskingAspectTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(DataMaskingAspect.class);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final MaskingFormatter formatter = new MaskingFormatter(new SecurityProperties().getMasking().getFields());
+    private Level previousLevel;
+
+    @BeforeEach
+    void setUp() {
+        previousLevel = logger.getLevel();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+        logger.setLevel(previousLevel);
+    }
+
+    @Test
+    void testMaskStringRules() {
+        assertEquals("b***@example.com", MaskingFormatter.maskString("budi.santoso@example.com"));
+        assertEquals("081****890", MaskingFormatter.maskString("0812345678890"));
+        assertEquals("4111********1111", MaskingFormatter.maskString("4111222233331111"));
+        assertEquals("1234******", MaskingFormatter.maskString("12345678901234567"));
+        assertEquals("Budi****", MaskingFormatter.maskString("Budi Santoso"));
+        assertEquals("****", MaskingFormatter.maskString("1234"));
+        assertEquals("not-****", MaskingFormatter.maskString("not-an@email!"));
+    }
+
+    @Test
+    void testStaticMaskByFieldType() {
+        assertEquals("a***@b.id", DataMaskingAspect.mask("ab@b.id", "email"));
+        assertEquals("081****789", DataMaskingAspect.mask("0812456789", "PHONE"));
+        assertEquals("4111********1111", DataMaskingAspect.mask("4111222233331111", "card"));
+        assertEquals("9876******", DataMaskingAspect.mask("9876543210", "account"));
+        assertEquals("secr****", DataMaskingAspect.mask("secret-value", "other"));
+    }
+
+    @Test
+    void testFormatMasksSensitiveFieldsAndCutsCycles() {
+        Transfer transfer = new Transfer("1234567890123", "IDR", new BigDecimal("250000.00"));
+        transfer.self = transfer;
+
+        assertEquals("Transfer{accountNumber=****, currency=****, amount=2500****, self=Transfer[...]}",
+                formatter.format(transfer));
+        assertEquals("[List[MASKED], null, true]", formatter.formatArgs(new Object[] {List.of("a"), null, true}));
+    }
+
+    @Test
+    void testNothingIsFormattedWhenDebugIsOff() throws Throwable {
+        logger.setLevel(Level.INFO);
+        CountingText argument = new CountingText("budi.santoso@example.com");
+
+        Object result = aspect().maskSensitiveData(joinPoint(argument));
+
+        assertEquals("TRX-1", result);
+        assertEquals(0, argument.rendered);
+        assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    void testArgumentsAreMaskedWhenDebugLineIsWritten() throws Throwable {
+        logger.setLevel(Level.DEBUG);
+        CountingText argument = new CountingText("budi.santoso@example.com");
+
+        aspect().maskSensitiveData(joinPoint(argument));
+
+        assertEquals(2, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().endsWith("with masked args: [b***@example.com]"));
+        assertEquals("Result: TRX-****", appender.list.get(1).getFormattedMessage());
+        assertEquals(1, argument.rendered);
+    }
+
+    private DataMaskingAspect aspect() {
+        return new DataMaskingAspect(new SecurityProperties());
+    }
+
+    private ProceedingJoinPoint joinPoint(Object... args) throws Throwable {
+        ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(args);
+        when(joinPoint.proceed()).thenReturn("TRX-1");
+        return joinPoint;
+    }
+
+    static class Transfer {
+        private final String accountNumber;
+        private final String currency;
+        private final BigDecimal amount;
+        private Transfer self;
+
+        Transfer(String accountNumber, String currency, BigDecimal amount) {
+            this.accountNumber = accountNumber;
+            this.currency = currency;
+            this.amount = amount;
+        }
+    }
+
+    static class CountingText implements CharSequence {
+        private final String value;
+        private int rendered;
+
+        CountingText(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return value.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            rendered++;
+            return value;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.UUID;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -55,6 +56,20 @@ public class WalletPersistenceAdapter implements WalletPersistencePort {
         return walletRepository.findByAccountId(accountId).map(this::toDomain);
     }
 
+    @Override
+    public java.util.List<Wallet> findByAccountIds(Collection<String> accountIds) {
+        return walletRepository.findByAccountIdIn(accountIds)
+                .stream()
+                .map(this::toDomain)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public java.util.List<String> findRecentlyActiveAccountIds(int limit) {
+        return walletRepository.findActiveAccountIdsOrderByUpdatedAtDesc(
+                org.springframework.data.domain.PageRequest.of(0, limit));
+    }
+
     @Override
     public WalletTransaction saveTransaction(WalletTransaction transaction) {
         WalletTransactionEntity savedEntity = transactionRepository.save(toTransactionEntity(transaction));
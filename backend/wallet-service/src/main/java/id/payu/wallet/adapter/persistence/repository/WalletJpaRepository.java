@@ -1,9 +1,13 @@
 package id.payu.wallet.adapter.persistence.repository;
 
 import id.payu.wallet.adapter.persistence.entity.WalletEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,4 +18,9 @@ import java.util.UUID;
 public interface WalletJpaRepository extends JpaRepository<WalletEntity, UUID> {
 
     Optional<WalletEntity> findByAccountId(String accountId);
+
+    List<WalletEntity> findByAccountIdIn(Collection<String> accountIds);
+
+    @Query("SELECT w.accountId FROM WalletEntity w WHERE w.status = 'ACTIVE' ORDER BY w.updatedAt DESC")
+    List<String> findActiveAccountIdsOrderByUpdatedAtDesc(Pageable pageable);
 }
@@ -0,0 +1,108 @@
+package id.payu.wallet.application.service;
+
+import id.payu.cache.warming.CacheWarmer;
+import id.payu.wallet.domain.model.Wallet;
+import id.payu.wallet.domain.port.out.WalletPersistencePort;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Warms the wallet snapshot and balances of the most recently active accounts before the
+ * service takes traffic, plus any of those keys recorded as hot by the previous instance.
+ * Each batch of accounts is read with a single query.
+ */
+@Component
+public class WalletCacheWarmer implements CacheWarmer {
+
+    private static final String WALLET_KEY = "wallet:account:";
+    private static final String BALANCE_KEY = "balance:account:";
+    private static final String AVAILABLE_BALANCE_KEY = "balance:available:account:";
+    private static final List<String> PREFIXES = List.of(WALLET_KEY, BALANCE_KEY, AVAILABLE_BALANCE_KEY);
+
+    private final WalletPersistencePort walletPersistencePort;
+    private final int topWallets;
+
+    public WalletCacheWarmer(
+            WalletPersistencePort walletPersistencePort,
+            @Value("${payu.wallet.cache-warming.top-wallets:1000}") int topWallets) {
+        this.walletPersistencePort = walletPersistencePort;
+        this.topWallets = topWallets;
+    }
+
+    @Override
+    public String name() {
+        return "wallets";
+    }
+
+    @Override
+    public Collection<String> warmKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String accountId : walletPersistencePort.findRecentlyActiveAccountIds(topWallets)) {
+            PREFIXES.forEach(prefix -> keys.add(prefix + accountId));
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean supports(String key) {
+        return accountId(key) != null;
+    }
+
+    @Override
+    public Map<String, ?> load(Collection<String> keys) {
+        Set<String> accountIds = new LinkedHashSet<>();
+        keys.forEach(key -> accountIds.add(accountId(key)));
+
+        Map<String, Wallet> wallets = new HashMap<>();
+        walletPersistencePort.findByAccountIds(accountIds)
+                .forEach(wallet -> wallets.put(wallet.getAccountId(), wallet));
+
+        Map<String, Object> values = new HashMap<>();
+        for (String key : keys) {
+            Wallet wallet = wallets.get(accountId(key));
+            if (wallet == null) {
+                continue;
+            }
+            if (key.startsWith(WALLET_KEY)) {
+                values.put(key, wallet);
+            } else if (key.startsWith(BALANCE_KEY)) {
+                values.put(key, wallet.getBalance());
+            } else {
+                values.put(key, wallet.getAvailableBalance());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Same TTLs as the write-through after a balance change.
+     */
+    @Override
+    public Duration ttl() {
+        return WalletService.BALANCE_HARD_TTL;
+    }
+
+    @Override
+    public Duration softTtl() {
+        return WalletService.BALANCE_SOFT_TTL;
+    }
+
+    private static String accountId(String key) {
+        for (String prefix : PREFIXES) {
+            if (key.startsWith(prefix) && key.length() > prefix.length()) {
+                return key.substring(prefix.length());
+            }
+        }
+        return null;
+    }
+}
@@ -11,6 +11,8 @@ import id.payu.wallet.application.exception.WalletNotFoundException;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.Duration;
@@ -24,6 +26,9 @@ public class WalletService implements WalletUseCase {
 
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(WalletService.class);
 
+    static final Duration BALANCE_SOFT_TTL = Duration.ofSeconds(15);
+    static final Duration BALANCE_HARD_TTL = Duration.ofSeconds(30);
+
     private final WalletPersistencePort walletPersistencePort;
     private final WalletEventPublisherPort walletEventPublisher;
     private final CacheService cacheService;
@@ -51,7 +56,7 @@ public class WalletService implements WalletUseCase {
 
         // Cache miss - fetch from DB
         Optional<Wallet> wallet = walletPersistencePort.findByAccountId(accountId);
-        wallet.ifPresent(w -> cacheService.put(cacheKey, w, Duration.ofMinutes(10)));
+        wallet.ifPresent(w -> cacheService.putLoaded(cacheKey, w, Duration.ofMinutes(10), Duration.ofMinutes(10)));
         return wallet;
     }
 
@@ -67,7 +72,7 @@ public class WalletService implements WalletUseCase {
                 () -> {
                     Wallet wallet = walletPersistencePort.findById(walletId)
                             .orElseThrow(() -> new WalletNotFoundException(walletId.toString()));
-                    cacheService.put(cacheKey, wallet, Duration.ofMinutes(10));
+                    cacheService.putLoaded(cacheKey, wallet, Duration.ofMinutes(10), Duration.ofMinutes(10));
                     return wallet;
                 }
         );
@@ -113,8 +118,8 @@ public class WalletService implements WalletUseCase {
                 () -> getWalletByAccountId(accountId)
                         .map(Wallet::getBalance)
                         .orElseThrow(() -> new WalletNotFoundException(accountId)),
-                Duration.ofSeconds(15),  // Soft TTL - serve stale data
-                Duration.ofSeconds(30)   // Hard TTL - must refresh
+                BALANCE_SOFT_TTL,  // Soft TTL - refreshed in the background from here on
+                BALANCE_HARD_TTL   // Hard TTL - must refresh
         );
     }
 
@@ -130,8 +135,8 @@ public class WalletService implements WalletUseCase {
                 () -> getWalletByAccountId(accountId)
                         .map(Wallet::getAvailableBalance)
                         .orElseThrow(() -> new WalletNotFoundException(accountId)),
-                Duration.ofSeconds(15),  // Soft TTL
-                Duration.ofSeconds(30)   // Hard TTL
+                BALANCE_SOFT_TTL,  // Soft TTL
+                BALANCE_HARD_TTL   // Hard TTL
         );
     }
 
@@ -152,10 +157,7 @@ public class WalletService implements WalletUseCase {
 
         walletPersistencePort.save(wallet);
 
-        // Invalidate balance cache
-        cacheService.invalidate("balance:account:" + accountId);
-        cacheService.invalidate("balance:available:account:" + accountId);
-        cacheService.invalidate("wallet:account:" + accountId);
+        evictBalanceCache(accountId);
 
         LedgerEntry debitEntry = LedgerEntry.builder()
                 .id(UUID.randomUUID())
@@ -197,10 +199,7 @@ public class WalletService implements WalletUseCase {
         wallet.commitReservation(reservedAmount);
         walletPersistencePort.save(wallet);
 
-        // Invalidate balance cache
-        cacheService.invalidate("balance:account:" + accountId.toString());
-        cacheService.invalidate("balance:available:account:" + accountId.toString());
-        cacheService.invalidate("wallet:account:" + accountId.toString());
+        evictBalanceCache(accountId.toString());
 
         LedgerEntry commitEntry = LedgerEntry.builder()
                 .id(UUID.randomUUID())
@@ -241,10 +240,7 @@ public class WalletService implements WalletUseCase {
         wallet.releaseReservation(reservedAmount);
         walletPersistencePort.save(wallet);
 
-        // Invalidate balance cache
-        cacheService.invalidate("balance:account:" + accountId.toString());
-        cacheService.invalidate("balance:available:account:" + accountId.toString());
-        cacheService.invalidate("wallet:account:" + accountId.toString());
+        evictBalanceCache(accountId.toString());
 
         LedgerEntry creditEntry = LedgerEntry.builder()
                 .id(UUID.randomUUID())
@@ -279,10 +275,7 @@ public class WalletService implements WalletUseCase {
         wallet.credit(amount);
         walletPersistencePort.save(wallet);
 
-        // Invalidate balance cache
-        cacheService.invalidate("balance:account:" + accountId);
-        cacheService.invalidate("balance:available:account:" + accountId);
-        cacheService.invalidate("wallet:account:" + accountId);
+        evictBalanceCache(accountId);
 
         // Create Ledger Entry
         LedgerEntry creditEntry = LedgerEntry.builder()
@@ -339,4 +332,30 @@ public class WalletService implements WalletUseCase {
         log.debug("Getting ledger entries for transaction: {}", transactionId);
         return walletPersistencePort.findByTransactionId(transactionId);
     }
+
+    /**
+     * Evict the wallet and its balances once the transaction commits; a rolled-back
+     * mutation leaves the cache untouched. The new balances are not written through: a
+     * reload that read the row before the commit and finishes after it would put the older
+     * balance back over them, while an evicted key is simply loaded again, and background
+     * refreshes never recreate an evicted key.
+     */
+    private void evictBalanceCache(String accountId) {
+        List<String> keys = List.of(
+                "wallet:account:" + accountId,
+                "balance:account:" + accountId,
+                "balance:available:account:" + accountId);
+        Runnable evict = () -> cacheService.invalidateAll(keys);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
 }
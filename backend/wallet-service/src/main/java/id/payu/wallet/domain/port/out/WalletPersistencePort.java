@@ -4,6 +4,7 @@ import id.payu.wallet.domain.model.Wallet;
 import id.payu.wallet.domain.model.WalletTransaction;
 import id.payu.wallet.domain.model.LedgerEntry;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -18,6 +19,13 @@ public interface WalletPersistencePort {
     Optional<Wallet> findById(UUID walletId);
     
     Optional<Wallet> findByAccountId(String accountId);
+
+    List<Wallet> findByAccountIds(Collection<String> accountIds);
+
+    /**
+     * Account ids of the active wallets updated most recently, newest first.
+     */
+    List<String> findRecentlyActiveAccountIds(int limit);
     
     WalletTransaction saveTransaction(WalletTransaction transaction);
     
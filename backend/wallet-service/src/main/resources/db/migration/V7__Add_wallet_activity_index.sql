@@ -0,0 +1,4 @@
+-- Most recently updated active wallets, read by the cache warmer on startup
+CREATE INDEX IF NOT EXISTS idx_wallets_active_updated
+ON wallets(updated_at DESC)
+WHERE status = 'ACTIVE';
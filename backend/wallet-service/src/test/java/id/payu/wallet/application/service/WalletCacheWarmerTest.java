@@ -0,0 +1,60 @@
+package id.payu.wallet.application.service;
+
+import id.payu.wallet.domain.model.Wallet;
+import id.payu.wallet.domain.port.out.WalletPersistencePort;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WalletCacheWarmerTest {
+
+    @Mock
+    private WalletPersistencePort walletPersistencePort;
+
+    @Test
+    @DisplayName("should warm wallet and balance keys of the most active accounts")
+    void shouldWarmKeysOfMostActiveAccounts() {
+        when(walletPersistencePort.findRecentlyActiveAccountIds(2)).thenReturn(List.of("ACC-1", "ACC-2"));
+        WalletCacheWarmer warmer = new WalletCacheWarmer(walletPersistencePort, 2);
+
+        assertThat(warmer.warmKeys()).containsExactly(
+                "wallet:account:ACC-1", "balance:account:ACC-1", "balance:available:account:ACC-1",
+                "wallet:account:ACC-2", "balance:account:ACC-2", "balance:available:account:ACC-2");
+        assertThat(warmer.supports("balance:available:account:ACC-9")).isTrue();
+        assertThat(warmer.supports("wallet:id:ACC-9")).isFalse();
+    }
+
+    @Test
+    @DisplayName("should load a batch of keys with one query")
+    void shouldLoadBatchWithOneQuery() {
+        Wallet wallet = Wallet.builder()
+                .accountId("ACC-1")
+                .balance(new BigDecimal("500"))
+                .reservedBalance(new BigDecimal("200"))
+                .currency("IDR")
+                .status(Wallet.WalletStatus.ACTIVE)
+                .build();
+        when(walletPersistencePort.findByAccountIds(Set.of("ACC-1", "ACC-2"))).thenReturn(List.of(wallet));
+        WalletCacheWarmer warmer = new WalletCacheWarmer(walletPersistencePort, 1000);
+
+        Map<String, Object> values = Map.copyOf(warmer.load(List.of(
+                "wallet:account:ACC-1", "balance:account:ACC-1", "balance:available:account:ACC-1",
+                "balance:account:ACC-2")));
+
+        assertThat(values).containsOnly(
+                Map.entry("wallet:account:ACC-1", wallet),
+                Map.entry("balance:account:ACC-1", new BigDecimal("500")),
+                Map.entry("balance:available:account:ACC-1", new BigDecimal("300")));
+    }
+}
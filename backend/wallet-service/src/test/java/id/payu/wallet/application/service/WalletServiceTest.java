@@ -276,6 +276,11 @@ class WalletServiceTest {
         verify(walletPersistencePort).saveLedgerEntry(any(LedgerEntry.class));
         verify(walletPersistencePort).saveTransaction(any(WalletTransaction.class));
         verify(walletEventPublisher).publishBalanceChanged(eq(testWallet.getAccountId()), any(BigDecimal.class), any(BigDecimal.class));
+        verify(cacheService).invalidateAll(List.of(
+                "wallet:account:" + testWallet.getAccountId(),
+                "balance:account:" + testWallet.getAccountId(),
+                "balance:available:account:" + testWallet.getAccountId()));
+        verify(cacheService, never()).putAll(anyMap(), any(Duration.class), any(Duration.class));
     }
 
     @Test